@@ -0,0 +1,377 @@
+package org.cohorte.iot.json.validator.api;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.psem2m.utilities.json.JSONArray;
+import org.psem2m.utilities.json.JSONObject;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.fge.jsonschema.core.report.ProcessingReport;
+import com.github.fge.jsonschema.main.JsonSchemaFactory;
+
+/**
+ * The registry of the compiled json schemas.
+ *
+ * A schema is compiled once and kept:
+ * <ul>
+ * <li>by its id if it is registered with register(),</li>
+ * <li>by its content in a bounded LRU cache otherwise: two equal JSONObject
+ * share the same compiled schema.</li>
+ * </ul>
+ *
+ * The JsonSchemaFactory and the ObjectMapper are shared by all the registries.
+ * The JSONObject are converted in JsonNode without being serialized.
+ *
+ * A compiled JsonSchema is immutable: a registry can be shared between
+ * threads and validateAll() validates the documents in parallel.
+ */
+public class CJsonSchemaRegistry {
+
+	private static class CLruMap extends LinkedHashMap<JsonNode, CJsonSchema> {
+
+		private static final long serialVersionUID = -3094470164383522706L;
+
+		private final int pMaxSize;
+
+		/**
+		 * @param aMaxSize
+		 */
+		CLruMap(final int aMaxSize) {
+			// access order
+			super(16, 0.75f, true);
+			pMaxSize = aMaxSize;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.util.LinkedHashMap#removeEldestEntry(java.util.Map.Entry)
+		 */
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<JsonNode, CJsonSchema> aEldest) {
+			return size() > pMaxSize;
+		}
+	}
+
+	/**
+	 * validates a range of the documents, splitting it while it is larger than
+	 * the threshold
+	 */
+	private static class CValidateTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<JSONObject> pData;
+
+		private final int pFrom;
+
+		private final ProcessingReport[] pReports;
+
+		private final CJsonSchema pSchema;
+
+		private final int pTo;
+
+		/**
+		 * @param aSchema
+		 * @param aData
+		 * @param aReports
+		 * @param aFrom
+		 * @param aTo
+		 */
+		CValidateTask(final CJsonSchema aSchema, final List<JSONObject> aData, final ProcessingReport[] aReports,
+				final int aFrom, final int aTo) {
+			super();
+			pSchema = aSchema;
+			pData = aData;
+			pReports = aReports;
+			pFrom = aFrom;
+			pTo = aTo;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		@Override
+		protected void compute() {
+			if (pTo - pFrom <= PARALLEL_THRESHOLD) {
+				for (int i = pFrom; i < pTo; i++) {
+					try {
+						pReports[i] = pSchema.getSchema().validate(toJsonNode(pData.get(i)), true);
+					} catch (final Exception e) {
+						throw new IllegalStateException(
+								String.format("Unable to validate the document [%d]: %s", i, e.getMessage()), e);
+					}
+				}
+				return;
+			}
+			final int wMiddle = (pFrom + pTo) >>> 1;
+			invokeAll(new CValidateTask(pSchema, pData, pReports, pFrom, wMiddle),
+					new CValidateTask(pSchema, pData, pReports, wMiddle, pTo));
+		}
+	}
+
+	/**
+	 * the default max number of schemas cached by their content
+	 */
+	public static final int DEFAULT_MAX_SCHEMAS = 128;
+
+	/**
+	 * the number of documents validated by a task of validateAll()
+	 */
+	public static final int PARALLEL_THRESHOLD = 16;
+
+	// the compilation of the meta schemas is expensive: the factory is shared
+	private static final JsonSchemaFactory sFactory = JsonSchemaFactory.byDefault();
+
+	private static final ObjectMapper sMapper = new ObjectMapper();
+
+	private static final JsonNodeFactory sNodeFactory = JsonNodeFactory.instance;
+
+	private static CJsonSchemaRegistry sSingleton = null;
+
+	/**
+	 * @return the registry shared by the default validators
+	 */
+	public static synchronized CJsonSchemaRegistry getSingleton() {
+		if (sSingleton == null) {
+			sSingleton = new CJsonSchemaRegistry(DEFAULT_MAX_SCHEMAS);
+		}
+		return sSingleton;
+	}
+
+	/**
+	 * @param aNumber
+	 * @return the node of the number read by the ObjectMapper in the text of
+	 *         the number written by the JSONObject
+	 */
+	private static JsonNode toJsonNode(final Number aNumber) {
+		final String wText = JSONObject.numberToString(aNumber);
+		if (wText.indexOf('.') != -1 || wText.indexOf('e') != -1 || wText.indexOf('E') != -1) {
+			return sNodeFactory.numberNode(Double.parseDouble(wText));
+		}
+		final BigInteger wValue = new BigInteger(wText);
+		if (wValue.bitLength() < Integer.SIZE) {
+			return sNodeFactory.numberNode(wValue.intValue());
+		}
+		if (wValue.bitLength() < Long.SIZE) {
+			return sNodeFactory.numberNode(wValue.longValue());
+		}
+		return sNodeFactory.numberNode(wValue);
+	}
+
+	/**
+	 * Converts the value without serializing the JSONObject and the
+	 * JSONArray. The node is equal to the one read by the ObjectMapper in the
+	 * text of the value.
+	 *
+	 * @param aValue
+	 *            a JSONObject, a JSONArray or a value of one of them
+	 * @return the JsonNode of the value
+	 * @throws Exception
+	 *             if the value can't be written in json
+	 */
+	public static JsonNode toJsonNode(final Object aValue) throws Exception {
+		if (aValue == null || JSONObject.NULL.equals(aValue)) {
+			return sNodeFactory.nullNode();
+		}
+		if (aValue instanceof JSONObject) {
+			final JSONObject wObject = (JSONObject) aValue;
+			final ObjectNode wNode = sNodeFactory.objectNode();
+			final Iterator<String> wKeys = wObject.keys();
+			while (wKeys.hasNext()) {
+				final String wKey = wKeys.next();
+				wNode.set(wKey, toJsonNode(wObject.opt(wKey)));
+			}
+			return wNode;
+		}
+		if (aValue instanceof JSONArray) {
+			final JSONArray wArray = (JSONArray) aValue;
+			final ArrayNode wNode = sNodeFactory.arrayNode();
+			for (int i = 0; i < wArray.length(); i++) {
+				wNode.add(toJsonNode(wArray.opt(i)));
+			}
+			return wNode;
+		}
+		if (aValue instanceof String) {
+			return sNodeFactory.textNode((String) aValue);
+		}
+		if (aValue instanceof Boolean) {
+			return sNodeFactory.booleanNode(((Boolean) aValue).booleanValue());
+		}
+		if (aValue instanceof Number) {
+			return toJsonNode((Number) aValue);
+		}
+		// the maps, the collections, the arrays and the JSONString are written
+		// as the JSONArray writes them
+		return sMapper.readTree(new JSONArray().put(aValue).toString()).get(0);
+	}
+
+	// the compiled schemas registered by their id
+	private final Map<String, CJsonSchema> pSchemasById = new ConcurrentHashMap<>();
+
+	// the compiled schemas by their content
+	private final CLruMap pSchemasByContent;
+
+	/**
+	 * @param aMaxSchemas
+	 *            the max number of schemas cached by their content
+	 */
+	public CJsonSchemaRegistry(final int aMaxSchemas) {
+		super();
+		pSchemasByContent = new CLruMap(aMaxSchemas);
+	}
+
+	/**
+	 * removes all the compiled schemas
+	 */
+	public void clear() {
+		pSchemasById.clear();
+		synchronized (pSchemasByContent) {
+			pSchemasByContent.clear();
+		}
+	}
+
+	/**
+	 * @param aNode
+	 *            the node of the schema
+	 * @param aSchema
+	 * @return the compiled schema
+	 * @throws SchemaException
+	 *             if the schema isn't valid
+	 */
+	private CJsonSchema compile(final JsonNode aNode, final JSONObject aSchema) throws SchemaException {
+		try {
+			return new CJsonSchema(sFactory.getJsonSchema(aNode), aSchema);
+		} catch (final Exception e) {
+			throw new SchemaException(e, e.getMessage());
+		}
+	}
+
+	/**
+	 * @param aSchema
+	 * @return the compiled schema, compiled once for all the equal schemas
+	 * @throws SchemaException
+	 *             if the schema isn't valid
+	 */
+	public CJsonSchema getSchema(final JSONObject aSchema) throws SchemaException {
+		final JsonNode wNode;
+		try {
+			wNode = toJsonNode(aSchema);
+		} catch (final Exception e) {
+			throw new SchemaException(e, e.getMessage());
+		}
+		CJsonSchema wSchema;
+		synchronized (pSchemasByContent) {
+			wSchema = pSchemasByContent.get(wNode);
+		}
+		if (wSchema == null) {
+			wSchema = compile(wNode, aSchema);
+			synchronized (pSchemasByContent) {
+				pSchemasByContent.put(wNode, wSchema);
+			}
+		}
+		return wSchema;
+	}
+
+	/**
+	 * @param aId
+	 * @return the schema registered with the id or null
+	 */
+	public CJsonSchema getSchema(final String aId) {
+		return pSchemasById.get(aId);
+	}
+
+	/**
+	 * compiles the schema and registers it with the id, replacing the schema
+	 * previously registered with the same id
+	 *
+	 * @param aId
+	 * @param aSchema
+	 * @return the compiled schema
+	 * @throws SchemaException
+	 *             if the schema isn't valid
+	 */
+	public CJsonSchema register(final String aId, final JSONObject aSchema) throws SchemaException {
+		final CJsonSchema wSchema = getSchema(aSchema);
+		pSchemasById.put(aId, wSchema);
+		return wSchema;
+	}
+
+	/**
+	 * @return the number of schemas cached by their content
+	 */
+	public int size() {
+		synchronized (pSchemasByContent) {
+			return pSchemasByContent.size();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return String.format("CJsonSchemaRegistry: ids=%s contents=[%d/%d]", pSchemasById.keySet(), size(),
+				pSchemasByContent.pMaxSize);
+	}
+
+	/**
+	 * @param aSchema
+	 * @param aData
+	 * @return the report of the validation of the document
+	 * @throws SchemaException
+	 *             if the document can't be validated
+	 */
+	public ProcessingReport validate(final CJsonSchema aSchema, final JSONObject aData) throws SchemaException {
+		try {
+			return aSchema.getSchema().validate(toJsonNode(aData), true);
+		} catch (final Exception e) {
+			throw new SchemaException(e, e.getMessage());
+		}
+	}
+
+	/**
+	 * validates the documents in parallel in the common ForkJoinPool
+	 *
+	 * @param aSchema
+	 * @param aData
+	 * @return the reports of the validation of the documents, in the order of
+	 *         the documents
+	 * @throws SchemaException
+	 *             if a document can't be validated
+	 */
+	public List<ProcessingReport> validateAll(final CJsonSchema aSchema, final List<JSONObject> aData)
+			throws SchemaException {
+		if (aData.isEmpty()) {
+			return Collections.emptyList();
+		}
+		final ProcessingReport[] wReports = new ProcessingReport[aData.size()];
+		// the documents are read by index
+		final List<JSONObject> wData = new ArrayList<>(aData);
+		try {
+			ForkJoinPool.commonPool().invoke(new CValidateTask(aSchema, wData, wReports, 0, wData.size()));
+		} catch (final IllegalStateException e) {
+			final Throwable wCause = (e.getCause() != null) ? e.getCause() : e;
+			throw new SchemaException(wCause, e.getMessage());
+		}
+		return Arrays.asList(wReports);
+	}
+}
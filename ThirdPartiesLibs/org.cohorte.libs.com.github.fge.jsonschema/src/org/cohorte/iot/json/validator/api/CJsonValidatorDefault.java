@@ -1,12 +1,11 @@
 package org.cohorte.iot.json.validator.api;
 
+import java.util.List;
+
 import org.psem2m.utilities.json.JSONObject;
 import org.psem2m.utilities.logging.IActivityLogger;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.fge.jsonschema.core.report.ProcessingReport;
-import com.github.fge.jsonschema.main.JsonSchemaFactory;
 
 /**
  *
@@ -15,52 +14,59 @@ import com.github.fge.jsonschema.main.JsonSchemaFactory;
  */
 public class CJsonValidatorDefault implements IValidator {
 
+	// the compiled schemas
+	private final CJsonSchemaRegistry pRegistry;
+
 	public CJsonValidatorDefault() {
-		// set private contructor
+		this(CJsonSchemaRegistry.getSingleton());
+	}
+
+	/**
+	 * @param aRegistry
+	 *            the registry of the compiled schemas
+	 */
+	public CJsonValidatorDefault(final CJsonSchemaRegistry aRegistry) {
+		pRegistry = aRegistry;
+	}
+
+	/**
+	 * @return the registry of the compiled schemas
+	 */
+	public CJsonSchemaRegistry getRegistry() {
+		return pRegistry;
 	}
 
 	@Override
 	public CJsonSchema getSchema(final IActivityLogger aLogger,
 			final JSONObject aSchema) throws SchemaException {
-		// create schema
-		try {
-			JsonSchemaFactory wFactory = JsonSchemaFactory.byDefault();
-			aLogger.logDebug(this, "getSchema",
-					"create JsonNode fro JSONObject for the schema");
-			ObjectMapper wMapper = new ObjectMapper();
-			JsonNode wSchema = wMapper.readTree(aSchema.toString());
-
-			aLogger.logDebug(this, "getSchema", "create JsonSchema");
-			return new CJsonSchema(wFactory.getJsonSchema(wSchema), aSchema);
-		} catch (Exception e) {
-			throw new SchemaException(e, e.getMessage());
-		}
+		// create schema or reuse the one compiled for an equal schema
+		aLogger.logDebug(this, "getSchema", "get the JsonSchema");
+		return pRegistry.getSchema(aSchema);
 	}
 
 	@Override
 	public boolean valdate(final IActivityLogger aLogger,
 			final CJsonSchema aSchema, final JSONObject aData) throws Exception {
 		// validate json
-		try {
-			aLogger.logDebug(this, "getSchema",
-					"create JsonNode fro JSONObject for the data");
-			ObjectMapper wMapper = new ObjectMapper();
-			JsonNode wJson = wMapper.readTree(aData.toString());
-
-			aLogger.logDebug(this, "getSchema", "validate data with schema");
-			ProcessingReport wReport = aSchema.getSchema()
-					.validate(wJson, true);
-			if (wReport.isSuccess()) {
-				return true;
-			} else {
-				throw new SchemaException("ERROR; failed schema validation ! ["
-						+ wReport.toString() + "] ");
-			}
-		} catch (Exception e) {
-			throw new SchemaException(e, e.getMessage());
+		aLogger.logDebug(this, "getSchema", "validate data with schema");
+		ProcessingReport wReport = pRegistry.validate(aSchema, aData);
+		if (wReport.isSuccess()) {
+			return true;
+		} else {
+			throw new SchemaException("ERROR; failed schema validation ! ["
+					+ wReport.toString() + "] ");
 		}
 	}
 
+	@Override
+	public List<ProcessingReport> validateAll(final IActivityLogger aLogger,
+			final CJsonSchema aSchema, final List<JSONObject> aData)
+			throws SchemaException {
+		aLogger.logDebug(this, "validateAll",
+				"validate [%d] data with schema", aData.size());
+		return pRegistry.validateAll(aSchema, aData);
+	}
+
 	@Override
 	public boolean validateJson(final IActivityLogger aLogger,
 			final JSONObject aSchema, final JSONObject aJson)
@@ -72,4 +78,4 @@ public class CJsonValidatorDefault implements IValidator {
 			throw new SchemaException(e, e.getMessage());
 		}
 	}
-}
\ No newline at end of file
+}
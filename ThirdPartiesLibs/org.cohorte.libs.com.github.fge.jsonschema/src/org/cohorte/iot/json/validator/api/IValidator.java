@@ -1,8 +1,12 @@
 package org.cohorte.iot.json.validator.api;
 
+import java.util.List;
+
 import org.psem2m.utilities.json.JSONObject;
 import org.psem2m.utilities.logging.IActivityLogger;
 
+import com.github.fge.jsonschema.core.report.ProcessingReport;
+
 /**
  * provide method in order to validate JSON regarding a json schema that follow
  * te specification IEFT draft 6
@@ -34,6 +38,17 @@ public interface IValidator {
 	public boolean valdate(IActivityLogger aLogger, CJsonSchema aSchema,
 			JSONObject aData) throws Exception;
 
+	/**
+	 * validate in parallel a list of data regarding the schema in parameter
+	 *
+	 * @param aLogger
+	 * @param aSchema
+	 * @param aData
+	 * @return the reports of the validation, in the order of the data
+	 */
+	public List<ProcessingReport> validateAll(IActivityLogger aLogger,
+			CJsonSchema aSchema, List<JSONObject> aData) throws Exception;
+
 	/**
 	 * validate the JSON data using the schema in parameter
 	 *
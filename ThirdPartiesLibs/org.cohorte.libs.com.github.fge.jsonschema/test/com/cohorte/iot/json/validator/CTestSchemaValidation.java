@@ -1,8 +1,13 @@
 package com.cohorte.iot.json.validator;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.cohorte.iot.json.validator.api.CJsonGeneratorFactory;
+import org.cohorte.iot.json.validator.api.CJsonSchema;
+import org.cohorte.iot.json.validator.api.CJsonSchemaRegistry;
+import org.cohorte.iot.json.validator.api.CJsonValidatorDefault;
 import org.cohorte.iot.json.validator.api.CJsonValidatorFactory;
 import org.junit.Test;
 import org.psem2m.utilities.files.CXFileText;
@@ -10,6 +15,8 @@ import org.psem2m.utilities.json.JSONObject;
 import org.psem2m.utilities.logging.CActivityLoggerNull;
 import org.psem2m.utilities.logging.IActivityLogger;
 
+import com.github.fge.jsonschema.core.report.ProcessingReport;
+
 import junit.framework.TestCase;
 
 public class CTestSchemaValidation extends TestCase {
@@ -66,4 +73,49 @@ public class CTestSchemaValidation extends TestCase {
 		}
 
 	}
+
+	@Test
+	public void testRegistry() throws Exception {
+		String wSchemaText = "{\"type\":\"object\",\"required\":[\"_id\"],"
+				+ "\"properties\":{\"_id\":{\"type\":\"string\",\"minLength\":5}}}";
+		CJsonSchemaRegistry wRegistry = new CJsonSchemaRegistry(
+				CJsonSchemaRegistry.DEFAULT_MAX_SCHEMAS);
+		CJsonValidatorDefault wValidator = new CJsonValidatorDefault(
+				wRegistry);
+		IActivityLogger wLogger = CActivityLoggerNull.getInstance();
+
+		// an equal schema is compiled once
+		CJsonSchema wSchema = wValidator.getSchema(wLogger, new JSONObject(
+				wSchemaText));
+		assertSame(wSchema,
+				wValidator.getSchema(wLogger, new JSONObject(wSchemaText)));
+		assertEquals(1, wRegistry.size());
+		assertSame(wSchema,
+				wRegistry.register("id", new JSONObject(wSchemaText)));
+		assertSame(wSchema, wRegistry.getSchema("id"));
+
+		List<JSONObject> wData = new ArrayList<JSONObject>();
+		for (int i = 0; i < 200; i++) {
+			wData.add(new JSONObject().put("_id",
+					(i % 4 == 0) ? "id" : "identifier" + i));
+		}
+		List<ProcessingReport> wReports = wValidator.validateAll(wLogger,
+				wSchema, wData);
+		assertEquals(wData.size(), wReports.size());
+		for (int i = 0; i < wReports.size(); i++) {
+			assertEquals(i % 4 != 0, wReports.get(i).isSuccess());
+		}
+
+		// benchmark
+		long wStart = System.nanoTime();
+		for (JSONObject wJson : wData) {
+			wRegistry.validate(wSchema, wJson);
+		}
+		long wSequentialNs = System.nanoTime() - wStart;
+		wStart = System.nanoTime();
+		wRegistry.validateAll(wSchema, wData);
+		long wParallelNs = System.nanoTime() - wStart;
+		System.out.printf("validate [%d] data: sequential=[%d us] parallel=[%d us]\n",
+				wData.size(), wSequentialNs / 1000, wParallelNs / 1000);
+	}
 }
@@ -36,6 +36,8 @@ import java.security.AllPermission;
 import java.security.PrivilegedAction;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.script.AbstractScriptEngine;
 import javax.script.Bindings;
@@ -51,8 +53,10 @@ import javax.script.SimpleBindings;
 import org.mozilla.javascript.Callable;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.EvaluatorException;
 import org.mozilla.javascript.Function;
 import org.mozilla.javascript.JavaScriptException;
+import org.mozilla.javascript.Kit;
 import org.mozilla.javascript.RhinoException;
 import org.mozilla.javascript.Script;
 import org.mozilla.javascript.Scriptable;
@@ -66,9 +70,22 @@ public final class RhinoScriptEngine extends AbstractScriptEngine implements
 		Invocable, Compilable {
 
 	private static final boolean DEBUG = false;
+	private static final Logger LOGGER = Logger
+			.getLogger(RhinoScriptEngine.class.getName());
 	private static final int languageVersion = getLanguageVersion();
 	private static final int optimizationLevel = getOptimizationLevel();
 
+	/**
+	 * MOD_OG - the attribute of the ScriptContext overriding the optimization
+	 * level of the scripts compiled by compile(): -1 to interpret them, 0 to 9
+	 * to compile them in JVM bytecode
+	 */
+	public static final String OPTIMIZATION_LEVEL = "rhino.optimization.level";
+
+	private static Script printScript;
+
+	private static RhinoTopLevel sharedTopLevel;
+
 	private static final String printSource = "function print(str, newline) {                \n"
 			+ "    if (typeof(str) == 'undefined') {         \n"
 			+ "        str = 'undefined';                    \n"
@@ -85,8 +102,12 @@ public final class RhinoScriptEngine extends AbstractScriptEngine implements
 			+ "function println(str) {                       \n"
 			+ "    print(str, true);                         \n" + "}";
 
+	private static final String RHINO_COMPILE_OPT_LEVEL = "rhino.compile.opt.level";
 	private static final String RHINO_JS_VERSION = "rhino.js.version";
 	private static final String RHINO_OPT_LEVEL = "rhino.opt.level";
+	private static final String RHINO_SHARED_SCOPE = "rhino.shared.scope";
+
+	private static final int compileOptimizationLevel = getCompileOptimizationLevel();
 	static {
 		ContextFactory.initGlobal(new ContextFactory() {
 			/**
@@ -143,6 +164,78 @@ public final class RhinoScriptEngine extends AbstractScriptEngine implements
 		});
 	}
 
+	/**
+	 * MOD_OG - the compiled scripts are reused: they are compiled in JVM
+	 * bytecode, level 1, unless "rhino.compile.opt.level" or "rhino.opt.level"
+	 * is set.
+	 *
+	 * @return the optimization level of the scripts compiled by compile()
+	 */
+	private static int getCompileOptimizationLevel() {
+		int optLevel = -1;
+		// disable optimizer under security manager, for now.
+		if (System.getSecurityManager() == null) {
+			optLevel = Integer.getInteger(RHINO_COMPILE_OPT_LEVEL,
+					Integer.getInteger(RHINO_OPT_LEVEL, 1));
+		}
+		return optLevel;
+	}
+
+	/**
+	 * MOD_OG - the functions print() and println() are compiled once
+	 *
+	 * @param cx
+	 * @return the script defining print() and println()
+	 */
+	private static synchronized Script getPrintScript(final Context cx) {
+		if (printScript == null) {
+			int savedLevel = cx.getOptimizationLevel();
+			cx.setOptimizationLevel(-1);
+			try {
+				printScript = cx.compileString(printSource, "print", 1, null);
+			} finally {
+				cx.setOptimizationLevel(savedLevel);
+			}
+		}
+		return printScript;
+	}
+
+	/**
+	 * MOD_OG - the standard objects of the top level shared by the engines are
+	 * created once and sealed: the scripts can't modify them.
+	 *
+	 * @return the top level shared by the engines
+	 */
+	private static synchronized RhinoTopLevel getSharedTopLevel() {
+		if (sharedTopLevel == null) {
+			Context cx = enterContext();
+			try {
+				RhinoTopLevel top = new RhinoTopLevel(cx, null, true);
+				// initialize the lazily loaded constructors before sealing
+				for (Object id : top.getAllIds()) {
+					if (id instanceof String) {
+						ScriptableObject.getProperty(top, (String) id);
+					}
+				}
+				top.sealObject();
+				sharedTopLevel = top;
+			} finally {
+				Context.exit();
+			}
+		}
+		return sharedTopLevel;
+	}
+
+	/**
+	 * MOD_OG
+	 *
+	 * @return true if the engines created by the factory use the shared top
+	 *         level
+	 */
+	private static boolean isSharedScopeDefault() {
+		return Boolean.getBoolean(RHINO_SHARED_SCOPE);
+	}
+
 	static Context enterContext() {
 		// call this always so that initializer of this class runs
 		// and initializes custom wrap factory and class shutter.
@@ -187,6 +280,8 @@ public final class RhinoScriptEngine extends AbstractScriptEngine implements
 	 */
 	private Map<Object, Object> indexedProps;
 
+	private final boolean sharedScope;
+
 	/*
 	 * Scope where standard JavaScript objects and our extensions to it are
 	 * stored. Note that these are not user defined engine level global
@@ -196,9 +291,23 @@ public final class RhinoScriptEngine extends AbstractScriptEngine implements
 	private RhinoTopLevel topLevel;
 
 	/**
-	 * Creates a new instance of RhinoScriptEngine
+	 * Creates a new instance of RhinoScriptEngine, using the shared top level
+	 * if the system property "rhino.shared.scope" is true
 	 */
 	public RhinoScriptEngine() {
+		this(isSharedScopeDefault());
+	}
+
+	/**
+	 * MOD_OG - Creates a new instance of RhinoScriptEngine
+	 *
+	 * @param sharedScope
+	 *            true to use the sealed top level shared by the engines
+	 *            instead of creating the standard objects of this engine. The
+	 *            evaluations get a child scope of the shared top level. Ignored
+	 *            under a security manager.
+	 */
+	public RhinoScriptEngine(final boolean sharedScope) {
 		if (System.getSecurityManager() != null) {
 			try {
 				AccessController.checkPermission(new AllPermission());
@@ -207,11 +316,17 @@ public final class RhinoScriptEngine extends AbstractScriptEngine implements
 			}
 		}
 
-		Context cx = enterContext();
-		try {
-			topLevel = new RhinoTopLevel(cx, this);
-		} finally {
-			Context.exit();
+		// the access context of the engine is given by its own top level
+		this.sharedScope = sharedScope && System.getSecurityManager() == null;
+		if (this.sharedScope) {
+			topLevel = getSharedTopLevel();
+		} else {
+			Context cx = enterContext();
+			try {
+				topLevel = new RhinoTopLevel(cx, this);
+			} finally {
+				Context.exit();
+			}
 		}
 
 		indexedProps = new HashMap<>();
@@ -260,8 +375,26 @@ public final class RhinoScriptEngine extends AbstractScriptEngine implements
 
 	@Override
 	public CompiledScript compile(final Reader script) throws ScriptException {
+		return compile(script, getCompileOptimizationLevel(context));
+	}
+
+	/**
+	 * MOD_OG - compiles the script with the given optimization level. A script
+	 * which can't be compiled in JVM bytecode (a method over 64K) is compiled
+	 * again for the interpreter.
+	 *
+	 * @param script
+	 * @param optLevel
+	 *            -1 to interpret the script, 0 to 9 to compile it in JVM
+	 *            bytecode
+	 * @return the compiled script
+	 * @throws ScriptException
+	 */
+	public CompiledScript compile(final Reader script, final int optLevel)
+			throws ScriptException {
 		CompiledScript ret = null;
 		Context cx = enterContext();
+		int savedLevel = cx.getOptimizationLevel();
 
 		try {
 			String fileName = (String) get(ScriptEngine.FILENAME);
@@ -269,8 +402,27 @@ public final class RhinoScriptEngine extends AbstractScriptEngine implements
 				fileName = "<Unknown Source>";
 			}
 
-			Scriptable scope = getRuntimeScope(context);
-			Script scr = cx.compileReader(scope, script, fileName, 1, null);
+			// disable optimizer under security manager, for now.
+			int level = System.getSecurityManager() == null ? optLevel : -1;
+			cx.setOptimizationLevel(level);
+			Script scr;
+			if (level < 0) {
+				scr = cx.compileReader(script, fileName, 1, null);
+			} else {
+				// the source is kept to be compiled again by the fallback
+				String source = Kit.readReader(script);
+				try {
+					scr = cx.compileString(source, fileName, 1, null);
+				} catch (EvaluatorException e) {
+					cx.setOptimizationLevel(-1);
+					// a syntax error is thrown again by the interpreted
+					// compilation
+					scr = cx.compileString(source, fileName, 1, null);
+					LOGGER.log(Level.WARNING,
+							"Script [{0}] compiled for the interpreter instead of optimization level [{1}]: {2}",
+							new Object[] { fileName, level, e.getMessage() });
+				}
+			}
 			ret = new RhinoCompiledScript(this, scr);
 		} catch (Exception e) {
 			if (DEBUG) {
@@ -278,6 +430,7 @@ public final class RhinoScriptEngine extends AbstractScriptEngine implements
 			}
 			throw new ScriptException(e);
 		} finally {
+			cx.setOptimizationLevel(savedLevel);
 			Context.exit();
 		}
 		return ret;
@@ -289,6 +442,21 @@ public final class RhinoScriptEngine extends AbstractScriptEngine implements
 		return compile(new StringReader(script));
 	}
 
+	/**
+	 * MOD_OG - compiles the script with the given optimization level
+	 *
+	 * @param script
+	 * @param optLevel
+	 *            -1 to interpret the script, 0 to 9 to compile it in JVM
+	 *            bytecode
+	 * @return the compiled script
+	 * @throws ScriptException
+	 */
+	public CompiledScript compile(final String script, final int optLevel)
+			throws ScriptException {
+		return compile(new StringReader(script), optLevel);
+	}
+
 	@Override
 	public Bindings createBindings() {
 		return new SimpleBindings();
@@ -342,6 +510,31 @@ public final class RhinoScriptEngine extends AbstractScriptEngine implements
 		return accCtxt;
 	}
 
+	/**
+	 * MOD_OG
+	 *
+	 * @param ctxt
+	 * @return the optimization level set in the context or the default one
+	 * @throws ScriptException
+	 *             if the level set in the context isn't a number
+	 */
+	private int getCompileOptimizationLevel(final ScriptContext ctxt)
+			throws ScriptException {
+		Object level = ctxt.getAttribute(OPTIMIZATION_LEVEL);
+		if (level instanceof Number) {
+			return ((Number) level).intValue();
+		}
+		if (level != null) {
+			try {
+				return Integer.parseInt(level.toString().trim());
+			} catch (NumberFormatException e) {
+				throw new ScriptException("Bad " + OPTIMIZATION_LEVEL + ": "
+						+ level);
+			}
+		}
+		return compileOptimizationLevel;
+	}
+
 	@Override
 	public ScriptEngineFactory getFactory() {
 		if (factory != null) {
@@ -391,7 +584,7 @@ public final class RhinoScriptEngine extends AbstractScriptEngine implements
 		// define "print", "println" functions in the new scope
 		Context cx = enterContext();
 		try {
-			cx.evaluateString(newScope, printSource, "print", 1, null);
+			getPrintScript(cx).exec(cx, newScope);
 		} finally {
 			Context.exit();
 		}
@@ -458,6 +651,16 @@ public final class RhinoScriptEngine extends AbstractScriptEngine implements
 		return invoke(thiz, name, args);
 	}
 
+	/**
+	 * MOD_OG
+	 *
+	 * @return true if the engine uses the sealed top level shared by the
+	 *         engines
+	 */
+	public boolean isSharedScope() {
+		return sharedScope;
+	}
+
 	void setEngineFactory(final ScriptEngineFactory fac) {
 		factory = fac;
 	}
@@ -39,7 +39,15 @@ public final class RhinoTopLevel extends ImporterTopLevel {
         // second boolean parameter to super constructor tells whether
         // to seal standard JavaScript objects or not. If security manager
         // is present, we seal the standard objects.
-        super(cx, System.getSecurityManager() != null);
+        this(cx, engine, System.getSecurityManager() != null);
+    }
+
+    /**
+     * MOD_OG - the top level shared by the engines is created without engine
+     * and with sealed standard objects.
+     */
+    RhinoTopLevel(Context cx, RhinoScriptEngine engine, boolean sealed) {
+        super(cx, sealed);
         this.engine = engine;
 
         // initialize JSAdapter lazily. Reduces footprint & startup time.
@@ -50,9 +58,10 @@ public final class RhinoTopLevel extends ImporterTopLevel {
         /*
          * initialize JavaAdapter. We can't lazy initialize this because
          * lazy initializer attempts to define a new property. But, JavaAdapter
-         * is an exisiting property that we overwrite.
+         * is an exisiting property that we overwrite. The JavaAdapter of the
+         * shared top level is sealed.
          */
-        JavaAdapter.init(cx, this, false);
+        JavaAdapter.init(cx, this, engine == null);
 
         // add top level functions
         String names[] = {"bindings", "scope", "sync"};
@@ -153,6 +162,7 @@ public final class RhinoTopLevel extends ImporterTopLevel {
     }
 
     AccessControlContext getAccessContext() {
-        return engine.getAccessContext();
+        // the shared top level has no engine
+        return engine != null ? engine.getAccessContext() : null;
     }
 }
\ No newline at end of file
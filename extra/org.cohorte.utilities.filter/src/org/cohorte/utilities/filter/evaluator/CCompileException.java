@@ -0,0 +1,20 @@
+package org.cohorte.utilities.filter.evaluator;
+
+import org.psem2m.utilities.CXException;
+
+public class CCompileException extends CXException {
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 1L;
+
+	public CCompileException(final String aMessage) {
+		super(aMessage);
+	}
+
+	public CCompileException(final Throwable aThrow, final String aMessage) {
+		super(aThrow, aMessage);
+	}
+
+}
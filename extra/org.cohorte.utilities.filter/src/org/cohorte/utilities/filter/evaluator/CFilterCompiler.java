@@ -0,0 +1,513 @@
+package org.cohorte.utilities.filter.evaluator;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.cohorte.utilities.filter.expression.ExpressionOperator;
+import org.cohorte.utilities.filter.expression.IExpression;
+import org.cohorte.utilities.filter.expression.IExpressionArray;
+import org.cohorte.utilities.filter.expression.IExpressionFieldArray;
+import org.cohorte.utilities.filter.expression.IExpressionValue;
+import org.cohorte.utilities.filter.parser.CParseException;
+import org.cohorte.utilities.filter.parser.CParser;
+import org.psem2m.utilities.json.JSONArray;
+import org.psem2m.utilities.json.JSONObject;
+
+/**
+ * compile an expression tree built by the CParser in a reusable predicate
+ * which filters JSONObject records in memory.
+ *
+ * All the work which doesn't depend on the record is done once by the
+ * compilation: the field paths are split, the regexps and the like patterns
+ * are compiled, the operands of "$in" and "$nin" are put in hash sets and the
+ * numbers are normalized. The "$and", "$or" and "$nor" predicates stop at the
+ * first decisive operand.
+ *
+ * The semantics follow the sql conditions written by the
+ * CSQLStringTranslator: a missing field is a null value, a comparison, "$in"
+ * or "$nin" with a null value or a null operand is never true (as "NULL <> 1"
+ * or "NULL NOT IN (1)"), "$exists" tests the nullity and "$like" accepts the
+ * sql wildcards '%' and '_'.
+ *
+ * The differences with the sql translation:
+ * <ul>
+ * <li>the value of "$regexp" is a java regular expression searched in the
+ * value of the field, the translator writes it as the pattern of a LIKE,</li>
+ * <li>"$like" is case sensitive, as on a binary sql collation,</li>
+ * <li>"$nor" isn't translated: it is true if none of its operands is true, so
+ * a "$nor" of a comparison with a null value is true.</li>
+ * </ul>
+ *
+ * The compiled predicate is immutable and can be used by several threads.
+ */
+public class CFilterCompiler {
+
+	/**
+	 * "$and": true if all the operands are true
+	 */
+	private static class CAnd implements Predicate<JSONObject> {
+
+		private final Predicate<JSONObject>[] pOperands;
+
+		CAnd(final Predicate<JSONObject>[] aOperands) {
+			pOperands = aOperands;
+		}
+
+		@Override
+		public boolean test(final JSONObject aRecord) {
+			for (Predicate<JSONObject> wOperand : pOperands) {
+				if (!wOperand.test(aRecord)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * "$eq", "$ne", "$gt", "$gte", "$lt" and "$lte"
+	 */
+	private static class CCompare implements Predicate<JSONObject> {
+
+		private final CField pField;
+		private final Object pOperand;
+		private final ExpressionOperator pOperator;
+
+		CCompare(final CField aField, final ExpressionOperator aOperator,
+				final Object aOperand) {
+			pField = aField;
+			pOperator = aOperator;
+			pOperand = normalize(aOperand);
+		}
+
+		@Override
+		public boolean test(final JSONObject aRecord) {
+			Object wValue = normalize(pField.get(aRecord));
+
+			// as in sql, a comparison with null isn't true
+			if (wValue == null || pOperand == null) {
+				return false;
+			}
+			switch (pOperator) {
+			case EQ:
+				return isEqual(wValue, pOperand);
+			case NE:
+				return !isEqual(wValue, pOperand);
+			default:
+				break;
+			}
+			int wCompare;
+			if (wValue instanceof Number && pOperand instanceof Number) {
+				wCompare = compareNumbers((Number) wValue, (Number) pOperand);
+			} else if (wValue instanceof String && pOperand instanceof String) {
+				wCompare = ((String) wValue).compareTo((String) pOperand);
+			} else {
+				return false;
+			}
+			switch (pOperator) {
+			case GT:
+				return wCompare > 0;
+			case GTE:
+				return wCompare >= 0;
+			case LT:
+				return wCompare < 0;
+			case LTE:
+				return wCompare <= 0;
+			default:
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * "$exists": tests the nullity of the field
+	 */
+	private static class CExists implements Predicate<JSONObject> {
+
+		private final boolean pExpected;
+		private final CField pField;
+
+		CExists(final CField aField, final boolean aExpected) {
+			pField = aField;
+			pExpected = aExpected;
+		}
+
+		@Override
+		public boolean test(final JSONObject aRecord) {
+			return (normalize(pField.get(aRecord)) != null) == pExpected;
+		}
+	}
+
+	/**
+	 * the accessor of a field resolved at the compilation. A dotted name (eg.
+	 * "address.city") is a path in the sub objects and arrays of the record.
+	 */
+	private static class CField {
+
+		private final String[] pParts;
+
+		CField(final String aField) {
+			pParts = (aField.indexOf('.') > -1) ? aField.split("\\.")
+					: new String[] { aField };
+		}
+
+		/**
+		 * @param aRecord
+		 * @return the value of the field or null
+		 */
+		Object get(final JSONObject aRecord) {
+			if (pParts.length == 1) {
+				return aRecord.opt(pParts[0]);
+			}
+			Object wValue = aRecord;
+			for (String wPart : pParts) {
+				if (wValue instanceof JSONObject) {
+					wValue = ((JSONObject) wValue).opt(wPart);
+				} else if (wValue instanceof JSONArray) {
+					wValue = ((JSONArray) wValue).opt(parseIndex(wPart));
+				} else {
+					return null;
+				}
+			}
+			return wValue;
+		}
+
+		/**
+		 * @param aPart
+		 * @return the index or -1 if the part isn't an index
+		 */
+		private int parseIndex(final String aPart) {
+			try {
+				return Integer.parseInt(aPart);
+			} catch (NumberFormatException e) {
+				return -1;
+			}
+		}
+	}
+
+	/**
+	 * "$in" and "$nin": the operands are in a hash set
+	 */
+	private static class CIn implements Predicate<JSONObject> {
+
+		private final CField pField;
+		private final boolean pHasNull;
+		private final boolean pIn;
+		private final Set<Object> pOperands;
+
+		CIn(final CField aField, final List<Object> aOperands, final boolean aIn) {
+			pField = aField;
+			pIn = aIn;
+			pOperands = new HashSet<>();
+			for (Object wOperand : aOperands) {
+				pOperands.add(normalize(wOperand));
+			}
+			pHasNull = pOperands.remove(null);
+		}
+
+		@Override
+		public boolean test(final JSONObject aRecord) {
+			Object wValue = normalize(pField.get(aRecord));
+			// as in sql, a null value is neither IN nor NOT IN the list and
+			// NOT IN a list containing null isn't true
+			if (wValue == null) {
+				return false;
+			}
+			if (pOperands.contains(wValue)) {
+				return pIn;
+			}
+			return !pIn && !pHasNull;
+		}
+	}
+
+	/**
+	 * "$nor": true if none of the operands is true
+	 */
+	private static class CNor implements Predicate<JSONObject> {
+
+		private final Predicate<JSONObject>[] pOperands;
+
+		CNor(final Predicate<JSONObject>[] aOperands) {
+			pOperands = aOperands;
+		}
+
+		@Override
+		public boolean test(final JSONObject aRecord) {
+			for (Predicate<JSONObject> wOperand : pOperands) {
+				if (wOperand.test(aRecord)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * "$or": true if one of the operands is true
+	 */
+	private static class COr implements Predicate<JSONObject> {
+
+		private final Predicate<JSONObject>[] pOperands;
+
+		COr(final Predicate<JSONObject>[] aOperands) {
+			pOperands = aOperands;
+		}
+
+		@Override
+		public boolean test(final JSONObject aRecord) {
+			for (Predicate<JSONObject> wOperand : pOperands) {
+				if (wOperand.test(aRecord)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * "$like" and "$regexp": the pattern is compiled once
+	 */
+	private static class CPattern implements Predicate<JSONObject> {
+
+		private final CField pField;
+		private final boolean pFind;
+		private final Pattern pPattern;
+
+		CPattern(final CField aField, final Pattern aPattern,
+				final boolean aFind) {
+			pField = aField;
+			pPattern = aPattern;
+			pFind = aFind;
+		}
+
+		@Override
+		public boolean test(final JSONObject aRecord) {
+			Object wValue = normalize(pField.get(aRecord));
+			if (wValue == null) {
+				return false;
+			}
+			String wText = wValue.toString();
+			return pFind ? pPattern.matcher(wText).find() : pPattern.matcher(
+					wText).matches();
+		}
+	}
+
+	/**
+	 * the predicate of an empty filter
+	 */
+	private static final Predicate<JSONObject> TRUE = new Predicate<JSONObject>() {
+		@Override
+		public boolean test(final JSONObject aRecord) {
+			return true;
+		}
+	};
+
+	/**
+	 * @param aFirst
+	 * @param aSecond
+	 * @return
+	 */
+	private static int compareNumbers(final Number aFirst, final Number aSecond) {
+		if (aFirst instanceof Long && aSecond instanceof Long) {
+			return Long.compare(aFirst.longValue(), aSecond.longValue());
+		}
+		return Double.compare(aFirst.doubleValue(), aSecond.doubleValue());
+	}
+
+	/**
+	 * @param aExpression
+	 *            the expression returned by the CParser, could be null
+	 * @return the predicate which evaluates the expression
+	 * @throws CCompileException
+	 */
+	public static Predicate<JSONObject> compile(final IExpression aExpression)
+			throws CCompileException {
+
+		// an empty filter
+		if (aExpression == null) {
+			return TRUE;
+		}
+		ExpressionOperator wOperator = aExpression.getOperator();
+
+		if (aExpression instanceof IExpressionArray) {
+			List<IExpression> wExpressions = ((IExpressionArray) aExpression)
+					.getListValue();
+			@SuppressWarnings("unchecked")
+			Predicate<JSONObject>[] wOperands = new Predicate[wExpressions
+					.size()];
+			int wIdx = 0;
+			for (IExpression wExpression : wExpressions) {
+				wOperands[wIdx++] = compile(wExpression);
+			}
+			switch (wOperator) {
+			case AND:
+				return (wOperands.length == 1) ? wOperands[0] : new CAnd(
+						wOperands);
+			case OR:
+				return (wOperands.length == 1) ? wOperands[0] : new COr(
+						wOperands);
+			case NOR:
+				return new CNor(wOperands);
+			default:
+				throw new CCompileException(String.format(
+						"Operator [%s] isn't supported on an array of expressions",
+						wOperator));
+			}
+		}
+
+		if (aExpression instanceof IExpressionFieldArray) {
+			IExpressionFieldArray wExpression = (IExpressionFieldArray) aExpression;
+			CField wField = new CField(wExpression.getField());
+			switch (wOperator) {
+			case IN:
+				return new CIn(wField, wExpression.getListValue(), true);
+			case NIN:
+				return new CIn(wField, wExpression.getListValue(), false);
+			default:
+				throw new CCompileException(String.format(
+						"Operator [%s] isn't supported on an array of values",
+						wOperator));
+			}
+		}
+
+		if (aExpression instanceof IExpressionValue) {
+			IExpressionValue wExpression = (IExpressionValue) aExpression;
+			CField wField = new CField(wExpression.getField());
+			Object wValue = wExpression.getValue();
+			switch (wOperator) {
+			case EQ:
+			case NE:
+			case GT:
+			case GTE:
+			case LT:
+			case LTE:
+				return new CCompare(wField, wOperator, wValue);
+			case EXISTS:
+				return new CExists(wField, wValue instanceof Boolean
+						&& ((Boolean) wValue).booleanValue());
+			case LIKE:
+				return new CPattern(wField, compileLike(String.valueOf(wValue)),
+						false);
+			case REGEXP:
+				try {
+					return new CPattern(wField, Pattern.compile(String
+							.valueOf(wValue)), true);
+				} catch (PatternSyntaxException e) {
+					throw new CCompileException(e, String.format(
+							"Bad regexp [%s] of the field [%s]", wValue,
+							wExpression.getField()));
+				}
+			default:
+				throw new CCompileException(String.format(
+						"Operator [%s] isn't supported on a value", wOperator));
+			}
+		}
+
+		throw new CCompileException(String.format(
+				"Expression [%s] isn't supported", aExpression.getClass()
+						.getSimpleName()));
+	}
+
+	/**
+	 * @param aFilter
+	 *            a json filter
+	 * @return the predicate which evaluates the filter
+	 * @throws CParseException
+	 * @throws CCompileException
+	 */
+	public static Predicate<JSONObject> compile(final String aFilter)
+			throws CParseException, CCompileException {
+		return compile(CParser.parse(aFilter));
+	}
+
+	/**
+	 * @param aLike
+	 *            a sql like pattern using the wildcards '%' and '_'
+	 * @return the equivalent regexp
+	 */
+	static Pattern compileLike(final String aLike) {
+		StringBuilder wRegexp = new StringBuilder();
+		StringBuilder wLiteral = new StringBuilder();
+		for (int wIdx = 0; wIdx < aLike.length(); wIdx++) {
+			char wChar = aLike.charAt(wIdx);
+			if (wChar == '%' || wChar == '_') {
+				if (wLiteral.length() > 0) {
+					wRegexp.append(Pattern.quote(wLiteral.toString()));
+					wLiteral.setLength(0);
+				}
+				wRegexp.append(wChar == '%' ? ".*" : ".");
+			} else {
+				wLiteral.append(wChar);
+			}
+		}
+		if (wLiteral.length() > 0) {
+			wRegexp.append(Pattern.quote(wLiteral.toString()));
+		}
+		return Pattern.compile(wRegexp.toString(), Pattern.DOTALL);
+	}
+
+	/**
+	 * @param aFirst
+	 *            a normalized value, not null
+	 * @param aSecond
+	 *            a normalized value, not null
+	 * @return
+	 */
+	private static boolean isEqual(final Object aFirst, final Object aSecond) {
+		if (aFirst instanceof Number && aSecond instanceof Number) {
+			return compareNumbers((Number) aFirst, (Number) aSecond) == 0;
+		}
+		return aFirst.equals(aSecond);
+	}
+
+	/**
+	 * @param aValue
+	 * @return the value where JSONObject.NULL is null and where the integral
+	 *         numbers are Long and the others Double, so the values can be
+	 *         compared and hashed
+	 */
+	static Object normalize(final Object aValue) {
+		if (aValue == null || JSONObject.NULL.equals(aValue)) {
+			return null;
+		}
+		if (!(aValue instanceof Number)) {
+			return aValue;
+		}
+		if (aValue instanceof Long) {
+			return aValue;
+		}
+		if (aValue instanceof Integer || aValue instanceof Short
+				|| aValue instanceof Byte) {
+			return Long.valueOf(((Number) aValue).longValue());
+		}
+		if (aValue instanceof BigInteger && ((BigInteger) aValue).bitLength() < 64) {
+			return Long.valueOf(((BigInteger) aValue).longValue());
+		}
+		if (aValue instanceof BigDecimal) {
+			try {
+				return Long.valueOf(((BigDecimal) aValue).longValueExact());
+			} catch (ArithmeticException e) {
+				return Double.valueOf(((BigDecimal) aValue).doubleValue());
+			}
+		}
+		double wDouble = ((Number) aValue).doubleValue();
+		if (wDouble == Math.rint(wDouble) && !Double.isInfinite(wDouble)
+				&& Math.abs(wDouble) < 9.0E15) {
+			return Long.valueOf((long) wDouble);
+		}
+		return Double.valueOf(wDouble);
+	}
+
+	/**
+	 *
+	 */
+	private CFilterCompiler() {
+		super();
+	}
+}
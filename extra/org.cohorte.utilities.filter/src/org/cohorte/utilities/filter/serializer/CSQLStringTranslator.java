@@ -1,21 +1,56 @@
 package org.cohorte.utilities.filter.serializer;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.cohorte.utilities.filter.expression.ExpressionOperator;
+import org.cohorte.utilities.filter.expression.IExpression;
+import org.cohorte.utilities.filter.expression.IExpressionArray;
 import org.cohorte.utilities.filter.expression.IExpressionFieldArray;
 import org.cohorte.utilities.filter.expression.IExpressionValue;
 
 /**
  * handler that translate operator, field to return the correct value expected
  * for a SQL query
+ *
+ * The parameterized mode (see translateParameterized()) returns a template
+ * using '?' placeholders and the list of the values to bind. The templates are
+ * kept in a LRU cache keyed by the shape of the expression: the filters which
+ * differ only by their values share the same sql text.
  */
 public class CSQLStringTranslator implements ITranslator<String> {
 
+	/**
+	 * the LRU map of the templates
+	 */
+	private static class CTemplateCache extends LinkedHashMap<String, String> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int pMaxSize;
+
+		CTemplateCache(final int aMaxSize) {
+			// access order
+			super(16, 0.75f, true);
+			pMaxSize = aMaxSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, String> aEldest) {
+			return size() > pMaxSize;
+		}
+	}
+
+	public static final int DEFAULT_TEMPLATE_CACHE_SIZE = 256;
+
 	private final Map<String, String> pMapOperator;
+	private long pNbTemplateHits = 0;
+	private long pNbTemplateMisses = 0;
 	IFunction<String, String> pTansformField = null;
+	private final CTemplateCache pTemplateCache;
 
 	public CSQLStringTranslator() {
 		this(null);
@@ -23,13 +58,113 @@ public class CSQLStringTranslator implements ITranslator<String> {
 	}
 
 	public CSQLStringTranslator(final IFunction<String, String> aTansformField) {
+		this(aTansformField, DEFAULT_TEMPLATE_CACHE_SIZE);
+	}
+
+	/**
+	 * @param aTansformField
+	 * @param aTemplateCacheSize
+	 *            the max number of templates kept by the parameterized mode
+	 */
+	public CSQLStringTranslator(final IFunction<String, String> aTansformField, final int aTemplateCacheSize) {
 		pMapOperator = new HashMap<>();
 
 		pTansformField = aTansformField;
+		pTemplateCache = new CTemplateCache(aTemplateCacheSize);
 		initOperatorMap();
 
 	}
 
+	/**
+	 * walks the expression to build its shape and to collect the values in the
+	 * order of the placeholders of the template.
+	 *
+	 * The shape contains the operators and the fields, not the values. The
+	 * fields are prefixed by their length so two different trees can't have
+	 * the same shape.
+	 *
+	 * @param aExpression
+	 * @param aShape
+	 * @param aValues
+	 * @throws CSerializeException
+	 */
+	private void collectShape(final IExpression aExpression, final StringBuilder aShape, final List<Object> aValues)
+			throws CSerializeException {
+
+		aShape.append(aExpression.getOperator().name());
+		if (aExpression instanceof IExpressionArray) {
+			aShape.append('(');
+			for (IExpression wExpression : ((IExpressionArray) aExpression).getListValue()) {
+				collectShape(wExpression, aShape, aValues);
+				aShape.append(',');
+			}
+			aShape.append(')');
+
+		} else if (aExpression instanceof IExpressionFieldArray) {
+			IExpressionFieldArray wExpression = (IExpressionFieldArray) aExpression;
+			appendFieldInShape(aShape, wExpression.getField());
+			aShape.append('#').append(wExpression.getListValue().size());
+			aValues.addAll(wExpression.getListValue());
+
+		} else if (aExpression instanceof IExpressionValue) {
+			IExpressionValue wExpression = (IExpressionValue) aExpression;
+			appendFieldInShape(aShape, wExpression.getField());
+			if (wExpression.getOperator() == ExpressionOperator.EXISTS) {
+				// the value is a part of the sql text
+				aShape.append('=').append(isExistsTrue(wExpression));
+			} else {
+				aValues.add(wExpression.getValue());
+			}
+		} else {
+			throw new CSerializeException(String.format("Expression [%s] isn't supported",
+					aExpression.getClass().getSimpleName()));
+		}
+	}
+
+	/**
+	 * @param aShape
+	 * @param aField
+	 */
+	private void appendFieldInShape(final StringBuilder aShape, final String aField) {
+		aShape.append(':').append(aField.length()).append(':').append(aField);
+	}
+
+	/**
+	 * @return the number of parameterized translations which reused a template
+	 */
+	public synchronized long getNbTemplateHits() {
+		return pNbTemplateHits;
+	}
+
+	/**
+	 * @return the number of parameterized translations which built a template
+	 */
+	public synchronized long getNbTemplateMisses() {
+		return pNbTemplateMisses;
+	}
+
+	/**
+	 * @param aOperator
+	 * @return the sql operator
+	 * @throws CSerializeException
+	 */
+	private String getSqlOperator(final ExpressionOperator aOperator) throws CSerializeException {
+		String wOperator = pMapOperator.get(aOperator.toString());
+		if (wOperator == null) {
+			throw new CSerializeException(String.format("Operator [%s] isn't supported", aOperator));
+		}
+		return wOperator;
+	}
+
+	/**
+	 * @param aExpression
+	 *            an "$exists" expression
+	 * @return
+	 */
+	private boolean isExistsTrue(final IExpressionValue aExpression) {
+		return aExpression.getValue() instanceof Boolean && ((Boolean) aExpression.getValue()).booleanValue();
+	}
+
 	protected void initOperatorMap() {
 		pMapOperator.put(ExpressionOperator.EQ.toString(), "=");
 		pMapOperator.put(ExpressionOperator.AND.toString(), "AND");
@@ -47,6 +182,80 @@ public class CSQLStringTranslator implements ITranslator<String> {
 
 	}
 
+	/**
+	 * @param aExpression
+	 * @return the template of the expression
+	 * @throws CSerializeException
+	 */
+	private String translateTemplate(final IExpression aExpression) throws CSerializeException {
+
+		if (aExpression instanceof IExpressionArray) {
+			List<String> wConditions = new ArrayList<>();
+			for (IExpression wExpression : ((IExpressionArray) aExpression).getListValue()) {
+				wConditions.add(translateTemplate(wExpression));
+			}
+			return " (" + String.join(getSqlOperator(aExpression.getOperator()), wConditions) + ") ";
+		}
+
+		if (aExpression instanceof IExpressionFieldArray) {
+			IExpressionFieldArray wExpression = (IExpressionFieldArray) aExpression;
+			StringBuilder wPlaceholders = new StringBuilder("(");
+			for (int i = 0; i < wExpression.getListValue().size(); i++) {
+				if (i > 0) {
+					wPlaceholders.append(',');
+				}
+				wPlaceholders.append('?');
+			}
+			wPlaceholders.append(')');
+			return String.format(" %s %s %s ", wExpression.getField(), getSqlOperator(wExpression.getOperator()),
+					wPlaceholders);
+		}
+
+		IExpressionValue wExpression = (IExpressionValue) aExpression;
+		if (wExpression.getOperator() == ExpressionOperator.EXISTS) {
+			return translateExpression(wExpression);
+		}
+		return String.format(" %s %s ? ", wExpression.getField(), getSqlOperator(wExpression.getOperator()));
+	}
+
+	/**
+	 * translates the expression in a sql condition using '?' placeholders.
+	 *
+	 * The template is reused if an expression having the same shape (same
+	 * operators, same fields, same number of values) was already translated.
+	 *
+	 * @param aExpression
+	 * @return the template and the values to bind or null if the expression
+	 *         is null
+	 * @throws CSerializeException
+	 */
+	public CSQLTemplate translateParameterized(final IExpression aExpression) throws CSerializeException {
+		if (aExpression == null) {
+			return null;
+		}
+		StringBuilder wShape = new StringBuilder();
+		List<Object> wValues = new ArrayList<>();
+		collectShape(aExpression, wShape, wValues);
+
+		String wKey = wShape.toString();
+		String wSql;
+		synchronized (this) {
+			wSql = pTemplateCache.get(wKey);
+			if (wSql != null) {
+				pNbTemplateHits++;
+			} else {
+				pNbTemplateMisses++;
+			}
+		}
+		if (wSql == null) {
+			wSql = translateTemplate(aExpression);
+			synchronized (this) {
+				pTemplateCache.put(wKey, wSql);
+			}
+		}
+		return new CSQLTemplate(wSql, wValues);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -0,0 +1,43 @@
+package org.cohorte.utilities.filter.serializer;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * a sql condition using '?' placeholders and the ordered list of the values
+ * bound to them
+ */
+public class CSQLTemplate {
+
+	private final List<Object> pBindValues;
+
+	private final String pSql;
+
+	/**
+	 * @param aSql
+	 * @param aBindValues
+	 */
+	public CSQLTemplate(final String aSql, final List<Object> aBindValues) {
+		pSql = aSql;
+		pBindValues = Collections.unmodifiableList(aBindValues);
+	}
+
+	/**
+	 * @return the values bound to the placeholders, in order
+	 */
+	public List<Object> getBindValues() {
+		return pBindValues;
+	}
+
+	/**
+	 * @return the sql text containing the '?' placeholders
+	 */
+	public String getSql() {
+		return pSql;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("sql=[%s] values=%s", pSql, pBindValues);
+	}
+}
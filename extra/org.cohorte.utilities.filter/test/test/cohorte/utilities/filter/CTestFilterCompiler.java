@@ -0,0 +1,274 @@
+package test.cohorte.utilities.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import org.cohorte.utilities.filter.evaluator.CFilterCompiler;
+import org.cohorte.utilities.filter.expression.CExpression;
+import org.cohorte.utilities.filter.expression.ExpressionOperator;
+import org.cohorte.utilities.filter.expression.IExpression;
+import org.cohorte.utilities.filter.expression.IExpressionArray;
+import org.cohorte.utilities.filter.expression.IExpressionFieldArray;
+import org.cohorte.utilities.filter.expression.IExpressionValue;
+import org.cohorte.utilities.filter.parser.CParser;
+import org.cohorte.utilities.filter.serializer.CSQLStringTranslator;
+import org.cohorte.utilities.filter.serializer.CSerializer;
+import org.junit.Test;
+import org.psem2m.utilities.json.JSONObject;
+
+import junit.framework.TestCase;
+
+/**
+ * tests the predicates compiled by the CFilterCompiler, compares them with the
+ * sql conditions written by the CSQLStringTranslator and compares their
+ * throughput with a naive interpretation of the expression tree
+ */
+public class CTestFilterCompiler extends TestCase {
+
+	private static final String FILTER_BENCH = "{\"$and\":[{\"status\":{\"$in\":[\"open\",\"pending\",\"blocked\",\"review\"]}},"
+			+ "{\"amount\":{\"$gte\":100}},{\"$or\":[{\"owner.name\":{\"$regexp\":\"^a.*9$\"}},{\"label\":{\"$like\":\"%urgent%\"}}]},"
+			+ "{\"team\":{\"$nin\":[\"t1\",\"t3\"]}}]}";
+
+	private static final int NB_RECORDS = 100000;
+
+	/**
+	 * @param aRecord
+	 * @param aField
+	 * @return the value of the field, the path split at each evaluation
+	 */
+	private static Object naiveGet(final JSONObject aRecord, final String aField) {
+		Object wValue = aRecord;
+		for (String wPart : aField.split("\\.")) {
+			if (!(wValue instanceof JSONObject)) {
+				return null;
+			}
+			wValue = ((JSONObject) wValue).opt(wPart);
+		}
+		return JSONObject.NULL.equals(wValue) ? null : wValue;
+	}
+
+	/**
+	 * the naive interpretation: walks the tree, compiles the patterns and
+	 * scans the lists for each record
+	 *
+	 * @param aExpression
+	 * @param aRecord
+	 * @return
+	 */
+	private static boolean naiveTest(final IExpression aExpression, final JSONObject aRecord) {
+		if (aExpression instanceof IExpressionArray) {
+			boolean wOr = false;
+			boolean wAnd = true;
+			for (IExpression wExpression : ((IExpressionArray) aExpression).getListValue()) {
+				boolean wResult = naiveTest(wExpression, aRecord);
+				wOr |= wResult;
+				wAnd &= wResult;
+			}
+			switch (aExpression.getOperator()) {
+			case AND:
+				return wAnd;
+			case OR:
+				return wOr;
+			default:
+				return !wOr;
+			}
+		}
+		if (aExpression instanceof IExpressionFieldArray) {
+			IExpressionFieldArray wExpression = (IExpressionFieldArray) aExpression;
+			Object wValue = naiveGet(aRecord, wExpression.getField());
+			if (wValue == null) {
+				return false;
+			}
+			boolean wFound = false;
+			for (Object wItem : wExpression.getListValue()) {
+				if (String.valueOf(wItem).equals(String.valueOf(wValue))) {
+					wFound = true;
+				}
+			}
+			return wFound == (aExpression.getOperator() == ExpressionOperator.IN);
+		}
+		IExpressionValue wExpression = (IExpressionValue) aExpression;
+		Object wValue = naiveGet(aRecord, wExpression.getField());
+		Object wOperand = wExpression.getValue();
+		switch (wExpression.getOperator()) {
+		case EQ:
+			return wValue != null && String.valueOf(wOperand).equals(String.valueOf(wValue));
+		case NE:
+			return wValue != null && !String.valueOf(wOperand).equals(String.valueOf(wValue));
+		case GT:
+			return wValue != null && Double.parseDouble(wValue.toString()) > Double.parseDouble(wOperand.toString());
+		case GTE:
+			return wValue != null && Double.parseDouble(wValue.toString()) >= Double.parseDouble(wOperand.toString());
+		case LT:
+			return wValue != null && Double.parseDouble(wValue.toString()) < Double.parseDouble(wOperand.toString());
+		case LTE:
+			return wValue != null && Double.parseDouble(wValue.toString()) <= Double.parseDouble(wOperand.toString());
+		case EXISTS:
+			return (wValue != null) == Boolean.TRUE.equals(wOperand);
+		case LIKE:
+			return wValue != null && Pattern
+					.compile(wOperand.toString().replace("%", ".*").replace("_", "."), Pattern.DOTALL)
+					.matcher(wValue.toString()).matches();
+		case REGEXP:
+			return wValue != null && Pattern.compile(wOperand.toString()).matcher(wValue.toString()).find();
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * @return the records of the benchmark
+	 */
+	private static List<JSONObject> newRecords() {
+		String[] wStatus = { "open", "closed", "pending", "blocked", "review", "archived" };
+		List<JSONObject> wRecords = new ArrayList<>();
+		for (int i = 0; i < NB_RECORDS; i++) {
+			JSONObject wOwner = new JSONObject();
+			wOwner.put("name", (i % 3 == 0 ? "a" : "b") + "user" + i);
+			JSONObject wRecord = new JSONObject();
+			wRecord.put("id", i);
+			wRecord.put("status", wStatus[i % wStatus.length]);
+			wRecord.put("amount", (i * 37) % 1000);
+			wRecord.put("owner", wOwner);
+			wRecord.put("team", "t" + (i % 5));
+			wRecord.put("label", (i % 7 == 0) ? "very urgent task" : "task");
+			wRecords.add(wRecord);
+		}
+		return wRecords;
+	}
+
+	/**
+	 * @param aFilter
+	 * @param aRecord
+	 * @return
+	 * @throws Exception
+	 */
+	private boolean test(final String aFilter, final JSONObject aRecord) throws Exception {
+		return CFilterCompiler.compile(aFilter).test(aRecord);
+	}
+
+	/**
+	 * compares the compiled predicate with the naive interpretation
+	 */
+	@Test
+	public void testBenchmark() throws Exception {
+		List<JSONObject> wRecords = newRecords();
+		CExpression wExpression = CParser.parse(FILTER_BENCH);
+		Predicate<JSONObject> wPredicate = CFilterCompiler.compile(wExpression);
+
+		// warm up and check the same records are selected
+		int wNbCompiled = 0;
+		int wNbNaive = 0;
+		for (JSONObject wRecord : wRecords) {
+			boolean wCompiled = wPredicate.test(wRecord);
+			assertEquals(wRecord.toString(), naiveTest(wExpression, wRecord), wCompiled);
+			wNbCompiled += wCompiled ? 1 : 0;
+		}
+		assertTrue(wNbCompiled > 0);
+
+		long wStart = System.nanoTime();
+		for (int wLoop = 0; wLoop < 5; wLoop++) {
+			for (JSONObject wRecord : wRecords) {
+				wNbNaive += naiveTest(wExpression, wRecord) ? 1 : 0;
+			}
+		}
+		long wNaiveNs = System.nanoTime() - wStart;
+
+		wStart = System.nanoTime();
+		int wNbLoop = 0;
+		for (int wLoop = 0; wLoop < 5; wLoop++) {
+			for (JSONObject wRecord : wRecords) {
+				wNbLoop += wPredicate.test(wRecord) ? 1 : 0;
+			}
+		}
+		long wCompiledNs = System.nanoTime() - wStart;
+
+		assertEquals(wNbNaive, wNbLoop);
+		System.out.println(String.format("Records=[%d] Selected=[%d] naive=[%d ns/record] compiled=[%d ns/record]",
+				NB_RECORDS, wNbCompiled, wNaiveNs / (5 * NB_RECORDS), wCompiledNs / (5 * NB_RECORDS)));
+	}
+
+	/**
+	 * tests each operator
+	 */
+	@Test
+	public void testOperators() throws Exception {
+		JSONObject wRecord = new JSONObject(
+				"{\"name\":\"paris\",\"pop\":2148000,\"area\":105.4,\"tags\":[\"a\",\"b\"],\"geo\":{\"country\":\"fr\"},\"none\":null}");
+
+		assertTrue(test("{}", wRecord));
+		assertTrue(test("{\"name\":\"paris\"}", wRecord));
+		assertFalse(test("{\"name\":\"lyon\"}", wRecord));
+		assertTrue(test("{\"name\":{\"$ne\":\"lyon\"}}", wRecord));
+		assertTrue(test("{\"pop\":{\"$gt\":1000000}}", wRecord));
+		assertTrue(test("{\"pop\":{\"$gte\":2148000.0}}", wRecord));
+		assertFalse(test("{\"area\":{\"$lt\":100}}", wRecord));
+		assertTrue(test("{\"area\":{\"$lte\":105.4}}", wRecord));
+		assertTrue(test("{\"pop\":{\"$in\":[1,2148000]}}", wRecord));
+		assertTrue(test("{\"pop\":{\"$in\":[2148000.0]}}", wRecord));
+		assertFalse(test("{\"name\":{\"$nin\":[\"paris\",\"lyon\"]}}", wRecord));
+		assertFalse(test("{\"missing\":{\"$nin\":[\"paris\"]}}", wRecord));
+		assertTrue(test("{\"name\":{\"$exists\":true}}", wRecord));
+		assertTrue(test("{\"none\":{\"$exists\":false}}", wRecord));
+		assertTrue(test("{\"missing\":{\"$exists\":false}}", wRecord));
+		assertTrue(test("{\"name\":{\"$like\":\"p_r%\"}}", wRecord));
+		assertFalse(test("{\"name\":{\"$like\":\"ar%\"}}", wRecord));
+		assertTrue(test("{\"name\":{\"$regexp\":\"ar\"}}", wRecord));
+		assertTrue(test("{\"geo.country\":\"fr\"}", wRecord));
+		assertTrue(test("{\"tags.1\":\"b\"}", wRecord));
+		assertTrue(test("{\"$or\":[{\"name\":\"lyon\"},{\"geo.country\":\"fr\"}]}", wRecord));
+		assertFalse(test("{\"$and\":[{\"name\":\"paris\"},{\"geo.country\":\"it\"}]}", wRecord));
+		assertTrue(test("{\"$nor\":[{\"name\":\"lyon\"},{\"geo.country\":\"it\"}]}", wRecord));
+	}
+
+	/**
+	 * translates the filters in sql and evaluates them on a record having a
+	 * null field: the predicate is true where the sql condition is true. The
+	 * "$regexp" case is the documented difference.
+	 */
+	@Test
+	public void testSqlSemantics() throws Exception {
+		JSONObject wRecord = new JSONObject("{\"name\":\"paris\",\"none\":null}");
+		CSQLStringTranslator wTranslator = new CSQLStringTranslator(null);
+		CSerializer<String> wSerializer = new CSerializer<>();
+
+		// the filter, its sql translation and the value of the sql condition
+		// on the record (UNKNOWN is false)
+		String[][] wCases = {
+				{ "{\"none\":\"lyon\"}", " none = 'lyon' ", "false" },
+				{ "{\"none\":{\"$ne\":\"lyon\"}}", " none != 'lyon' ", "false" },
+				{ "{\"missing\":{\"$ne\":\"lyon\"}}", " missing != 'lyon' ", "false" },
+				{ "{\"name\":{\"$ne\":\"lyon\"}}", " name != 'lyon' ", "true" },
+				{ "{\"none\":{\"$gt\":1}}", " none > 1 ", "false" },
+				{ "{\"none\":{\"$in\":[\"paris\"]}}", " none IN ('paris') ", "false" },
+				{ "{\"none\":{\"$nin\":[\"paris\"]}}", " none NOT IN ('paris') ", "false" },
+				{ "{\"name\":{\"$nin\":[\"lyon\"]}}", " name NOT IN ('lyon') ", "true" },
+				{ "{\"none\":{\"$exists\":false}}", " none IS NULL ", "true" },
+				{ "{\"name\":{\"$exists\":true}}", " name IS NOT NULL ", "true" },
+				{ "{\"none\":{\"$like\":\"%\"}}", " none LIKE '%' ", "false" },
+				{ "{\"name\":{\"$like\":\"p_r%\"}}", " name LIKE 'p_r%' ", "true" },
+				{ "{\"$or\":[{\"none\":{\"$ne\":\"x\"}},{\"name\":\"paris\"}]}",
+						" ( none != 'x' OR name = 'paris' ) ", "true" },
+				{ "{\"$and\":[{\"none\":{\"$ne\":\"x\"}},{\"name\":\"paris\"}]}",
+						" ( none != 'x' AND name = 'paris' ) ", "false" } };
+
+		for (String[] wCase : wCases) {
+			CExpression wExpression = CParser.parse(wCase[0]);
+			String wSql = String.join(" ", wSerializer.serializer(wExpression, wTranslator));
+			assertEquals(wCase[0], wCase[1].replaceAll("\\s+", " ").trim(), wSql.replaceAll("\\s+", " ").trim());
+			assertEquals(wCase[0], Boolean.parseBoolean(wCase[2]), CFilterCompiler.compile(wExpression).test(wRecord));
+		}
+
+		// a null in the list: NOT IN is never true
+		assertFalse(test("{\"name\":{\"$nin\":[\"lyon\",null]}}", wRecord));
+		assertTrue(test("{\"name\":{\"$in\":[\"paris\",null]}}", wRecord));
+
+		// the difference: a java regexp in memory, a LIKE pattern in sql
+		CExpression wRegexp = CParser.parse("{\"name\":{\"$regexp\":\"ar\"}}");
+		assertEquals("name LIKE 'ar'",
+				String.join(" ", wSerializer.serializer(wRegexp, wTranslator)).replaceAll("\\s+", " ").trim());
+		assertTrue(CFilterCompiler.compile(wRegexp).test(wRecord));
+	}
+}
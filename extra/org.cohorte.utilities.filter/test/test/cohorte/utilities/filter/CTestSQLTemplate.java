@@ -0,0 +1,51 @@
+package test.cohorte.utilities.filter;
+
+import java.util.Arrays;
+
+import org.cohorte.utilities.filter.parser.CParser;
+import org.cohorte.utilities.filter.serializer.CSQLStringTranslator;
+import org.cohorte.utilities.filter.serializer.CSQLTemplate;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+/**
+ * tests the parameterized mode of the CSQLStringTranslator
+ */
+public class CTestSQLTemplate extends TestCase {
+
+	/**
+	 * the filters having the same shape share the same template
+	 */
+	@Test
+	public void testTemplateCache() throws Exception {
+		CSQLStringTranslator wTranslator = new CSQLStringTranslator(null, 2);
+
+		CSQLTemplate wFirst = wTranslator.translateParameterized(
+				CParser.parse("{\"$and\":[{\"name\":{\"$ne\":\"test\"}},{\"age\":{\"$gte\":18}},{\"city\":{\"$in\":[\"a\",\"b\"]}},{\"mail\":{\"$exists\":true}}]}"));
+		System.out.println(wFirst);
+		assertEquals(" ( name != ? AND age >= ? AND city IN (?,?) AND mail IS NOT NULL ) ", wFirst.getSql());
+		assertEquals(Arrays.asList("test", 18, "a", "b"), wFirst.getBindValues());
+
+		CSQLTemplate wSecond = wTranslator.translateParameterized(
+				CParser.parse("{\"$and\":[{\"name\":{\"$ne\":\"other\"}},{\"age\":{\"$gte\":21}},{\"city\":{\"$in\":[\"c\",\"d\"]}},{\"mail\":{\"$exists\":true}}]}"));
+		assertSame(wFirst.getSql(), wSecond.getSql());
+		assertEquals(Arrays.asList("other", 21, "c", "d"), wSecond.getBindValues());
+		assertEquals(1, wTranslator.getNbTemplateHits());
+		assertEquals(1, wTranslator.getNbTemplateMisses());
+
+		// a different number of values or a different "$exists" is another shape
+		CSQLTemplate wThird = wTranslator.translateParameterized(
+				CParser.parse("{\"$and\":[{\"name\":{\"$ne\":\"other\"}},{\"age\":{\"$gte\":21}},{\"city\":{\"$in\":[\"c\"]}},{\"mail\":{\"$exists\":false}}]}"));
+		assertEquals(" ( name != ? AND age >= ? AND city IN (?) AND mail IS NULL ) ", wThird.getSql());
+		assertEquals(2, wTranslator.getNbTemplateMisses());
+
+		// the cache is bounded: the first shape is evicted
+		wTranslator.translateParameterized(CParser.parse("{\"name\":\"x\"}"));
+		wTranslator.translateParameterized(CParser.parse(
+				"{\"$and\":[{\"name\":{\"$ne\":\"test\"}},{\"age\":{\"$gte\":18}},{\"city\":{\"$in\":[\"a\",\"b\"]}},{\"mail\":{\"$exists\":true}}]}"));
+		assertEquals(4, wTranslator.getNbTemplateMisses());
+
+		assertNull(wTranslator.translateParameterized(null));
+	}
+}
@@ -304,6 +304,26 @@ public class CInstallerLogger extends CAbstractComponentBase implements IActivit
 		return sFileLogger.getFileHandler();
 	}
 
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.psem2m.utilities.logging.IActivityLogger#getNbDroppedRecords()
+	 */
+	// @Override
+	public long getNbDroppedRecords() {
+		return 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.psem2m.utilities.logging.IActivityLogger#getNbQueuedRecords()
+	 */
+	// @Override
+	public long getNbQueuedRecords() {
+		return 0;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -0,0 +1,413 @@
+package org.cohorte.utilities.json.provider;
+
+import java.io.File;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent.Kind;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.psem2m.utilities.json.JSONObject;
+import org.psem2m.utilities.rsrc.CXRsrcText;
+import org.psem2m.utilities.rsrc.IRsrcNotifierHandler;
+
+/**
+ * The bounded LRU cache of the documents resolved by a CJsonProvider, keyed by
+ * the tag, the content id and the variables of the content id.
+ *
+ * Each entry holds the timestamps of the files the document was built from
+ * and of their directories. An entry is invalidated when one of them changes:
+ * <ul>
+ * <li>by the notifications of the CXRsrcProviderFile watching their directory
+ * (the cache is an IRsrcNotifierHandler to give to the CXRsrcProviderFile),</li>
+ * <li>by the check of the timestamps when the entry is read, which can be
+ * disabled if all the files are watched.</li>
+ * </ul>
+ *
+ * The contents which are not read in files (memory, http, generators) are
+ * considered as stable: clear() the cache when they change.
+ *
+ * <pre>
+ * CJsonDocumentCache wCache = new CJsonDocumentCache();
+ * wResolver.addRsrcProvider("$file", new CXRsrcProviderFile(wDir, wCharset, wCache, wLogger));
+ * wJsonProvider.setDocumentCache(wCache);
+ * </pre>
+ */
+public class CJsonDocumentCache implements IRsrcNotifierHandler {
+
+	/**
+	 * a resolved document and the timestamps of its sources
+	 */
+	private static class CEntry {
+
+		private final JSONObject pDocument;
+
+		// the timestamps of the files and of their directories
+		private final Map<String, Long> pSources;
+
+		private final long pWeight;
+
+		/**
+		 * @param aDocument
+		 * @param aSources
+		 * @param aWeight
+		 */
+		CEntry(final JSONObject aDocument, final Map<String, Long> aSources, final long aWeight) {
+			super();
+			pDocument = aDocument;
+			pSources = aSources;
+			pWeight = aWeight;
+		}
+	}
+
+	/**
+	 * the default max number of documents
+	 */
+	public static final int DEFAULT_MAX_ENTRIES = 256;
+
+	/**
+	 * the default max weight of the documents : the number of chars of their
+	 * sources
+	 */
+	public static final long DEFAULT_MAX_WEIGHT = 32 * 1024 * 1024;
+
+	/**
+	 * @param aTag
+	 * @param aPath
+	 *            the content id and its variables (eg.
+	 *            "file://conf.js?var=test")
+	 * @param aVars
+	 *            the variables of the content id
+	 * @param aNoIncludeResolution
+	 * @return the key of the document
+	 */
+	static String buildKey(final String aTag, final String aPath, final Map<String, String> aVars,
+			final boolean aNoIncludeResolution) {
+		StringBuilder wKey = new StringBuilder();
+		wKey.append(aNoIncludeResolution ? "R:" : "D:").append(aTag).append('|');
+		final int wIdx = (aPath != null) ? aPath.indexOf('?') : -1;
+		wKey.append((wIdx != -1) ? aPath.substring(0, wIdx) : aPath);
+		if (aVars != null && !aVars.isEmpty()) {
+			// the order of the variables in the query doesn't matter
+			wKey.append('|').append(new TreeMap<String, String>(aVars));
+		}
+		return wKey.toString();
+	}
+
+	/**
+	 * @param aPath
+	 * @return the absolute path of the file or directory
+	 */
+	private static String normalizePath(final String aPath) {
+		return new File(aPath).getAbsolutePath();
+	}
+
+	private boolean pCheckTimeStamps = true;
+
+	// the keys of the documents by the path of their sources
+	private final Map<String, Set<String>> pDocumentsBySource = new HashMap<>();
+
+	// access order
+	private final LinkedHashMap<String, CEntry> pEntries = new LinkedHashMap<>(16, 0.75f, true);
+
+	// incremented by each invalidation
+	private long pGeneration = 0;
+
+	private final int pMaxEntries;
+
+	private final long pMaxWeight;
+
+	private long pNbEvictions = 0;
+
+	private long pNbHits = 0;
+
+	private long pNbInvalidations = 0;
+
+	private long pNbMisses = 0;
+
+	private long pWeight = 0;
+
+	/**
+	 *
+	 */
+	public CJsonDocumentCache() {
+		this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_WEIGHT);
+	}
+
+	/**
+	 * @param aMaxEntries
+	 *            the max number of documents
+	 * @param aMaxWeight
+	 *            the max number of chars of the sources of the documents
+	 */
+	public CJsonDocumentCache(final int aMaxEntries, final long aMaxWeight) {
+		super();
+		pMaxEntries = aMaxEntries;
+		pMaxWeight = aMaxWeight;
+	}
+
+	/**
+	 * removes all the documents
+	 */
+	public synchronized void clear() {
+		if (!pEntries.isEmpty()) {
+			pNbInvalidations += pEntries.size();
+		}
+		pEntries.clear();
+		pDocumentsBySource.clear();
+		pWeight = 0;
+		pGeneration++;
+	}
+
+	/**
+	 * @param aKey
+	 * @return the cached document or null. The document must not be modified.
+	 */
+	synchronized JSONObject get(final String aKey) {
+		CEntry wEntry = pEntries.get(aKey);
+		if (wEntry != null && pCheckTimeStamps && !isUpToDate(wEntry)) {
+			remove(aKey);
+			pNbInvalidations++;
+			pGeneration++;
+			wEntry = null;
+		}
+		if (wEntry == null) {
+			pNbMisses++;
+			return null;
+		}
+		pNbHits++;
+		return wEntry.pDocument;
+	}
+
+	/**
+	 * @return the number of invalidations since the creation of the cache. A
+	 *         document resolved while an invalidation occurred isn't cached.
+	 */
+	synchronized long getGeneration() {
+		return pGeneration;
+	}
+
+	/**
+	 * @return the number of documents removed to respect the bounds
+	 */
+	public synchronized long getNbEvictions() {
+		return pNbEvictions;
+	}
+
+	/**
+	 * @return the number of documents found in the cache
+	 */
+	public synchronized long getNbHits() {
+		return pNbHits;
+	}
+
+	/**
+	 * @return the number of documents removed because one of their sources
+	 *         changed
+	 */
+	public synchronized long getNbInvalidations() {
+		return pNbInvalidations;
+	}
+
+	/**
+	 * @return the number of documents not found in the cache
+	 */
+	public synchronized long getNbMisses() {
+		return pNbMisses;
+	}
+
+	/**
+	 * @return the number of chars of the sources of the cached documents
+	 */
+	public synchronized long getWeight() {
+		return pWeight;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.psem2m.utilities.rsrc.IRsrcNotifierHandler#handle(java.nio.file.
+	 * WatchEvent.Kind, java.lang.String)
+	 */
+	@Override
+	public void handle(final Kind<?> aKind, final String aFileName) {
+		if (aKind == StandardWatchEventKinds.OVERFLOW) {
+			clear();
+			return;
+		}
+		invalidate(aFileName);
+		if (aKind != StandardWatchEventKinds.ENTRY_MODIFY) {
+			// a file created or deleted in the directory of a source changes
+			// the result of the wildcards
+			final String wParent = new File(aFileName).getParent();
+			if (wParent != null) {
+				invalidate(wParent);
+			}
+		}
+	}
+
+	/**
+	 * removes the documents built from a file or from the files of a
+	 * directory
+	 *
+	 * @param aPath
+	 *            the path of the file or of the directory
+	 * @return the number of removed documents
+	 */
+	public synchronized int invalidate(final String aPath) {
+		// the documents being resolved may have read the previous content
+		pGeneration++;
+		final Set<String> wKeys = pDocumentsBySource.get(normalizePath(aPath));
+		if (wKeys == null) {
+			return 0;
+		}
+		final List<String> wRemoved = new ArrayList<>(wKeys);
+		for (final String wKey : wRemoved) {
+			remove(wKey);
+		}
+		pNbInvalidations += wRemoved.size();
+		return wRemoved.size();
+	}
+
+	/**
+	 * @return true if the timestamps are checked each time a document is read
+	 */
+	public synchronized boolean isCheckTimeStamps() {
+		return pCheckTimeStamps;
+	}
+
+	/**
+	 * @param aEntry
+	 * @return true if no source changed
+	 */
+	private boolean isUpToDate(final CEntry aEntry) {
+		for (final Map.Entry<String, Long> wSource : aEntry.pSources.entrySet()) {
+			if (new File(wSource.getKey()).lastModified() != wSource.getValue().longValue()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param aKey
+	 * @param aDocument
+	 *            the resolved document, which must no longer be modified
+	 * @param aSources
+	 *            the resources read to build the document
+	 * @param aGeneration
+	 *            the generation read before the resolution of the document
+	 */
+	synchronized void put(final String aKey, final JSONObject aDocument, final Collection<CXRsrcText> aSources,
+			final long aGeneration) {
+		if (aGeneration != pGeneration) {
+			// a source may have changed during the resolution
+			return;
+		}
+		final Map<String, Long> wSources = new HashMap<>();
+		long wWeight = 0;
+		for (final CXRsrcText wRsrc : aSources) {
+			wWeight += wRsrc.getLength();
+			final String wFullPath = wRsrc.getFullPath();
+			if (wRsrc.getTimeStampSyst() > 0 && wFullPath != null && !wFullPath.isEmpty()) {
+				final File wFile = new File(wFullPath).getAbsoluteFile();
+				wSources.put(wFile.getPath(), wRsrc.getTimeStampSyst());
+				final File wDir = wFile.getParentFile();
+				if (wDir != null && !wSources.containsKey(wDir.getPath())) {
+					wSources.put(wDir.getPath(), wDir.lastModified());
+				}
+			}
+		}
+		if (wWeight > pMaxWeight) {
+			return;
+		}
+		remove(aKey);
+		pEntries.put(aKey, new CEntry(aDocument, wSources, wWeight));
+		pWeight += wWeight;
+		for (final String wSource : wSources.keySet()) {
+			Set<String> wKeys = pDocumentsBySource.get(wSource);
+			if (wKeys == null) {
+				wKeys = new HashSet<>();
+				pDocumentsBySource.put(wSource, wKeys);
+			}
+			wKeys.add(aKey);
+		}
+		// evict the least recently used documents
+		final Iterator<Map.Entry<String, CEntry>> wEldests = pEntries.entrySet().iterator();
+		while ((pEntries.size() > pMaxEntries || pWeight > pMaxWeight) && wEldests.hasNext()) {
+			final Map.Entry<String, CEntry> wEldest = wEldests.next();
+			if (!wEldest.getKey().equals(aKey)) {
+				wEldests.remove();
+				unindex(wEldest.getKey(), wEldest.getValue());
+				pNbEvictions++;
+			}
+		}
+	}
+
+	/**
+	 * @param aKey
+	 */
+	private void remove(final String aKey) {
+		final CEntry wEntry = pEntries.remove(aKey);
+		if (wEntry != null) {
+			unindex(aKey, wEntry);
+		}
+	}
+
+	/**
+	 * @param aCheckTimeStamps
+	 *            false if all the sources are watched
+	 */
+	public synchronized void setCheckTimeStamps(final boolean aCheckTimeStamps) {
+		pCheckTimeStamps = aCheckTimeStamps;
+	}
+
+	/**
+	 * @return the number of cached documents
+	 */
+	public synchronized int size() {
+		return pEntries.size();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public synchronized String toString() {
+		return String.format(
+				"CJsonDocumentCache: size=[%d/%d] weight=[%d/%d] hits=[%d] misses=[%d] invalidations=[%d] evictions=[%d]",
+				pEntries.size(), pMaxEntries, pWeight, pMaxWeight, pNbHits, pNbMisses, pNbInvalidations,
+				pNbEvictions);
+	}
+
+	/**
+	 * removes the key from the index of the sources and the weight of its
+	 * document from the weight of the cache
+	 *
+	 * @param aKey
+	 * @param aEntry
+	 *            the entry removed from the LRU map
+	 */
+	private void unindex(final String aKey, final CEntry aEntry) {
+		pWeight -= aEntry.pWeight;
+		for (final String wSource : aEntry.pSources.keySet()) {
+			final Set<String> wKeys = pDocumentsBySource.get(wSource);
+			if (wKeys != null) {
+				wKeys.remove(aKey);
+				if (wKeys.isEmpty()) {
+					pDocumentsBySource.remove(wSource);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,330 @@
+package org.cohorte.utilities.json.provider;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.script.CompiledScript;
+import javax.script.ScriptException;
+
+import de.christophkraemer.rhino.javascript.RhinoScriptEngine;
+
+/**
+ * Evaluates the conditions and the results of the ternary expressions and the
+ * "cond" of the includes.
+ *
+ * The trivial expressions are evaluated without Rhino:
+ * <ul>
+ * <li>the boolean constants: true, false</li>
+ * <li>the string literals: 'mysql', "postgres"</li>
+ * <li>the comparisons of two string literals, two number literals or two
+ * boolean constants: 'test' == 'test', 'a' !== "b", 1 &lt;= 2</li>
+ * </ul>
+ *
+ * The other expressions are compiled once by the Rhino engine and kept in a
+ * bounded LRU cache keyed by the text of the expression. The expressions which
+ * can't be compiled are cached too: their compilation error is thrown again.
+ *
+ * <pre>
+ * CJsonExpressionEvaluator wEvaluator = new CJsonExpressionEvaluator(new RhinoScriptEngine());
+ * Object wResult = wEvaluator.eval("'test' == 'test'");
+ * </pre>
+ *
+ * The compiled expressions are bound to the engine. An evaluator can be shared
+ * between threads.
+ */
+public class CJsonExpressionEvaluator {
+
+	private static class CLruMap extends LinkedHashMap<String, Object> {
+
+		private static final long serialVersionUID = 2470131935466434107L;
+
+		private final int pMaxSize;
+
+		private long pNbEvictions = 0;
+
+		/**
+		 * @param aMaxSize
+		 */
+		CLruMap(final int aMaxSize) {
+			// access order
+			super(16, 0.75f, true);
+			pMaxSize = aMaxSize;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.util.LinkedHashMap#removeEldestEntry(java.util.Map.Entry)
+		 */
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, Object> aEldest) {
+			if (size() > pMaxSize) {
+				pNbEvictions++;
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * the default max number of compiled expressions
+	 */
+	public static final int DEFAULT_MAX_SCRIPTS = 512;
+
+	// returned by evalTrivial() if Rhino must evaluate the expression
+	private static final Object NOT_TRIVIAL = new Object();
+
+	private static final String[] OPERATORS = { "===", "!==", "==", "!=", "<=", ">=", "<", ">" };
+
+	/**
+	 * @param aOperator
+	 * @param aComparison
+	 *            the result of the comparison of the operands
+	 * @return the result of the operator
+	 */
+	private static Boolean compare(final String aOperator, final int aComparison) {
+		switch (aOperator) {
+		case "===":
+		case "==":
+			return aComparison == 0;
+		case "!==":
+		case "!=":
+			return aComparison != 0;
+		case "<=":
+			return aComparison <= 0;
+		case ">=":
+			return aComparison >= 0;
+		case "<":
+			return aComparison < 0;
+		default:
+			return aComparison > 0;
+		}
+	}
+
+	/**
+	 * @param aExpression
+	 * @return the value of a trivial expression or NOT_TRIVIAL
+	 */
+	private static Object evalTrivial(final String aExpression) {
+		final String wExpression = aExpression.trim();
+
+		// the first operator which isn't in a string literal
+		int wPos = -1;
+		String wOperator = null;
+		char wQuote = 0;
+		for (int i = 0; i < wExpression.length() && wOperator == null; i++) {
+			final char wChar = wExpression.charAt(i);
+			if (wQuote != 0) {
+				if (wChar == wQuote) {
+					wQuote = 0;
+				}
+			} else if (wChar == '\'' || wChar == '"') {
+				wQuote = wChar;
+			} else if (wChar == '=' || wChar == '!' || wChar == '<' || wChar == '>') {
+				for (final String wCandidate : OPERATORS) {
+					if (wExpression.startsWith(wCandidate, i)) {
+						wPos = i;
+						wOperator = wCandidate;
+						break;
+					}
+				}
+				if (wOperator == null) {
+					// an assignment or a negation
+					return NOT_TRIVIAL;
+				}
+			}
+		}
+
+		if (wOperator == null) {
+			final Object wValue = parseLiteral(wExpression);
+			// the numbers are left to Rhino which chooses their type
+			return (wValue instanceof Double) ? NOT_TRIVIAL : wValue;
+		}
+
+		final Object wLeft = parseLiteral(wExpression.substring(0, wPos));
+		final Object wRight = parseLiteral(wExpression.substring(wPos + wOperator.length()));
+		if (wLeft == NOT_TRIVIAL || wRight == NOT_TRIVIAL || wLeft.getClass() != wRight.getClass()) {
+			return NOT_TRIVIAL;
+		}
+		if (wLeft instanceof String) {
+			return compare(wOperator, ((String) wLeft).compareTo((String) wRight));
+		}
+		if (wLeft instanceof Double) {
+			return compare(wOperator, ((Double) wLeft).compareTo((Double) wRight));
+		}
+		// the booleans are only compared for equality
+		if (wOperator.charAt(0) == '=' || wOperator.charAt(0) == '!') {
+			return compare(wOperator, wLeft.equals(wRight) ? 0 : 1);
+		}
+		return NOT_TRIVIAL;
+	}
+
+	/**
+	 * @param aText
+	 * @return a String, a Double, a Boolean or NOT_TRIVIAL
+	 */
+	private static Object parseLiteral(final String aText) {
+		final String wText = aText.trim();
+		final int wLength = wText.length();
+		if (wLength == 0) {
+			return NOT_TRIVIAL;
+		}
+		final char wFirst = wText.charAt(0);
+		if (wFirst == '\'' || wFirst == '"') {
+			if (wLength < 2 || wText.charAt(wLength - 1) != wFirst) {
+				return NOT_TRIVIAL;
+			}
+			final String wValue = wText.substring(1, wLength - 1);
+			// the escape sequences and the syntax errors are left to Rhino
+			if (wValue.indexOf(wFirst) != -1 || wValue.indexOf('\\') != -1 || wValue.indexOf('\n') != -1
+					|| wValue.indexOf('\r') != -1) {
+				return NOT_TRIVIAL;
+			}
+			return wValue;
+		}
+		if ("true".equals(wText)) {
+			return Boolean.TRUE;
+		}
+		if ("false".equals(wText)) {
+			return Boolean.FALSE;
+		}
+		// a decimal number without the leading zero of the octal numbers
+		boolean wDot = false;
+		for (int i = 0; i < wLength; i++) {
+			final char wChar = wText.charAt(i);
+			if (wChar == '.' && !wDot && i > 0 && i < wLength - 1) {
+				wDot = true;
+			} else if (wChar < '0' || wChar > '9') {
+				return NOT_TRIVIAL;
+			}
+		}
+		if (wFirst == '0' && wLength > 1 && wText.charAt(1) != '.') {
+			return NOT_TRIVIAL;
+		}
+		return Double.valueOf(wText);
+	}
+
+	private final RhinoScriptEngine pEngine;
+
+	private long pNbHits = 0;
+
+	private long pNbMisses = 0;
+
+	private long pNbTrivials = 0;
+
+	// the CompiledScript or the ScriptException of each expression
+	private final CLruMap pScripts;
+
+	/**
+	 * @param aEngine
+	 *            the engine compiling the expressions
+	 */
+	public CJsonExpressionEvaluator(final RhinoScriptEngine aEngine) {
+		this(aEngine, DEFAULT_MAX_SCRIPTS);
+	}
+
+	/**
+	 * @param aEngine
+	 *            the engine compiling the expressions
+	 * @param aMaxScripts
+	 *            the max number of compiled expressions
+	 */
+	public CJsonExpressionEvaluator(final RhinoScriptEngine aEngine, final int aMaxScripts) {
+		super();
+		pEngine = aEngine;
+		pScripts = new CLruMap(aMaxScripts);
+	}
+
+	/**
+	 * removes all the compiled expressions
+	 */
+	public synchronized void clear() {
+		pScripts.clear();
+	}
+
+	/**
+	 * @param aExpression
+	 *            a javascript expression
+	 * @return the value of the expression
+	 * @throws ScriptException
+	 *             if the expression can't be compiled or evaluated
+	 */
+	public Object eval(final String aExpression) throws ScriptException {
+		final Object wTrivial = evalTrivial(aExpression);
+		if (wTrivial != NOT_TRIVIAL) {
+			synchronized (this) {
+				pNbTrivials++;
+			}
+			return wTrivial;
+		}
+		Object wScript;
+		synchronized (this) {
+			wScript = pScripts.get(aExpression);
+			if (wScript != null) {
+				pNbHits++;
+			} else {
+				pNbMisses++;
+			}
+		}
+		if (wScript == null) {
+			try {
+				wScript = pEngine.compile(aExpression);
+			} catch (final ScriptException e) {
+				wScript = e;
+			}
+			synchronized (this) {
+				pScripts.put(aExpression, wScript);
+			}
+		}
+		if (wScript instanceof ScriptException) {
+			throw (ScriptException) wScript;
+		}
+		return ((CompiledScript) wScript).eval();
+	}
+
+	/**
+	 * @return the number of compiled expressions removed to respect the bound
+	 */
+	public synchronized long getNbEvictions() {
+		return pScripts.pNbEvictions;
+	}
+
+	/**
+	 * @return the number of expressions found compiled in the cache
+	 */
+	public synchronized long getNbHits() {
+		return pNbHits;
+	}
+
+	/**
+	 * @return the number of expressions compiled by Rhino
+	 */
+	public synchronized long getNbMisses() {
+		return pNbMisses;
+	}
+
+	/**
+	 * @return the number of trivial expressions evaluated without Rhino
+	 */
+	public synchronized long getNbTrivials() {
+		return pNbTrivials;
+	}
+
+	/**
+	 * @return the number of compiled expressions
+	 */
+	public synchronized int size() {
+		return pScripts.size();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public synchronized String toString() {
+		return String.format("CJsonExpressionEvaluator: size=[%d/%d] trivials=[%d] hits=[%d] misses=[%d] evictions=[%d]",
+				pScripts.size(), pScripts.pMaxSize, pNbTrivials, pNbHits, pNbMisses, pScripts.pNbEvictions);
+	}
+}
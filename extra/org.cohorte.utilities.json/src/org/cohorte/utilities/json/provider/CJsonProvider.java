@@ -4,14 +4,16 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 
 import org.cohorte.utilities.json.provider.CJsonRsrcResolver.EProviderKind;
 import org.psem2m.utilities.CXException;
@@ -31,16 +33,134 @@ import de.christophkraemer.rhino.javascript.RhinoScriptEngine;
 
 public class CJsonProvider implements IJsonProvider {
 
+	/**
+	 * the resolution of one path of an include. The resolution of the nested
+	 * includes forks other tasks in the same pool.
+	 */
+	private class CIncludeTask extends RecursiveTask<List<Object>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Object pContent;
+		private final String pCurrentPath;
+		private final List<JSONObject> pFathersContent;
+		private final Object plTag;
+		private final JSONObject pMatch;
+		private final String pPath;
+		private final Map<String, String> pReplaceVars;
+		private final Collection<CXRsrcText> pSources;
+		private final String pTag;
+		private final boolean pUseMemoryProvider;
+
+		CIncludeTask(final Object aContent, final JSONObject aMatch, final String aPath, final String currentPath,
+				final boolean aUseMemoryProvider, final Object alTag, final String aTag,
+				final List<JSONObject> aFathersContent, final Map<String, String> aReplaceVars,
+				final Collection<CXRsrcText> aSources) {
+			super();
+			pContent = aContent;
+			pMatch = aMatch;
+			pPath = aPath;
+			pCurrentPath = currentPath;
+			pUseMemoryProvider = aUseMemoryProvider;
+			plTag = alTag;
+			pTag = aTag;
+			pFathersContent = aFathersContent;
+			pReplaceVars = aReplaceVars;
+			pSources = aSources;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.util.concurrent.RecursiveTask#compute()
+		 */
+		@Override
+		protected List<Object> compute() {
+			final List<Object> wSubContents = new ArrayList<>();
+			try {
+				final List<JSONObject> wListFather = new ArrayList<>();
+				wListFather.addAll(getListFather(pFathersContent, pContent));
+				final Map<String, String> wCloneReplaceVars = new HashMap<>();
+				if (pReplaceVars != null) {
+					wCloneReplaceVars.putAll(pReplaceVars);
+				}
+				resolveIncludePath(pContent, pMatch, pPath, pCurrentPath, pUseMemoryProvider, plTag, pTag,
+						wListFather, wCloneReplaceVars, wSubContents, pSources);
+
+			} catch (final Exception e) {
+				pLogger.logSevere(this, "resolveInclude", "Fail to resolve include Path Error=[%s]", e);
+			}
+			return wSubContents;
+		}
+	}
+
+	/**
+	 * a JSONObject containing a tag and its place in its parent
+	 */
+	private static class CIncludeSlot {
+
+		private final int pIndex;
+		private final String pKey;
+		private final JSONObject pMatch;
+		// null if the match is the root
+		private final Object pParent;
+		// the subcontents which replace the match
+		private List<Object> pSubContents = null;
+		// the resolution of each path of the include
+		private final List<CIncludeTask> pTasks = new ArrayList<>();
+
+		CIncludeSlot(final JSONObject aMatch, final Object aParent, final String aKey, final int aIndex) {
+			super();
+			pMatch = aMatch;
+			pParent = aParent;
+			pKey = aKey;
+			pIndex = aIndex;
+		}
+	}
+
 	private static String COND = "cond";
 
 	public static final String INCLUDE = "$include";
 
+	/**
+	 * the max number of includes resolved in parallel by a provider
+	 */
+	public static final int INCLUDE_PARALLELISM = Math.max(2, Runtime.getRuntime().availableProcessors());
+
 	private static String PATH = "path";
 	private static final String SEP_PATH = ";file";
 
-	private final String EMPTYJSON = "{}";
+	/**
+	 * @param aValue
+	 * @return a deep copy of the JSONObject and JSONArray of the value
+	 */
+	private static Object copyTree(final Object aValue) {
+		if (aValue instanceof JSONObject) {
+			final JSONObject wSource = (JSONObject) aValue;
+			final JSONObject wCopy = new JSONObject();
+			for (final String wKey : wSource.keySet()) {
+				wCopy.put(wKey, copyTree(wSource.opt(wKey)));
+			}
+			return wCopy;
+		} else if (aValue instanceof JSONArray) {
+			final JSONArray wSource = (JSONArray) aValue;
+			final JSONArray wCopy = new JSONArray();
+			for (int i = 0; i < wSource.length(); i++) {
+				wCopy.put(copyTree(wSource.opt(i)));
+			}
+			return wCopy;
+		}
+		return aValue;
+	}
+
+	/**
+	 * the includes are resolved by a bounded pool. The tasks waiting for the
+	 * nested includes help the pool instead of blocking a thread.
+	 */
+	private final ForkJoinPool pIncludePool = new ForkJoinPool(INCLUDE_PARALLELISM);
 
-	private final ExecutorService pExecutors = Executors.newCachedThreadPool();
+	// the optional cache of the resolved documents
+	private CJsonDocumentCache pDocumentCache = null;
 
 	/**
 	 * boolean that express if we don't need to raise an exception if the
@@ -58,6 +178,9 @@ public class CJsonProvider implements IJsonProvider {
 
 	private final IActivityLogger pLogger;
 
+	// keeps compiled the conditions and the ternary expressions
+	private final CJsonExpressionEvaluator pExpressionEvaluator;
+
 	// use for evaluate condition
 	RhinoScriptEngine pRhinoScriptEngine;
 
@@ -80,6 +203,7 @@ public class CJsonProvider implements IJsonProvider {
 		pListProperties = aListProperties;
 
 		pRhinoScriptEngine = new RhinoScriptEngine();
+		pExpressionEvaluator = new CJsonExpressionEvaluator(pRhinoScriptEngine);
 
 	}
 
@@ -169,7 +293,7 @@ public class CJsonProvider implements IJsonProvider {
 			pLogger.logInfo(this, "evaluateCondition", "eval condition %s ",
 					aCondition);
 
-			final Object wReply = pRhinoScriptEngine.eval(aCondition);
+			final Object wReply = pExpressionEvaluator.eval(aCondition);
 			pLogger.logInfo(this, "evaluateCondition",
 					"eval condition %s , result=%s", aCondition, wReply);
 
@@ -198,31 +322,37 @@ public class CJsonProvider implements IJsonProvider {
 	}
 
 	/**
-	 * return the list of JSONObject that match the $tag in parameter aTag :
-	 * value of the tag to match aJSONObject : value of a JSONObject where a tag
-	 * can be defined
+	 * collect the JSONObject that match the $tag in parameter aTag and their
+	 * place in their parent : value of the tag to match aObject : value of a
+	 * JSONObject where a tag can be defined
 	 *
-	 * @param aJsonObject
-	 * @return
+	 * @param aTag
+	 * @param aObject
+	 * @param aParent
+	 *            the JSONObject or the JSONArray containing aObject or null
+	 * @param aKey
+	 *            the key of aObject in its parent JSONObject
+	 * @param aIndex
+	 *            the index of aObject in its parent JSONArray
+	 * @param aSlots
 	 */
-	List<JSONObject> foundMatchTags(final String aTag, final Object aObject) {
-		final List<JSONObject> wListTagJson = new ArrayList<>();
+	private void foundMatchSlots(final String aTag, final Object aObject, final Object aParent, final String aKey,
+			final int aIndex, final List<CIncludeSlot> aSlots) {
 		if (aObject instanceof JSONObject) {
 			final JSONObject wJsonObject = (JSONObject) aObject;
 			if (wJsonObject.keySet().contains(aTag)) {
-				wListTagJson.add(wJsonObject);
+				aSlots.add(new CIncludeSlot(wJsonObject, aParent, aKey, aIndex));
 			} else {
-				for (final Object wValue : wJsonObject.values()) {
-					wListTagJson.addAll(foundMatchTags(aTag, wValue));
+				for (final String wKey : wJsonObject.keySet()) {
+					foundMatchSlots(aTag, wJsonObject.opt(wKey), wJsonObject, wKey, -1, aSlots);
 				}
 			}
 		} else if (aObject instanceof JSONArray) {
 			final JSONArray wJsonArray = (JSONArray) aObject;
 			for (int i = 0; i < wJsonArray.length(); i++) {
-				wListTagJson.addAll(foundMatchTags(aTag, wJsonArray.opt(i)));
+				foundMatchSlots(aTag, wJsonArray.opt(i), wJsonArray, null, i, aSlots);
 			}
 		}
-		return wListTagJson;
 	}
 
 	public IHandlerInitMemoryCache getInitCache() {
@@ -317,6 +447,22 @@ public class CJsonProvider implements IJsonProvider {
 	public JSONObject getJSONObject(final String currentPath,
 			final JSONObject aUnresolvedJson, final Map<String, String> wVars)
 					throws Exception {
+		return getJSONObject(currentPath, aUnresolvedJson, wVars, null);
+	}
+
+	/**
+	 * @param currentPath
+	 * @param aUnresolvedJson
+	 * @param wVars
+	 * @param aSources
+	 *            the collection receiving the resources read to resolve the
+	 *            JSONObject or null
+	 * @return
+	 * @throws Exception
+	 */
+	private JSONObject getJSONObject(final String currentPath,
+			final JSONObject aUnresolvedJson, final Map<String, String> wVars,
+			final Collection<CXRsrcText> aSources) throws Exception {
 
 		// preprocess content
 
@@ -328,11 +474,11 @@ public class CJsonProvider implements IJsonProvider {
 		final List<JSONObject> wListFather = new ArrayList<>();
 		wListFather.add(aUnresolvedJson);
 		Object wResolvedObj = resolveInclude(currentPath, aUnresolvedJson,
-				pInitCacheHandler == null, wListFather, wVars);
+				pInitCacheHandler == null, wListFather, wVars, aSources);
 		if (pInitCacheHandler != null) {
 			// call wit memory resolution only
 			wResolvedObj = resolveInclude(currentPath, wResolvedObj, true,
-					null, wVars);
+					null, wVars, aSources);
 		}
 		if (wResolvedObj instanceof JSONObject) {
 			return (JSONObject) wResolvedObj;
@@ -386,8 +532,52 @@ public class CJsonProvider implements IJsonProvider {
 				: aContentId;
 		final Map<String, String> wVars = getVariableFromPath(wPath);
 
+		final CJsonDocumentCache wCache = pDocumentCache;
+		if (wCache == null) {
+			return getJSONObject(aTag, aFatherPath, wPath, wVars,
+					noIncludeResolution, null);
+		}
+		final String wKey = CJsonDocumentCache.buildKey(aTag, wPath, wVars,
+				noIncludeResolution);
+		final JSONObject wCached = wCache.get(wKey);
+		if (wCached != null) {
+			// the cached document stays as it is
+			return (JSONObject) copyTree(wCached);
+		}
+		final long wGeneration = wCache.getGeneration();
+		final Collection<CXRsrcText> wSources = new ConcurrentLinkedQueue<>();
+		final JSONObject wDocument = getJSONObject(aTag, aFatherPath, wPath,
+				wVars, noIncludeResolution, wSources);
+		if (wDocument != null) {
+			wCache.put(wKey, (JSONObject) copyTree(wDocument), wSources,
+					wGeneration);
+		}
+		return wDocument;
+	}
+
+	/**
+	 * @param aTag
+	 * @param aFatherPath
+	 * @param wPath
+	 *            the path of the content and its variables
+	 * @param wVars
+	 * @param noIncludeResolution
+	 * @param aSources
+	 *            the collection receiving the resources read to resolve the
+	 *            JSONObject or null
+	 * @return
+	 * @throws Exception
+	 */
+	private JSONObject getJSONObject(final String aTag,
+			final String aFatherPath, final String wPath,
+			final Map<String, String> wVars, final boolean noIncludeResolution,
+			final Collection<CXRsrcText> aSources) throws Exception {
+
 		final CXListRsrcText wRsrcs = pJsonResolver.getContent(aTag, wPath, false,
 				null,wVars);
+		if (aSources != null && wRsrcs != null) {
+			aSources.addAll(wRsrcs);
+		}
 		if (wRsrcs != null && wRsrcs.size() > 0) {
 			// we get only the first one
 			final CXRsrcText wRsrc = wRsrcs.get(0);
@@ -397,18 +587,25 @@ public class CJsonProvider implements IJsonProvider {
 
 			wNotComment = CXStringUtils.replaceVariables(wNotComment, wVars);
 			wNotComment = CJsonResolvTernary.resultTernary(pLogger,
-					wNotComment, pRhinoScriptEngine);
+					wNotComment, pExpressionEvaluator);
 			final Object wNotCommentJson = checkIsJson(wNotComment);
 			// check include content that must be resolve
 			if (!noIncludeResolution) {
 				return getJSONObject(aFatherPath, (JSONObject) wNotCommentJson,
-						wVars);
+						wVars, aSources);
 			}
 			return (JSONObject) wNotCommentJson;
 		}
 		return null;
 	}
 
+	/**
+	 * @return the cache of the resolved documents or null
+	 */
+	public CJsonDocumentCache getDocumentCache() {
+		return pDocumentCache;
+	}
+
 	public IJsonRsrcResolver getJsonResolver() {
 		return pJsonResolver;
 	}
@@ -504,6 +701,10 @@ public class CJsonProvider implements IJsonProvider {
 		for(final CXRsrcProvider wProv:pJsonResolver.getRsrcProvider()) {
 			wProv.purgeCache();
 		}
+		if (pDocumentCache != null) {
+			pDocumentCache.clear();
+		}
+		pExpressionEvaluator.clear();
 	}
 
 	/**
@@ -520,27 +721,50 @@ public class CJsonProvider implements IJsonProvider {
 			final Object aContent, final boolean aUseMemoryProvider,
 			final List<JSONObject> aFathersContent,
 			final Map<String, String> aReplaceVars) throws Exception {
+		return resolveInclude(currentPath, aContent, aUseMemoryProvider,
+				aFathersContent, aReplaceVars, null);
+	}
+
+	/**
+	 * @param currentPath
+	 * @param aContent
+	 * @param aUseMemoryProvider
+	 * @param aFathersContent
+	 * @param aReplaceVars
+	 * @param aSources
+	 *            the collection receiving the resources read to resolve the
+	 *            content or null
+	 * @return
+	 * @throws Exception
+	 */
+	private Object resolveInclude(final String currentPath,
+			final Object aContent, final boolean aUseMemoryProvider,
+			final List<JSONObject> aFathersContent,
+			final Map<String, String> aReplaceVars,
+			final Collection<CXRsrcText> aSources) throws Exception {
 
 		Object wResolvContent = aContent;
 
 		for (final String wTag : pJsonResolver.getListTags()) {
-			// regexp that allow to catch the strings like
-
-			/*
-			 * Pattern wPatternDollarFile = Pattern.compile(
-			 * "((\\n)*\\{(\\n)*\\s*\"\\" + wTag +
-			 * "\"\\s*:(\\s*\".*\"\\s*)\\})", Pattern.MULTILINE);
-			 */
-
 			// looking for subcontent identified by a id e.g $file, $ur ,
 			// $memory
-			// Matcher wMatcherFile = wPatternDollarFile.matcher(aContent);
-			final List<String> wSubNoCommentContent = new ArrayList<>();
+			final List<CIncludeSlot> wSlots = new ArrayList<>();
+			if (wResolvContent == aContent) {
+				// the subcontents are spliced in a copy: the content and the
+				// fathers given to the providers stay as they are
+				foundMatchSlots(wTag, aContent, null, null, -1, wSlots);
+				if (wSlots.isEmpty()) {
+					continue;
+				}
+				wResolvContent = copyTree(aContent);
+				wSlots.clear();
+			}
+			foundMatchSlots(wTag, wResolvContent, null, null, -1, wSlots);
 
-			for (final JSONObject wMatch : foundMatchTags(wTag, wResolvContent)) {
-				final JSONObject wJsonSubId = wMatch;
+			final List<CIncludeTask> wTasks = new ArrayList<>();
+			for (final CIncludeSlot wSlot : wSlots) {
+				final JSONObject wJsonSubId = wSlot.pMatch;
 				try {
-					wSubNoCommentContent.clear();
 					// set absolute path
 					/*
 					 * the content of the tag can be a string that is the path
@@ -579,38 +803,11 @@ public class CJsonProvider implements IJsonProvider {
 					}
 
 					if (wMustBeInclude) {
-						final List<String> wListPath = Arrays.asList(wlPath
-								.split(SEP_PATH));
-						final List<Future<?>> wListFuture = new ArrayList<>();
-						for (final String wPath : wListPath) {
-							wListFuture.add(pExecutors.submit(new Runnable() {
-								@Override
-								public void run() {
-									try {
-										final List<JSONObject> wListFather = new ArrayList<>();
-										wListFather.addAll(getListFather(aFathersContent,
-												aContent));
-										final Map<String,String> wCloneReplaceVars = new HashMap<>();
-										if( aReplaceVars != null ) {
-											wCloneReplaceVars.putAll(aReplaceVars);
-										}
-										resolveIncludePath(aContent,wMatch,wPath,currentPath,aUseMemoryProvider,wlTag,wTag,wListFather,wCloneReplaceVars,wSubNoCommentContent);
-
-									}catch(final Exception e) {
-										pLogger.logSevere(this, "resolveInclude", "Fail to resolve include Path Error=[%s]",e);
-									}
-								}
-							}));
-
+						for (final String wPath : wlPath.split(SEP_PATH)) {
+							wSlot.pTasks.add(new CIncludeTask(aContent, wJsonSubId, wPath, currentPath,
+									aUseMemoryProvider, wlTag, wTag, aFathersContent, aReplaceVars, aSources));
 						}
-						boolean wFinish = false;
-						while(!wFinish) {
-							wFinish=true;
-							for(final Future<?> wFuture:wListFuture) {
-								wFinish=wFinish && wFuture.isDone();
-							}
-						}
-
+						wTasks.addAll(wSlot.pTasks);
 					}
 
 				} catch (final Exception e) {
@@ -634,37 +831,35 @@ public class CJsonProvider implements IJsonProvider {
 					}
 
 				}
+			}
 
-				// replace file by empty json.
-				final String wResolvContentStr = wResolvContent.toString();
-				if (wSubNoCommentContent.size() == 1) {
-					wResolvContent = checkIsJson(wResolvContentStr.replace(
-							wMatch.toString(), wSubNoCommentContent.get(0)));
-				} else if (wSubNoCommentContent.size() == 0) {
-					wResolvContent = checkIsJson(wResolvContentStr.replace(
-							wMatch.toString(), EMPTYJSON));
-				} else {
-					String wMerge = "";
-					for (final String wSubContent : wSubNoCommentContent) {
-						if (!wMerge.isEmpty()) {
-							wMerge = wMerge + ",";
-						}
-						wMerge = wMerge + wSubContent;
-					}
-					wResolvContent = checkIsJson(wResolvContentStr.replace(
-							wMatch.toString(), "[" + wMerge + "]"));
-				}
+			// all the paths of all the includes of the tag are resolved
+			// together
+			invokeIncludeTasks(wTasks);
 
+			for (final CIncludeSlot wSlot : wSlots) {
+				final List<Object> wSubContents = new ArrayList<>();
+				for (final CIncludeTask wTask : wSlot.pTasks) {
+					wSubContents.addAll(wTask.join());
+				}
+				wSlot.pSubContents = wSubContents;
+				wResolvContent = spliceSubContents(wResolvContent, wSlot);
 			}
-
 		}
-		wResolvContent = CJsonResolvTernary.resultTernary(pLogger,
-				wResolvContent, pRhinoScriptEngine);
-		wResolvContent = checkIsJson(wResolvContent.toString());
+		// the ternary expressions are resolved in the text of the content
+		final String wContentStr = wResolvContent.toString();
+		final String wTernaryStr = CJsonResolvTernary.resultTernary(pLogger,
+				wContentStr, pExpressionEvaluator);
+		if (!wTernaryStr.equals(wContentStr)) {
+			wResolvContent = checkIsJson(wTernaryStr);
+		} else if (wResolvContent == aContent) {
+			wResolvContent = copyTree(aContent);
+		}
 		return wResolvContent;
 
 	}
-	private void resolveIncludePath(final Object aContent,final JSONObject aMatch,final String aPath, final String currentPath, final boolean aUseMemoryProvider, final Object alTag, final String aTag, final List<JSONObject> aFathersContent, final Map<String,String> aReplaceVars, final List<String> aSubNoCommentContent) throws Exception {
+
+	private void resolveIncludePath(final Object aContent,final JSONObject aMatch,final String aPath, final String currentPath, final boolean aUseMemoryProvider, final Object alTag, final String aTag, final List<JSONObject> aFathersContent, final Map<String,String> aReplaceVars, final List<Object> aSubNoCommentContent, final Collection<CXRsrcText> aSources) throws Exception {
 		String wPath = aPath;
 		String wFatherPath = "";
 		Map<String, String> replaceVars = null;
@@ -734,6 +929,9 @@ public class CJsonProvider implements IJsonProvider {
 				aTag, wPath.isEmpty() ? alTag.toString()
 						: wPath, aUseMemoryProvider,
 						aFathersContent,replaceVars);
+		if (aSources != null && wRsrcs != null) {
+			aSources.addAll(wRsrcs);
+		}
 		if (wRsrcs != null && wRsrcs.size() > 0) {
 			for (final CXRsrcText wRsrc : wRsrcs) {
 				// resolv subcontent
@@ -786,8 +984,7 @@ public class CJsonProvider implements IJsonProvider {
 				aSubNoCommentContent.add(resolveInclude(
 						wCurrentPathInclude,
 						wValidContent, aUseMemoryProvider,
-						aFathersContent, replaceVars)
-						.toString());
+						aFathersContent, replaceVars, aSources));
 			}
 
 		} else {
@@ -796,10 +993,46 @@ public class CJsonProvider implements IJsonProvider {
 				// the current content
 				initMemoryProviderCache(aContent, aTag);
 			}
-			aSubNoCommentContent.add(aMatch.toString());
+			aSubNoCommentContent.add(copyTree(aMatch));
 		}
 	}
 
+	/**
+	 * Resolves the includes in the pool and waits for them. A task of the pool
+	 * forks the tasks of the nested includes and joins them.
+	 *
+	 * @param aTasks
+	 */
+	private void invokeIncludeTasks(final List<CIncludeTask> aTasks) {
+		if (aTasks.isEmpty()) {
+			return;
+		}
+		if (ForkJoinTask.getPool() == pIncludePool) {
+			ForkJoinTask.invokeAll(aTasks);
+		} else {
+			pIncludePool.invoke(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					ForkJoinTask.invokeAll(aTasks);
+				}
+			});
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.cohorte.utilities.json.provider.IJsonProvider#setDocumentCache(org.
+	 * cohorte.utilities.json.provider.CJsonDocumentCache)
+	 */
+	@Override
+	public void setDocumentCache(final CJsonDocumentCache aDocumentCache) {
+		pDocumentCache = aDocumentCache;
+	}
+
 	@Override
 	public void setIgnoreMissingContent(final boolean aIgnoreMissingContent) {
 		this.pIgnoreMissingContent = aIgnoreMissingContent;
@@ -814,4 +1047,37 @@ public class CJsonProvider implements IJsonProvider {
 		pJsonResolver = aResolver;
 	}
 
+	/**
+	 * replace the match of the slot by its subcontents in the tree : one
+	 * subcontent replaces the match, no subcontent gives an empty JSONObject
+	 * and several subcontents give a JSONArray
+	 *
+	 * @param aContent
+	 *            the root of the tree
+	 * @param aSlot
+	 * @return the root of the tree
+	 */
+	private Object spliceSubContents(final Object aContent, final CIncludeSlot aSlot) {
+		Object wReplacement;
+		if (aSlot.pSubContents.size() == 1) {
+			wReplacement = aSlot.pSubContents.get(0);
+		} else if (aSlot.pSubContents.isEmpty()) {
+			wReplacement = new JSONObject();
+		} else {
+			final JSONArray wMerge = new JSONArray();
+			for (final Object wSubContent : aSlot.pSubContents) {
+				wMerge.put(wSubContent);
+			}
+			wReplacement = wMerge;
+		}
+		if (aSlot.pParent instanceof JSONObject) {
+			((JSONObject) aSlot.pParent).put(aSlot.pKey, wReplacement);
+		} else if (aSlot.pParent instanceof JSONArray) {
+			((JSONArray) aSlot.pParent).put(aSlot.pIndex, wReplacement);
+		} else {
+			return wReplacement;
+		}
+		return aContent;
+	}
+
 }
@@ -27,6 +27,12 @@ public class CJsonResolvTernary {
 	private static final Pattern sPattern = Pattern.compile(
 			"\\(([\\=|<|>|\\/|\\[|\\]|<=|>=|\\!|\\.|:|'|\\$|\\(|\\)|\\s|\\w|\\{|\\}\\-]*)\\)\\s*\\?([\\s|\\[|\\]|:|\\$|\\/|\\{|\\}|\\w|\\.|\\\\\\\\\\\"|'||\\(|\\)|\\-]*):([\\s|\\[|\\]|\\$|\\w|\\\\\\\\\\\"|'|\\.|\\/||\\{|\\}|\\(|\\)|\\-]*);");
 
+	public static Object resultTernary(final IActivityLogger aLogger, final Object aContent,
+			final CJsonExpressionEvaluator aEvaluator) throws JSONException {
+		return resultTernary(aLogger, aContent.toString(), aEvaluator);
+
+	}
+
 	public static Object resultTernary(final IActivityLogger aLogger, final Object aContent,
 			final RhinoScriptEngine wRhinoScriptEngine) throws JSONException {
 		return resultTernary(aLogger, aContent.toString(), wRhinoScriptEngine);
@@ -41,6 +47,18 @@ public class CJsonResolvTernary {
 	 */
 	public static String resultTernary(final IActivityLogger aLogger, final String aContent,
 			final RhinoScriptEngine wRhinoScriptEngine) throws JSONException {
+		return resultTernary(aLogger, aContent, new CJsonExpressionEvaluator(wRhinoScriptEngine));
+	}
+
+	/**
+	 * return the new string with the ternary resolved. The expressions are
+	 * evaluated by the evaluator which keeps them compiled.
+	 *
+	 * @param aContent
+	 * @return
+	 */
+	public static String resultTernary(final IActivityLogger aLogger, final String aContent,
+			final CJsonExpressionEvaluator aEvaluator) throws JSONException {
 		String wResult = aContent;
 		final Matcher wMatcher = sPattern.matcher(aContent);
 		while (wMatcher.find()) {
@@ -55,11 +73,11 @@ public class CJsonResolvTernary {
 			// apply it only if all variable are resolved
 			Object wCondResult;
 			try {
-				wCondResult = wRhinoScriptEngine.eval(wCondition);
+				wCondResult = aEvaluator.eval(wCondition);
 
 				if (wCondResult instanceof Boolean && ((Boolean) wCondResult).booleanValue()) {
 					try {
-						final String wTrueResolved = wRhinoScriptEngine.eval(wTrueResult).toString();
+						final String wTrueResolved = aEvaluator.eval(wTrueResult).toString();
 						if (CXStringUtils.isFloat(wTrueResult) || CXStringUtils.isNumeric(wTrueResult)) {
 							wResult = wResult.replace("\"" + wFullMatch + "\"", wTrueResult);
 						} else {
@@ -80,7 +98,7 @@ public class CJsonResolvTernary {
 					}
 				} else {
 					try {
-						final String wFalseResolved = wRhinoScriptEngine.eval(wFalseResult).toString();
+						final String wFalseResolved = aEvaluator.eval(wFalseResult).toString();
 						if (CXStringUtils.isFloat(wFalseResult) || CXStringUtils.isNumeric(wFalseResult)) {
 							wResult = wResult.replace("\"" + wFullMatch + "\"", wFalseResult);
 						} else {
@@ -50,6 +50,14 @@ public interface IJsonProvider {
 
 	public void purgeCache();
 
+	/**
+	 * set the cache of the resolved documents returned by getJSONObject(tag,
+	 * contentId). A null cache disables the caching.
+	 *
+	 * @param aDocumentCache
+	 */
+	public void setDocumentCache(final CJsonDocumentCache aDocumentCache);
+
 	/**
 	 * allow to don't raise exception if content are not found true : exception
 	 * raise if content is not found false : a warning is log but no excetion
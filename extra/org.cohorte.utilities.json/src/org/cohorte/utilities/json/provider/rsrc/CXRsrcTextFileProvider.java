@@ -3,6 +3,7 @@ package org.cohorte.utilities.json.provider.rsrc;
 import java.nio.charset.Charset;
 import java.util.Map;
 
+import org.cohorte.utilities.json.provider.CJsonExpressionEvaluator;
 import org.cohorte.utilities.json.provider.CJsonResolvTernary;
 import org.psem2m.utilities.CXStringUtils;
 import org.psem2m.utilities.files.CXFileDir;
@@ -25,12 +26,15 @@ import de.christophkraemer.rhino.javascript.RhinoScriptEngine;
 public class CXRsrcTextFileProvider extends CXRsrcProviderFile {
 
 	private final IActivityLogger pActivityLogger;
+	// keeps compiled the ternary expressions
+	private final CJsonExpressionEvaluator pExpressionEvaluator;
 	RhinoScriptEngine pRhinoScriptEngine;
 	public CXRsrcTextFileProvider(final CXFileDir aDefaultPath,
 			final IActivityLogger aLogger) throws Exception {
 		super(aDefaultPath, Charset.defaultCharset());
 		pActivityLogger = aLogger;
 		pRhinoScriptEngine = new RhinoScriptEngine();
+		pExpressionEvaluator = new CJsonExpressionEvaluator(pRhinoScriptEngine);
 
 	}
 
@@ -39,6 +43,7 @@ public class CXRsrcTextFileProvider extends CXRsrcProviderFile {
 		super(aDefaultPath, Charset.defaultCharset());
 		pActivityLogger = aLogger;
 		pRhinoScriptEngine = new RhinoScriptEngine();
+		pExpressionEvaluator = new CJsonExpressionEvaluator(pRhinoScriptEngine);
 
 	}
 
@@ -65,15 +70,14 @@ public class CXRsrcTextFileProvider extends CXRsrcProviderFile {
 		if (wText != null && wText.getContent() != null) {
 			String wFullText = wText.getContent();
 			wFullText = CJsonResolvTernary.resultTernary(pActivityLogger,
-					wFullText, pRhinoScriptEngine);
+					wFullText, pExpressionEvaluator);
 			String[] wLines = wFullText.split("\n");
 			for (String aLine : wLines) {
 				wResult.put(aLine);
 			}
 
 		}
-		return new CXRsrcText(new CXRsrcUriPath(""),
-				CXRsrcTextReadInfo.newInstanceFromString(wResult.toString()));
+		return newRsrcText(wText, wResult);
 	}
 	@Override
 	public CXRsrcText rsrcReadTxt(final String aPath, final Map<String,String> aQueryPath) throws Exception {
@@ -84,16 +88,31 @@ public class CXRsrcTextFileProvider extends CXRsrcProviderFile {
 			String wFullText = CXStringUtils.replaceVariables(wText.getContent(),aQueryPath);
 
 			wFullText = CJsonResolvTernary.resultTernary(pActivityLogger,
-					wFullText, pRhinoScriptEngine);
+					wFullText, pExpressionEvaluator);
 			String[] wLines = wFullText.split("\n");
 			for (String aLine : wLines) {
 				wResult.put(aLine);
 			}
 
 		}
-		return new CXRsrcText(new CXRsrcUriPath(""),
-				CXRsrcTextReadInfo.newInstanceFromString(wResult.toString()));
+		return newRsrcText(wText, wResult);
 	}
+	/**
+	 * @param aText
+	 *            the text read in the file
+	 * @param aLines
+	 * @return the resource of the lines keeping the path and the timestamp of
+	 *         the file
+	 */
+	private CXRsrcText newRsrcText(final CXRsrcText aText, final JSONArray aLines) {
+		if (aText == null) {
+			return new CXRsrcText(new CXRsrcUriPath(""),
+					CXRsrcTextReadInfo.newInstanceFromString(aLines.toString()));
+		}
+		return new CXRsrcText(aText.getPath(), CXRsrcTextReadInfo.newInstanceFromString(aLines.toString()),
+				aText.getTimeStampSyst());
+	}
+
 	@Override
 	public String urlGetAddress() {
 		// TODO Auto-generated method stub
@@ -0,0 +1,290 @@
+package test.cohorte.utilities.json;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.cohorte.utilities.json.provider.CJsonDocumentCache;
+import org.cohorte.utilities.json.provider.CJsonProvider;
+import org.cohorte.utilities.json.provider.CJsonRsrcResolver;
+import org.cohorte.utilities.junit.CAbstractJunitTest;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.psem2m.utilities.json.JSONObject;
+import org.psem2m.utilities.logging.CActivityLoggerNull;
+import org.psem2m.utilities.rsrc.CXRsrcProviderFile;
+
+/**
+ * Tests the cache of the resolved documents of a CJsonProvider
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class CJunitTestDocumentCache extends CAbstractJunitTest {
+
+	private static final int NB_INCLUDES = 100;
+
+	private static File sDir;
+
+	/**
+	 *
+	 */
+	@AfterClass
+	public static void destroy() {
+
+		if (sDir != null) {
+			for (File wFile : sDir.listFiles()) {
+				wFile.delete();
+			}
+			sDir.delete();
+		}
+
+		// log the destroy banner containing the report
+		logBannerDestroy(CJunitTestDocumentCache.class);
+	}
+
+	/**
+	 * @throws IOException
+	 */
+	@BeforeClass
+	public static void initialize() throws IOException {
+
+		// initialise the map of the test method of the current junit test class
+		initializeTestsRegistry(CJunitTestDocumentCache.class);
+
+		// log the initialization banner
+		logBannerInitialization(CJunitTestDocumentCache.class);
+
+		sDir = Files.createTempDirectory("documentCache").toFile();
+
+		StringBuilder wRoot = new StringBuilder("{\"name\":\"root-${var}\",\"parts\":[");
+		for (int wIdx = 0; wIdx < NB_INCLUDES; wIdx++) {
+			if (wIdx > 0) {
+				wRoot.append(',');
+			}
+			wRoot.append(String.format("{\"$file\":\"file://part_%d.js\"}", wIdx));
+			writeFile(String.format("part_%d.js", wIdx), String.format("{\"part\":%d}", wIdx));
+		}
+		writeFile("root.js", wRoot.append("]}").toString());
+		writeFile("other.js", "{\"name\":\"other\"}");
+		writeFile("third.js", "{\"name\":\"third\"}");
+	}
+
+	/**
+	 * @param aName
+	 * @param aContent
+	 * @throws IOException
+	 */
+	private static void writeFile(final String aName, final String aContent) throws IOException {
+		File wFile = new File(sDir, aName);
+		long wPrevious = wFile.lastModified();
+		Files.write(wFile.toPath(), aContent.getBytes(StandardCharsets.UTF_8));
+		// the timestamps of some file systems are rounded to the second
+		if (wPrevious != 0 && wFile.lastModified() <= wPrevious + 1000) {
+			wFile.setLastModified(wPrevious + 2000);
+		}
+	}
+
+	/**
+	 *
+	 */
+	public CJunitTestDocumentCache() {
+		super();
+	}
+
+	/**
+	 * @param aCache
+	 *            the cache notified by the provider of the files or null
+	 * @return a provider reading the files of the directory
+	 * @throws Exception
+	 */
+	private CJsonProvider newProvider(final CJsonDocumentCache aCache) throws Exception {
+		final CJsonRsrcResolver wResolver = new CJsonRsrcResolver();
+		wResolver.addRsrcProvider("$file", new CXRsrcProviderFile(sDir.getAbsolutePath() + File.separatorChar,
+				StandardCharsets.UTF_8, aCache, CActivityLoggerNull.getInstance()));
+		return new CJsonProvider(wResolver, CActivityLoggerNull.getInstance(), true);
+	}
+
+	/**
+	 * the second resolution of a document is found in the cache and the
+	 * returned documents can be modified
+	 */
+	@Test
+	public void test10Hits() throws Exception {
+		String wMethodName = "test10Hits";
+
+		logBegin(this, wMethodName, "Resolve the same document twice");
+		try {
+
+			CJsonProvider wProvider = newProvider(null);
+			CJsonDocumentCache wCache = new CJsonDocumentCache();
+			wProvider.setDocumentCache(wCache);
+
+			JSONObject wFirst = wProvider.getJSONObject("$file", "root.js?var=a");
+			Assert.assertEquals("root-a", wFirst.getString("name"));
+			Assert.assertEquals(NB_INCLUDES, wFirst.getJSONArray("parts").length());
+			wFirst.put("name", "modified");
+
+			JSONObject wSecond = wProvider.getJSONObject("$file", "root.js?var=a");
+			Assert.assertEquals("root-a", wSecond.getString("name"));
+			Assert.assertEquals(1, wCache.getNbHits());
+			Assert.assertEquals(1, wCache.getNbMisses());
+
+			// other variables, other document
+			Assert.assertEquals("root-b", wProvider.getJSONObject("$file", "root.js?var=b").getString("name"));
+			Assert.assertEquals(2, wCache.size());
+
+			// benchmark
+			for (int wLoop = 0; wLoop < 5; wLoop++) {
+				wCache.clear();
+				long wStart = System.nanoTime();
+				wProvider.getJSONObject("$file", "root.js?var=a");
+				long wMissNs = System.nanoTime() - wStart;
+				wStart = System.nanoTime();
+				wProvider.getJSONObject("$file", "root.js?var=a");
+				long wHitNs = System.nanoTime() - wStart;
+				getLogger().logInfo(this, wMethodName, "Includes=[%d] miss=[%d us] hit=[%d us]", NB_INCLUDES,
+						wMissNs / 1000, wHitNs / 1000);
+			}
+			getLogger().logInfo(this, wMethodName, "%s", wCache);
+
+			logEndOK(this, wMethodName, "The document is found in the cache");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * a document is resolved again when an included file changes
+	 */
+	@Test
+	public void test20TimeStamps() throws Exception {
+		String wMethodName = "test20TimeStamps";
+
+		logBegin(this, wMethodName, "Modify an included file");
+		try {
+
+			CJsonProvider wProvider = newProvider(null);
+			CJsonDocumentCache wCache = new CJsonDocumentCache();
+			wProvider.setDocumentCache(wCache);
+
+			wProvider.getJSONObject("$file", "root.js");
+			writeFile("part_42.js", "{\"part\":\"changed\"}");
+
+			JSONObject wDocument = wProvider.getJSONObject("$file", "root.js");
+			Assert.assertEquals("changed", wDocument.getJSONArray("parts").getJSONObject(42).getString("part"));
+			Assert.assertEquals(1, wCache.getNbInvalidations());
+			Assert.assertEquals(0, wCache.getNbHits());
+
+			// invalidation by the path of a source
+			Assert.assertEquals(1, wCache.invalidate(new File(sDir, "part_42.js").getAbsolutePath()));
+			Assert.assertEquals(0, wCache.size());
+
+			writeFile("part_42.js", "{\"part\":42}");
+
+			logEndOK(this, wMethodName, "The document is resolved again");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * the notifications of the provider of the files invalidate the documents
+	 */
+	@Test
+	public void test30Watcher() throws Exception {
+		String wMethodName = "test30Watcher";
+
+		logBegin(this, wMethodName, "Modify an included file watched by the provider");
+		try {
+
+			CJsonDocumentCache wCache = new CJsonDocumentCache();
+			wCache.setCheckTimeStamps(false);
+			CJsonProvider wProvider = newProvider(wCache);
+			wProvider.setDocumentCache(wCache);
+
+			wProvider.getJSONObject("$file", "root.js");
+			writeFile("part_7.js", "{\"part\":\"watched\"}");
+
+			long wLimit = System.currentTimeMillis() + 10000;
+			while (wCache.size() > 0 && System.currentTimeMillis() < wLimit) {
+				Thread.sleep(50);
+			}
+			Assert.assertEquals(0, wCache.size());
+			JSONObject wDocument = wProvider.getJSONObject("$file", "root.js");
+			Assert.assertEquals("watched", wDocument.getJSONArray("parts").getJSONObject(7).getString("part"));
+
+			writeFile("part_7.js", "{\"part\":7}");
+
+			logEndOK(this, wMethodName, "The document is invalidated by the watcher");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * the least recently used documents are evicted
+	 */
+	@Test
+	public void test40Bounds() throws Exception {
+		String wMethodName = "test40Bounds";
+
+		logBegin(this, wMethodName, "Resolve more documents than the cache can hold");
+		try {
+
+			CJsonProvider wProvider = newProvider(null);
+			CJsonDocumentCache wCache = new CJsonDocumentCache(2, CJsonDocumentCache.DEFAULT_MAX_WEIGHT);
+			wProvider.setDocumentCache(wCache);
+
+			wProvider.getJSONObject("$file", "root.js");
+			wProvider.getJSONObject("$file", "other.js");
+			// root.js becomes the most recently used
+			wProvider.getJSONObject("$file", "root.js");
+			wProvider.getJSONObject("$file", "third.js");
+
+			Assert.assertEquals(2, wCache.size());
+			Assert.assertEquals(1, wCache.getNbEvictions());
+			wProvider.getJSONObject("$file", "root.js");
+			Assert.assertEquals(2, wCache.getNbHits());
+
+			// a weight bound smaller than the document
+			CJsonDocumentCache wSmallCache = new CJsonDocumentCache(10, 100);
+			wProvider.setDocumentCache(wSmallCache);
+			wProvider.getJSONObject("$file", "root.js");
+			wProvider.getJSONObject("$file", "other.js");
+			Assert.assertEquals(1, wSmallCache.size());
+			Assert.assertTrue(wSmallCache.getWeight() <= 100);
+
+			wProvider.purgeCache();
+			Assert.assertEquals(0, wSmallCache.size());
+			getLogger().logInfo(this, wMethodName, "%s", wCache);
+
+			logEndOK(this, wMethodName, "The cache is bounded");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,195 @@
+package test.cohorte.utilities.json;
+
+import javax.script.ScriptException;
+
+import org.cohorte.utilities.json.provider.CJsonExpressionEvaluator;
+import org.cohorte.utilities.json.provider.CJsonResolvTernary;
+import org.cohorte.utilities.junit.CAbstractJunitTest;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.psem2m.utilities.logging.CActivityLoggerNull;
+
+import de.christophkraemer.rhino.javascript.RhinoScriptEngine;
+
+/**
+ * Tests the evaluation of the conditions and of the ternary expressions
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class CJunitTestExpressionEvaluator extends CAbstractJunitTest {
+
+	private static final String[] EXPRESSIONS = { "true", "false", " true ", "'test' == 'test'", "'test' == 'test2'",
+			"\"a\" != 'b'", "'a' === 'a'", "'a' !== 'a'", "'abc' < 'abd'", "'b' >= 'a'", "'' == ''", "1 == 1",
+			"1 == 1.0", "2 < 10", "2.5 >= 2.50", "10 != 10", "true == true", "true != false", "'mysql'", "\"postgres\"",
+			"'a == b'", "'a' == 'a' && 'b' == 'c'", "'1' == 1", "010 == 8", "!true", "'a\\'b' == \"a'b\"", "1 + 1 == 2",
+			"true < false", "'a' == 'b' || 'c' == 'c'" };
+
+	private static final int NB_LOOPS = 2000;
+
+	/**
+	 *
+	 */
+	@AfterClass
+	public static void destroy() {
+
+		// log the destroy banner containing the report
+		logBannerDestroy(CJunitTestExpressionEvaluator.class);
+	}
+
+	/**
+	 *
+	 */
+	@BeforeClass
+	public static void initialize() {
+
+		// initialise the map of the test method of the current junit test class
+		initializeTestsRegistry(CJunitTestExpressionEvaluator.class);
+
+		// log the initialization banner
+		logBannerInitialization(CJunitTestExpressionEvaluator.class);
+	}
+
+	/**
+	 *
+	 */
+	public CJunitTestExpressionEvaluator() {
+		super();
+	}
+
+	/**
+	 * the evaluator returns the values returned by Rhino
+	 */
+	@Test
+	public void test10SameValues() throws Exception {
+		String wMethodName = "test10SameValues";
+
+		logBegin(this, wMethodName, "Compare the values of [%d] expressions with Rhino", EXPRESSIONS.length);
+		try {
+
+			RhinoScriptEngine wEngine = new RhinoScriptEngine();
+			CJsonExpressionEvaluator wEvaluator = new CJsonExpressionEvaluator(wEngine);
+
+			for (String wExpression : EXPRESSIONS) {
+				Object wExpected = wEngine.eval(wExpression);
+				Object wValue = wEvaluator.eval(wExpression);
+				getLogger().logInfo(this, wMethodName, "[%s] rhino=[%s] evaluator=[%s]", wExpression, wExpected,
+						wValue);
+				Assert.assertEquals(wExpression, wExpected, wValue);
+				// a second time from the cache
+				Assert.assertEquals(wExpression, wExpected, wEvaluator.eval(wExpression));
+			}
+			Assert.assertTrue(wEvaluator.getNbTrivials() > 0);
+			Assert.assertTrue(wEvaluator.getNbHits() > 0);
+			Assert.assertEquals(wEvaluator.getNbMisses(), wEvaluator.size());
+			getLogger().logInfo(this, wMethodName, "%s", wEvaluator);
+
+			logEndOK(this, wMethodName, "The values are the ones of Rhino");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * the errors are thrown each time and the cache is bounded
+	 */
+	@Test
+	public void test20ErrorsAndBounds() throws Exception {
+		String wMethodName = "test20ErrorsAndBounds";
+
+		logBegin(this, wMethodName, "Evaluate bad expressions and more expressions than the cache can hold");
+		try {
+
+			CJsonExpressionEvaluator wEvaluator = new CJsonExpressionEvaluator(new RhinoScriptEngine(), 4);
+
+			for (int wLoop = 0; wLoop < 2; wLoop++) {
+				for (String wBad : new String[] { "file:///conf.js", "unknownVariable == 1" }) {
+					try {
+						wEvaluator.eval(wBad);
+						Assert.fail("The expression can't be evaluated: " + wBad);
+					} catch (ScriptException e) {
+						getLogger().logInfo(this, wMethodName, "EXPECTED ERROR: %s", e.getMessage());
+					}
+				}
+			}
+			Assert.assertEquals(2, wEvaluator.getNbHits());
+
+			for (int i = 0; i < 10; i++) {
+				Assert.assertEquals(Boolean.TRUE, wEvaluator.eval(String.format("%d + 1 == %d", i, i + 1)));
+			}
+			Assert.assertEquals(4, wEvaluator.size());
+			Assert.assertEquals(8, wEvaluator.getNbEvictions());
+
+			wEvaluator.clear();
+			Assert.assertEquals(0, wEvaluator.size());
+
+			logEndOK(this, wMethodName, "The cache is bounded");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * measures the resolution of ternary expressions by Rhino and by the
+	 * evaluator
+	 */
+	@Test
+	public void test30Benchmark() throws Exception {
+		String wMethodName = "test30Benchmark";
+
+		logBegin(this, wMethodName, "Resolve [%d] ternary expressions", NB_LOOPS);
+		try {
+
+			String wText = "{\"db\":\"('${env}' == 'prod')?'postgres':'h2';\",\"port\":\"(${port} > 1024)?${port}:8080;\"}";
+			String wContent = wText.replace("${env}", "prod").replace("${port}", "80");
+
+			RhinoScriptEngine wEngine = new RhinoScriptEngine();
+			CJsonExpressionEvaluator wEvaluator = new CJsonExpressionEvaluator(wEngine);
+			String wExpected = CJsonResolvTernary.resultTernary(CActivityLoggerNull.getInstance(), wContent, wEngine);
+			Assert.assertEquals("{\"db\":\"postgres\",\"port\":8080}", wExpected);
+
+			for (int wLoop = 0; wLoop < 3; wLoop++) {
+				long wStart = System.nanoTime();
+				for (int i = 0; i < NB_LOOPS; i++) {
+					// the evaluations done by the previous implementation
+					for (String wExpression : new String[] { "'prod' == 'prod'", "'postgres'", "80 > 1024", "8080" }) {
+						wEngine.eval(wExpression);
+					}
+				}
+				long wEngineNs = System.nanoTime() - wStart;
+
+				wStart = System.nanoTime();
+				for (int i = 0; i < NB_LOOPS; i++) {
+					Assert.assertEquals(wExpected,
+							CJsonResolvTernary.resultTernary(CActivityLoggerNull.getInstance(), wContent, wEvaluator));
+				}
+				long wEvaluatorNs = System.nanoTime() - wStart;
+
+				getLogger().logInfo(this, wMethodName, "Loops=[%d] rhino each time=[%d us] evaluator=[%d us]",
+						NB_LOOPS, wEngineNs / 1000, wEvaluatorNs / 1000);
+			}
+			getLogger().logInfo(this, wMethodName, "%s", wEvaluator);
+
+			logEndOK(this, wMethodName, "done");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,202 @@
+package test.cohorte.utilities.json;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.cohorte.utilities.json.provider.CJsonProvider;
+import org.cohorte.utilities.json.provider.CJsonRsrcResolver;
+import org.cohorte.utilities.junit.CAbstractJunitTest;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.psem2m.utilities.json.JSONArray;
+import org.psem2m.utilities.json.JSONObject;
+import org.psem2m.utilities.logging.CActivityLoggerNull;
+import org.psem2m.utilities.rsrc.CXRsrcProviderFile;
+
+/**
+ * Resolves a config tree containing hundreds of nested includes and measures
+ * the duration of the resolution
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class CJunitTestIncludeTree extends CAbstractJunitTest {
+
+	private static final int NB_BRANCHES = 10;
+
+	private static final int NB_LEAVES = 4;
+
+	private static final int NB_MIDDLES = 5;
+
+	private static File sTreeDir;
+
+	/**
+	 *
+	 */
+	@AfterClass
+	public static void destroy() {
+
+		if (sTreeDir != null) {
+			for (File wFile : sTreeDir.listFiles()) {
+				wFile.delete();
+			}
+			sTreeDir.delete();
+		}
+
+		// log the destroy banner containing the report
+		logBannerDestroy(CJunitTestIncludeTree.class);
+	}
+
+	/**
+	 * @throws IOException
+	 */
+	@BeforeClass
+	public static void initialize() throws IOException {
+
+		// initialise the map of the test method of the current junit test class
+		initializeTestsRegistry(CJunitTestIncludeTree.class);
+
+		// log the initialization banner
+		logBannerInitialization(CJunitTestIncludeTree.class);
+
+		sTreeDir = Files.createTempDirectory("includeTree").toFile();
+
+		// root -> branches -> middles (several paths) -> leaves
+		JSONArray wBranches = new JSONArray();
+		for (int wB = 0; wB < NB_BRANCHES; wB++) {
+			wBranches.put(new JSONObject().put("$file", String.format("file://branch_%d.js", wB)));
+
+			JSONObject wBranch = new JSONObject().put("name", "branch" + wB);
+			JSONArray wMiddles = new JSONArray();
+			for (int wM = 0; wM < NB_MIDDLES; wM++) {
+				wMiddles.put(new JSONObject().put("$file", String.format("file://middle_%d_%d.js", wB, wM)));
+
+				StringBuilder wLeavesPaths = new StringBuilder();
+				for (int wL = 0; wL < NB_LEAVES; wL++) {
+					if (wL > 0) {
+						wLeavesPaths.append(';');
+					}
+					String wLeafName = String.format("leaf_%d_%d_%d.js", wB, wM, wL);
+					wLeavesPaths.append("file://").append(wLeafName);
+					writeFile(wLeafName, new JSONObject().put("leaf", String.format("%d.%d.%d", wB, wM, wL))
+							.put("values", new JSONArray().put(wB).put(wM).put(wL)));
+				}
+				writeFile(String.format("middle_%d_%d.js", wB, wM),
+						new JSONObject().put("name", String.format("middle%d.%d", wB, wM)).put("leaves",
+								new JSONObject().put("$file", wLeavesPaths.toString())));
+			}
+			writeFile(String.format("branch_%d.js", wB), wBranch.put("middles", wMiddles));
+		}
+		writeFile("root.js", new JSONObject().put("name", "root").put("branches", wBranches));
+	}
+
+	/**
+	 * @param aName
+	 * @param aContent
+	 * @throws IOException
+	 */
+	private static void writeFile(final String aName, final JSONObject aContent) throws IOException {
+		Files.write(new File(sTreeDir, aName).toPath(), aContent.toString(2).getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 *
+	 */
+	public CJunitTestIncludeTree() {
+		super();
+	}
+
+	/**
+	 * @return a provider reading the files of the tree
+	 * @throws Exception
+	 */
+	private CJsonProvider newProvider() throws Exception {
+		final CJsonRsrcResolver wResolver = new CJsonRsrcResolver();
+		wResolver.addRsrcProvider("$file",
+				new CXRsrcProviderFile(sTreeDir.getAbsolutePath() + File.separatorChar, StandardCharsets.UTF_8));
+		return new CJsonProvider(wResolver, CActivityLoggerNull.getInstance(), true);
+	}
+
+	/**
+	 * resolves the tree and checks that all the includes are replaced by their
+	 * content
+	 */
+	@Test
+	public void test10ResolveTree() throws Exception {
+		String wMethodName = "test10ResolveTree";
+
+		logBegin(this, wMethodName, "Resolve a tree of [%d] includes",
+				NB_BRANCHES + NB_BRANCHES * NB_MIDDLES + NB_BRANCHES * NB_MIDDLES * NB_LEAVES);
+		try {
+
+			JSONObject wRoot = newProvider().getJSONObject("$file", "root.js");
+
+			JSONArray wBranches = wRoot.getJSONArray("branches");
+			Assert.assertEquals(NB_BRANCHES, wBranches.length());
+			for (int wB = 0; wB < NB_BRANCHES; wB++) {
+				JSONObject wBranch = wBranches.getJSONObject(wB);
+				Assert.assertEquals("branch" + wB, wBranch.getString("name"));
+				JSONArray wMiddles = wBranch.getJSONArray("middles");
+				Assert.assertEquals(NB_MIDDLES, wMiddles.length());
+				for (int wM = 0; wM < NB_MIDDLES; wM++) {
+					// the leaves of the paths of an include are kept in order
+					JSONArray wLeaves = wMiddles.getJSONObject(wM).getJSONArray("leaves");
+					Assert.assertEquals(NB_LEAVES, wLeaves.length());
+					for (int wL = 0; wL < NB_LEAVES; wL++) {
+						Assert.assertEquals(String.format("%d.%d.%d", wB, wM, wL),
+								wLeaves.getJSONObject(wL).getString("leaf"));
+					}
+				}
+			}
+			Assert.assertFalse(wRoot.toString().contains("$file"));
+
+			logEndOK(this, wMethodName, "All the includes are resolved");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * measures the duration of the resolution of the tree
+	 */
+	@Test
+	public void test20Benchmark() throws Exception {
+		String wMethodName = "test20Benchmark";
+
+		logBegin(this, wMethodName, "Measure the resolution of the tree");
+		try {
+
+			CJsonProvider wProvider = newProvider();
+			int wSize = 0;
+			for (int wLoop = 0; wLoop < 10; wLoop++) {
+				long wStart = System.nanoTime();
+				JSONObject wRoot = wProvider.getJSONObject("$file", "root.js");
+				long wNs = System.nanoTime() - wStart;
+				wSize = wRoot.toString().length();
+
+				getLogger().logInfo(this, wMethodName, "Includes=[%d] size=[%d] resolution=[%d ms]",
+						NB_BRANCHES + NB_BRANCHES * NB_MIDDLES + NB_BRANCHES * NB_MIDDLES * NB_LEAVES, wSize,
+						wNs / 1000000);
+			}
+			Assert.assertTrue(wSize > 0);
+
+			logEndOK(this, wMethodName, "done");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,269 @@
+package test.cohorte.utilities.json;
+
+import java.io.StringWriter;
+
+import javax.script.Bindings;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptException;
+import javax.script.SimpleScriptContext;
+
+import org.cohorte.utilities.junit.CAbstractJunitTest;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import de.christophkraemer.rhino.javascript.RhinoScriptEngine;
+
+/**
+ * Tests the shared top level scope and the optimization level of the
+ * RhinoScriptEngine
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class CJunitTestRhinoScriptEngine extends CAbstractJunitTest {
+
+	private static final int NB_LOOPS = 20000;
+
+	private static final String RULE = "var wLimit = (level == 'prod') ? 100 : 10;"
+			+ " var wItems = [];"
+			+ " for (var i = 0; i < count; i++) { wItems.push(i * 2); }"
+			+ " wItems.length <= wLimit && Math.max.apply(null, wItems) >= 0;";
+
+	/**
+	 *
+	 */
+	@AfterClass
+	public static void destroy() {
+
+		// log the destroy banner containing the report
+		logBannerDestroy(CJunitTestRhinoScriptEngine.class);
+	}
+
+	/**
+	 *
+	 */
+	@BeforeClass
+	public static void initialize() {
+
+		// initialise the map of the test method of the current junit test class
+		initializeTestsRegistry(CJunitTestRhinoScriptEngine.class);
+
+		// log the initialization banner
+		logBannerInitialization(CJunitTestRhinoScriptEngine.class);
+	}
+
+	/**
+	 *
+	 */
+	public CJunitTestRhinoScriptEngine() {
+		super();
+	}
+
+	/**
+	 * @param aScript
+	 * @param aCount
+	 * @return the result of the rule
+	 * @throws ScriptException
+	 */
+	private Object evalRule(final CompiledScript aScript, final int aCount) throws ScriptException {
+		ScriptContext wContext = new SimpleScriptContext();
+		Bindings wBindings = wContext.getBindings(ScriptContext.ENGINE_SCOPE);
+		wBindings.put("level", "prod");
+		wBindings.put("count", aCount);
+		return aScript.eval(wContext);
+	}
+
+	/**
+	 * the engines using the shared top level are isolated and can't modify
+	 * the standard objects
+	 */
+	@Test
+	public void test10SharedScope() throws Exception {
+		String wMethodName = "test10SharedScope";
+
+		logBegin(this, wMethodName, "Evaluate scripts in two engines sharing the top level");
+		try {
+
+			RhinoScriptEngine wEngine1 = new RhinoScriptEngine(true);
+			RhinoScriptEngine wEngine2 = new RhinoScriptEngine(true);
+			Assert.assertTrue(wEngine1.isSharedScope());
+			Assert.assertFalse(new RhinoScriptEngine(false).isSharedScope());
+
+			Assert.assertEquals(1.0, wEngine1.eval("var x = 1; x"));
+			Assert.assertEquals("number", wEngine1.eval("typeof x"));
+			Assert.assertEquals("undefined", wEngine2.eval("typeof x"));
+
+			Assert.assertEquals("{\"a\":[1]}", wEngine2.eval("JSON.stringify({a:[1]})"));
+			Assert.assertEquals(2.0, wEngine2.eval("java.lang.Math.max(1, 2)"));
+			Assert.assertEquals(Boolean.TRUE, wEngine2.eval("with (new JavaImporter(java.io)) { new File('/').exists(); }"));
+
+			try {
+				wEngine1.eval("Array.prototype.shared = 1");
+				Assert.fail("The standard objects are sealed");
+			} catch (ScriptException e) {
+				getLogger().logInfo(this, wMethodName, "EXPECTED ERROR: %s", e.getMessage());
+			}
+			Assert.assertEquals("undefined", wEngine2.eval("typeof [].shared"));
+
+			// print() writes in the writer of the context of each evaluation
+			ScriptContext wContext = new SimpleScriptContext();
+			StringWriter wWriter = new StringWriter();
+			wContext.setWriter(wWriter);
+			wEngine2.eval("println('hello')", wContext);
+			Assert.assertEquals("hello\n", wWriter.toString());
+
+			logEndOK(this, wMethodName, "The engines share the sealed top level");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * the optimization level doesn't change the result and can be set per
+	 * script
+	 */
+	@Test
+	public void test20OptimizationLevel() throws Exception {
+		String wMethodName = "test20OptimizationLevel";
+
+		logBegin(this, wMethodName, "Compile the same rule with several optimization levels");
+		try {
+
+			RhinoScriptEngine wEngine = new RhinoScriptEngine(true);
+			Object wExpected = evalRule(wEngine.compile(RULE, -1), 50);
+			Assert.assertEquals(Boolean.TRUE, wExpected);
+
+			for (int wLevel : new int[] { 0, 1, 9 }) {
+				Assert.assertEquals(wExpected, evalRule(wEngine.compile(RULE, wLevel), 50));
+			}
+			// the default level and the level set in the context
+			Assert.assertEquals(wExpected, evalRule(wEngine.compile(RULE), 50));
+			wEngine.put(RhinoScriptEngine.OPTIMIZATION_LEVEL, "-1");
+			Assert.assertEquals(wExpected, evalRule(wEngine.compile(RULE), 50));
+			Assert.assertEquals(Boolean.FALSE, evalRule(wEngine.compile(RULE), 500));
+
+			wEngine.put(RhinoScriptEngine.OPTIMIZATION_LEVEL, "fast");
+			try {
+				wEngine.compile(RULE);
+				Assert.fail("The optimization level isn't a number");
+			} catch (ScriptException e) {
+				getLogger().logInfo(this, wMethodName, "EXPECTED ERROR: %s", e.getMessage());
+			}
+
+			logEndOK(this, wMethodName, "The results are the same");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * a script whose bytecode would exceed the 64K of a JVM method is compiled
+	 * for the interpreter
+	 */
+	@Test
+	public void test25BigScript() throws Exception {
+		String wMethodName = "test25BigScript";
+
+		logBegin(this, wMethodName, "Compile a script of [%d] statements", NB_LOOPS);
+		try {
+
+			StringBuilder wScript = new StringBuilder("var wSum = 0;\n");
+			long wExpected = 0;
+			for (int i = 0; i < NB_LOOPS; i++) {
+				wScript.append("wSum = wSum + ").append(i % 7).append(";\n");
+				wExpected += i % 7;
+			}
+			wScript.append("wSum;");
+			Assert.assertTrue(wScript.length() > 64 * 1024);
+
+			RhinoScriptEngine wEngine = new RhinoScriptEngine(true);
+			for (int wLevel : new int[] { -1, 0, 1, 9 }) {
+				Object wResult = wEngine.compile(wScript.toString(), wLevel).eval(new SimpleScriptContext());
+				Assert.assertEquals(wExpected, ((Number) wResult).longValue());
+			}
+			// the default level of compile()
+			Object wResult = wEngine.compile(wScript.toString()).eval(new SimpleScriptContext());
+			Assert.assertEquals(wExpected, ((Number) wResult).longValue());
+
+			// the syntax errors are still reported
+			try {
+				wEngine.compile(wScript.toString() + " +;", 1);
+				Assert.fail("The script isn't valid");
+			} catch (ScriptException e) {
+				getLogger().logInfo(this, wMethodName, "EXPECTED ERROR: %s", e.getMessage());
+			}
+
+			logEndOK(this, wMethodName, "The big script is interpreted, result=[%s]", wResult);
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * measures the creation of the engines and the evaluations of a rule with
+	 * the own top level and the interpreter, then with the shared top level and
+	 * the bytecode
+	 */
+	@Test
+	public void test30Benchmark() throws Exception {
+		String wMethodName = "test30Benchmark";
+
+		logBegin(this, wMethodName, "Evaluate a rule [%d] times", NB_LOOPS);
+		try {
+
+			for (int wLoop = 0; wLoop < 3; wLoop++) {
+				long wStart = System.nanoTime();
+				RhinoScriptEngine wEngine = new RhinoScriptEngine(false);
+				long wOwnCreationNs = System.nanoTime() - wStart;
+				CompiledScript wScript = wEngine.compile(RULE, -1);
+				wStart = System.nanoTime();
+				for (int i = 0; i < NB_LOOPS; i++) {
+					evalRule(wScript, 100);
+				}
+				long wInterpretedNs = System.nanoTime() - wStart;
+
+				wStart = System.nanoTime();
+				wEngine = new RhinoScriptEngine(true);
+				long wSharedCreationNs = System.nanoTime() - wStart;
+				wScript = wEngine.compile(RULE, 1);
+				wStart = System.nanoTime();
+				for (int i = 0; i < NB_LOOPS; i++) {
+					evalRule(wScript, 100);
+				}
+				long wCompiledNs = System.nanoTime() - wStart;
+
+				getLogger().logInfo(this, wMethodName,
+						"Loops=[%d] own scope: creation=[%d us] interpreted=[%d us] / shared scope: creation=[%d us] bytecode=[%d us]",
+						NB_LOOPS, wOwnCreationNs / 1000, wInterpretedNs / 1000, wSharedCreationNs / 1000,
+						wCompiledNs / 1000);
+			}
+
+			logEndOK(this, wMethodName, "done");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+}
@@ -499,6 +499,26 @@ public abstract class CComponentLogger extends CAbstractComponentBase implements
 		return this;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.psem2m.utilities.logging.IActivityLogger#getNbDroppedRecords()
+	 */
+	@Override
+	public long getNbDroppedRecords() {
+		return 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.psem2m.utilities.logging.IActivityLogger#getNbQueuedRecords()
+	 */
+	@Override
+	public long getNbQueuedRecords() {
+		return 0;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -101,6 +101,26 @@ public class CComponentLoggerConsole extends CComponentLogger {
 		return pLogger;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.cohorte.utilities.picosoc.CComponentLogger#getNbDroppedRecords()
+	 */
+	@Override
+	public long getNbDroppedRecords() {
+		return pLogger.getNbDroppedRecords();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.cohorte.utilities.picosoc.CComponentLogger#getNbQueuedRecords()
+	 */
+	@Override
+	public long getNbQueuedRecords() {
+		return pLogger.getNbQueuedRecords();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
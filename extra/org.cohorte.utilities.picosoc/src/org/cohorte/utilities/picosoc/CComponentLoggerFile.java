@@ -218,6 +218,26 @@ public abstract class CComponentLoggerFile extends CComponentLogger {
 		return pSvcLoggerConfigurator;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.cohorte.utilities.picosoc.CComponentLogger#getNbDroppedRecords()
+	 */
+	@Override
+	public long getNbDroppedRecords() {
+		return pFileLogger.getNbDroppedRecords();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.cohorte.utilities.picosoc.CComponentLogger#getNbQueuedRecords()
+	 */
+	@Override
+	public long getNbQueuedRecords() {
+		return pFileLogger.getNbQueuedRecords();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -8,6 +8,8 @@ import java.util.Map;
  */
 public class CServicReference<T> {
 
+	// the registry containing the reference, notified of the modifications
+	private volatile CServicesRegistry pRegistry;
 	private final T pService;
 	private final Class<? extends T> pSpecification;
 	private final CServiceKey<T> pServiceKey;
@@ -66,12 +68,32 @@ public class CServicReference<T> {
 		return pSpecification;
 	}
 
+	/**
+	 * rebuilds the indexes of the registry containing the reference
+	 */
+	private void notifyRegistry() {
+		CServicesRegistry wRegistry = pRegistry;
+		if (wRegistry != null) {
+			wRegistry.reindex(this);
+		}
+	}
+
 	/**
 	 * @param aKey
 	 * @return
 	 */
 	public String removeProperty(final String aKey) {
-		return pServiceKey.removeProperty(aKey);
+		String wOldValue = pServiceKey.removeProperty(aKey);
+		notifyRegistry();
+		return wOldValue;
+	}
+
+	/**
+	 * @param aRegistry
+	 *            the registry containing the reference or null if removed
+	 */
+	void setRegistry(final CServicesRegistry aRegistry) {
+		pRegistry = aRegistry;
 	}
 
 	/**
@@ -79,7 +101,9 @@ public class CServicReference<T> {
 	 * @param aValue
 	 */
 	public String setProperty(final String aKey, final String aValue) {
-		return pServiceKey.setProperty(aKey, aValue);
+		String wOldValue = pServiceKey.setProperty(aKey, aValue);
+		notifyRegistry();
+		return wOldValue;
 	}
 	
 	/**
@@ -87,7 +111,9 @@ public class CServicReference<T> {
 	 * @return
 	 */
 	public int setProperties(final Map<String, String> aProperties) {
-		return pServiceKey.setProperties(aProperties);
+		int wNbNew = pServiceKey.setProperties(aProperties);
+		notifyRegistry();
+		return wNbNew;
 	}
 	
 	/* #48
@@ -0,0 +1,123 @@
+package org.cohorte.utilities.picosoc;
+
+import java.util.Map;
+
+/**
+ * A handle on a service that a component can keep to get the service
+ * repeatedly without searching it in the registry.
+ *
+ * The handle keeps the found service reference and the version of the
+ * registry. While the registry doesn't change, getting the service costs a
+ * version comparison. When a service is registered, removed or when the
+ * properties of a service reference change, the handle searches the service
+ * again at its next use: a removed service is no longer returned.
+ *
+ * @param <T>
+ */
+public class CServiceHandle<T> {
+
+	/**
+	 * an immutable pair: the found reference and the version of the registry
+	 */
+	private static class CResolution<T> {
+
+		private final CServicReference<T> pServiceRef;
+		private final long pVersion;
+
+		CResolution(final long aVersion, final CServicReference<T> aServiceRef) {
+			super();
+			pVersion = aVersion;
+			pServiceRef = aServiceRef;
+		}
+	}
+
+	private final Map<String, String> pProperties;
+
+	private final CServicesRegistry pRegistry;
+
+	private volatile CResolution<T> pResolution = null;
+
+	private final Class<? extends T> pSpecification;
+
+	/**
+	 * @param aRegistry
+	 * @param aSpecification
+	 * @param aProperties
+	 */
+	CServiceHandle(final CServicesRegistry aRegistry,
+			final Class<? extends T> aSpecification,
+			final Map<String, String> aProperties) {
+		super();
+		pRegistry = aRegistry;
+		pSpecification = aSpecification;
+		pProperties = (aProperties != null) ? new CServiceProperties() : null;
+		if (aProperties != null) {
+			pProperties.putAll(aProperties);
+		}
+	}
+
+	/**
+	 * @return the service or null if it isn't registered
+	 */
+	public T getOptionalService() {
+		CServicReference<T> wServiceRef = getServiceRef();
+		return (wServiceRef != null) ? wServiceRef.getService() : null;
+	}
+
+	/**
+	 * @return the service
+	 * @throws Exception
+	 *             if the service isn't registered
+	 */
+	public T getService() throws Exception {
+		CServicReference<T> wServiceRef = getServiceRef();
+		if (wServiceRef == null) {
+			throw new Exception(String.format(
+					"Unable to get the service [%s]", new CServiceKey<T>(
+							pSpecification, pProperties).toString()));
+		}
+		return wServiceRef.getService();
+	}
+
+	/**
+	 * @return the service reference or null if the service isn't registered
+	 */
+	public CServicReference<T> getServiceRef() {
+		CResolution<T> wResolution = pResolution;
+		long wVersion = pRegistry.getVersion();
+		if (wResolution == null || wResolution.pVersion != wVersion) {
+			wResolution = new CResolution<T>(wVersion,
+					pRegistry.<T> searchServiceRef(pSpecification,
+							pProperties, ISvcServiceRegistry.SEARCH_MODE_STRICT));
+			pResolution = wResolution;
+		}
+		return wResolution.pServiceRef;
+	}
+
+	/**
+	 * @return the specification of the service
+	 */
+	public Class<? extends T> getSpecification() {
+		return pSpecification;
+	}
+
+	/**
+	 * @return true if the service is registered
+	 */
+	public boolean isAvailable() {
+		return getServiceRef() != null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		CResolution<T> wResolution = pResolution;
+		return String.format("ServiceHandle:[%s][%s]", pSpecification
+				.getName(), (wResolution != null) ? wResolution.pServiceRef
+				: null);
+	}
+}
@@ -1,5 +1,6 @@
 package org.cohorte.utilities.picosoc;
 
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -95,6 +96,13 @@ public class CServiceKey<T> implements Comparable<CServiceKey<T>> {
 	public String getProperty(final String aKey) {
 		return pProperties.get(aKey);
 	}
+	/**
+	 * @return the properties of the key (read only)
+	 */
+	Map<String, String> getProperties() {
+		return Collections.unmodifiableMap(pProperties);
+	}
+
 	/**
 	 * #48
 	 * @return
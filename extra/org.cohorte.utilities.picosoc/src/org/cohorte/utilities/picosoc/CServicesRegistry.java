@@ -1,18 +1,124 @@
 package org.cohorte.utilities.picosoc;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 
 /**
+ * The registry is read by each getService() of the components.
+ * 
+ * The writes (register, remove, modification of the properties of a
+ * reference) are serialized and publish an immutable snapshot of the
+ * registry indexed by specification and by property. The reads use the
+ * current snapshot without lock and only test the references having the
+ * searched specification and property.
+ * 
  * @author ogattaz
  * 
  */
 public class CServicesRegistry extends CAbstractComponentBase implements
 		ISvcServiceRegistry {
 
+	/**
+	 * An immutable view of the registry
+	 */
+	private static class CSnapshot {
+
+		private final List<CServicReference<?>> pAll;
+		private final Map<Class<?>, Map<String, List<CServicReference<?>>>> pByProperty;
+		private final Map<Object, CServicReference<?>> pByService;
+		private final Map<Class<?>, List<CServicReference<?>>> pBySpecification;
+		private final long pVersion;
+
+		/**
+		 * @param aVersion
+		 * @param aServiceRefs
+		 */
+		CSnapshot(final long aVersion,
+				final List<CServicReference<?>> aServiceRefs) {
+			super();
+			pVersion = aVersion;
+			pAll = Collections.unmodifiableList(aServiceRefs);
+			pByService = new HashMap<Object, CServicReference<?>>();
+			pBySpecification = new HashMap<Class<?>, List<CServicReference<?>>>();
+			pByProperty = new HashMap<Class<?>, Map<String, List<CServicReference<?>>>>();
+
+			for (CServicReference<?> wServiceRef : aServiceRefs) {
+				pByService.put(wServiceRef.getService(), wServiceRef);
+
+				Class<?> wSpecification = wServiceRef.getSpecification();
+				List<CServicReference<?>> wRefs = pBySpecification
+						.get(wSpecification);
+				if (wRefs == null) {
+					wRefs = new ArrayList<CServicReference<?>>();
+					pBySpecification.put(wSpecification, wRefs);
+				}
+				wRefs.add(wServiceRef);
+
+				Map<String, List<CServicReference<?>>> wProperties = pByProperty
+						.get(wSpecification);
+				if (wProperties == null) {
+					wProperties = new HashMap<String, List<CServicReference<?>>>();
+					pByProperty.put(wSpecification, wProperties);
+				}
+				for (Map.Entry<String, String> wProperty : wServiceRef
+						.getServiceKey().getProperties().entrySet()) {
+					String wPropertyKey = calcPropertyKey(wProperty.getKey(),
+							wProperty.getValue());
+					List<CServicReference<?>> wPropRefs = wProperties
+							.get(wPropertyKey);
+					if (wPropRefs == null) {
+						wPropRefs = new ArrayList<CServicReference<?>>();
+						wProperties.put(wPropertyKey, wPropRefs);
+					}
+					wPropRefs.add(wServiceRef);
+				}
+			}
+		}
+
+		/**
+		 * @param aSpecification
+		 * @param aProperties
+		 * @return the references having the specification and the most
+		 *         selective of the given properties
+		 */
+		List<CServicReference<?>> getCandidates(
+				final Class<?> aSpecification,
+				final Map<String, String> aProperties) {
+
+			if (aProperties == null || aProperties.isEmpty()) {
+				List<CServicReference<?>> wRefs = pBySpecification
+						.get(aSpecification);
+				return (wRefs != null) ? wRefs : Collections
+						.<CServicReference<?>> emptyList();
+			}
+			Map<String, List<CServicReference<?>>> wProperties = pByProperty
+					.get(aSpecification);
+			if (wProperties == null) {
+				return Collections.<CServicReference<?>> emptyList();
+			}
+			List<CServicReference<?>> wCandidates = null;
+			for (Map.Entry<String, String> wProperty : aProperties.entrySet()) {
+				List<CServicReference<?>> wRefs = wProperties
+						.get(calcPropertyKey(wProperty.getKey(),
+								wProperty.getValue()));
+				if (wRefs == null) {
+					return Collections.<CServicReference<?>> emptyList();
+				}
+				if (wCandidates == null || wRefs.size() < wCandidates.size()) {
+					wCandidates = wRefs;
+				}
+			}
+			return wCandidates;
+		}
+	}
+
+	private static final CSnapshot EMPTY_SNAPSHOT = new CSnapshot(0,
+			new ArrayList<CServicReference<?>>());
 
 	private static CServicesRegistry sServicesRegistry;
 
@@ -38,10 +144,24 @@ public class CServicesRegistry extends CAbstractComponentBase implements
 		return new CServicesRegistry();
 	}
 
-	private final Map<CServiceKey<?>, CServicReference<?>> pServicesRegistry = new HashMap<CServiceKey<?>, CServicReference<?>>();
+	/**
+	 * @param aKey
+	 * @param aValue
+	 * @return the key of a property in the index
+	 */
+	private static String calcPropertyKey(final String aKey,
+			final String aValue) {
+		return aKey + '\u0000' + aValue;
+	}
+
+	// the writes are serialized on the registry (synchronized)
+	private final Map<CServiceKey<?>, CServicReference<?>> pServicesRegistry = new LinkedHashMap<CServiceKey<?>, CServicReference<?>>();
 	// #48
 	private final Map<Object, CServicReference<?>> pServicesMap = new HashMap<Object, CServicReference<?>>();
 
+	// the view used by the reads
+	private volatile CSnapshot pSnapshot = EMPTY_SNAPSHOT;
+
 	
 	/**
 	 * @param aService
@@ -50,7 +170,7 @@ public class CServicesRegistry extends CAbstractComponentBase implements
 	@SuppressWarnings("unchecked")
 	public <T> CServicReference<T> findServiceRef(final T aService){
 		
-		return (CServicReference<T> )pServicesMap.get(aService);
+		return (CServicReference<T> )pSnapshot.pByService.get(aService);
 	}
 	
 	
@@ -70,11 +190,17 @@ public class CServicesRegistry extends CAbstractComponentBase implements
 	@Override
 	public void clear() {
 		log(Level.INFO, this, "clear", "NbService=[%s]",
-				pServicesRegistry.size());
+				pSnapshot.pAll.size());
 
 		unregisterMe();
-		pServicesRegistry.clear();
-		pServicesMap.clear();
+		synchronized (this) {
+			for (CServicReference<?> wServiceRef : pServicesRegistry.values()) {
+				wServiceRef.setRegistry(null);
+			}
+			pServicesRegistry.clear();
+			pServicesMap.clear();
+			publishSnapshot();
+		}
 	}
 
 	/*
@@ -88,8 +214,8 @@ public class CServicesRegistry extends CAbstractComponentBase implements
 	public <T> boolean contains(Class<? extends T> aSpecification,
 			final Map<String, String> aProperties) {
 
-		return pServicesRegistry.containsKey(new CServiceKey<T>(aSpecification,
-				aProperties));
+		return searchServiceRef(aSpecification, aProperties,
+				SEARCH_MODE_STRICT) != null;
 	}
 
 	/**
@@ -102,13 +228,12 @@ public class CServicesRegistry extends CAbstractComponentBase implements
 		StringBuilder wSB = new StringBuilder();
 		int wIdx = 0;
 
-		for (Map.Entry<CServiceKey<?>, CServicReference<?>> wEntry : pServicesRegistry
-				.entrySet()) {
+		for (CServicReference<?> wServiceRef : pSnapshot.pAll) {
 			if (wIdx > 0) {
 				wSB.append('\n');
 			}
-			wSB.append(String.format("(%3d)%80s ==> %s", wIdx, wEntry.getKey()
-					.toString(), wEntry.getValue().getService()));
+			wSB.append(String.format("(%3d)%80s ==> %s", wIdx, wServiceRef
+					.getServiceKey().toString(), wServiceRef.getService()));
 			wIdx++;
 		}
 		return wSB.toString();
@@ -193,6 +318,21 @@ public class CServicesRegistry extends CAbstractComponentBase implements
 
 		return wWebAppServicRef;
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.cohorte.utilities.picosoc.ISvcServiceRegistry#getServiceHandle(java
+	 * .lang.Class, java.util.Map)
+	 */
+	@Override
+	public <T> CServiceHandle<T> getServiceHandle(
+			Class<? extends T> aSpecification,
+			final Map<String, String> aProperties) {
+
+		return new CServiceHandle<T>(this, aSpecification, aProperties);
+	}
 	
 
 
@@ -218,22 +358,25 @@ public class CServicesRegistry extends CAbstractComponentBase implements
 	public <T> List<CServicReference<T>> getServiceRefs(
 			Class<? extends T> aSpecification, Map<String, String> aProperties,final boolean aStrictMode ) {
 
-		CServiceKey<T> wSearchedKey = new CServiceKey<T>(aSpecification,
-				aProperties);
 		List<CServicReference<T>> wServiceRefs = new ArrayList<CServicReference<T>>();
 
-		synchronized (this) {
-			for (Map.Entry<CServiceKey<?>, CServicReference<?>> wEntry : pServicesRegistry
-					.entrySet()) {
+		for (CServicReference<?> wServiceRef : pSnapshot.getCandidates(
+				aSpecification, aProperties)) {
 
-				if (wEntry.getKey().match(wSearchedKey,aStrictMode)) {
-					wServiceRefs.add((CServicReference<T>) wEntry.getValue());
-				}
+			if (match(wServiceRef, aProperties, aStrictMode)) {
+				wServiceRefs.add((CServicReference<T>) wServiceRef);
 			}
 		}
 		return wServiceRefs;
 	}
 
+	/**
+	 * @return the version of the registry, incremented by each modification
+	 */
+	long getVersion() {
+		return pSnapshot.pVersion;
+	}
+
 	/**
 	 * @param aLevel
 	 * @param aWho
@@ -246,6 +389,48 @@ public class CServicesRegistry extends CAbstractComponentBase implements
 		CComponentLogger.logInMain(aLevel, aWho, aWhat, aInfos);
 	}
 
+	/**
+	 * The reference has already the searched specification (see the indexes)
+	 * 
+	 * @param aServiceRef
+	 * @param aProperties
+	 *            the searched properties
+	 * @param aStrictMatching
+	 *            if true the reference must have the same number of
+	 *            properties
+	 * @return true if all the searched properties exist and have the same
+	 *         values in the properties of the reference
+	 * @see CServiceKey#match(CServiceKey, boolean)
+	 */
+	private boolean match(final CServicReference<?> aServiceRef,
+			final Map<String, String> aProperties,
+			final boolean aStrictMatching) {
+
+		int wNbSearched = (aProperties != null) ? aProperties.size() : 0;
+		if (aStrictMatching
+				&& wNbSearched != aServiceRef.getServiceKey().getNbProperty()) {
+			return false;
+		}
+		if (wNbSearched > 0) {
+			for (Map.Entry<String, String> wEntry : aProperties.entrySet()) {
+				if (!wEntry.getValue().equals(
+						aServiceRef.getProperty(wEntry.getKey()))) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * publishes a new snapshot built with the current content of the registry.
+	 * Must be called by a synchronized method.
+	 */
+	private void publishSnapshot() {
+		pSnapshot = new CSnapshot(pSnapshot.pVersion + 1,
+				new ArrayList<CServicReference<?>>(pServicesRegistry.values()));
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -262,16 +447,21 @@ public class CServicesRegistry extends CAbstractComponentBase implements
 		CServicReference<T> wServicRef = new CServicReference<T>(
 				aSpecification, aProperties, aService);
 
-		if (pServicesRegistry.containsKey(wServicRef.getServiceKey())) {
-			throw new Exception(String.format(
-					"The service [%s] already registered", wServicRef
-							.getServiceKey().toString()));
-		}
+		synchronized (this) {
+			if (pServicesRegistry.containsKey(wServicRef.getServiceKey())) {
+				throw new Exception(String.format(
+						"The service [%s] already registered", wServicRef
+								.getServiceKey().toString()));
+			}
 
-		pServicesRegistry.put(wServicRef.getServiceKey(),
-				wServicRef);
-		// #48
-		pServicesMap.put(aService, wServicRef);
+			pServicesRegistry.put(wServicRef.getServiceKey(),
+					wServicRef);
+			// #48
+			pServicesMap.put(aService, wServicRef);
+			wServicRef.setRegistry(this);
+
+			publishSnapshot();
+		}
 
 		log(Level.FINER, this, "registerService",
 				"ServiceKey=[%s] Service=[%s] ServiceRef=[%s]",
@@ -288,7 +478,7 @@ public class CServicesRegistry extends CAbstractComponentBase implements
 	 * .utilities.picosoc.CServicReference)
 	 */
 	@Override
-	public <T> boolean removeService(CServicReference<T> aServiceRef)
+	public synchronized <T> boolean removeService(CServicReference<T> aServiceRef)
 			throws Exception {
 		
 		if (aServiceRef==null) {
@@ -317,6 +507,8 @@ public class CServicesRegistry extends CAbstractComponentBase implements
 					"Unable to remove the service [%s] from the map 'pServicesMap'",
 					aServiceRef.getServiceKey()));
 		}
+		wServiceRef1Removed.setRegistry(null);
+		publishSnapshot();
 		
 		
 		log(Level.INFO, this, "removeService",
@@ -328,37 +520,50 @@ public class CServicesRegistry extends CAbstractComponentBase implements
 	}
 
 	/**
+	 * Called by a service reference of this registry when its properties
+	 * change. Rebuilds the indexes if the reference is still registered.
+	 * 
+	 * @param aServiceRef
+	 *            a reference whose properties changed
+	 */
+	synchronized void reindex(final CServicReference<?> aServiceRef) {
+		if (pServicesMap.get(aServiceRef.getService()) == aServiceRef) {
+			publishSnapshot();
+		}
+	}
+
+	/**
+	 * The search uses the current snapshot without lock.
+	 * 
+	 * In strict mode, the searched properties must be the properties of the
+	 * reference whatever their order. In not strict mode, the searched
+	 * properties must exist in the properties of the reference: a reference
+	 * matching strictly is preferred, otherwise the first matching reference
+	 * is returned.
+	 * 
 	 * @param aSpecification
 	 * @param aProperties
 	 * @param aSearchModeStrict
 	 * @return
 	 */
 	@SuppressWarnings("unchecked")
-	private <T> CServicReference<T> searchServiceRef(
+	<T> CServicReference<T> searchServiceRef(
 			Class<? extends T> aSpecification,
 			final Map<String, String> aProperties,
 			final boolean aSearchModeStrict) {
 
-		CServiceKey<T> wSearchedKey = new CServiceKey<T>(aSpecification,
-				aProperties);
-
-		CServicReference<T> wServiceRef = (CServicReference<T>) pServicesRegistry
-				.get(wSearchedKey);
+		CServicReference<?> wFound = null;
+		for (CServicReference<?> wServiceRef : pSnapshot.getCandidates(
+				aSpecification, aProperties)) {
 
-		if (wServiceRef == null && !aSearchModeStrict && aProperties != null
-				&& !aProperties.isEmpty()) {
-
-			synchronized (this) {
-				for (Map.Entry<CServiceKey<?>, CServicReference<?>> wEntry : pServicesRegistry
-						.entrySet()) {
-
-					if (wEntry.getKey().match(wSearchedKey)) {
-						wServiceRef = (CServicReference<T>) wEntry.getValue();
-						break;
-					}
-				}
+			if (match(wServiceRef, aProperties, SEARCH_MODE_STRICT)) {
+				return (CServicReference<T>) wServiceRef;
+			}
+			if (!aSearchModeStrict && wFound == null
+					&& match(wServiceRef, aProperties, !SEARCH_MODE_STRICT)) {
+				wFound = wServiceRef;
 			}
 		}
-		return wServiceRef;
+		return (CServicReference<T>) wFound;
 	}
 }
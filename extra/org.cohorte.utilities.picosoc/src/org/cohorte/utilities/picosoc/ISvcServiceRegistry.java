@@ -36,6 +36,15 @@ public interface ISvcServiceRegistry {
 			final Class<? extends T> aSpecification,
 			final Map<String, String> aProperties) throws Exception;
 
+	/**
+	 * @param aSpecification
+	 * @param aProperties
+	 * @return a handle to get the service repeatedly without searching it
+	 */
+	<T> CServiceHandle<T> getServiceHandle(
+			final Class<? extends T> aSpecification,
+			final Map<String, String> aProperties);
+
 	/**
 	 * @param aSpecification
 	 * @return an instance of CServicReference<T>
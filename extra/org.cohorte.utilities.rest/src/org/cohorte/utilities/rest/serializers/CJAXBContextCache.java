@@ -0,0 +1,180 @@
+package org.cohorte.utilities.rest.serializers;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+
+/**
+ * The cache of the JAXBContext of the REST serializers, keyed by class, with
+ * a bounded pool of marshallers and unmarshallers per context.
+ *
+ * A JAXBContext is thread-safe and expensive to create. The marshallers and
+ * the unmarshallers are cheap but not thread-safe: a caller takes one, uses it
+ * and releases it.
+ */
+public final class CJAXBContextCache {
+
+	/**
+	 * a bounded pool of marshallers or unmarshallers
+	 *
+	 * @param <T>
+	 */
+	private static class CPool<T> {
+
+		private final Queue<T> pItems = new ConcurrentLinkedQueue<T>();
+
+		private final AtomicInteger pSize = new AtomicInteger();
+
+		/**
+		 * @param aItem
+		 */
+		void offer(final T aItem) {
+			if (pSize.incrementAndGet() <= MAX_POOLED) {
+				pItems.offer(aItem);
+			} else {
+				pSize.decrementAndGet();
+			}
+		}
+
+		/**
+		 * @return a pooled item or null
+		 */
+		T poll() {
+			T wItem = pItems.poll();
+			if (wItem != null) {
+				pSize.decrementAndGet();
+			}
+			return wItem;
+		}
+	}
+
+	/**
+	 * the context of a class and its pools
+	 */
+	private static class CEntry {
+
+		private final JAXBContext pContext;
+
+		private final CPool<Marshaller> pMarshallers = new CPool<Marshaller>();
+
+		private final CPool<Unmarshaller> pUnmarshallers = new CPool<Unmarshaller>();
+
+		/**
+		 * @param aContext
+		 */
+		CEntry(final JAXBContext aContext) {
+			super();
+			pContext = aContext;
+		}
+	}
+
+	// the max number of idle marshallers (and unmarshallers) kept per class
+	public static final int MAX_POOLED = 16;
+
+	private static final ConcurrentMap<Class<?>, CEntry> sEntries = new ConcurrentHashMap<Class<?>, CEntry>();
+
+	private static final String UTF_8 = "UTF-8";
+
+	/**
+	 * @param aType
+	 * @return the shared context of the class
+	 * @throws JAXBException
+	 */
+	public static JAXBContext getContext(final Class<?> aType)
+			throws JAXBException {
+		return getEntry(aType).pContext;
+	}
+
+	/**
+	 * @param aType
+	 * @return the entry of the class, creating its context if needed
+	 * @throws JAXBException
+	 */
+	private static CEntry getEntry(final Class<?> aType) throws JAXBException {
+		CEntry wEntry = sEntries.get(aType);
+		if (wEntry == null) {
+			wEntry = new CEntry(JAXBContext.newInstance(aType));
+			CEntry wPrevious = sEntries.putIfAbsent(aType, wEntry);
+			if (wPrevious != null) {
+				wEntry = wPrevious;
+			}
+		}
+		return wEntry;
+	}
+
+	/**
+	 * @param aType
+	 * @param aMarshaller
+	 *            a marshaller taken with takeMarshaller() which is no longer
+	 *            used
+	 */
+	public static void releaseMarshaller(final Class<?> aType,
+			final Marshaller aMarshaller) {
+		CEntry wEntry = sEntries.get(aType);
+		if (wEntry != null && aMarshaller != null) {
+			wEntry.pMarshallers.offer(aMarshaller);
+		}
+	}
+
+	/**
+	 * @param aType
+	 * @param aUnmarshaller
+	 *            an unmarshaller taken with takeUnmarshaller() which is no
+	 *            longer used
+	 */
+	public static void releaseUnmarshaller(final Class<?> aType,
+			final Unmarshaller aUnmarshaller) {
+		CEntry wEntry = sEntries.get(aType);
+		if (wEntry != null && aUnmarshaller != null) {
+			wEntry.pUnmarshallers.offer(aUnmarshaller);
+		}
+	}
+
+	/**
+	 * @param aType
+	 * @return a pooled or a new marshaller of the class, writing formatted
+	 *         UTF-8 XML
+	 * @throws JAXBException
+	 */
+	public static Marshaller takeMarshaller(final Class<?> aType)
+			throws JAXBException {
+		CEntry wEntry = getEntry(aType);
+		Marshaller wMarshaller = wEntry.pMarshallers.poll();
+		if (wMarshaller == null) {
+			wMarshaller = wEntry.pContext.createMarshaller();
+			// output pretty printed
+			wMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+			wMarshaller.setProperty(Marshaller.JAXB_ENCODING, UTF_8);
+		}
+		return wMarshaller;
+	}
+
+	/**
+	 * @param aType
+	 * @return a pooled or a new unmarshaller of the class
+	 * @throws JAXBException
+	 */
+	public static Unmarshaller takeUnmarshaller(final Class<?> aType)
+			throws JAXBException {
+		CEntry wEntry = getEntry(aType);
+		Unmarshaller wUnmarshaller = wEntry.pUnmarshallers.poll();
+		if (wUnmarshaller == null) {
+			wUnmarshaller = wEntry.pContext.createUnmarshaller();
+		}
+		return wUnmarshaller;
+	}
+
+	/**
+	 * static only
+	 */
+	private CJAXBContextCache() {
+		super();
+	}
+}
@@ -2,9 +2,7 @@ package org.cohorte.utilities.rest.serializers;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
 
@@ -16,13 +14,15 @@ import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.ext.MessageBodyReader;
 import javax.ws.rs.ext.MessageBodyWriter;
 import javax.ws.rs.ext.Provider;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
 
 /**
- * JSON message writer/reader.
+ * XML message writer/reader.
+ * 
+ * Uses the JAXBContext and the pooled marshallers of CJAXBContextCache and
+ * streams the values from and to the entity streams.
  * 
  * TODO implement as component
  * 
@@ -38,9 +38,6 @@ import javax.xml.bind.Unmarshaller;
 public final class CJAXBMessageBodyHandler
 	implements MessageBodyWriter<Object>, MessageBodyReader<Object> {
 
-	private static final String UTF_8 = "UTF-8";
-
-
 	@Override
 	public boolean isReadable(
 			Class<?> type,
@@ -58,13 +55,12 @@ public final class CJAXBMessageBodyHandler
 			MediaType mediaType,
 			MultivaluedMap<String, String> httpHeaders,
 			InputStream entityStream) throws IOException {
-		InputStreamReader streamReader = new InputStreamReader(entityStream, UTF_8);
 		try {
-
-			JAXBContext context = JAXBContext.newInstance(type);
-
-			Unmarshaller unmarshaller = context.createUnmarshaller();
-			return unmarshaller.unmarshal(streamReader);
+			Unmarshaller unmarshaller = CJAXBContextCache.takeUnmarshaller(type);
+			// the parser detects the encoding of the document
+			Object value = unmarshaller.unmarshal(entityStream);
+			CJAXBContextCache.releaseUnmarshaller(type, unmarshaller);
+			return value;
 
 		} catch (JAXBException e) {
 			e.printStackTrace();
@@ -73,7 +69,7 @@ public final class CJAXBMessageBodyHandler
 			e.printStackTrace();
 			throw e;
 		} finally {
-			streamReader.close();
+			entityStream.close();
 		}
 	}
 
@@ -106,23 +102,17 @@ public final class CJAXBMessageBodyHandler
 			MultivaluedMap<String, Object> httpHeaders,
 			OutputStream entityStream
 		) throws IOException, WebApplicationException {
-		OutputStreamWriter writer = new OutputStreamWriter(entityStream, UTF_8);
 		try {
-			JAXBContext context = JAXBContext.newInstance(type);
-			Marshaller marshaller = context.createMarshaller();
-
-			// output pretty printed
-			marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-
-			marshaller.marshal(object, writer);
+			// pretty printed UTF-8, written directly in the entity stream
+			Marshaller marshaller = CJAXBContextCache.takeMarshaller(type);
+			marshaller.marshal(object, entityStream);
+			CJAXBContextCache.releaseMarshaller(type, marshaller);
 
 		} catch (JAXBException e) {
 			e.printStackTrace();
 		} catch (Throwable e) {
 			e.printStackTrace();
 			throw e;
-		} finally {
-			writer.close();
 		}
 	}
 }
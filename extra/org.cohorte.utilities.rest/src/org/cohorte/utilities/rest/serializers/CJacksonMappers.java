@@ -0,0 +1,97 @@
+package org.cohorte.utilities.rest.serializers;
+
+import java.lang.reflect.Type;
+import java.text.SimpleDateFormat;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.cohorte.utilities.rest.objects.CCalendar;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.module.jaxb.JaxbAnnotationIntrospector;
+
+/**
+ * The shared, preconfigured ObjectMapper of the REST serializers and the
+ * caches of its ObjectReader and ObjectWriter per type.
+ *
+ * The mapper is configured once and never modified afterwards: it, and the
+ * readers and writers it creates, are thread-safe. The date format is cloned
+ * by Jackson for each use.
+ */
+public final class CJacksonMappers {
+
+	private static final ObjectMapper sMapper = newMapper();
+
+	private static final ConcurrentMap<Type, ObjectReader> sReaders = new ConcurrentHashMap<Type, ObjectReader>();
+
+	private static final ConcurrentMap<Type, ObjectWriter> sWriters = new ConcurrentHashMap<Type, ObjectWriter>();
+
+	/**
+	 * @return the shared mapper. It must not be reconfigured.
+	 */
+	public static ObjectMapper getMapper() {
+		return sMapper;
+	}
+
+	/**
+	 * @param aType
+	 *            the class or the generic type of the value to read
+	 * @return the cached reader of the type
+	 */
+	public static ObjectReader getReader(final Type aType) {
+		ObjectReader wReader = sReaders.get(aType);
+		if (wReader == null) {
+			wReader = sMapper.readerFor(sMapper.getTypeFactory()
+					.constructType(aType));
+			ObjectReader wPrevious = sReaders.putIfAbsent(aType, wReader);
+			if (wPrevious != null) {
+				wReader = wPrevious;
+			}
+		}
+		return wReader;
+	}
+
+	/**
+	 * @param aType
+	 *            the class of the value to write
+	 * @return the cached writer of the type
+	 */
+	public static ObjectWriter getWriter(final Type aType) {
+		ObjectWriter wWriter = sWriters.get(aType);
+		if (wWriter == null) {
+			wWriter = sMapper.writerFor(sMapper.getTypeFactory()
+					.constructType(aType));
+			ObjectWriter wPrevious = sWriters.putIfAbsent(aType, wWriter);
+			if (wPrevious != null) {
+				wWriter = wPrevious;
+			}
+		}
+		return wWriter;
+	}
+
+	/**
+	 * @return a mapper using the JAXB annotations and the date format of
+	 *         CCalendar, accepting the single quotes. It doesn't close the
+	 *         entity streams it writes to: they belong to the JAX-RS runtime.
+	 */
+	private static ObjectMapper newMapper() {
+		ObjectMapper wMapper = new ObjectMapper();
+		wMapper.setAnnotationIntrospector(new JaxbAnnotationIntrospector(
+				wMapper.getTypeFactory()));
+		wMapper.setDateFormat(new SimpleDateFormat(CCalendar.DATE_FORMAT));
+		wMapper.configure(JsonParser.Feature.ALLOW_SINGLE_QUOTES, true);
+		wMapper.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+		return wMapper;
+	}
+
+	/**
+	 * static only
+	 */
+	private CJacksonMappers() {
+		super();
+	}
+}
@@ -2,13 +2,9 @@ package org.cohorte.utilities.rest.serializers;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.Produces;
@@ -19,16 +15,15 @@ import javax.ws.rs.ext.MessageBodyReader;
 import javax.ws.rs.ext.MessageBodyWriter;
 import javax.ws.rs.ext.Provider;
 
-import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.databind.AnnotationIntrospector;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.module.jaxb.JaxbAnnotationIntrospector;
-
-import org.cohorte.utilities.rest.objects.CCalendar;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 /**
  * JSON message writer/reader.
  * 
+ * Uses the shared mapper of CJacksonMappers and streams the values from and to
+ * the entity streams in UTF-8.
+ * 
  * TODO implement as component
  * 
  * @author Ahmad Shahwan
@@ -43,17 +38,8 @@ import org.cohorte.utilities.rest.objects.CCalendar;
 public final class CJacksonMessageBodyHandler
 	implements MessageBodyWriter<Object>, MessageBodyReader<Object> {
 
-	private static final String UTF_8 = "UTF-8";
-
 	private ObjectMapper getMapper() {
-		ObjectMapper mapper = new ObjectMapper();
-		AnnotationIntrospector introspector = 
-				new JaxbAnnotationIntrospector(mapper.getTypeFactory());
-		mapper.setAnnotationIntrospector(introspector);
-		DateFormat df = new SimpleDateFormat(CCalendar.DATE_FORMAT);
-		mapper.setDateFormat(df);
-		mapper.configure(JsonParser.Feature.ALLOW_SINGLE_QUOTES, true);
-		return mapper;
+		return CJacksonMappers.getMapper();
 	}
 	
 	@Override
@@ -73,14 +59,14 @@ public final class CJacksonMessageBodyHandler
 			MediaType mediaType,
 			MultivaluedMap<String, String> httpHeaders,
 			InputStream entityStream) throws IOException {
-		InputStreamReader streamReader = new InputStreamReader(entityStream, UTF_8);
 		try {
-			return getMapper().readValue(streamReader, type);
+			// the parser detects the encoding (UTF-8 expected) and closes the stream
+			return CJacksonMappers.getReader(
+					(genericType != null) ? genericType : type).readValue(
+					entityStream);
 		} catch (Throwable e) {
 			e.printStackTrace();
 			throw e;
-		} finally {
-			streamReader.close();
 		}
 	}
 
@@ -113,14 +99,15 @@ public final class CJacksonMessageBodyHandler
 			MultivaluedMap<String, Object> httpHeaders,
 			OutputStream entityStream
 		) throws IOException, WebApplicationException {
-		OutputStreamWriter writer = new OutputStreamWriter(entityStream, UTF_8);
+		// the writer of the runtime class, as ObjectMapper.writeValue() does
+		ObjectWriter writer = (object != null) ? CJacksonMappers
+				.getWriter(object.getClass()) : getMapper().writer();
 		try {
-			getMapper().writeValue(writer, object);
+			// UTF-8 generator writing directly in the entity stream
+			writer.writeValue(entityStream, object);
 		} catch (Throwable e) {
 			e.printStackTrace();
 			throw e;
-		} finally {
-			writer.close();
 		}
 	}
 }
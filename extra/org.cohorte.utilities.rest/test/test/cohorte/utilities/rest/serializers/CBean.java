@@ -0,0 +1,88 @@
+package test.cohorte.utilities.rest.serializers;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * The bean serialized by the tests of the REST serializers: a list and a date
+ */
+@XmlRootElement(name = "bean")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class CBean {
+
+	/**
+	 * @param aIdx
+	 * @return a bean with a list of ten tags
+	 */
+	public static CBean newBean(final int aIdx) {
+		CBean wBean = new CBean();
+		wBean.pName = "bean-" + aIdx;
+		wBean.pCount = aIdx;
+		// the date format of CCalendar has no milliseconds
+		wBean.pDate = new Date(1500000000000L + aIdx * 1000L);
+		for (int i = 0; i < 10; i++) {
+			wBean.pTags.add("tag-" + aIdx + "-" + i);
+		}
+		return wBean;
+	}
+
+	@XmlElement(name = "count")
+	private int pCount;
+
+	@XmlElement(name = "date")
+	private Date pDate;
+
+	@XmlElement(name = "name")
+	private String pName;
+
+	@XmlElement(name = "tag")
+	private List<String> pTags = new ArrayList<String>();
+
+	/**
+	 *
+	 */
+	public CBean() {
+		super();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(final Object aObject) {
+		if (!(aObject instanceof CBean)) {
+			return false;
+		}
+		CBean wBean = (CBean) aObject;
+		return pCount == wBean.pCount && pDate.equals(wBean.pDate) && pName.equals(wBean.pName)
+				&& pTags.equals(wBean.pTags);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return pName.hashCode();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return String.format("name=[%s] count=[%d] date=[%s] tags=%s", pName, pCount, pDate, pTags);
+	}
+}
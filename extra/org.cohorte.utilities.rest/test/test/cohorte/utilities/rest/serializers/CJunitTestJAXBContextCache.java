@@ -0,0 +1,229 @@
+package test.cohorte.utilities.rest.serializers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+
+import org.cohorte.utilities.junit.CAbstractJunitTest;
+import org.cohorte.utilities.rest.serializers.CJAXBContextCache;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * Tests the cached contexts and the pooled marshallers and unmarshallers of
+ * CJAXBContextCache
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class CJunitTestJAXBContextCache extends CAbstractJunitTest {
+
+	private static final int NB_ROUND_TRIPS = 500;
+
+	/**
+	 *
+	 */
+	@AfterClass
+	public static void destroy() {
+
+		// log the destroy banner containing the report
+		logBannerDestroy(CJunitTestJAXBContextCache.class);
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@BeforeClass
+	public static void initialize() throws Exception {
+
+		// initialise the map of the test method of the current junit test class
+		initializeTestsRegistry(CJunitTestJAXBContextCache.class);
+
+		// log the initialization banner
+		logBannerInitialization(CJunitTestJAXBContextCache.class);
+	}
+
+	/**
+	 *
+	 */
+	public CJunitTestJAXBContextCache() {
+		super();
+	}
+
+	/**
+	 * @param aBean
+	 * @return the bean read from its xml
+	 * @throws Exception
+	 */
+	private CBean roundTrip(final CBean aBean) throws Exception {
+		ByteArrayOutputStream wOut = new ByteArrayOutputStream();
+		Marshaller wMarshaller = CJAXBContextCache.takeMarshaller(CBean.class);
+		wMarshaller.marshal(aBean, wOut);
+		CJAXBContextCache.releaseMarshaller(CBean.class, wMarshaller);
+
+		Unmarshaller wUnmarshaller = CJAXBContextCache.takeUnmarshaller(CBean.class);
+		Object wBean = wUnmarshaller.unmarshal(new ByteArrayInputStream(wOut.toByteArray()));
+		CJAXBContextCache.releaseUnmarshaller(CBean.class, wUnmarshaller);
+		return (CBean) wBean;
+	}
+
+	/**
+	 * marshals and unmarshals a bean
+	 */
+	@Test
+	public void test10RoundTrip() throws Exception {
+		String wMethodName = "test10RoundTrip";
+
+		logBegin(this, wMethodName, "Marshal and unmarshal a bean");
+		try {
+
+			CBean wBean = CBean.newBean(1);
+			ByteArrayOutputStream wOut = new ByteArrayOutputStream();
+			Marshaller wMarshaller = CJAXBContextCache.takeMarshaller(CBean.class);
+			wMarshaller.marshal(wBean, wOut);
+			CJAXBContextCache.releaseMarshaller(CBean.class, wMarshaller);
+
+			String wXml = new String(wOut.toByteArray(), StandardCharsets.UTF_8);
+			getLogger().logInfo(this, wMethodName, "xml=[%s]", wXml);
+			// formatted UTF-8
+			Assert.assertTrue(wXml.contains("encoding=\"UTF-8\""));
+			Assert.assertTrue(wXml.contains("\n"));
+			Assert.assertTrue(wXml.contains("<name>bean-1</name>"));
+
+			Assert.assertEquals(wBean, roundTrip(wBean));
+
+			logEndOK(this, wMethodName, "The bean is read back");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * the context is shared, the released marshallers are reused and the pool
+	 * is bounded
+	 */
+	@Test
+	public void test20Pool() throws Exception {
+		String wMethodName = "test20Pool";
+
+		logBegin(this, wMethodName, "Take and release the marshallers");
+		try {
+
+			JAXBContext wContext = CJAXBContextCache.getContext(CBean.class);
+			Assert.assertSame(wContext, CJAXBContextCache.getContext(CBean.class));
+
+			Marshaller wMarshaller = CJAXBContextCache.takeMarshaller(CBean.class);
+			Marshaller wOther = CJAXBContextCache.takeMarshaller(CBean.class);
+			Assert.assertNotSame("A marshaller is used by one caller", wMarshaller, wOther);
+			CJAXBContextCache.releaseMarshaller(CBean.class, wMarshaller);
+			CJAXBContextCache.releaseMarshaller(CBean.class, wOther);
+			Marshaller wReused = CJAXBContextCache.takeMarshaller(CBean.class);
+			Assert.assertTrue(wReused == wMarshaller || wReused == wOther);
+			CJAXBContextCache.releaseMarshaller(CBean.class, wReused);
+
+			Unmarshaller wUnmarshaller = CJAXBContextCache.takeUnmarshaller(CBean.class);
+			CJAXBContextCache.releaseUnmarshaller(CBean.class, wUnmarshaller);
+			Assert.assertSame(wUnmarshaller, CJAXBContextCache.takeUnmarshaller(CBean.class));
+
+			// only MAX_POOLED idle marshallers are kept
+			int wNb = CJAXBContextCache.MAX_POOLED + 4;
+			Marshaller[] wMarshallers = new Marshaller[wNb];
+			for (int i = 0; i < wNb; i++) {
+				wMarshallers[i] = CJAXBContextCache.takeMarshaller(CBean.class);
+			}
+			for (Marshaller wTaken : wMarshallers) {
+				CJAXBContextCache.releaseMarshaller(CBean.class, wTaken);
+			}
+			int wNbReused = 0;
+			for (int i = 0; i < wNb; i++) {
+				Marshaller wTaken = CJAXBContextCache.takeMarshaller(CBean.class);
+				for (Marshaller wReleased : wMarshallers) {
+					if (wTaken == wReleased) {
+						wNbReused++;
+					}
+				}
+			}
+			Assert.assertEquals(CJAXBContextCache.MAX_POOLED, wNbReused);
+
+			logEndOK(this, wMethodName, "The marshallers are pooled");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * compares the round trip with the pooled marshallers and with a context
+	 * created for each message. A plain timing loop: JMH isn't part of the
+	 * build.
+	 */
+	@Test
+	public void test30Benchmark() throws Exception {
+		String wMethodName = "test30Benchmark";
+
+		logBegin(this, wMethodName, "Round trips: new context per message vs pooled marshallers");
+		try {
+
+			CBean wBean = CBean.newBean(3);
+			// warm up
+			for (int i = 0; i < NB_ROUND_TRIPS; i++) {
+				roundTripNewContext(wBean);
+				roundTrip(wBean);
+			}
+
+			long wStart = System.nanoTime();
+			for (int i = 0; i < NB_ROUND_TRIPS; i++) {
+				Assert.assertEquals(wBean, roundTripNewContext(wBean));
+			}
+			long wNewNs = System.nanoTime() - wStart;
+
+			wStart = System.nanoTime();
+			for (int i = 0; i < NB_ROUND_TRIPS; i++) {
+				Assert.assertEquals(wBean, roundTrip(wBean));
+			}
+			long wPooledNs = System.nanoTime() - wStart;
+
+			getLogger().logInfo(this, wMethodName, "RoundTrips=[%d] new context=[%d us/trip] pooled=[%d us/trip]",
+					NB_ROUND_TRIPS, wNewNs / NB_ROUND_TRIPS / 1000, wPooledNs / NB_ROUND_TRIPS / 1000);
+
+			logEndOK(this, wMethodName, "Benchmark done");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * @param aBean
+	 * @return the bean read from its xml with a context created for each
+	 *         message as the handler did before CJAXBContextCache
+	 * @throws Exception
+	 */
+	private CBean roundTripNewContext(final CBean aBean) throws Exception {
+		ByteArrayOutputStream wOut = new ByteArrayOutputStream();
+		Marshaller wMarshaller = JAXBContext.newInstance(CBean.class).createMarshaller();
+		wMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+		wMarshaller.marshal(aBean, wOut);
+		Unmarshaller wUnmarshaller = JAXBContext.newInstance(CBean.class).createUnmarshaller();
+		return (CBean) wUnmarshaller.unmarshal(new ByteArrayInputStream(wOut.toByteArray()));
+	}
+}
@@ -0,0 +1,215 @@
+package test.cohorte.utilities.rest.serializers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Type;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cohorte.utilities.junit.CAbstractJunitTest;
+import org.cohorte.utilities.rest.objects.CCalendar;
+import org.cohorte.utilities.rest.serializers.CJacksonMappers;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.jaxb.JaxbAnnotationIntrospector;
+
+/**
+ * Tests the shared mapper and the cached readers and writers of
+ * CJacksonMappers
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class CJunitTestJacksonMappers extends CAbstractJunitTest {
+
+	private static final int NB_ROUND_TRIPS = 2000;
+
+	/**
+	 *
+	 */
+	@AfterClass
+	public static void destroy() {
+
+		// log the destroy banner containing the report
+		logBannerDestroy(CJunitTestJacksonMappers.class);
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@BeforeClass
+	public static void initialize() throws Exception {
+
+		// initialise the map of the test method of the current junit test class
+		initializeTestsRegistry(CJunitTestJacksonMappers.class);
+
+		// log the initialization banner
+		logBannerInitialization(CJunitTestJacksonMappers.class);
+	}
+
+	/**
+	 * @return a mapper configured for each message as the handler did before
+	 *         CJacksonMappers
+	 */
+	private static ObjectMapper newMapper() {
+		ObjectMapper wMapper = new ObjectMapper();
+		wMapper.setAnnotationIntrospector(new JaxbAnnotationIntrospector(wMapper.getTypeFactory()));
+		wMapper.setDateFormat(new SimpleDateFormat(CCalendar.DATE_FORMAT));
+		wMapper.configure(JsonParser.Feature.ALLOW_SINGLE_QUOTES, true);
+		return wMapper;
+	}
+
+	/**
+	 *
+	 */
+	public CJunitTestJacksonMappers() {
+		super();
+	}
+
+	/**
+	 * @param aBean
+	 * @return the bean read from its json
+	 * @throws Exception
+	 */
+	private CBean roundTrip(final CBean aBean) throws Exception {
+		ByteArrayOutputStream wOut = new ByteArrayOutputStream();
+		CJacksonMappers.getWriter(CBean.class).writeValue(wOut, aBean);
+		return CJacksonMappers.getReader(CBean.class).readValue(new ByteArrayInputStream(wOut.toByteArray()));
+	}
+
+	/**
+	 * writes and reads a bean and a generic list of beans
+	 */
+	@Test
+	public void test10RoundTrip() throws Exception {
+		String wMethodName = "test10RoundTrip";
+
+		logBegin(this, wMethodName, "Write and read a bean");
+		try {
+
+			CBean wBean = CBean.newBean(1);
+			String wJson = CJacksonMappers.getWriter(CBean.class).writeValueAsString(wBean);
+			getLogger().logInfo(this, wMethodName, "json=[%s]", wJson);
+			// the json uses the names of the jaxb annotations and the date
+			// format of CCalendar
+			Assert.assertTrue(wJson.contains("\"name\":\"bean-1\""));
+			Assert.assertTrue(wJson.contains("\"date\":\""));
+			Assert.assertEquals(wBean, roundTrip(wBean));
+
+			// the single quotes are accepted
+			CBean wRead = CJacksonMappers.getReader(CBean.class).readValue(wJson.replace('"', '\''));
+			Assert.assertEquals(wBean, wRead);
+
+			// a generic type
+			List<CBean> wBeans = new ArrayList<CBean>();
+			for (int i = 0; i < 3; i++) {
+				wBeans.add(CBean.newBean(i));
+			}
+			Type wListType = new TypeReference<List<CBean>>() {
+			}.getType();
+			String wJsonList = CJacksonMappers.getMapper().writeValueAsString(wBeans);
+			List<CBean> wReadBeans = CJacksonMappers.getReader(wListType).readValue(wJsonList);
+			Assert.assertEquals(wBeans, wReadBeans);
+
+			logEndOK(this, wMethodName, "The beans are read back");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * the readers and the writers are cached per type, the entity stream isn't
+	 * closed by the writer
+	 */
+	@Test
+	public void test20Cache() throws Exception {
+		String wMethodName = "test20Cache";
+
+		logBegin(this, wMethodName, "Get the readers and the writers twice");
+		try {
+
+			Assert.assertSame(CJacksonMappers.getReader(CBean.class), CJacksonMappers.getReader(CBean.class));
+			Assert.assertSame(CJacksonMappers.getWriter(CBean.class), CJacksonMappers.getWriter(CBean.class));
+			Assert.assertNotSame(CJacksonMappers.getReader(CBean.class), CJacksonMappers.getReader(CCalendar.class));
+
+			final boolean[] wClosed = { false };
+			ByteArrayOutputStream wOut = new ByteArrayOutputStream() {
+				@Override
+				public void close() {
+					wClosed[0] = true;
+				}
+			};
+			CJacksonMappers.getWriter(CBean.class).writeValue(wOut, CBean.newBean(2));
+			Assert.assertFalse("The entity stream belongs to the runtime", wClosed[0]);
+			Assert.assertTrue(wOut.size() > 0);
+
+			logEndOK(this, wMethodName, "The readers and the writers are shared");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * compares the round trip with the shared mapper and with a mapper
+	 * configured for each message. A plain timing loop: JMH isn't part of the
+	 * build.
+	 */
+	@Test
+	public void test30Benchmark() throws Exception {
+		String wMethodName = "test30Benchmark";
+
+		logBegin(this, wMethodName, "Round trips: new mapper per message vs shared mapper");
+		try {
+
+			CBean wBean = CBean.newBean(3);
+			// warm up
+			for (int i = 0; i < NB_ROUND_TRIPS; i++) {
+				ObjectMapper wMapper = newMapper();
+				wMapper.readValue(wMapper.writeValueAsBytes(wBean), CBean.class);
+				roundTrip(wBean);
+			}
+
+			long wStart = System.nanoTime();
+			for (int i = 0; i < NB_ROUND_TRIPS; i++) {
+				ObjectMapper wMapper = newMapper();
+				Assert.assertEquals(wBean, wMapper.readValue(wMapper.writeValueAsBytes(wBean), CBean.class));
+			}
+			long wNewNs = System.nanoTime() - wStart;
+
+			wStart = System.nanoTime();
+			for (int i = 0; i < NB_ROUND_TRIPS; i++) {
+				Assert.assertEquals(wBean, roundTrip(wBean));
+			}
+			long wSharedNs = System.nanoTime() - wStart;
+
+			getLogger().logInfo(this, wMethodName, "RoundTrips=[%d] new mapper=[%d us/trip] shared=[%d us/trip]",
+					NB_ROUND_TRIPS, wNewNs / NB_ROUND_TRIPS / 1000, wSharedNs / NB_ROUND_TRIPS / 1000);
+
+			logEndOK(this, wMethodName, "Benchmark done");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+}
@@ -3,6 +3,8 @@ package org.cohorte.utilities.sql;
 import java.util.Map;
 
 import org.cohorte.utilities.sql.exec.CDBConnectionInfos;
+import org.cohorte.utilities.sql.exec.CDBRequest;
+import org.cohorte.utilities.sql.exec.CDBResultCursor;
 import org.cohorte.utilities.sql.exec.CDBResult;
 
 public interface IDBConnection {
@@ -12,6 +14,17 @@ public interface IDBConnection {
 	 */
 	boolean close();
 
+	/**
+	 * Executes the request. A request having bind values or a batch of rows is
+	 * executed with a prepared statement kept in the statement cache of the
+	 * connection.
+	 *
+	 * @param aDBRequest
+	 * @return
+	 * @throws DBException
+	 */
+	CDBResult execSqlRequest(final CDBRequest aDBRequest) throws DBException;
+
 	/**
 	 * @param aSqlRequest
 	 * @return
@@ -19,6 +32,31 @@ public interface IDBConnection {
 	 */
 	CDBResult execSqlRequest(final String aSqlRequest) throws DBException;
 
+	/**
+	 * Executes the select request in streaming mode with the default fetch
+	 * size
+	 *
+	 * @param aDBRequest
+	 * @return a cursor over the rows which must be closed
+	 * @throws DBException
+	 */
+	CDBResultCursor openSqlCursor(final CDBRequest aDBRequest)
+			throws DBException;
+
+	/**
+	 * Executes the select request in streaming mode: the rows aren't
+	 * materialized, they are fetched by packets of "FetchSize" rows while the
+	 * cursor moves.
+	 *
+	 * @param aDBRequest
+	 * @param aFetchSize
+	 *            the number of rows fetched by packet
+	 * @return a cursor over the rows which must be closed
+	 * @throws DBException
+	 */
+	CDBResultCursor openSqlCursor(final CDBRequest aDBRequest,
+			final int aFetchSize) throws DBException;
+
 	/**
 	 * @param aSqlRequest
 	 * @param aOptions
@@ -64,6 +102,16 @@ public interface IDBConnection {
 	 */
 	boolean isValid();
 
+	/**
+	 * Asks the database if the connection is still alive. The connection is
+	 * invalidated if it isn't.
+	 *
+	 * @param aTimeoutSecs
+	 *            the time to wait for the database
+	 * @return true if the connection is alive
+	 */
+	boolean testValidity(final int aTimeoutSecs);
+
 	/**
 	 * @return true if the connection is opened
 	 * @throws Exception
@@ -79,4 +127,17 @@ public interface IDBConnection {
 	 *
 	 */
 	void setBusyOn();
+
+	/**
+	 * Sets the time of the last use of the connection to now. The unused
+	 * duration is calculated from this time.
+	 */
+	void setLastUseNow();
+
+	/**
+	 * Sets the connection busy if it is free, atomically
+	 *
+	 * @return true if the connection was free and is now busy
+	 */
+	boolean tryBusyOn();
 }
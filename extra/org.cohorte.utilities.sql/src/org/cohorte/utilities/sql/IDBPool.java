@@ -25,4 +25,39 @@ public interface IDBPool extends IDBBase {
 	 */
 	CDBConnectionInfos getDBConnectionInfos();
 
+	/**
+	 * @return the number of checked out connections
+	 */
+	int getNbActiveConnections();
+
+	/**
+	 * @return the number of checkouts which waited for a free connection
+	 */
+	long getNbCheckOutWaits();
+
+	/**
+	 * @return the number of checkouts which failed after waiting the timeout
+	 */
+	long getNbCheckOutTimeouts();
+
+	/**
+	 * @return the number of connections created since the opening of the pool
+	 */
+	long getNbCreatedConnections();
+
+	/**
+	 * @return the number of free connections
+	 */
+	int getNbIdleConnections();
+
+	/**
+	 * @return the cumulated wait duration of the checkouts in milliseconds
+	 */
+	long getCheckOutWaitTime();
+
+	/**
+	 * @return the max wait duration of a checkout in milliseconds
+	 */
+	long getCheckOutWaitTimeMax();
+
 }
@@ -2,7 +2,11 @@ package org.cohorte.utilities.sql.exec;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -24,6 +28,12 @@ import org.psem2m.utilities.logging.IActivityLogger;
  */
 public abstract class CDBConnection implements IDBConnection {
 
+	// the number of rows fetched by packet by a cursor
+	public static final int DEFAULT_FETCH_SIZE = 500;
+
+	// the max number of prepared statements kept by a connection
+	public static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+
 	private static final long DEFAULT_UNUSED_DURATION = 15 * 60 * 1000;
 
 	private static Map<String, String> sReturnGeneratedKeysOption = new HashMap<String, String>();
@@ -47,7 +57,7 @@ public abstract class CDBConnection implements IDBConnection {
 	private final int pIdx;
 	private final AtomicBoolean pIsBusy = new AtomicBoolean(false);
 	private final AtomicBoolean pIsValid = new AtomicBoolean(true);
-	private final long pLastUse = System.currentTimeMillis();
+	private volatile long pLastUse = System.currentTimeMillis();
 	protected final IActivityLogger pLogger;
 
 	/**
@@ -56,6 +66,9 @@ public abstract class CDBConnection implements IDBConnection {
 	 */
 	private final long pMaxUnusedDuration;
 
+	private final CDBStatementCache pStatementCache = new CDBStatementCache(
+			DEFAULT_STATEMENT_CACHE_SIZE);
+
 	/**
 	 * @param aDBConnectionInfos
 	 */
@@ -77,6 +90,7 @@ public abstract class CDBConnection implements IDBConnection {
 	@Override
 	public boolean close() {
 		if (pDbConnection != null) {
+			pStatementCache.clear();
 			try {
 				if (!pDbConnection.isClosed()) {
 					pDbConnection.close();
@@ -118,7 +132,21 @@ public abstract class CDBConnection implements IDBConnection {
 			pLogger.logWarn(this, "execSqlRequest", "No SqlRequest available");
 		}
 
-		CDBRequest wDBRequest = new CDBRequest(aSqlRequest, aOptions);
+		return execSqlRequest(new CDBRequest(aSqlRequest, aOptions));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.cohorte.utilities.sql.IDBConnection#execSqlRequest(org.cohorte.utilities
+	 * .sql.exec.CDBRequest)
+	 */
+	@Override
+	public CDBResult execSqlRequest(final CDBRequest aDBRequest)
+			throws DBException {
+
+		CDBRequest wDBRequest = aDBRequest;
 		CDBResult wDBResult = new CDBResult(wDBRequest);
 
 		java.sql.Statement wStatement = null;
@@ -129,6 +157,11 @@ public abstract class CDBConnection implements IDBConnection {
 						"execSqlRequest: The database connection isn't opened. Look at the logged exception in the server log file. Verify the connections parameters.");
 			}
 
+			// the requests with bind values use the cached prepared statements
+			if (wDBRequest.isPrepared()) {
+				return execSqlRequestPrepared(wDBRequest, wDBResult);
+			}
+
 			wStatement = pDbConnection.createStatement();
 
 			// If STATEMENT is SELECT
@@ -221,38 +254,7 @@ public abstract class CDBConnection implements IDBConnection {
 
 			// if the generated keys (eg. autoindent) must be returned
 			if (aDBRequest.mustReturnGeneratedKeys()) {
-				java.sql.ResultSet wResultSet = null;
-				try {
-					/*
-					 * Retrieves any auto-generated keys created as a result of
-					 * executing this Statement object. If this Statement object
-					 * did not generate any keys, an empty ResultSet object is
-					 * returned.
-					 */
-					wResultSet = wStatement.getGeneratedKeys();
-
-					List<String> wKeys = aDBResult.newGeneratedKeysList();
-					while (wResultSet.next()) {
-						wKeys.add(String.valueOf(wResultSet.getLong(1)));
-					}
-					if (wKeys.size() == 0) {
-						aDBResult
-								.setMessageKO("Inserting failed, no generated key obtained.");
-					}
-				} finally {
-					if (wResultSet != null) {
-						try {
-							// Releases this ResultSet object's database and
-							// JDBC resources immediately.
-							wResultSet.close();
-						} catch (SQLException e) {
-							if (pLogger.isLoggable(Level.FINEST)) {
-								pLogger.logSevere(this, "execSqlRequestInsert",
-										"ERROR:%s", e);
-							}
-						}
-					}
-				}
+				putGeneratedKeysInDBResult(wStatement, aDBResult);
 			}
 		}
 		aDBResult.setDuration(wTimer);
@@ -302,6 +304,179 @@ public abstract class CDBConnection implements IDBConnection {
 		return aDBResult;
 	}
 
+	/**
+	 * Executes the request with a cached prepared statement. The bind values
+	 * are bound to the '?' of the query. The rows of a batch request are
+	 * executed with a single executeBatch().
+	 * 
+	 * @param aDBRequest
+	 * @param aDBResult
+	 * @return
+	 * @throws Exception
+	 */
+	private CDBResult execSqlRequestPrepared(final CDBRequest aDBRequest,
+			final CDBResult aDBResult) throws Exception {
+
+		CXTimer wTimer = CXTimer.newStartedTimer();
+
+		boolean wReturnKeys = aDBRequest.mustReturnGeneratedKeys();
+		PreparedStatement wStatement = pStatementCache.prepare(pDbConnection,
+				aDBRequest.getSqlQuery(), wReturnKeys);
+		java.sql.ResultSet wResultSet = null;
+		try {
+			if (aDBRequest.isBatch()) {
+				for (List<Object> wValues : aDBRequest.getBatchValues()) {
+					bindValues(wStatement, wValues);
+					wStatement.addBatch();
+				}
+				aDBResult.setDataManipulationCount(sumBatchCounts(wStatement
+						.executeBatch()));
+				if (wReturnKeys) {
+					putGeneratedKeysInDBResult(wStatement, aDBResult);
+				}
+			} else {
+				bindValues(wStatement, aDBRequest.getBindValues());
+
+				if (aDBRequest.isSelect()) {
+					wResultSet = wStatement.executeQuery();
+					putResultSetInDBResult(wResultSet, aDBResult);
+
+				} else if (aDBRequest.isInsert()) {
+					int wDataManipulationCount = wStatement.executeUpdate();
+					if (wDataManipulationCount == 0) {
+						aDBResult
+								.setMessageKO(
+										"Inserting failed, no rows affected. (execSql : [%s])",
+										aDBRequest.getSqlQuery());
+					} else {
+						aDBResult
+								.setDataManipulationCount(wDataManipulationCount);
+						if (wReturnKeys) {
+							putGeneratedKeysInDBResult(wStatement, aDBResult);
+						}
+					}
+				} else if (wStatement.execute()) {
+					wResultSet = wStatement.getResultSet();
+					putResultSetInDBResult(wResultSet, aDBResult);
+				} else {
+					aDBResult.setDataManipulationCount(wStatement
+							.getUpdateCount());
+				}
+			}
+		} catch (SQLException e) {
+			// the statement may be unusable
+			pStatementCache.evict(aDBRequest.getSqlQuery(), wReturnKeys);
+			throw e;
+		} finally {
+			if (wResultSet != null) {
+				try {
+					// Releases this ResultSet object's database and
+					// JDBC resources immediately.
+					wResultSet.close();
+				} catch (SQLException e) {
+					if (pLogger.isLoggable(Level.FINEST)) {
+						pLogger.logSevere(this, "execSqlRequestPrepared",
+								"ERROR:%s", e);
+					}
+				}
+			}
+			// the cached statement is reused: release the bound values
+			try {
+				wStatement.clearParameters();
+				if (aDBRequest.isBatch()) {
+					wStatement.clearBatch();
+				}
+			} catch (SQLException e) {
+				pStatementCache.evict(aDBRequest.getSqlQuery(), wReturnKeys);
+			}
+		}
+		aDBResult.setDuration(wTimer);
+		return aDBResult;
+	}
+
+	/**
+	 * @param aFetchSize
+	 *            the wanted number of rows fetched by packet
+	 * @return the fetch size given to the driver to stream the rows
+	 */
+	protected int getStreamingFetchSize(final int aFetchSize) {
+		return aFetchSize;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.cohorte.utilities.sql.IDBConnection#openSqlCursor(org.cohorte.utilities
+	 * .sql.exec.CDBRequest)
+	 */
+	@Override
+	public CDBResultCursor openSqlCursor(final CDBRequest aDBRequest)
+			throws DBException {
+		return openSqlCursor(aDBRequest, DEFAULT_FETCH_SIZE);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.cohorte.utilities.sql.IDBConnection#openSqlCursor(org.cohorte.utilities
+	 * .sql.exec.CDBRequest, int)
+	 */
+	@Override
+	public CDBResultCursor openSqlCursor(final CDBRequest aDBRequest,
+			final int aFetchSize) throws DBException {
+
+		if (!isOpened()) {
+			throw new DBException(
+					"openSqlCursor: The database connection isn't opened. Look at the logged exception in the server log file. Verify the connections parameters.");
+		}
+		if (!aDBRequest.isSelect()) {
+			throw new DBException(String.format(
+					"openSqlCursor: The request isn't a select. (execSql : [%s])",
+					aDBRequest.getSqlQuery()));
+		}
+
+		CXTimer wTimer = CXTimer.newStartedTimer();
+
+		// the statement isn't cached: it's owned by the cursor until its
+		// closing
+		java.sql.Statement wStatement = null;
+		try {
+			java.sql.ResultSet wResultSet;
+			if (aDBRequest.hasBindValues()) {
+				PreparedStatement wPrepared = pDbConnection.prepareStatement(
+						aDBRequest.getSqlQuery(),
+						java.sql.ResultSet.TYPE_FORWARD_ONLY,
+						java.sql.ResultSet.CONCUR_READ_ONLY);
+				wStatement = wPrepared;
+				wPrepared.setFetchSize(getStreamingFetchSize(aFetchSize));
+				bindValues(wPrepared, aDBRequest.getBindValues());
+				wResultSet = wPrepared.executeQuery();
+			} else {
+				wStatement = pDbConnection.createStatement(
+						java.sql.ResultSet.TYPE_FORWARD_ONLY,
+						java.sql.ResultSet.CONCUR_READ_ONLY);
+				wStatement.setFetchSize(getStreamingFetchSize(aFetchSize));
+				wResultSet = wStatement.executeQuery(aDBRequest.getSqlQuery());
+			}
+			return new CDBResultCursor(aDBRequest, wStatement, wResultSet,
+					wTimer);
+
+		} catch (SQLException e) {
+			if (wStatement != null) {
+				try {
+					wStatement.close();
+				} catch (SQLException e1) {
+					// nothing to do: the request failed
+				}
+			}
+			throw new DBException(String.format(
+					"jdbcConnector error (execSql : [%s]) : %s",
+					aDBRequest.getSqlQuery(), e.getMessage()), e);
+		}
+	}
+
 	/**
 	 * @param aDBRequest
 	 * @param wStatement
@@ -339,11 +514,83 @@ public abstract class CDBConnection implements IDBConnection {
 		return aDBResult;
 	}
 
+	/**
+	 * @param aStatement
+	 * @param aValues
+	 *            the values bound to the '?' of the query
+	 * @throws SQLException
+	 */
+	private void bindValues(final PreparedStatement aStatement,
+			final List<Object> aValues) throws SQLException {
+
+		ParameterMetaData wMetaData = null;
+		int wIdx = 1;
+		for (Object wValue : aValues) {
+			if (wValue == null) {
+				// Types.NULL is rejected by Oracle, DB2 and the old SQL Server
+				// drivers: the type of the parameter is asked to the driver
+				if (wMetaData == null) {
+					wMetaData = getParameterMetaData(aStatement);
+				}
+				aStatement.setNull(wIdx, getParameterType(wMetaData, wIdx));
+			}
+			// a java.util.Date isn't a jdbc type
+			else if (wValue.getClass() == java.util.Date.class) {
+				aStatement.setTimestamp(wIdx, new Timestamp(
+						((java.util.Date) wValue).getTime()));
+			} else {
+				aStatement.setObject(wIdx, wValue);
+			}
+			wIdx++;
+		}
+	}
+
 	/**
 	 * @return
 	 */
 	public abstract String getClassName();
 
+	/**
+	 * @param aStatement
+	 * @return the meta data of the parameters of the statement or null if the
+	 *         driver doesn't support it
+	 */
+	private ParameterMetaData getParameterMetaData(
+			final PreparedStatement aStatement) {
+		try {
+			return aStatement.getParameterMetaData();
+		} catch (SQLException | RuntimeException e) {
+			if (pLogger.isLoggable(Level.FINE)) {
+				pLogger.logDebug(this, "getParameterMetaData", "ERROR:%s", e);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * @param aMetaData
+	 *            the meta data of the parameters of the statement or null
+	 * @param aIdx
+	 * @return the jdbc type of the parameter or Types.VARCHAR if the driver
+	 *         doesn't know it
+	 */
+	private int getParameterType(final ParameterMetaData aMetaData,
+			final int aIdx) {
+		if (aMetaData != null) {
+			try {
+				int wType = aMetaData.getParameterType(aIdx);
+				if (wType != Types.NULL && wType != Types.OTHER) {
+					return wType;
+				}
+			} catch (SQLException | RuntimeException e) {
+				if (pLogger.isLoggable(Level.FINE)) {
+					pLogger.logDebug(this, "getParameterType", "ERROR:%s", e);
+				}
+			}
+		}
+		return Types.VARCHAR;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -393,6 +640,28 @@ public abstract class CDBConnection implements IDBConnection {
 	 * @see fr.agilium.ng.commons.sql.IBdConnection#isUnusedTooLoong()
 	 */
 
+	/**
+	 * @return the number of cached prepared statements
+	 */
+	public int getNbCachedStatements() {
+		return pStatementCache.size();
+	}
+
+	/**
+	 * @return the number of prepared requests which found their statement in
+	 *         the cache
+	 */
+	public long getNbStatementCacheHits() {
+		return pStatementCache.getNbHits();
+	}
+
+	/**
+	 * @return the number of prepared requests which prepared a new statement
+	 */
+	public long getNbStatementCacheMisses() {
+		return pStatementCache.getNbMisses();
+	}
+
 	/**
 	 * @return
 	 */
@@ -434,7 +703,7 @@ public abstract class CDBConnection implements IDBConnection {
 	 * @see fr.agilium.ng.commons.sql.IBdConnection#isBusy()
 	 */
 	@Override
-	public synchronized boolean isBusy() {
+	public boolean isBusy() {
 		return pIsBusy.get();
 
 	}
@@ -498,6 +767,47 @@ public abstract class CDBConnection implements IDBConnection {
 		}
 	}
 
+	/**
+	 * Retrieves any auto-generated keys created as a result of executing the
+	 * statement. If the statement did not generate any keys, an empty
+	 * ResultSet object is returned.
+	 * 
+	 * @param aStatement
+	 * @param aDBResult
+	 * @throws SQLException
+	 */
+	private void putGeneratedKeysInDBResult(
+			final java.sql.Statement aStatement, final CDBResult aDBResult)
+			throws SQLException {
+
+		java.sql.ResultSet wResultSet = null;
+		try {
+			wResultSet = aStatement.getGeneratedKeys();
+
+			List<String> wKeys = aDBResult.newGeneratedKeysList();
+			while (wResultSet.next()) {
+				wKeys.add(String.valueOf(wResultSet.getLong(1)));
+			}
+			if (wKeys.size() == 0) {
+				aDBResult
+						.setMessageKO("Inserting failed, no generated key obtained.");
+			}
+		} finally {
+			if (wResultSet != null) {
+				try {
+					// Releases this ResultSet object's database and
+					// JDBC resources immediately.
+					wResultSet.close();
+				} catch (SQLException e) {
+					if (pLogger.isLoggable(Level.FINEST)) {
+						pLogger.logSevere(this, "putGeneratedKeysInDBResult",
+								"ERROR:%s", e);
+					}
+				}
+			}
+		}
+	}
+
 	/**
 	 * @param aResultSet
 	 * @param aDBResult
@@ -529,7 +839,7 @@ public abstract class CDBConnection implements IDBConnection {
 	/**
 	 * @param aIsBusy
 	 */
-	private synchronized void setBusy(final boolean aIsBusy) {
+	private void setBusy(final boolean aIsBusy) {
 		pIsBusy.set(aIsBusy);
 	}
 
@@ -541,6 +851,16 @@ public abstract class CDBConnection implements IDBConnection {
 		setBusy(false);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.cohorte.utilities.sql.IDBConnection#setLastUseNow()
+	 */
+	@Override
+	public void setLastUseNow() {
+		pLastUse = System.currentTimeMillis();
+	}
+
 	/**
 	 *
 	 */
@@ -549,6 +869,24 @@ public abstract class CDBConnection implements IDBConnection {
 		setBusy(true);
 	}
 
+	/**
+	 * @param aCounts
+	 *            the update counts returned by executeBatch()
+	 * @return the total number of rows affected by the batch. A command
+	 *         executed without information counts for one row.
+	 */
+	private int sumBatchCounts(final int[] aCounts) {
+		int wTotal = 0;
+		for (int wCount : aCounts) {
+			if (wCount > 0) {
+				wTotal += wCount;
+			} else if (wCount == java.sql.Statement.SUCCESS_NO_INFO) {
+				wTotal++;
+			}
+		}
+		return wTotal;
+	}
+
 	/**
 	 * @param aClassName
 	 * @return
@@ -573,6 +911,43 @@ public abstract class CDBConnection implements IDBConnection {
 	 */
 	public abstract boolean testDriver() throws Exception;
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.cohorte.utilities.sql.IDBConnection#testValidity(int)
+	 */
+	@Override
+	public boolean testValidity(final int aTimeoutSecs) {
+		boolean wAlive = false;
+		try {
+			wAlive = pDbConnection != null
+					&& pDbConnection.isValid(aTimeoutSecs);
+		} catch (SQLException | AbstractMethodError e) {
+			// the driver doesn't implement isValid(): rely on isClosed()
+			try {
+				wAlive = pDbConnection != null && !pDbConnection.isClosed();
+			} catch (SQLException e2) {
+				wAlive = false;
+			}
+		}
+		if (!wAlive) {
+			pLogger.logInfo(this, "testValidity",
+					"Connection [%d] no longer alive => invalidated", getIdx());
+			invalidate();
+		}
+		return wAlive;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.cohorte.utilities.sql.IDBConnection#tryBusyOn()
+	 */
+	@Override
+	public boolean tryBusyOn() {
+		return pIsBusy.compareAndSet(false, true);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -49,6 +49,20 @@ public class CDBConnectionMySql extends CDBConnection {
 		return DRIVER_CLASS_NAME;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 *
+	 * The mysql driver reads all the rows of a result set in memory unless the
+	 * fetch size is Integer.MIN_VALUE: the rows are then streamed one by one.
+	 *
+	 * @see
+	 * org.cohorte.utilities.sql.exec.CDBConnection#getStreamingFetchSize(int)
+	 */
+	@Override
+	protected int getStreamingFetchSize(final int aFetchSize) {
+		return Integer.MIN_VALUE;
+	}
+
 	/**
 	 * @return
 	 * @throws Exception
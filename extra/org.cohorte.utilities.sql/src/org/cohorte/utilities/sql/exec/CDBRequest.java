@@ -1,6 +1,10 @@
 package org.cohorte.utilities.sql.exec;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.cohorte.utilities.sql.DBException;
@@ -19,6 +23,12 @@ public class CDBRequest {
 	// to keep compliance with AgiliumV3 parametrization
 	public final static String PARAMS_SEPARATOR = "|#|";
 
+	/** the rows of bind values of a batch request **/
+	private List<List<Object>> pBatchValues = null;
+
+	/** the values bound to the '?' of the query **/
+	private final List<Object> pBindValues = new ArrayList<Object>();
+
 	private final boolean pIsCount;
 	private final boolean pIsDelete;
 	private final boolean pIsInsert;
@@ -86,6 +96,33 @@ public class CDBRequest {
 				&& wStr.contains(EManipulationStatement.COUNT.name());
 	}
 
+	/**
+	 * Adds a row of values to the batch of the request. Each row is bound to
+	 * the '?' of the query and the rows are executed with a single
+	 * executeBatch().
+	 *
+	 * @param aValues
+	 *            the values of one execution of the query
+	 * @return the request
+	 */
+	public CDBRequest addBatch(final Object... aValues) {
+		if (pBatchValues == null) {
+			pBatchValues = new ArrayList<List<Object>>();
+		}
+		pBatchValues.add(Arrays.asList(aValues));
+		return this;
+	}
+
+	/**
+	 * @param aValue
+	 *            the value bound to the next '?' of the query
+	 * @return the request
+	 */
+	public CDBRequest addBindValue(final Object aValue) {
+		pBindValues.add(aValue);
+		return this;
+	}
+
 	/**
 	 * eg.
 	 *
@@ -137,6 +174,22 @@ public class CDBRequest {
 		return wSB.toString();
 	}
 
+	/**
+	 * @return the rows of bind values of the batch
+	 */
+	public List<List<Object>> getBatchValues() {
+		return (pBatchValues != null) ? Collections
+				.unmodifiableList(pBatchValues) : Collections
+				.<List<Object>> emptyList();
+	}
+
+	/**
+	 * @return the values bound to the '?' of the query
+	 */
+	public List<Object> getBindValues() {
+		return Collections.unmodifiableList(pBindValues);
+	}
+
 	/**
 	 * @return
 	 */
@@ -144,6 +197,13 @@ public class CDBRequest {
 		return pSqlQuery;
 	}
 
+	/**
+	 * @return true if values are bound to the query
+	 */
+	public boolean hasBindValues() {
+		return pBindValues.size() > 0;
+	}
+
 	/**
 	 * @return
 	 */
@@ -165,6 +225,13 @@ public class CDBRequest {
 		return Boolean.parseBoolean(pParameters.get(aParameterName));
 	}
 
+	/**
+	 * @return true if the request contains a batch of rows of bind values
+	 */
+	public boolean isBatch() {
+		return pBatchValues != null && pBatchValues.size() > 0;
+	}
+
 	/**
 	 *
 	 * @return
@@ -194,10 +261,28 @@ public class CDBRequest {
 		return pIsSelect;
 	}
 
+	/**
+	 * @return true if the request must be executed with a PreparedStatement
+	 */
+	public boolean isPrepared() {
+		return hasBindValues() || isBatch();
+	}
+
 	/**
 	 * @return
 	 */
 	public boolean mustReturnGeneratedKeys() {
 		return hasParameterTrue(PARAMS_RETURN_GENERATED_KEYS);
 	}
+
+	/**
+	 * @param aValues
+	 *            the values bound to the '?' of the query
+	 * @return the request
+	 */
+	public CDBRequest setBindValues(final Object... aValues) {
+		pBindValues.clear();
+		pBindValues.addAll(Arrays.asList(aValues));
+		return this;
+	}
 }
@@ -1,6 +1,9 @@
 package org.cohorte.utilities.sql.exec;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.psem2m.utilities.CXStringUtils;
@@ -42,6 +45,14 @@ import org.psem2m.utilities.logging.IActivityLogger;
  * ;
  * </pre>
  *
+ * A parameterized request is built using bind variables (eg. #{name} ). Each
+ * bind variable is replaced by a '?' and its value is bound to the prepared
+ * statement of the request. A part containing a bind variable without value
+ * is invalid as a part containing a variable which isn't replaced.
+ *
+ * eg: the part "WHERE `Name` LIKE #{like}" and the values {"like=Par%"} give
+ * the part "WHERE `Name` LIKE ?" and the bind values ["Par%"].
+ *
  *
  * @author ogattaz
  *
@@ -55,6 +66,10 @@ public class CDBRequestBuilder {
 
 	private final String pRequestModel;
 
+	// detect bind variable using the format : "#{xxx}"
+	private final Pattern sPatternBindVariable = Pattern
+			.compile("#\\{(.+?)\\}");
+
 	// detect variable using the format : "${xxx}"
 	private final Pattern sPatternHasVarible = Pattern
 			.compile("\\$\\{(.+?)\\}");
@@ -70,6 +85,94 @@ public class CDBRequestBuilder {
 		pRequestModel = aRequestModel;
 	}
 
+	/**
+	 * @param aBindValues
+	 *            the values of the bind variables
+	 * @return the parameterized request
+	 * @throws Exception
+	 */
+	public CDBRequest getParameterizedRequest(
+			final Map<String, ?> aBindValues) throws Exception {
+
+		return getParameterizedRequest(null, aBindValues, ALL_OPTIONAL);
+	}
+
+	/**
+	 * @param aReplacements
+	 *            the values of the variables replaced in the text of the
+	 *            request. Could be null.
+	 * @param aBindValues
+	 *            the values of the bind variables
+	 * @param aReplacementOptions
+	 * @return the parameterized request
+	 * @throws Exception
+	 */
+	public CDBRequest getParameterizedRequest(
+			final Map<String, String> aReplacements,
+			final Map<String, ?> aBindValues, final int aReplacementOptions)
+			throws Exception {
+
+		final StringBuilder wSB = new StringBuilder();
+		final List<Object> wValues = new ArrayList<Object>();
+		final List<Object> wPartValues = new ArrayList<Object>();
+
+		final String[] wParts = pRequestModel.split("\\n");
+
+		for (String wPart : wParts) {
+
+			if (wPart != null && !wPart.isEmpty()
+					&& !wPart.trim().startsWith("--")) {
+
+				if (aReplacements != null
+						&& sPatternHasVarible.matcher(wPart).find()) {
+					wPart = CXStringUtils
+							.replaceVariables(wPart, aReplacements);
+				}
+				boolean wPartValid = !sPatternHasVarible.matcher(wPart).find();
+
+				// replaces the bind variables by '?' and collects their values
+				wPartValues.clear();
+				final Matcher wMatcher = sPatternBindVariable.matcher(wPart);
+				if (wPartValid && wMatcher.find()) {
+					final StringBuffer wPartSB = new StringBuffer();
+					do {
+						final String wName = wMatcher.group(1);
+						if (aBindValues == null
+								|| !aBindValues.containsKey(wName)) {
+							wPartValid = false;
+							break;
+						}
+						wPartValues.add(aBindValues.get(wName));
+						wMatcher.appendReplacement(wPartSB, "?");
+					} while (wMatcher.find());
+					if (wPartValid) {
+						wMatcher.appendTail(wPartSB);
+						wPart = wPartSB.toString();
+					}
+				}
+
+				if (!wPartValid && pLogger != null) {
+					pLogger.logDebug(this, "getParameterizedRequest",
+							"part not valid : [%s]", wPart);
+				}
+
+				// if the part is valid !
+				if (wPartValid) {
+					wSB.append('\n').append(wPart);
+					wValues.addAll(wPartValues);
+				}
+				// else if the part is not valid
+				else if ((aReplacementOptions & ALL_MANDATORY) > 0) {
+					throw new Exception(String.format(
+							"Unable to replace variable(s) in the part [%s] ",
+							wPart));
+				}
+			}
+		}
+		return new CDBRequest(wSB.toString()).setBindValues(wValues
+				.toArray());
+	}
+
 	/**
 	 * @return the request
 	 * @throws Exception
@@ -0,0 +1,514 @@
+package org.cohorte.utilities.sql.exec;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+
+import org.cohorte.utilities.sql.DBException;
+import org.psem2m.utilities.CXException;
+import org.psem2m.utilities.CXTimer;
+import org.psem2m.utilities.json.JSONObject;
+
+/**
+ * A forward only cursor over the rows of a select request executed in
+ * streaming mode.
+ *
+ * The rows aren't materialized in a CDBResult: the driver fetches them by
+ * packets of "FetchSize" rows and the values are read with their jdbc type.
+ * The json and xml writers write each row in the given writer as soon as it
+ * is fetched, so the memory used stays bounded by the fetch size. The status,
+ * the duration and the select count are written after the rows.
+ *
+ * The cursor owns the statement and the result set of the request. It must be
+ * closed before the connection is checked in the pool.
+ *
+ * <pre>
+ * CDBResultCursor wCursor = wConnection.openSqlCursor(wRequest, 500);
+ * try {
+ * 	while (wCursor.next()) {
+ * 		long wId = wCursor.getLong(1);
+ * 		String wName = wCursor.getString(2);
+ * 	}
+ * } finally {
+ * 	wCursor.close();
+ * }
+ * </pre>
+ */
+public class CDBResultCursor implements Closeable {
+
+	private static final String KO = "KO";
+
+	private static final String OK = "OK";
+
+	private boolean pClosed = false;
+
+	private final String[] pColumnLabels;
+
+	private final int[] pColumnTypes;
+
+	private final CDBRequest pDBQuery;
+
+	private final ResultSet pResultSet;
+
+	private int pRowCount = 0;
+
+	private final Statement pStatement;
+
+	private final CXTimer pTimer;
+
+	/**
+	 * @param aDBQuery
+	 * @param aStatement
+	 *            the statement owned by the cursor
+	 * @param aResultSet
+	 * @param aTimer
+	 *            the timer started before the execution of the request
+	 * @throws SQLException
+	 */
+	CDBResultCursor(final CDBRequest aDBQuery, final Statement aStatement,
+			final ResultSet aResultSet, final CXTimer aTimer)
+			throws SQLException {
+		super();
+		pDBQuery = aDBQuery;
+		pStatement = aStatement;
+		pResultSet = aResultSet;
+		pTimer = aTimer;
+
+		final ResultSetMetaData wMetaData = aResultSet.getMetaData();
+		final int wNbColums = wMetaData.getColumnCount();
+		pColumnLabels = new String[wNbColums];
+		pColumnTypes = new int[wNbColums];
+		for (int i = 1; i <= wNbColums; i++) {
+			pColumnLabels[i - 1] = wMetaData.getColumnLabel(i);
+			pColumnTypes[i - 1] = wMetaData.getColumnType(i);
+		}
+	}
+
+	/**
+	 * closes the result set and the statement of the cursor
+	 */
+	@Override
+	public void close() {
+		if (pClosed) {
+			return;
+		}
+		pClosed = true;
+		try {
+			pResultSet.close();
+		} catch (final SQLException e) {
+			// nothing to do: the rows are no longer read
+		}
+		try {
+			pStatement.close();
+		} catch (final SQLException e) {
+			// nothing to do: the statement is no longer used
+		}
+	}
+
+	/**
+	 * @param aIdx
+	 *            the index of the column, starting at 1
+	 * @return
+	 * @throws DBException
+	 */
+	public BigDecimal getBigDecimal(final int aIdx) throws DBException {
+		try {
+			return pResultSet.getBigDecimal(aIdx);
+		} catch (final SQLException e) {
+			throw newColumnException(aIdx, e);
+		}
+	}
+
+	/**
+	 * @param aIdx
+	 *            the index of the column, starting at 1
+	 * @return
+	 * @throws DBException
+	 */
+	public byte[] getBytes(final int aIdx) throws DBException {
+		try {
+			return pResultSet.getBytes(aIdx);
+		} catch (final SQLException e) {
+			throw newColumnException(aIdx, e);
+		}
+	}
+
+	/**
+	 * @return the number of columns of the rows
+	 */
+	public int getColumnCount() {
+		return pColumnLabels.length;
+	}
+
+	/**
+	 * @param aLabel
+	 * @return the index of the column, starting at 1, or -1 if the label is
+	 *         unknown
+	 */
+	public int getColumnIdx(final String aLabel) {
+		for (int i = 0; i < pColumnLabels.length; i++) {
+			if (pColumnLabels[i].equalsIgnoreCase(aLabel)) {
+				return i + 1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param aIdx
+	 *            the index of the column, starting at 1
+	 * @return
+	 */
+	public String getColumnLabel(final int aIdx) {
+		return pColumnLabels[aIdx - 1];
+	}
+
+	/**
+	 * @param aIdx
+	 *            the index of the column, starting at 1
+	 * @return the jdbc type of the column (see java.sql.Types)
+	 */
+	public int getColumnType(final int aIdx) {
+		return pColumnTypes[aIdx - 1];
+	}
+
+	/**
+	 * @return
+	 */
+	public CDBRequest getDBQuery() {
+		return pDBQuery;
+	}
+
+	/**
+	 * @param aIdx
+	 *            the index of the column, starting at 1
+	 * @return the value or 0 if the value is SQL NULL (see wasNull())
+	 * @throws DBException
+	 */
+	public double getDouble(final int aIdx) throws DBException {
+		try {
+			return pResultSet.getDouble(aIdx);
+		} catch (final SQLException e) {
+			throw newColumnException(aIdx, e);
+		}
+	}
+
+	/**
+	 * @return the duration since the execution of the request
+	 */
+	public String getDuration() {
+		return pTimer.getDurationStrMicroSec();
+	}
+
+	/**
+	 * @param aIdx
+	 *            the index of the column, starting at 1
+	 * @return the value or 0 if the value is SQL NULL (see wasNull())
+	 * @throws DBException
+	 */
+	public int getInt(final int aIdx) throws DBException {
+		try {
+			return pResultSet.getInt(aIdx);
+		} catch (final SQLException e) {
+			throw newColumnException(aIdx, e);
+		}
+	}
+
+	/**
+	 * @param aIdx
+	 *            the index of the column, starting at 1
+	 * @return the value or 0 if the value is SQL NULL (see wasNull())
+	 * @throws DBException
+	 */
+	public long getLong(final int aIdx) throws DBException {
+		try {
+			return pResultSet.getLong(aIdx);
+		} catch (final SQLException e) {
+			throw newColumnException(aIdx, e);
+		}
+	}
+
+	/**
+	 * @param aIdx
+	 *            the index of the column, starting at 1
+	 * @return the value with its default java type or null
+	 * @throws DBException
+	 */
+	public Object getObject(final int aIdx) throws DBException {
+		try {
+			return pResultSet.getObject(aIdx);
+		} catch (final SQLException e) {
+			throw newColumnException(aIdx, e);
+		}
+	}
+
+	/**
+	 * @return the number of rows read
+	 */
+	public int getRowCount() {
+		return pRowCount;
+	}
+
+	/**
+	 * @param aIdx
+	 *            the index of the column, starting at 1
+	 * @return
+	 * @throws DBException
+	 */
+	public String getString(final int aIdx) throws DBException {
+		try {
+			return pResultSet.getString(aIdx);
+		} catch (final SQLException e) {
+			throw newColumnException(aIdx, e);
+		}
+	}
+
+	/**
+	 * @param aIdx
+	 *            the index of the column, starting at 1
+	 * @return
+	 * @throws DBException
+	 */
+	public Timestamp getTimestamp(final int aIdx) throws DBException {
+		try {
+			return pResultSet.getTimestamp(aIdx);
+		} catch (final SQLException e) {
+			throw newColumnException(aIdx, e);
+		}
+	}
+
+	/**
+	 * @return true if the cursor is closed
+	 */
+	public boolean isClosed() {
+		return pClosed;
+	}
+
+	/**
+	 * @param aIdx
+	 * @param aCause
+	 * @return
+	 */
+	private DBException newColumnException(final int aIdx,
+			final SQLException aCause) {
+		return new DBException(String.format(
+				"Unable to read the column [%d] of the row [%d]", aIdx,
+				pRowCount), aCause);
+	}
+
+	/**
+	 * @param aCause
+	 * @return the message of a failed fetch formatted as by CDBConnection
+	 */
+	private String newMessageKO(final Exception aCause) {
+		return String.format("jdbcConnector error (execSql : [%s]) : %s",
+				pDBQuery.getSqlQuery(),
+				CXException.eCauseMessagesInString(aCause));
+	}
+
+	/**
+	 * Moves the cursor to the next row. The cursor is closed when the last row
+	 * is passed.
+	 *
+	 * @return false if there is no more row
+	 * @throws DBException
+	 */
+	public boolean next() throws DBException {
+		if (pClosed) {
+			return false;
+		}
+		try {
+			if (pResultSet.next()) {
+				pRowCount++;
+				return true;
+			}
+		} catch (final SQLException e) {
+			close();
+			throw new DBException(String.format(
+					"Unable to fetch the row [%d]", pRowCount + 1), e);
+		}
+		close();
+		return false;
+	}
+
+	/**
+	 * @return true if the last read value was SQL NULL
+	 * @throws DBException
+	 */
+	public boolean wasNull() throws DBException {
+		try {
+			return pResultSet.wasNull();
+		} catch (final SQLException e) {
+			throw new DBException("Unable to test the last read value", e);
+		}
+	}
+
+	/**
+	 * Writes the remaining rows in UTF-8
+	 *
+	 * @param aOutputStream
+	 * @return the number of written rows
+	 * @throws IOException
+	 * @see #writeJson(Writer)
+	 */
+	public int writeJson(final OutputStream aOutputStream) throws IOException {
+		final Writer wWriter = new BufferedWriter(new OutputStreamWriter(
+				aOutputStream, StandardCharsets.UTF_8));
+		final int wNbRows = writeJson(wWriter);
+		wWriter.flush();
+		return wNbRows;
+	}
+
+	/**
+	 * Writes the remaining rows with the keys of CDBResult.toJson() including
+	 * the DATA part: the values are strings and the null values are omitted.
+	 * Each row is written as soon as it is fetched, the status, the duration
+	 * and the select count follow the values.
+	 *
+	 * <pre>
+	 * {"values":[{"ID":"1","Name":"Kabul"},...],"status":"OK","queryduration":"12,345","selectcount":2}
+	 * </pre>
+	 *
+	 * If the fetch of a row fails, the status is "KO", the "values" contain
+	 * the rows fetched before the failure and the "jdbcmessage" is written.
+	 *
+	 * @param aWriter
+	 * @return the number of fetched rows
+	 * @throws IOException
+	 */
+	public int writeJson(final Writer aWriter) throws IOException {
+		final int wFirstRow = pRowCount;
+		String wMessageKO = null;
+		aWriter.write('{');
+		try {
+			while (next()) {
+				aWriter.write(pRowCount > wFirstRow + 1 ? ",{" : "\"values\":[{");
+				boolean wFirst = true;
+				for (int i = 1; i <= pColumnLabels.length; i++) {
+					final String wValue = pResultSet.getString(i);
+					// JSONObject.put() omits the null values
+					if (wValue != null) {
+						if (!wFirst) {
+							aWriter.write(',');
+						}
+						wFirst = false;
+						aWriter.write(JSONObject.quote(pColumnLabels[i - 1]));
+						aWriter.write(':');
+						aWriter.write(JSONObject.quote(wValue));
+					}
+				}
+				aWriter.write('}');
+			}
+		} catch (final DBException | SQLException e) {
+			close();
+			wMessageKO = newMessageKO(e);
+		}
+		if (pRowCount > wFirstRow) {
+			aWriter.write("],");
+		}
+		aWriter.write("\"status\":");
+		aWriter.write(JSONObject.quote(wMessageKO == null ? OK : KO));
+		aWriter.write(",\"queryduration\":");
+		aWriter.write(JSONObject.quote(getDuration()));
+		if (pDBQuery.isSelect()) {
+			aWriter.write(",\"selectcount\":");
+			aWriter.write(String.valueOf(pRowCount - wFirstRow));
+		}
+		if (wMessageKO != null) {
+			aWriter.write(",\"jdbcmessage\":");
+			aWriter.write(JSONObject.quote(wMessageKO));
+		}
+		aWriter.write('}');
+		return pRowCount - wFirstRow;
+	}
+
+	/**
+	 * Writes the remaining rows in UTF-8
+	 *
+	 * @param aOutputStream
+	 * @return the number of written rows
+	 * @throws IOException
+	 * @see #writeXml(Writer)
+	 */
+	public int writeXml(final OutputStream aOutputStream) throws IOException {
+		final Writer wWriter = new BufferedWriter(new OutputStreamWriter(
+				aOutputStream, StandardCharsets.UTF_8));
+		final int wNbRows = writeXml(wWriter);
+		wWriter.flush();
+		return wNbRows;
+	}
+
+	/**
+	 * Writes the remaining rows with the "values" nodes of
+	 * CDBResult.toXmlStream() including the DATA part. Each row is written as
+	 * soon as it is fetched, the status, the duration and the select count are
+	 * the trailing nodes of the "result" node.
+	 *
+	 * <pre>
+	 * <?xml version="1.0" encoding="UTF-8"?>
+	 * <result>
+	 * <values><ID>1</ID><Name>Kabul</Name></values>
+	 * ...
+	 * <status>OK</status><queryduration>12,345</queryduration><selectcount>2</selectcount>
+	 * </result>
+	 * </pre>
+	 *
+	 * If the fetch of a row fails, the status is "KO", the "values" nodes are
+	 * the rows fetched before the failure and the "jdbcmessage" node is
+	 * written.
+	 *
+	 * @param aWriter
+	 * @return the number of fetched rows
+	 * @throws IOException
+	 */
+	public int writeXml(final Writer aWriter) throws IOException {
+		final int wFirstRow = pRowCount;
+		String wMessageKO = null;
+		aWriter.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?><result>");
+		try {
+			while (next()) {
+				aWriter.write("<values>");
+				for (int i = 1; i <= pColumnLabels.length; i++) {
+					final String wLabel = pColumnLabels[i - 1];
+					aWriter.write('<');
+					aWriter.write(wLabel);
+					aWriter.write('>');
+					// a null value is written "null" as by CDBResult
+					aWriter.write(String.valueOf(CXXmlUtils.escapeXml(pResultSet
+							.getString(i))));
+					aWriter.write("</");
+					aWriter.write(wLabel);
+					aWriter.write('>');
+				}
+				aWriter.write("</values>");
+			}
+		} catch (final DBException | SQLException e) {
+			close();
+			wMessageKO = newMessageKO(e);
+		}
+		aWriter.write(String.format(
+				"<status>%s</status><queryduration>%s</queryduration>",
+				wMessageKO == null ? OK : KO, getDuration()));
+		if (pDBQuery.isSelect()) {
+			aWriter.write(String.format("<selectcount>%d</selectcount>",
+					pRowCount - wFirstRow));
+		}
+		if (wMessageKO != null) {
+			aWriter.write("<jdbcmessage>");
+			aWriter.write(CXXmlUtils.escapeXml(wMessageKO));
+			aWriter.write("</jdbcmessage>");
+		}
+		aWriter.write("</result>");
+		return pRowCount - wFirstRow;
+	}
+}
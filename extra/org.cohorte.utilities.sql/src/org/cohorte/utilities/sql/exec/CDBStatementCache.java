@@ -0,0 +1,163 @@
+package org.cohorte.utilities.sql.exec;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The bounded LRU cache of the prepared statements of a db connection, keyed
+ * by the SQL text of the request.
+ *
+ * The statement evicted from the cache is closed.
+ */
+class CDBStatementCache {
+
+	private static class CLruMap extends
+			LinkedHashMap<String, PreparedStatement> {
+
+		private static final long serialVersionUID = -6049925338018447233L;
+
+		private final int pMaxSize;
+
+		/**
+		 * @param aMaxSize
+		 */
+		CLruMap(final int aMaxSize) {
+			// access order
+			super(16, 0.75f, true);
+			pMaxSize = aMaxSize;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.util.LinkedHashMap#removeEldestEntry(java.util.Map.Entry)
+		 */
+		@Override
+		protected boolean removeEldestEntry(
+				final Map.Entry<String, PreparedStatement> aEldest) {
+			if (size() > pMaxSize) {
+				closeStatement(aEldest.getValue());
+				return true;
+			}
+			return false;
+		}
+	}
+
+	// the prefix of the key of the statements returning the generated keys
+	private static final String PREFIX_KEYS = "K:";
+
+	// the prefix of the key of the other statements
+	private static final String PREFIX_STD = "S:";
+
+	/**
+	 * @param aStatement
+	 */
+	static void closeStatement(final PreparedStatement aStatement) {
+		try {
+			aStatement.close();
+		} catch (SQLException e) {
+			// nothing to do: the statement is no longer used
+		}
+	}
+
+	private long pNbHits = 0;
+
+	private long pNbMisses = 0;
+
+	private final CLruMap pStatements;
+
+	/**
+	 * @param aMaxSize
+	 *            the max number of cached statements
+	 */
+	CDBStatementCache(final int aMaxSize) {
+		super();
+		pStatements = new CLruMap(aMaxSize);
+	}
+
+	/**
+	 * closes all the cached statements
+	 */
+	synchronized void clear() {
+		List<PreparedStatement> wStatements = new ArrayList<PreparedStatement>(
+				pStatements.values());
+		pStatements.clear();
+		for (PreparedStatement wStatement : wStatements) {
+			closeStatement(wStatement);
+		}
+	}
+
+	/**
+	 * @param aSqlQuery
+	 * @param aReturnGeneratedKeys
+	 */
+	synchronized void evict(final String aSqlQuery,
+			final boolean aReturnGeneratedKeys) {
+		PreparedStatement wStatement = pStatements.remove(calcKey(aSqlQuery,
+				aReturnGeneratedKeys));
+		if (wStatement != null) {
+			closeStatement(wStatement);
+		}
+	}
+
+	/**
+	 * @param aSqlQuery
+	 * @param aReturnGeneratedKeys
+	 * @return
+	 */
+	private String calcKey(final String aSqlQuery,
+			final boolean aReturnGeneratedKeys) {
+		return (aReturnGeneratedKeys ? PREFIX_KEYS : PREFIX_STD) + aSqlQuery;
+	}
+
+	/**
+	 * @return the number of requests which found their statement in the cache
+	 */
+	synchronized long getNbHits() {
+		return pNbHits;
+	}
+
+	/**
+	 * @return the number of requests which prepared a new statement
+	 */
+	synchronized long getNbMisses() {
+		return pNbMisses;
+	}
+
+	/**
+	 * @param aConnection
+	 * @param aSqlQuery
+	 * @param aReturnGeneratedKeys
+	 * @return the cached prepared statement of the query or a new one
+	 * @throws SQLException
+	 */
+	synchronized PreparedStatement prepare(final Connection aConnection,
+			final String aSqlQuery, final boolean aReturnGeneratedKeys)
+			throws SQLException {
+
+		String wKey = calcKey(aSqlQuery, aReturnGeneratedKeys);
+		PreparedStatement wStatement = pStatements.get(wKey);
+		if (wStatement != null && !wStatement.isClosed()) {
+			pNbHits++;
+			return wStatement;
+		}
+		pNbMisses++;
+		wStatement = (aReturnGeneratedKeys) ? aConnection.prepareStatement(
+				aSqlQuery, java.sql.Statement.RETURN_GENERATED_KEYS)
+				: aConnection.prepareStatement(aSqlQuery);
+		pStatements.put(wKey, wStatement);
+		return wStatement;
+	}
+
+	/**
+	 * @return the number of cached statements
+	 */
+	synchronized int size() {
+		return pStatements.size();
+	}
+}
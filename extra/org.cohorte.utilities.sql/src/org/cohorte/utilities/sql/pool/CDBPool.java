@@ -1,8 +1,12 @@
 package org.cohorte.utilities.sql.pool;
 
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.cohorte.utilities.sql.DBException;
 import org.cohorte.utilities.sql.IDBConnection;
@@ -13,26 +17,89 @@ import org.psem2m.utilities.logging.CActivityLoggerNull;
 import org.psem2m.utilities.logging.IActivityLogger;
 
 /**
+ * A bounded pool of db connections.
+ *
+ * <ul>
+ * <li>the checkout first tries the connection last used by the current thread,
+ * then scans the connections of the pool to claim a free one. A connection is
+ * claimed atomically (see IDBConnection.tryBusyOn()): no lock is taken.
+ * <li>if no connection is free and the pool isn't full, a new connection is
+ * created.
+ * <li>if the pool is full, the checkout waits until a connection is checked in
+ * or the timeout expires.
+ * </ul>
+ *
+ * While threads are waiting, a checked in connection isn't set free: it stays
+ * busy and is handed off to the oldest thread polling the fair handoff queue,
+ * and a new checkout doesn't try to claim a connection, it queues behind the
+ * waiting threads. A waiting thread which is between two polls (it polls by
+ * slices of 250 ms) is queued again behind the others.
+ *
+ * The CDBPoolMonitor validates the free connections, evicts the ones unused
+ * too long and keeps at least "MinSize" connections in the pool.
+ *
  * @author ogattaz
  *
  */
 public class CDBPool implements IDBPool {
 
+	// The default max wait duration of a checkout (default 30 seconds)
+	private static long DB_POOL_CHECKOUT_TIMEOUT = 30 * 1000;
+
+	// The default max number of connections
+	private static int DB_POOL_MAX_SIZE = 16;
+
 	// The max unused duration of a dbconnection (default 15 minutes =
 	// 15*60*1000)
 	private static long DB_POOL_MAX_UNUSED_DURATION = 15 * 60 * 1000;
 
-	private final List<IDBConnection> pConnections = new LinkedList<IDBConnection>();
+	// The default min number of connections
+	private static int DB_POOL_MIN_SIZE = 1;
+
+	// the max duration of one wait of the handoff queue
+	private static long DB_POOL_WAIT_SLICE = 250;
+
+	private final long pCheckOutTimeout;
+
+	private final AtomicLong pCheckOutWaitTime = new AtomicLong();
+
+	private final AtomicLong pCheckOutWaitTimeMax = new AtomicLong();
+
+	/** all the connections of the pool, busy or not **/
+	private final List<IDBConnection> pConnections = new CopyOnWriteArrayList<IDBConnection>();
 
 	private CDBConnectionInfos pDBConnectionInfos;
 
+	/** the checked in connections are handed off to the waiting threads **/
+	private final SynchronousQueue<IDBConnection> pHandoff = new SynchronousQueue<IDBConnection>(
+			true);
+
+	/** the last connection used by each thread **/
+	private final ThreadLocal<IDBConnection> pLastUsed = new ThreadLocal<IDBConnection>();
+
 	private IActivityLogger pLogger;
 
+	private final int pMaxSize;
+
 	/**
 	 * Gestion des connexions innutilisées dans le pool de connexion de la base
 	 * agiliumdb
 	 */
 	private final long pMaxUnusedDuration;
+
+	private final int pMinSize;
+
+	private final AtomicLong pNbCheckOutTimeouts = new AtomicLong();
+
+	private final AtomicLong pNbCheckOutWaits = new AtomicLong();
+
+	private final AtomicLong pNbCreatedConnections = new AtomicLong();
+
+	/** the number of connections in the pool or being created **/
+	private final AtomicInteger pNbSlots = new AtomicInteger();
+
+	private final AtomicInteger pNbWaiters = new AtomicInteger();
+
 	private final AtomicBoolean pOpened = new AtomicBoolean();
 
 	private final CDBPoolMonitor pPoolMonitor;
@@ -50,45 +117,117 @@ public class CDBPool implements IDBPool {
 	public CDBPool(final IActivityLogger aLogger,
 			final CDBConnectionInfos aDBConnectionInfos) {
 
+		this(aLogger, aDBConnectionInfos, DB_POOL_MIN_SIZE, DB_POOL_MAX_SIZE,
+				DB_POOL_CHECKOUT_TIMEOUT);
+	}
+
+	/**
+	 * @param aLogger
+	 * @param aDBConnectionInfos
+	 * @param aMinSize
+	 *            the min number of connections kept in the pool
+	 * @param aMaxSize
+	 *            the max number of connections
+	 * @param aCheckOutTimeout
+	 *            the max wait duration of a checkout in milliseconds
+	 */
+	public CDBPool(final IActivityLogger aLogger,
+			final CDBConnectionInfos aDBConnectionInfos, final int aMinSize,
+			final int aMaxSize, final long aCheckOutTimeout) {
+
+		this(aLogger, aDBConnectionInfos, aMinSize, aMaxSize, aCheckOutTimeout,
+				CDBPoolMonitor.DEFAULT_SLEEP_DURATION);
+	}
+
+	/**
+	 * @param aLogger
+	 * @param aDBConnectionInfos
+	 * @param aMinSize
+	 *            the min number of connections kept in the pool
+	 * @param aMaxSize
+	 *            the max number of connections
+	 * @param aCheckOutTimeout
+	 *            the max wait duration of a checkout in milliseconds
+	 * @param aMonitorPeriod
+	 *            the duration between two checks of the CDBPoolMonitor in
+	 *            milliseconds (default 1 minute)
+	 */
+	public CDBPool(final IActivityLogger aLogger,
+			final CDBConnectionInfos aDBConnectionInfos, final int aMinSize,
+			final int aMaxSize, final long aCheckOutTimeout,
+			final long aMonitorPeriod) {
+
 		super();
+		if (aMaxSize < 1 || aMinSize < 0 || aMinSize > aMaxSize) {
+			throw new IllegalArgumentException(String.format(
+					"Invalid pool size: MinSize=[%d] MaxSize=[%d]", aMinSize,
+					aMaxSize));
+		}
 		setLogger(aLogger);
 		setDBConnectionInfos(aDBConnectionInfos);
 		pMaxUnusedDuration = DB_POOL_MAX_UNUSED_DURATION;
+		pMinSize = aMinSize;
+		pMaxSize = aMaxSize;
+		pCheckOutTimeout = aCheckOutTimeout;
 
-		pPoolMonitor = new CDBPoolMonitor(this);
+		pPoolMonitor = new CDBPoolMonitor(this, aMonitorPeriod);
 
-		pLogger.logInfo(this, "<init>",
-				"MaxUnusedDuration=[%d] NbConnection=[%d]", pMaxUnusedDuration,
+		pLogger.logInfo(
+				this,
+				"<init>",
+				"MaxUnusedDuration=[%d] MinSize=[%d] MaxSize=[%d] CheckOutTimeout=[%d] NbConnection=[%d]",
+				pMaxUnusedDuration, pMinSize, pMaxSize, pCheckOutTimeout,
 				getNbConnection());
 	}
 
 	/**
-	 * @throws Exception
+	 * Adds a new connection if the pool isn't full
+	 *
+	 * @return the new connection or null if the pool is full
+	 * @throws DBException
 	 */
 	IDBConnection addNewDbConnection() throws DBException {
 
-		return addNewDbConnection(createDbConnection());
+		return addNewDbConnection(false);
 	}
 
 	/**
-	 * @return
-	 * @throws ClusterStorageException
+	 * @param aBusy
+	 *            if true the new connection is returned busy
+	 * @return the new connection or null if the pool is full
+	 * @throws DBException
 	 */
-	private IDBConnection addNewDbConnection(final IDBConnection aConnection)
+	private IDBConnection addNewDbConnection(final boolean aBusy)
 			throws DBException {
 
-		if (!aConnection.isOpened()) {
-			boolean wOpened = aConnection.open();
-			pLogger.logInfo(this, "addNewDbConnection",
-					"NbConnection=[%d] Idx=[%d] Opened=[%b]",
-					getNbConnection(), aConnection.getIdx(), wOpened);
-		}
+		// reserve a slot
+		int wNbSlots;
+		do {
+			wNbSlots = pNbSlots.get();
+			if (wNbSlots >= pMaxSize) {
+				return null;
+			}
+		} while (!pNbSlots.compareAndSet(wNbSlots, wNbSlots + 1));
 
-		synchronized (pConnections) {
-			pConnections.add(aConnection);
-		}
-		return aConnection;
+		try {
+			IDBConnection wConnection = createDbConnection();
+			if (aBusy) {
+				wConnection.setBusyOn();
+			}
+			if (!wConnection.isOpened()) {
+				boolean wOpened = wConnection.open();
+				pLogger.logInfo(this, "addNewDbConnection",
+						"NbConnection=[%d] Idx=[%d] Opened=[%b]",
+						getNbConnection() + 1, wConnection.getIdx(), wOpened);
+			}
+			pConnections.add(wConnection);
+			pNbCreatedConnections.incrementAndGet();
+			return wConnection;
 
+		} catch (DBException | RuntimeException e) {
+			pNbSlots.decrementAndGet();
+			throw e;
+		}
 	}
 
 	/*
@@ -102,13 +241,12 @@ public class CDBPool implements IDBPool {
 		// MOD_172
 		if (aDbConn != null) {
 			// if no SQLException occurs during thes usage
-			if (aDbConn.isValid()) {
-				aDbConn.setBusyOff();
+			if (aDbConn.isValid() && isConnected()) {
+				aDbConn.setLastUseNow();
+				pLastUsed.set(aDbConn);
+				release(aDbConn);
 			} else {
-				aDbConn.close();
-				synchronized (pConnections) {
-					pConnections.remove(aDbConn);
-				}
+				removeDbConnection(aDbConn);
 			}
 		}
 	}
@@ -125,18 +263,73 @@ public class CDBPool implements IDBPool {
 			throw new IllegalStateException("DBPool is not opened");
 		}
 
-		IDBConnection wConnection = findFirstFree();
+		IDBConnection wConnection = null;
+		// the waiting threads are served first
+		if (pNbWaiters.get() == 0) {
+			wConnection = claimLastUsed();
+			if (wConnection == null) {
+				wConnection = claimFree();
+			}
+			if (wConnection == null) {
+				wConnection = addNewDbConnection(true);
+				if (wConnection != null) {
+					pLogger.logInfo(this, "checkOut",
+							"NbConnection=[%d] NewConnectionIdx=[%d]",
+							getNbConnection(), wConnection.getIdx());
+				}
+			}
+		}
 		if (wConnection == null) {
-			wConnection = createDbConnection();
-			wConnection.setBusyOn();
-			addNewDbConnection(wConnection);
-			pLogger.logInfo(this, "checkOut",
-					"NbConnection=[%d] NewConnectionIdx=[%d]",
-					getNbConnection(), wConnection.getIdx());
+			wConnection = waitFree();
 		}
+		pLastUsed.set(wConnection);
 		return wConnection;
 	}
 
+	/**
+	 * @return a free connection of the pool set busy or null
+	 */
+	private IDBConnection claimFree() {
+
+		for (IDBConnection wConnection : pConnections) {
+			IDBConnection wClaimed = claim(wConnection);
+			if (wClaimed != null) {
+				return wClaimed;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param aConnection
+	 * @return the connection set busy or null if it is busy, invalid or unused
+	 *         since too much time
+	 */
+	private IDBConnection claim(final IDBConnection aConnection) {
+
+		if (aConnection != null && aConnection.isValid()
+				&& aConnection.tryBusyOn()) {
+			// if unused since too much time
+			if (aConnection.isUnusedTooLoong()) {
+				aConnection.invalidate();
+				removeDbConnection(aConnection);
+			} else if (aConnection.isValid()) {
+				return aConnection;
+			} else {
+				aConnection.setBusyOff();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the connection last used by the current thread set busy or null
+	 */
+	private IDBConnection claimLastUsed() {
+
+		return claim(pLastUsed.get());
+	}
+
 	/**
 	 *
 	 */
@@ -147,14 +340,12 @@ public class CDBPool implements IDBPool {
 		pLogger.logInfo(this, "close(): NbConnection to close=[%d]",
 				getNbConnection());
 
-		synchronized (pConnections) {
-
-			for (IDBConnection wConnection : pConnections) {
-				wConnection.close();
-			}
-			pConnections.clear();
+		for (IDBConnection wConnection : pConnections) {
+			wConnection.invalidate();
+			wConnection.close();
 		}
-
+		pConnections.clear();
+		pNbSlots.set(0);
 	}
 
 	/**
@@ -179,16 +370,16 @@ public class CDBPool implements IDBPool {
 			throw new IllegalStateException("DBPool is not opened");
 		}
 
-		close();
-
 		pOpened.set(false);
 
+		close();
+
 		return true;
 	}
 
 	/*
 	 * (non-Javadoc)
-	 * 
+	 *
 	 * @see fr.agilium.ng.commons.sql.IDBBase#dbOpen()
 	 */
 	@Override
@@ -198,8 +389,11 @@ public class CDBPool implements IDBPool {
 			throw new IllegalStateException("DBPool is already opened");
 		}
 		try {
-			// add a new connection according the current DBConnectionInfos
-			addNewDbConnection();
+			// add the first connections according the current
+			// DBConnectionInfos
+			do {
+				addNewDbConnection();
+			} while (getNbConnection() < pMinSize);
 
 			pOpened.set(true);
 
@@ -208,7 +402,7 @@ public class CDBPool implements IDBPool {
 					"Unable to create a connection to open the pool: %s", e);
 		}
 
-		return false;
+		return isConnected();
 	}
 
 	@Override
@@ -224,35 +418,24 @@ public class CDBPool implements IDBPool {
 		return dbOpen();
 	}
 
-	/**
-	 *
-	 * detect and invalidate the unused connexions since more that the max
-	 * autorized unused duration
+	/*
+	 * (non-Javadoc)
 	 *
-	 * @return the first "unbusy" db connexion found in the list
+	 * @see org.cohorte.utilities.sql.IDBPool#getCheckOutWaitTime()
 	 */
-	private IDBConnection findFirstFree() {
-
-		synchronized (pConnections) {
-
-			for (IDBConnection wConnection : pConnections) {
-
-				// if not used and always valid
-				if (!wConnection.isBusy() && wConnection.isValid()) {
-
-					// if unused since too much time
-					if (wConnection.isUnusedTooLoong()) {
-
-						wConnection.invalidate();
+	@Override
+	public long getCheckOutWaitTime() {
+		return pCheckOutWaitTime.get();
+	}
 
-					} else {
-						wConnection.setBusyOn();
-						return wConnection;
-					}
-				}
-			}
-		}
-		return null;
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.cohorte.utilities.sql.IDBPool#getCheckOutWaitTimeMax()
+	 */
+	@Override
+	public long getCheckOutWaitTimeMax() {
+		return pCheckOutWaitTimeMax.get();
 	}
 
 	/**
@@ -290,13 +473,101 @@ public class CDBPool implements IDBPool {
 		return pLogger;
 	}
 
+	/**
+	 * @return the max number of connections
+	 */
+	public int getMaxSize() {
+		return pMaxSize;
+	}
+
+	/**
+	 * @return the min number of connections kept in the pool
+	 */
+	public int getMinSize() {
+		return pMinSize;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.cohorte.utilities.sql.IDBPool#getNbActiveConnections()
+	 */
+	@Override
+	public int getNbActiveConnections() {
+		int wNb = 0;
+		for (IDBConnection wConnection : pConnections) {
+			if (wConnection.isBusy()) {
+				wNb++;
+			}
+		}
+		return wNb;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.cohorte.utilities.sql.IDBPool#getNbCheckOutTimeouts()
+	 */
+	@Override
+	public long getNbCheckOutTimeouts() {
+		return pNbCheckOutTimeouts.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.cohorte.utilities.sql.IDBPool#getNbCheckOutWaits()
+	 */
+	@Override
+	public long getNbCheckOutWaits() {
+		return pNbCheckOutWaits.get();
+	}
+
 	/**
 	 * @return
 	 */
 	public int getNbConnection() {
-		synchronized (pConnections) {
-			return pConnections.size();
+		return pConnections.size();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.cohorte.utilities.sql.IDBPool#getNbCreatedConnections()
+	 */
+	@Override
+	public long getNbCreatedConnections() {
+		return pNbCreatedConnections.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.cohorte.utilities.sql.IDBPool#getNbIdleConnections()
+	 */
+	@Override
+	public int getNbIdleConnections() {
+		return getNbConnection() - getNbActiveConnections();
+	}
+
+	/**
+	 * Hands off the checked in connection to a waiting thread
+	 *
+	 * @param aConnection
+	 *            a busy connection
+	 * @return true if a waiting thread took the connection, false if no thread
+	 *         is waiting
+	 */
+	private boolean handOff(final IDBConnection aConnection) {
+
+		while (pNbWaiters.get() > 0) {
+			if (pHandoff.offer(aConnection)) {
+				return true;
+			}
+			// a waiting thread isn't yet polling the handoff queue
+			Thread.yield();
 		}
+		return false;
 	}
 
 	/*
@@ -310,6 +581,39 @@ public class CDBPool implements IDBPool {
 		return pOpened.get();
 	}
 
+	/**
+	 * Hands off the checked in connection to a waiting thread or sets it free
+	 * if no thread is waiting
+	 *
+	 * @param aConnection
+	 *            the busy checked in connection
+	 */
+	private void release(final IDBConnection aConnection) {
+
+		while (!handOff(aConnection)) {
+			aConnection.setBusyOff();
+			// a thread which started to wait before the connection was set
+			// free is polling the handoff queue
+			if (pNbWaiters.get() == 0 || !aConnection.tryBusyOn()) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Removes the connection from the pool and closes it
+	 *
+	 * @param aConnection
+	 */
+	void removeDbConnection(final IDBConnection aConnection) {
+
+		aConnection.invalidate();
+		aConnection.close();
+		if (pConnections.remove(aConnection)) {
+			pNbSlots.decrementAndGet();
+		}
+	}
+
 	/**
 	 * @param aDBConnectionInfos
 	 */
@@ -328,4 +632,58 @@ public class CDBPool implements IDBPool {
 				.getInstance();
 	}
 
+	/**
+	 * Waits for a free connection until the checkout timeout expires
+	 *
+	 * @return a connection set busy
+	 * @throws DBException
+	 *             if the timeout expired
+	 * @throws InterruptedException
+	 */
+	private IDBConnection waitFree() throws DBException, InterruptedException {
+
+		final long wStart = System.nanoTime();
+		final long wDeadline = wStart
+				+ TimeUnit.MILLISECONDS.toNanos(pCheckOutTimeout);
+		pNbCheckOutWaits.incrementAndGet();
+		pNbWaiters.incrementAndGet();
+		try {
+			long wRemaining;
+			do {
+				// a connection may have been checked in or removed since the
+				// last try
+				IDBConnection wConnection = claimFree();
+				if (wConnection == null) {
+					wConnection = addNewDbConnection(true);
+				}
+				if (wConnection != null) {
+					return wConnection;
+				}
+				wRemaining = wDeadline - System.nanoTime();
+				// the connection handed off is already busy
+				wConnection = pHandoff.poll(Math.min(wRemaining,
+						TimeUnit.MILLISECONDS.toNanos(DB_POOL_WAIT_SLICE)),
+						TimeUnit.NANOSECONDS);
+				if (wConnection != null) {
+					return wConnection;
+				}
+				wRemaining = wDeadline - System.nanoTime();
+			} while (wRemaining > 0 && isConnected());
+
+			pNbCheckOutTimeouts.incrementAndGet();
+			throw new DBException(String.format(
+					"Unable to get a free connection in [%d] ms. NbConnection=[%d] MaxSize=[%d]",
+					pCheckOutTimeout, getNbConnection(), pMaxSize));
+		} finally {
+			pNbWaiters.decrementAndGet();
+			long wWaitTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime()
+					- wStart);
+			pCheckOutWaitTime.addAndGet(wWaitTime);
+			long wMax;
+			while ((wMax = pCheckOutWaitTimeMax.get()) < wWaitTime
+					&& !pCheckOutWaitTimeMax.compareAndSet(wMax, wWaitTime)) {
+				// retry
+			}
+		}
+	}
 }
@@ -1,6 +1,5 @@
 package org.cohorte.utilities.sql.pool;
 
-import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -15,26 +14,43 @@ public class CDBPoolMonitor implements Runnable {
 	// la durée d'endormissement par défaut : 1 minute
 	static final long DEFAULT_SLEEP_DURATION = 60000;
 
+	// la durée max de la validation d'une connexion : 5 secondes
+	static final int DEFAULT_VALIDATION_TIMEOUT = 5;
+
 	private static AtomicInteger pDBPoolMonitorIdx = new AtomicInteger();
 	private final AtomicBoolean pContinue = new AtomicBoolean(false);
 	private final Thread pMonitor;
 	private final CDBPool pPool;
+	private final long pSleepDuration;
 
 	/**
 	 *
 	 */
 	CDBPoolMonitor(final CDBPool aPool) {
+		this(aPool, DEFAULT_SLEEP_DURATION);
+	}
+
+	/**
+	 * @param aPool
+	 * @param aSleepDuration
+	 *            the duration between two checks of the pool in milliseconds
+	 */
+	CDBPoolMonitor(final CDBPool aPool, final long aSleepDuration) {
 		super();
 
 		pPool = aPool;
+		pSleepDuration = aSleepDuration;
 		pMonitor = new Thread(this);
 		pMonitor.setName(calcThreadName(aPool.getDBConnectionInfos()
 				.getDbAlias()));
+		// the monitor doesn't prevent the JVM to exit
+		pMonitor.setDaemon(true);
+		setContinue(true);
 		pMonitor.start();
 
 		pPool.getLogger().logInfo(this, "<init>",
 				"Instanciated. ThreadName=[%s] sleepDuration=[%d] ",
-				pMonitor.getName(), DEFAULT_SLEEP_DURATION);
+				pMonitor.getName(), pSleepDuration);
 	}
 
 	/**
@@ -116,40 +132,57 @@ public class CDBPoolMonitor implements Runnable {
 	 */
 	private void monitorPool() {
 		// clean the list of connections
-		List<IDBConnection> wConnections = pPool.getConnections();
-		synchronized (wConnections) {
-			IDBConnection wConnection;
-			int wMax = wConnections.size();
-			for (int wIdx = wMax - 1; wIdx >= 0; wIdx--) {
-				wConnection = wConnections.get(wIdx);
-
-				if (!wConnection.isValid() || wConnection.isUnusedTooLoong()) {
-					pPool.getLogger().logInfo(this, "monitorPool",
-							"ConnectionIdx=[%d] invalid or unused too Long ",
-							wConnection.getIdx());
+		for (IDBConnection wConnection : pPool.getConnections()) {
 
-					wConnection.close();
-					wConnections.remove(wIdx);
+			// a busy invalid connection is removed when it is checked in
+			if (!wConnection.isValid()) {
+				if (!wConnection.isBusy()) {
+					pPool.getLogger().logInfo(this, "monitorPool",
+							"ConnectionIdx=[%d] invalid", wConnection.getIdx());
+					pPool.removeDbConnection(wConnection);
 				}
+				continue;
 			}
-		}
+			// only the free connections are checked: claim it
+			if (!wConnection.tryBusyOn()) {
+				continue;
+			}
+			if (wConnection.isUnusedTooLoong()
+					&& pPool.getNbConnection() > pPool.getMinSize()) {
+				pPool.getLogger().logInfo(this, "monitorPool",
+						"ConnectionIdx=[%d] unused too Long ",
+						wConnection.getIdx());
+				pPool.removeDbConnection(wConnection);
 
-		// create a connexion if the list is empty
-		if (wConnections.size() == 0) {
-			try {
+			} else if (!wConnection.testValidity(DEFAULT_VALIDATION_TIMEOUT)) {
 				pPool.getLogger().logInfo(this, "monitorPool",
-						"Pool empty: create the first connection");
-				pPool.addNewDbConnection();
+						"ConnectionIdx=[%d] no longer alive",
+						wConnection.getIdx());
+				pPool.removeDbConnection(wConnection);
 
-			} catch (Exception e) {
-				pPool.getLogger()
-						.logSevere(
-								this,
-								"monitorPool",
-								"Unable to create and add a new db connection in the pool. %s ",
-								e);
+			} else {
+				wConnection.setBusyOff();
 			}
 		}
+
+		// keep the min number of connections in the pool
+		try {
+			while (pPool.getNbConnection() < pPool.getMinSize()) {
+				pPool.getLogger().logInfo(this, "monitorPool",
+						"NbConnection=[%d] < MinSize=[%d]: create a connection",
+						pPool.getNbConnection(), pPool.getMinSize());
+				if (pPool.addNewDbConnection() == null) {
+					break;
+				}
+			}
+		} catch (Exception e) {
+			pPool.getLogger()
+					.logSevere(
+							this,
+							"monitorPool",
+							"Unable to create and add a new db connection in the pool. %s ",
+							e);
+		}
 	}
 
 	/*
@@ -165,7 +198,7 @@ public class CDBPoolMonitor implements Runnable {
 
 		while (getContinue()) {
 
-			sleepTempo(DEFAULT_SLEEP_DURATION);
+			sleepTempo(pSleepDuration);
 
 			try {
 				if (pPool.isConnected()) {
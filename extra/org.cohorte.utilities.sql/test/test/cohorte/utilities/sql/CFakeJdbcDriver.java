@@ -0,0 +1,571 @@
+package test.cohorte.utilities.sql;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.cohorte.utilities.sql.exec.CDBConnectionInfos;
+
+/**
+ * An in-memory jdbc driver answering the "jdbc:mysql://127.0.0.1:1/" urls: the
+ * selects return the rows of the tables registered by the tests, the updates
+ * count one row. The connections, statements and result sets are proxies.
+ */
+public class CFakeJdbcDriver implements Driver {
+
+	/**
+	 * the handler of the proxies: the methods not implemented return the
+	 * default value of their type
+	 */
+	private static abstract class CHandler implements InvocationHandler {
+
+		/**
+		 * @param aMethod
+		 * @return the default value of the return type of the method
+		 */
+		static Object defaultValue(final Method aMethod) {
+			Class<?> wType = aMethod.getReturnType();
+			if (wType == boolean.class) {
+				return Boolean.FALSE;
+			}
+			if (wType == int.class) {
+				return 0;
+			}
+			if (wType == long.class) {
+				return 0L;
+			}
+			if (wType == double.class) {
+				return 0.0;
+			}
+			return null;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object,
+		 * java.lang.reflect.Method, java.lang.Object[])
+		 */
+		@Override
+		public Object invoke(final Object aProxy, final Method aMethod, final Object[] aArgs) throws Throwable {
+			if ("hashCode".equals(aMethod.getName())) {
+				return System.identityHashCode(aProxy);
+			}
+			if ("equals".equals(aMethod.getName())) {
+				return aProxy == aArgs[0];
+			}
+			if ("toString".equals(aMethod.getName())) {
+				return getClass().getSimpleName();
+			}
+			return invoke(aMethod.getName(), aMethod, aArgs != null ? aArgs : new Object[0]);
+		}
+
+		abstract Object invoke(String aName, Method aMethod, Object[] aArgs) throws SQLException;
+	}
+
+	/**
+	 * a connection
+	 */
+	private static class CConnection extends CHandler {
+
+		private boolean pClosed = false;
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see test.cohorte.utilities.sql.CFakeJdbcDriver.CHandler#invoke(java.
+		 * lang.String, java.lang.reflect.Method, java.lang.Object[])
+		 */
+		@Override
+		Object invoke(final String aName, final Method aMethod, final Object[] aArgs) throws SQLException {
+			if ("close".equals(aName)) {
+				pClosed = true;
+				return null;
+			}
+			if ("isClosed".equals(aName)) {
+				return pClosed;
+			}
+			if ("isValid".equals(aName)) {
+				return !pClosed;
+			}
+			if ("createStatement".equals(aName)) {
+				return newProxy(Statement.class, new CStatement(null));
+			}
+			if ("prepareStatement".equals(aName)) {
+				sNbPreparedStatements.incrementAndGet();
+				return newProxy(PreparedStatement.class, new CStatement((String) aArgs[0]));
+			}
+			return defaultValue(aMethod);
+		}
+	}
+
+	/**
+	 * a statement or a prepared statement
+	 */
+	private static class CStatement extends CHandler {
+
+		private int pBatchSize = 0;
+
+		private boolean pClosed = false;
+
+		private ResultSet pResultSet;
+
+		private final String pSql;
+
+		/**
+		 * @param aSql
+		 *            the sql of the prepared statement or null
+		 */
+		CStatement(final String aSql) {
+			super();
+			pSql = aSql;
+		}
+
+		/**
+		 * @param aSql
+		 * @return the result set of the registered table
+		 * @throws SQLException
+		 */
+		private ResultSet executeQuery(final String aSql) throws SQLException {
+			CTable wTable = sTables.get(aSql);
+			if (wTable == null) {
+				throw new SQLException(String.format("Table of [%s] doesn't exist", aSql));
+			}
+			return newProxy(ResultSet.class, new CResultSet(wTable));
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see test.cohorte.utilities.sql.CFakeJdbcDriver.CHandler#invoke(java.
+		 * lang.String, java.lang.reflect.Method, java.lang.Object[])
+		 */
+		@Override
+		Object invoke(final String aName, final Method aMethod, final Object[] aArgs) throws SQLException {
+			if ("close".equals(aName)) {
+				if (!pClosed) {
+					pClosed = true;
+					sNbClosedStatements.incrementAndGet();
+				}
+				return null;
+			}
+			if ("isClosed".equals(aName)) {
+				return pClosed;
+			}
+			if (pClosed) {
+				throw new SQLException("Statement closed");
+			}
+			String wSql = aArgs.length > 0 && aArgs[0] instanceof String ? (String) aArgs[0] : pSql;
+			if ("executeQuery".equals(aName)) {
+				return executeQuery(wSql);
+			}
+			if ("execute".equals(aName)) {
+				boolean wSelect = wSql.trim().toLowerCase().startsWith("select");
+				pResultSet = wSelect ? executeQuery(wSql) : null;
+				return wSelect;
+			}
+			if ("getResultSet".equals(aName)) {
+				return pResultSet;
+			}
+			if ("executeUpdate".equals(aName) || "getUpdateCount".equals(aName)) {
+				return 1;
+			}
+			if ("addBatch".equals(aName)) {
+				pBatchSize++;
+				return null;
+			}
+			if ("executeBatch".equals(aName)) {
+				int[] wCounts = new int[pBatchSize];
+				java.util.Arrays.fill(wCounts, 1);
+				pBatchSize = 0;
+				return wCounts;
+			}
+			if ("getGeneratedKeys".equals(aName)) {
+				return newProxy(ResultSet.class, new CResultSet(new CTable(new String[] { "GENERATED_KEY" },
+						new int[] { Types.BIGINT }, new Object[][] { { 1L } })));
+			}
+			if ("setNull".equals(aName)) {
+				sNullTypes.add((Integer) aArgs[1]);
+				return null;
+			}
+			if ("getParameterMetaData".equals(aName)) {
+				if (sParameterType == null) {
+					throw new SQLFeatureNotSupportedException("getParameterMetaData");
+				}
+				return newProxy(ParameterMetaData.class, new CHandler() {
+					@Override
+					Object invoke(final String aName2, final Method aMethod2, final Object[] aArgs2) {
+						return "getParameterType".equals(aName2) ? sParameterType : defaultValue(aMethod2);
+					}
+				});
+			}
+			return defaultValue(aMethod);
+		}
+	}
+
+	/**
+	 * a result set over the rows of a table
+	 */
+	private static class CResultSet extends CHandler {
+
+		private boolean pClosed = false;
+
+		private int pRow = -1;
+
+		private final CTable pTable;
+
+		private boolean pWasNull = false;
+
+		/**
+		 * @param aTable
+		 */
+		CResultSet(final CTable aTable) {
+			super();
+			pTable = aTable;
+		}
+
+		/**
+		 * @param aArgs
+		 * @return the value of the column of the current row
+		 */
+		private Object getValue(final Object[] aArgs) {
+			Object wValue = pTable.pRows[pRow][(Integer) aArgs[0] - 1];
+			pWasNull = wValue == null;
+			return wValue;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see test.cohorte.utilities.sql.CFakeJdbcDriver.CHandler#invoke(java.
+		 * lang.String, java.lang.reflect.Method, java.lang.Object[])
+		 */
+		@Override
+		Object invoke(final String aName, final Method aMethod, final Object[] aArgs) throws SQLException {
+			if ("close".equals(aName)) {
+				pClosed = true;
+				return null;
+			}
+			if ("isClosed".equals(aName)) {
+				return pClosed;
+			}
+			if ("getMetaData".equals(aName)) {
+				return newProxy(ResultSetMetaData.class, new CHandler() {
+					@Override
+					Object invoke(final String aName2, final Method aMethod2, final Object[] aArgs2) {
+						if ("getColumnCount".equals(aName2)) {
+							return pTable.pLabels.length;
+						}
+						if ("getColumnLabel".equals(aName2) || "getColumnName".equals(aName2)) {
+							return pTable.pLabels[(Integer) aArgs2[0] - 1];
+						}
+						if ("getColumnType".equals(aName2)) {
+							return pTable.pTypes[(Integer) aArgs2[0] - 1];
+						}
+						return defaultValue(aMethod2);
+					}
+				});
+			}
+			if (pClosed) {
+				throw new SQLException("ResultSet closed");
+			}
+			if ("next".equals(aName)) {
+				if (pRow + 1 == pTable.pFailingRow) {
+					throw new SQLException(String.format("Communications link failure at row [%d]", pRow + 2));
+				}
+				return ++pRow < pTable.pRows.length;
+			}
+			if ("wasNull".equals(aName)) {
+				return pWasNull;
+			}
+			if (!aName.startsWith("get") || aArgs.length != 1 || !(aArgs[0] instanceof Integer)) {
+				return defaultValue(aMethod);
+			}
+			Object wValue = getValue(aArgs);
+			if ("getObject".equals(aName)) {
+				return wValue;
+			}
+			if ("getString".equals(aName)) {
+				return wValue != null ? String.valueOf(wValue) : null;
+			}
+			if (wValue == null) {
+				return defaultValue(aMethod);
+			}
+			if ("getLong".equals(aName)) {
+				return ((Number) wValue).longValue();
+			}
+			if ("getInt".equals(aName)) {
+				return ((Number) wValue).intValue();
+			}
+			if ("getDouble".equals(aName)) {
+				return ((Number) wValue).doubleValue();
+			}
+			if ("getBigDecimal".equals(aName)) {
+				return new BigDecimal(wValue.toString());
+			}
+			if ("getTimestamp".equals(aName)) {
+				return (Timestamp) wValue;
+			}
+			if ("getBytes".equals(aName)) {
+				return (byte[]) wValue;
+			}
+			return defaultValue(aMethod);
+		}
+	}
+
+	/**
+	 * the rows returned by a select
+	 */
+	private static class CTable {
+
+		// the index of the row whose fetch fails, -2 if none
+		private final int pFailingRow;
+
+		private final String[] pLabels;
+
+		private final Object[][] pRows;
+
+		private final int[] pTypes;
+
+		/**
+		 * @param aLabels
+		 * @param aTypes
+		 * @param aRows
+		 */
+		CTable(final String[] aLabels, final int[] aTypes, final Object[][] aRows) {
+			this(aLabels, aTypes, aRows, -2);
+		}
+
+		/**
+		 * @param aLabels
+		 * @param aTypes
+		 * @param aRows
+		 * @param aFailingRow
+		 */
+		CTable(final String[] aLabels, final int[] aTypes, final Object[][] aRows, final int aFailingRow) {
+			super();
+			pLabels = aLabels;
+			pTypes = aTypes;
+			pRows = aRows;
+			pFailingRow = aFailingRow;
+		}
+	}
+
+	public static final String DB_HOST = "127.0.0.1";
+
+	public static final int DB_PORT = 1;
+
+	private static final String URL_PREFIX = "jdbc:mysql://" + DB_HOST + ":" + DB_PORT + "/";
+
+	private static final AtomicInteger sNbClosedStatements = new AtomicInteger();
+
+	private static final AtomicInteger sNbPreparedStatements = new AtomicInteger();
+
+	private static final List<Integer> sNullTypes = Collections.synchronizedList(new ArrayList<Integer>());
+
+	private static volatile Integer sParameterType = null;
+
+	private static boolean sRegistered = false;
+
+	private static final Map<String, CTable> sTables = new ConcurrentHashMap<String, CTable>();
+
+	/**
+	 * @return the number of statements closed since the last reset
+	 */
+	public static int getNbClosedStatements() {
+		return sNbClosedStatements.get();
+	}
+
+	/**
+	 * @return the number of prepared statements created since the last reset
+	 */
+	public static int getNbPreparedStatements() {
+		return sNbPreparedStatements.get();
+	}
+
+	/**
+	 * @return the jdbc types passed to setNull() since the last reset
+	 */
+	public static List<Integer> getNullTypes() {
+		return new ArrayList<Integer>(sNullTypes);
+	}
+
+	/**
+	 * @param aInterface
+	 * @param aHandler
+	 * @return a proxy implementing the interface
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> T newProxy(final Class<T> aInterface, final InvocationHandler aHandler) {
+		return (T) Proxy.newProxyInstance(CFakeJdbcDriver.class.getClassLoader(), new Class<?>[] { aInterface },
+				aHandler);
+	}
+
+	/**
+	 * @param aDbName
+	 * @return the infos of a mysql database answered by the fake driver
+	 * @throws Exception
+	 */
+	public static CDBConnectionInfos newConnectionInfos(final String aDbName) throws Exception {
+		register();
+		CDBConnectionInfos wInfos = new CDBConnectionInfos(aDbName);
+		wInfos.setbDbInfos("mysql", aDbName, DB_HOST, DB_PORT, "user", "password", null);
+		return wInfos;
+	}
+
+	/**
+	 * registers the driver before the mysql driver is loaded
+	 */
+	public static synchronized void register() throws SQLException {
+		if (!sRegistered) {
+			DriverManager.registerDriver(new CFakeJdbcDriver());
+			sRegistered = true;
+		}
+	}
+
+	/**
+	 * resets the counters
+	 */
+	public static void reset() {
+		sNbClosedStatements.set(0);
+		sNbPreparedStatements.set(0);
+		sNullTypes.clear();
+	}
+
+	/**
+	 * @param aType
+	 *            the type returned by ParameterMetaData.getParameterType() or
+	 *            null if getParameterMetaData() isn't supported
+	 */
+	public static void setParameterType(final Integer aType) {
+		sParameterType = aType;
+	}
+
+	/**
+	 * @param aSql
+	 *            the select returning the rows
+	 * @param aLabels
+	 * @param aTypes
+	 *            the jdbc types of the columns
+	 * @param aRows
+	 */
+	public static void setTable(final String aSql, final String[] aLabels, final int[] aTypes,
+			final Object[][] aRows) {
+		sTables.put(aSql, new CTable(aLabels, aTypes, aRows));
+	}
+
+	/**
+	 * @param aSql
+	 *            the select returning the rows
+	 * @param aLabels
+	 * @param aTypes
+	 *            the jdbc types of the columns
+	 * @param aRows
+	 * @param aFailingRow
+	 *            the index of the row whose fetch fails
+	 */
+	public static void setTable(final String aSql, final String[] aLabels, final int[] aTypes, final Object[][] aRows,
+			final int aFailingRow) {
+		sTables.put(aSql, new CTable(aLabels, aTypes, aRows, aFailingRow));
+	}
+
+	/**
+	 *
+	 */
+	public CFakeJdbcDriver() {
+		super();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.sql.Driver#acceptsURL(java.lang.String)
+	 */
+	@Override
+	public boolean acceptsURL(final String aUrl) {
+		return aUrl != null && aUrl.startsWith(URL_PREFIX);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.sql.Driver#connect(java.lang.String, java.util.Properties)
+	 */
+	@Override
+	public Connection connect(final String aUrl, final Properties aInfo) {
+		return acceptsURL(aUrl) ? newProxy(Connection.class, new CConnection()) : null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.sql.Driver#getMajorVersion()
+	 */
+	@Override
+	public int getMajorVersion() {
+		return 1;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.sql.Driver#getMinorVersion()
+	 */
+	@Override
+	public int getMinorVersion() {
+		return 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.sql.Driver#getParentLogger()
+	 */
+	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException("getParentLogger");
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.sql.Driver#getPropertyInfo(java.lang.String,
+	 * java.util.Properties)
+	 */
+	@Override
+	public DriverPropertyInfo[] getPropertyInfo(final String aUrl, final Properties aInfo) {
+		return new DriverPropertyInfo[0];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.sql.Driver#jdbcCompliant()
+	 */
+	@Override
+	public boolean jdbcCompliant() {
+		return false;
+	}
+}
@@ -0,0 +1,261 @@
+package test.cohorte.utilities.sql;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cohorte.utilities.junit.CAbstractJunitTest;
+import org.cohorte.utilities.sql.DBException;
+import org.cohorte.utilities.sql.IDBConnection;
+import org.cohorte.utilities.sql.pool.CDBPool;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * Tests the checkouts of the CDBPool under contention, the timeout of the
+ * checkout and the refill of the pool by the monitor
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class CJunitTestDBPool extends CAbstractJunitTest {
+
+	private static final int NB_CHECKOUTS = 50;
+
+	private static final int NB_THREADS = 8;
+
+	/**
+	 *
+	 */
+	@AfterClass
+	public static void destroy() {
+
+		// log the destroy banner containing the report
+		logBannerDestroy(CJunitTestDBPool.class);
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@BeforeClass
+	public static void initialize() throws Exception {
+
+		// initialise the map of the test method of the current junit test class
+		initializeTestsRegistry(CJunitTestDBPool.class);
+
+		// log the initialization banner
+		logBannerInitialization(CJunitTestDBPool.class);
+
+		CFakeJdbcDriver.register();
+	}
+
+	/**
+	 *
+	 */
+	public CJunitTestDBPool() {
+		super();
+	}
+
+	/**
+	 * @param aMinSize
+	 * @param aMaxSize
+	 * @param aCheckOutTimeout
+	 * @param aMonitorPeriod
+	 * @return an opened pool of connections of the fake driver
+	 * @throws Exception
+	 */
+	private CDBPool newPool(final int aMinSize, final int aMaxSize, final long aCheckOutTimeout,
+			final long aMonitorPeriod) throws Exception {
+		CDBPool wPool = new CDBPool(null, CFakeJdbcDriver.newConnectionInfos("pool"), aMinSize, aMaxSize,
+				aCheckOutTimeout, aMonitorPeriod);
+		Assert.assertTrue(wPool.dbOpen());
+		return wPool;
+	}
+
+	/**
+	 * the connections are handed off between the threads without being used
+	 * by two threads at once and without opening more than MaxSize connections
+	 */
+	@Test
+	public void test10HandoffUnderContention() throws Exception {
+		String wMethodName = "test10HandoffUnderContention";
+
+		logBegin(this, wMethodName, "[%d] threads share 2 connections", NB_THREADS);
+		try {
+
+			final CDBPool wPool = newPool(1, 2, 10000, 3600000);
+			final Map<IDBConnection, Thread> wOwners = new ConcurrentHashMap<IDBConnection, Thread>();
+			final AtomicInteger wNbActiveMax = new AtomicInteger();
+
+			ExecutorService wExecutor = Executors.newFixedThreadPool(NB_THREADS);
+			try {
+				List<Future<Integer>> wResults = new ArrayList<Future<Integer>>();
+				for (int wThread = 0; wThread < NB_THREADS; wThread++) {
+					wResults.add(wExecutor.submit(new Callable<Integer>() {
+						@Override
+						public Integer call() throws Exception {
+							for (int i = 0; i < NB_CHECKOUTS; i++) {
+								IDBConnection wConnection = wPool.checkOut();
+								// the connection is used by one thread
+								Assert.assertNull(wOwners.put(wConnection, Thread.currentThread()));
+								Assert.assertTrue(wConnection.isBusy());
+								int wNbActive = wOwners.size();
+								int wMax;
+								while ((wMax = wNbActiveMax.get()) < wNbActive
+										&& !wNbActiveMax.compareAndSet(wMax, wNbActive)) {
+									// retry
+								}
+								Thread.sleep(1);
+								wOwners.remove(wConnection);
+								wPool.checkIn(wConnection);
+							}
+							return NB_CHECKOUTS;
+						}
+					}));
+				}
+				for (Future<Integer> wResult : wResults) {
+					Assert.assertEquals(NB_CHECKOUTS, wResult.get().intValue());
+				}
+			} finally {
+				wExecutor.shutdownNow();
+			}
+
+			getLogger().logInfo(this, wMethodName,
+					"created=[%d] active max=[%d] waits=[%d] timeouts=[%d] wait time=[%d ms] wait max=[%d ms]",
+					wPool.getNbCreatedConnections(), wNbActiveMax.get(), wPool.getNbCheckOutWaits(),
+					wPool.getNbCheckOutTimeouts(), wPool.getCheckOutWaitTime(), wPool.getCheckOutWaitTimeMax());
+			Assert.assertTrue(wNbActiveMax.get() <= 2);
+			Assert.assertTrue(wPool.getNbCreatedConnections() <= 2);
+			Assert.assertTrue(wPool.getNbCheckOutWaits() > 0);
+			Assert.assertEquals(0, wPool.getNbCheckOutTimeouts());
+			Assert.assertEquals(0, wPool.getNbActiveConnections());
+			wPool.dbClose();
+
+			logEndOK(this, wMethodName, "The connections are handed off");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * a checkout fails after the timeout when the pool is full, a waiting
+	 * checkout gets the connection checked in
+	 */
+	@Test
+	public void test20Timeout() throws Exception {
+		String wMethodName = "test20Timeout";
+
+		logBegin(this, wMethodName, "Wait for the only connection of a pool");
+		try {
+
+			final CDBPool wPool = newPool(1, 1, 300, 3600000);
+			IDBConnection wConnection = wPool.checkOut();
+
+			long wStart = System.nanoTime();
+			try {
+				wPool.checkOut();
+				Assert.fail("The pool is full");
+			} catch (DBException e) {
+				getLogger().logInfo(this, wMethodName, "EXPECTED ERROR: %s", e.getMessage());
+			}
+			Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - wStart) >= 300);
+			Assert.assertEquals(1, wPool.getNbCheckOutTimeouts());
+
+			// the connection checked in is handed off to the waiting thread
+			final CountDownLatch wStarted = new CountDownLatch(1);
+			ExecutorService wExecutor = Executors.newSingleThreadExecutor();
+			try {
+				Future<IDBConnection> wWaiter = wExecutor.submit(new Callable<IDBConnection>() {
+					@Override
+					public IDBConnection call() throws Exception {
+						wStarted.countDown();
+						return wPool.checkOut();
+					}
+				});
+				wStarted.await();
+				Thread.sleep(50);
+				wPool.checkIn(wConnection);
+				Assert.assertSame(wConnection, wWaiter.get(1, TimeUnit.SECONDS));
+				Assert.assertTrue(wConnection.isBusy());
+			} finally {
+				wExecutor.shutdownNow();
+			}
+			Assert.assertEquals(1, wPool.getNbCheckOutTimeouts());
+			Assert.assertEquals(1, wPool.getNbCreatedConnections());
+			wPool.checkIn(wConnection);
+			Assert.assertFalse(wConnection.isBusy());
+			wPool.dbClose();
+
+			logEndOK(this, wMethodName, "The checkout timed out");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * the monitor refills the pool up to MinSize, a pool whose MinSize is 0
+	 * stays empty
+	 */
+	@Test
+	public void test30MonitorRefill() throws Exception {
+		String wMethodName = "test30MonitorRefill";
+
+		logBegin(this, wMethodName, "Remove the connections of the pool");
+		try {
+
+			for (int wMinSize : new int[] { 2, 0 }) {
+				CDBPool wPool = newPool(wMinSize, 4, 1000, 50);
+				List<IDBConnection> wConnections = new ArrayList<IDBConnection>();
+				for (int i = 0; i < 2; i++) {
+					wConnections.add(wPool.checkOut());
+				}
+				// the invalid connections are removed when they are checked in
+				for (IDBConnection wConnection : wConnections) {
+					wConnection.invalidate();
+					wPool.checkIn(wConnection);
+				}
+				Assert.assertEquals(0, wPool.getNbConnection());
+
+				long wDeadline = System.currentTimeMillis() + 2000;
+				while (wPool.getNbConnection() < wMinSize && System.currentTimeMillis() < wDeadline) {
+					Thread.sleep(10);
+				}
+				// several periods of the monitor
+				Thread.sleep(200);
+				getLogger().logInfo(this, wMethodName, "MinSize=[%d] NbConnection=[%d]", wMinSize,
+						wPool.getNbConnection());
+				Assert.assertEquals(wMinSize, wPool.getNbConnection());
+				wPool.dbClose();
+			}
+
+			logEndOK(this, wMethodName, "The pools are refilled up to MinSize");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,287 @@
+package test.cohorte.utilities.sql;
+
+import java.io.StringWriter;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.cohorte.utilities.junit.CAbstractJunitTest;
+import org.cohorte.utilities.sql.EDBResultPart;
+import org.cohorte.utilities.sql.exec.CDBConnection;
+import org.cohorte.utilities.sql.exec.CDBConnectionFactory;
+import org.cohorte.utilities.sql.exec.CDBRequest;
+import org.cohorte.utilities.sql.exec.CDBResult;
+import org.cohorte.utilities.sql.exec.CDBResultCursor;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.psem2m.utilities.json.JSONArray;
+import org.psem2m.utilities.json.JSONObject;
+
+/**
+ * Tests that the json and xml outputs of a CDBResultCursor contain the rows,
+ * the status and the select count of a CDBResult containing the same rows
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class CJunitTestDBResultCursor extends CAbstractJunitTest {
+
+	private static final String[] LABELS = { "ID", "Name", "City" };
+
+	private static final int NB_BIG_ROWS = 20000;
+
+	private static final String SQL_BIG = "SELECT ID, Name, City FROM big";
+
+	private static final String SQL_EMPTY = "SELECT ID, Name, City FROM empty";
+
+	private static final String SQL_FAILING = "SELECT ID, Name, City FROM failing";
+
+	private static final String SQL_SMALL = "SELECT ID, Name, City FROM small";
+
+	private static final int[] TYPES = { Types.INTEGER, Types.VARCHAR, Types.VARCHAR };
+
+	/**
+	 *
+	 */
+	@AfterClass
+	public static void destroy() {
+
+		// log the destroy banner containing the report
+		logBannerDestroy(CJunitTestDBResultCursor.class);
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@BeforeClass
+	public static void initialize() throws Exception {
+
+		// initialise the map of the test method of the current junit test class
+		initializeTestsRegistry(CJunitTestDBResultCursor.class);
+
+		// log the initialization banner
+		logBannerInitialization(CJunitTestDBResultCursor.class);
+
+		Object[][] wRows = new Object[][] { { 1, "Kabul", "Kabol" }, { 2, "Qandahar", null },
+				{ 3, "<Herat> & \"Co\"", "Hérât" } };
+		CFakeJdbcDriver.setTable(SQL_SMALL, LABELS, TYPES, wRows);
+		CFakeJdbcDriver.setTable(SQL_EMPTY, LABELS, TYPES, new Object[0][]);
+		CFakeJdbcDriver.setTable(SQL_FAILING, LABELS, TYPES, wRows, 2);
+
+		Object[][] wBigRows = new Object[NB_BIG_ROWS][];
+		for (int wIdx = 0; wIdx < NB_BIG_ROWS; wIdx++) {
+			wBigRows[wIdx] = new Object[] { wIdx, "Name of the city number " + wIdx,
+					(wIdx % 10 == 0) ? null : "Province of the city number " + wIdx };
+		}
+		CFakeJdbcDriver.setTable(SQL_BIG, LABELS, TYPES, wBigRows);
+	}
+
+	/**
+	 *
+	 */
+	public CJunitTestDBResultCursor() {
+		super();
+	}
+
+	private static final Pattern XML_VALUES = Pattern.compile("<values>.*?</values>",
+			Pattern.DOTALL);
+
+	/**
+	 * @param aXml
+	 * @return the "values" nodes of the xml output
+	 */
+	private List<String> findXmlValues(final String aXml) {
+		List<String> wValues = new ArrayList<>();
+		Matcher wMatcher = XML_VALUES.matcher(aXml);
+		while (wMatcher.find()) {
+			wValues.add(wMatcher.group());
+		}
+		return wValues;
+	}
+
+	/**
+	 * @param aName
+	 * @param aXml
+	 * @return the text of the trailing node or null
+	 */
+	private String findXmlNode(final String aName, final String aXml) {
+		Matcher wMatcher = Pattern.compile("<" + aName + ">(.*?)</" + aName + ">", Pattern.DOTALL)
+				.matcher(aXml);
+		return wMatcher.find() ? wMatcher.group(1) : null;
+	}
+
+	/**
+	 * @param aMethodName
+	 * @param aSql
+	 *            the request written by the cursor
+	 * @param aExpectedStatus
+	 * @param aExpectedCount
+	 * @param aRowsSql
+	 *            the request returning the expected rows in a CDBResult
+	 * @throws Exception
+	 */
+	private void compare(final String aMethodName, final String aSql, final String aExpectedStatus,
+			final int aExpectedCount, final String aRowsSql) throws Exception {
+
+		CDBConnection wConnection = CDBConnectionFactory.newDbConnection(null,
+				CFakeJdbcDriver.newConnectionInfos("cursor"));
+		Assert.assertTrue(wConnection.open());
+		try {
+			CDBResult wResult = wConnection.execSqlRequest(new CDBRequest(aSql));
+			Assert.assertEquals(aExpectedStatus, wResult.getStatus());
+			Assert.assertEquals(aExpectedCount, wResult.getSelectCount());
+
+			CDBResult wRows = wConnection.execSqlRequest(new CDBRequest(aRowsSql));
+			List<String> wExpectedXmlValues = findXmlValues(wRows.toXmlStream(EDBResultPart.DATA))
+					.subList(0, aExpectedCount);
+			JSONArray wExpectedJsonValues = wRows.toJson(EDBResultPart.DATA).optJSONArray("values");
+
+			StringWriter wXml = new StringWriter();
+			CDBResultCursor wCursor = wConnection.openSqlCursor(new CDBRequest(aSql));
+			try {
+				Assert.assertEquals(aExpectedCount, wCursor.writeXml(wXml));
+			} finally {
+				wCursor.close();
+			}
+			StringWriter wJson = new StringWriter();
+			wCursor = wConnection.openSqlCursor(new CDBRequest(aSql));
+			try {
+				Assert.assertEquals(aExpectedCount, wCursor.writeJson(wJson));
+			} finally {
+				wCursor.close();
+			}
+
+			if (wXml.getBuffer().length() < 1024) {
+				getLogger().logInfo(this, aMethodName, "xml=[%s]", wXml);
+				getLogger().logInfo(this, aMethodName, "json=[%s]", wJson);
+			} else {
+				getLogger().logInfo(this, aMethodName, "xml=[%d chars] json=[%d chars]",
+						wXml.getBuffer().length(), wJson.getBuffer().length());
+			}
+
+			// xml: the "values" nodes then the trailing nodes
+			String wXmlOutput = wXml.toString();
+			Assert.assertEquals(wExpectedXmlValues, findXmlValues(wXmlOutput));
+			Assert.assertEquals(aExpectedStatus, findXmlNode("status", wXmlOutput));
+			Assert.assertNotNull(findXmlNode("queryduration", wXmlOutput));
+			Assert.assertEquals(String.valueOf(aExpectedCount), findXmlNode("selectcount", wXmlOutput));
+			Assert.assertEquals(!wResult.isOK(), findXmlNode("jdbcmessage", wXmlOutput) != null);
+
+			// json: the keys of CDBResult.toJson()
+			JSONObject wJsonOutput = new JSONObject(wJson.toString());
+			Assert.assertEquals(aExpectedStatus, wJsonOutput.getString("status"));
+			Assert.assertTrue(wJsonOutput.has("queryduration"));
+			Assert.assertEquals(aExpectedCount, wJsonOutput.getInt("selectcount"));
+			Assert.assertEquals(!wResult.isOK(), wJsonOutput.has("jdbcmessage"));
+			JSONArray wJsonValues = wJsonOutput.optJSONArray("values");
+			if (aExpectedCount == 0) {
+				Assert.assertNull(wJsonValues);
+			} else {
+				Assert.assertEquals(aExpectedCount, wJsonValues.length());
+				for (int wIdx = 0; wIdx < aExpectedCount; wIdx++) {
+					Assert.assertEquals(wExpectedJsonValues.getJSONObject(wIdx).toString(),
+							wJsonValues.getJSONObject(wIdx).toString());
+				}
+			}
+		} finally {
+			wConnection.close();
+		}
+	}
+
+	/**
+	 * rows with a null value and characters to escape
+	 */
+	@Test
+	public void test10Rows() throws Exception {
+		String wMethodName = "test10Rows";
+
+		logBegin(this, wMethodName, "Write [%s]", SQL_SMALL);
+		try {
+
+			compare(wMethodName, SQL_SMALL, "OK", 3, SQL_SMALL);
+
+			logEndOK(this, wMethodName, "The outputs contain the rows of CDBResult");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * no row: no "values"
+	 */
+	@Test
+	public void test20NoRow() throws Exception {
+		String wMethodName = "test20NoRow";
+
+		logBegin(this, wMethodName, "Write [%s]", SQL_EMPTY);
+		try {
+
+			compare(wMethodName, SQL_EMPTY, "OK", 0, SQL_EMPTY);
+
+			logEndOK(this, wMethodName, "The outputs contain the rows of CDBResult");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * the fetch of the third row fails: status KO, the two fetched rows and
+	 * the jdbcmessage
+	 */
+	@Test
+	public void test30FailingFetch() throws Exception {
+		String wMethodName = "test30FailingFetch";
+
+		logBegin(this, wMethodName, "Write [%s]", SQL_FAILING);
+		try {
+
+			compare(wMethodName, SQL_FAILING, "KO", 2, SQL_SMALL);
+
+			logEndOK(this, wMethodName, "The outputs contain the rows of CDBResult");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * many rows written as they are fetched
+	 */
+	@Test
+	public void test40BigResult() throws Exception {
+		String wMethodName = "test40BigResult";
+
+		logBegin(this, wMethodName, "Write [%s]", SQL_BIG);
+		try {
+
+			compare(wMethodName, SQL_BIG, "OK", NB_BIG_ROWS, SQL_BIG);
+
+			logEndOK(this, wMethodName, "The outputs contain the rows of CDBResult");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,203 @@
+package test.cohorte.utilities.sql;
+
+import java.sql.Types;
+import java.util.Arrays;
+
+import org.cohorte.utilities.junit.CAbstractJunitTest;
+import org.cohorte.utilities.sql.exec.CDBConnection;
+import org.cohorte.utilities.sql.exec.CDBConnectionFactory;
+import org.cohorte.utilities.sql.exec.CDBRequest;
+import org.cohorte.utilities.sql.exec.CDBResult;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * Tests the cache of the prepared statements of a CDBConnection and the type
+ * of the null values bound to the statements
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class CJunitTestDBStatementCache extends CAbstractJunitTest {
+
+	/**
+	 *
+	 */
+	@AfterClass
+	public static void destroy() {
+
+		// log the destroy banner containing the report
+		logBannerDestroy(CJunitTestDBStatementCache.class);
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@BeforeClass
+	public static void initialize() throws Exception {
+
+		// initialise the map of the test method of the current junit test class
+		initializeTestsRegistry(CJunitTestDBStatementCache.class);
+
+		// log the initialization banner
+		logBannerInitialization(CJunitTestDBStatementCache.class);
+
+		CFakeJdbcDriver.register();
+	}
+
+	/**
+	 *
+	 */
+	public CJunitTestDBStatementCache() {
+		super();
+	}
+
+	/**
+	 * @param aConnection
+	 * @param aTable
+	 * @param aValue
+	 * @throws Exception
+	 */
+	private void insert(final CDBConnection aConnection, final String aTable, final Object aValue)
+			throws Exception {
+		CDBResult wResult = aConnection.execSqlRequest(new CDBRequest(
+				String.format("INSERT INTO %s (ID) VALUES (?)", aTable)).setBindValues(aValue));
+		Assert.assertTrue(wResult.isOK());
+		Assert.assertEquals(1, wResult.getDataManipulationCount());
+	}
+
+	/**
+	 * @return an opened connection of the fake driver
+	 * @throws Exception
+	 */
+	private CDBConnection newConnection() throws Exception {
+		CFakeJdbcDriver.reset();
+		CFakeJdbcDriver.setParameterType(null);
+		CDBConnection wConnection = CDBConnectionFactory.newDbConnection(null,
+				CFakeJdbcDriver.newConnectionInfos("cache"));
+		Assert.assertTrue(wConnection.open());
+		return wConnection;
+	}
+
+	/**
+	 * the statement of a request executed twice is prepared once
+	 */
+	@Test
+	public void test10Hit() throws Exception {
+		String wMethodName = "test10Hit";
+
+		logBegin(this, wMethodName, "Execute the same prepared request twice");
+		try {
+
+			CDBConnection wConnection = newConnection();
+			insert(wConnection, "T0", 1);
+			insert(wConnection, "T0", 2);
+
+			Assert.assertEquals(1, CFakeJdbcDriver.getNbPreparedStatements());
+			Assert.assertEquals(1, wConnection.getNbStatementCacheHits());
+			Assert.assertEquals(1, wConnection.getNbStatementCacheMisses());
+			Assert.assertEquals(1, wConnection.getNbCachedStatements());
+			Assert.assertEquals(0, CFakeJdbcDriver.getNbClosedStatements());
+			wConnection.close();
+
+			logEndOK(this, wMethodName, "The statement is reused");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * the least recently used statement is closed when the cache is full, the
+	 * closing of the connection closes the cached statements
+	 */
+	@Test
+	public void test20Eviction() throws Exception {
+		String wMethodName = "test20Eviction";
+
+		logBegin(this, wMethodName, "Execute [%d] prepared requests",
+				CDBConnection.DEFAULT_STATEMENT_CACHE_SIZE + 1);
+		try {
+
+			CDBConnection wConnection = newConnection();
+			for (int wIdx = 0; wIdx < CDBConnection.DEFAULT_STATEMENT_CACHE_SIZE; wIdx++) {
+				insert(wConnection, "T" + wIdx, wIdx);
+			}
+			// T0 becomes the most recently used statement
+			insert(wConnection, "T0", 0);
+			Assert.assertEquals(1, wConnection.getNbStatementCacheHits());
+
+			// T1 is evicted
+			insert(wConnection, "TX", 0);
+			Assert.assertEquals(CDBConnection.DEFAULT_STATEMENT_CACHE_SIZE, wConnection.getNbCachedStatements());
+			Assert.assertEquals(1, CFakeJdbcDriver.getNbClosedStatements());
+
+			insert(wConnection, "T0", 0);
+			Assert.assertEquals(2, wConnection.getNbStatementCacheHits());
+			insert(wConnection, "T1", 0);
+			Assert.assertEquals(2, wConnection.getNbStatementCacheHits());
+			Assert.assertEquals(CDBConnection.DEFAULT_STATEMENT_CACHE_SIZE + 2,
+					wConnection.getNbStatementCacheMisses());
+			Assert.assertEquals(CDBConnection.DEFAULT_STATEMENT_CACHE_SIZE + 2,
+					CFakeJdbcDriver.getNbPreparedStatements());
+			Assert.assertEquals(2, CFakeJdbcDriver.getNbClosedStatements());
+
+			wConnection.close();
+			Assert.assertEquals(0, wConnection.getNbCachedStatements());
+			Assert.assertEquals(CFakeJdbcDriver.getNbPreparedStatements(), CFakeJdbcDriver.getNbClosedStatements());
+
+			logEndOK(this, wMethodName, "The evicted statements are closed");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * a null value is bound with the type of the parameter given by the
+	 * driver, or as a VARCHAR
+	 */
+	@Test
+	public void test30NullType() throws Exception {
+		String wMethodName = "test30NullType";
+
+		logBegin(this, wMethodName, "Bind null values");
+		try {
+
+			CDBConnection wConnection = newConnection();
+
+			// getParameterMetaData() isn't supported
+			insert(wConnection, "T0", null);
+			CFakeJdbcDriver.setParameterType(Types.INTEGER);
+			insert(wConnection, "T0", null);
+			// the driver doesn't know the type
+			CFakeJdbcDriver.setParameterType(Types.NULL);
+			insert(wConnection, "T0", null);
+
+			Assert.assertEquals(Arrays.asList(Types.VARCHAR, Types.INTEGER, Types.VARCHAR),
+					CFakeJdbcDriver.getNullTypes());
+			wConnection.close();
+
+			logEndOK(this, wMethodName, "The null values are typed");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		} finally {
+			CFakeJdbcDriver.setParameterType(null);
+		}
+	}
+}
@@ -15,6 +15,7 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.text.DecimalFormat;
 
@@ -149,20 +150,7 @@ public class CXFile extends CXFileBase {
 		assertExist("copy");
 		this.close();
 		if ((!aDestFile.exists()) || (aDestFile.exists() && aDeleteIfExists)) {
-			final FileInputStream wFis = getInputStream();
-			final FileOutputStream wFos = aDestFile.getOutputStream(false);
-			final int wSize = wFis.available();
-			final int wBuffSize = 4096;
-			int wCopySize = 0;
-			int wReadSize = 0;
-			final byte[] wData = new byte[wBuffSize];
-			while (wCopySize < wSize) {
-				wReadSize = wFis.read(wData, 0, wBuffSize);
-				wFos.write(wData, 0, wReadSize);
-				wCopySize += wReadSize;
-			}
-			wFos.close();
-			wFis.close();
+			copyContent(this, aDestFile);
 		}
 		// else
 		// throw new IOException("Can't copy file '" + getPath() + "' to '" +
@@ -171,6 +159,40 @@ public class CXFile extends CXFileBase {
 		return aDestFile;
 	}
 
+	/**
+	 * Copies the content of a file with FileChannel.transferTo() : the system
+	 * copies the bytes without passing them through the java heap.
+	 *
+	 * @param aSrcFile
+	 * @param aDestFile
+	 *            created or truncated
+	 * @throws IOException
+	 */
+	static void copyContent(final File aSrcFile, final File aDestFile) throws IOException {
+		final FileInputStream wFis = new FileInputStream(aSrcFile);
+		try {
+			final FileOutputStream wFos = new FileOutputStream(aDestFile, false);
+			try {
+				final FileChannel wSrc = wFis.getChannel();
+				final FileChannel wDest = wFos.getChannel();
+				final long wSize = wSrc.size();
+				long wPosition = 0;
+				while (wPosition < wSize) {
+					final long wCount = wSrc.transferTo(wPosition, wSize - wPosition, wDest);
+					if (wCount <= 0) {
+						// truncated during the copy
+						break;
+					}
+					wPosition += wCount;
+				}
+			} finally {
+				wFos.close();
+			}
+		} finally {
+			wFis.close();
+		}
+	}
+
 	/**
 	 * Copie d'un fichier
 	 *
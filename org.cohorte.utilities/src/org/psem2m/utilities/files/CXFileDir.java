@@ -15,19 +15,30 @@ import java.io.FileFilter;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.psem2m.utilities.CXJvmUtils;
 import org.psem2m.utilities.CXStringUtils;
+import org.psem2m.utilities.files.CXFileDirWalker.CEntry;
+import org.psem2m.utilities.files.CXFileDirWalker.IEntryProcessor;
 
 /**
  * Classe de gestion de repertoies !! MonoThread
  *
+ * The scans, the copies, the moves and the removals walk the trees with NIO
+ * (see CXFileDirWalker): the attributes of the entries are read once and the
+ * FileFilter receives them. In parallel mode (setParallel), the directories
+ * are listed and the files are copied, moved or deleted by the tasks of a
+ * fork/join pool.
+ *
  * @author ogattaz
  *
  */
@@ -402,6 +413,8 @@ public class CXFileDir extends CXFileBase implements IXFilesContainer {
 
 	private IXDirScanListener pDirScanListener = null;
 
+	private boolean pParallel = false;
+
 	private int pScanLevel = 0;
 
 	/**
@@ -561,18 +574,21 @@ public class CXFileDir extends CXFileBase implements IXFilesContainer {
 			aDstDir.mkdirs();
 		}
 
-		int wRes = 0;
-		final Iterator<File> wIt = getMyFiles(aFilter, true).iterator();
-		while (wIt.hasNext()) {
-			final File wFile = wIt.next();
-			if (wFile.isFile()) {
-				((CXFile) wFile).copyTo(aDstDir, wFile.getName(), aDeleteExinstingFiles);
-				wRes++;
-			} else if (wFile.isDirectory()) {
-				wRes += ((CXFileDir) wFile).copyTo(new CXFileDir(aDstDir.getAbsolutePath(), wFile.getName()), aFilter,
-						aDeleteExinstingFiles, aCreateEmptyDir);
+		final Path wRoot = getRootPath();
+		final Path wDstRoot = aDstDir.getAbsoluteFile().toPath();
+		final List<CEntry> wFiles = createDestDirs(walk(aFilter, true), wRoot, wDstRoot, aCreateEmptyDir);
+
+		CXFileDirWalker.process(wFiles, new IEntryProcessor() {
+			@Override
+			public void process(final CEntry aEntry) throws IOException {
+				final Path wDest = wDstRoot.resolve(wRoot.relativize(aEntry.getPath()));
+				if (aDeleteExinstingFiles || !Files.exists(wDest)) {
+					CXFile.copyContent(aEntry.getPath().toFile(), wDest.toFile());
+				}
 			}
-		}
+		}, isParallel());
+
+		final int wRes = wFiles.size();
 		if (wRes == 0 && !aCreateEmptyDir) {
 			aDstDir.delete();
 		}
@@ -580,6 +596,39 @@ public class CXFileDir extends CXFileBase implements IXFilesContainer {
 		return wRes;
 	}
 
+	/**
+	 * Cree les repertoires de destination d'une copie ou d'un deplacement
+	 *
+	 * @param aEntries
+	 *            the walked entries
+	 * @param aRoot
+	 * @param aDstRoot
+	 * @param aCreateEmptyDir
+	 *            false to create only the directories of the files
+	 * @return the files of the entries
+	 * @throws IOException
+	 */
+	private List<CEntry> createDestDirs(final List<CEntry> aEntries, final Path aRoot, final Path aDstRoot,
+			final boolean aCreateEmptyDir) throws IOException {
+
+		final List<CEntry> wFiles = new ArrayList<>(aEntries.size());
+		final Set<Path> wDstDirs = new LinkedHashSet<>();
+		for (final CEntry wEntry : aEntries) {
+			if (wEntry.isDirectory()) {
+				if (aCreateEmptyDir) {
+					wDstDirs.add(aDstRoot.resolve(aRoot.relativize(wEntry.getPath())));
+				}
+			} else {
+				wFiles.add(wEntry);
+				wDstDirs.add(aDstRoot.resolve(aRoot.relativize(wEntry.getPath().getParent())));
+			}
+		}
+		for (final Path wDstDir : wDstDirs) {
+			Files.createDirectories(wDstDir);
+		}
+		return wFiles;
+	}
+
 	/**
 	 * Cree le repertoire et son arborescence
 	 *
@@ -639,31 +688,17 @@ public class CXFileDir extends CXFileBase implements IXFilesContainer {
 
 		failIfNotExist();
 
-		File[] wList;
-		if (aFilter == null) {
-			wList = this.listFiles();
-		} else {
-			wList = this.listFiles(aFilter);
-		}
-		final ArrayList<File> wResult = new ArrayList<>(wList.length);
+		final List<CEntry> wEntries = new CXFileDirWalker(aFilter, false, false).walk(getRootPath());
+		final ArrayList<File> wResult = new ArrayList<>(wEntries.size());
 
-		for (int wI = 0; wI < wList.length; wI++) {
-			final File wFile = wList[wI];
-
-			if (wFile.isFile()) {
-				final CXFileBase wNewFile = newFile(wFile.getAbsolutePath(), aInstanciateTxtFiles);
+		for (final CEntry wEntry : wEntries) {
+			if (aWithDirs || !wEntry.isDirectory()) {
+				final CXFileBase wNewFile = newFile(wEntry, aInstanciateTxtFiles);
 				if (hasScanListener()) {
 					getScanListener().listenOneFile(getScanLevel(), wResult.size(), wNewFile);
 				}
 				wResult.add(wNewFile);
-			} else if (aWithDirs && wFile.isDirectory()) {
-				final CXFileBase wNewFileDir = newFileDir(wFile.getAbsolutePath());
-				if (hasScanListener()) {
-					getScanListener().listenOneFile(getScanLevel(), wResult.size(), wNewFileDir);
-				}
-				wResult.add(wNewFileDir);
 			}
-
 		}
 
 		return wResult;
@@ -746,6 +781,14 @@ public class CXFileDir extends CXFileBase implements IXFilesContainer {
 		return new CXFileDir(getParent());
 	}
 
+	/**
+	 * @return the absolute path of the directory
+	 */
+	private Path getRootPath() {
+
+		return getAbsoluteFile().toPath();
+	}
+
 	/**
 	 * @param aEndWithSep
 	 *            Ajout ou non d'un separateur en fin du getPath()
@@ -809,6 +852,14 @@ public class CXFileDir extends CXFileBase implements IXFilesContainer {
 		return this.getName().equals(META_INF);
 	}
 
+	/**
+	 * @return true if the trees are walked by the tasks of a fork/join pool
+	 */
+	public boolean isParallel() {
+
+		return pParallel;
+	}
+
 	/**
 	 * @return
 	 */
@@ -879,19 +930,27 @@ public class CXFileDir extends CXFileBase implements IXFilesContainer {
 			aDstDir.mkdirs();
 		}
 
-		int wRes = 0;
-		final ArrayList<File> wMyFiles = getMyFiles(aFilter, true);
-		final Iterator<File> wIt = wMyFiles.iterator();
-		while (wIt.hasNext()) {
-			final File wFile = wIt.next();
-			if (wFile.isFile()) {
-				((CXFile) wFile).moveTo(aDstDir, wFile.getName(), aDeleteExinstingFiles);
-				wRes++;
-			} else if (wFile.isDirectory()) {
-				wRes += ((CXFileDir) wFile).moveTo(new CXFileDir(aDstDir.getAbsolutePath(), wFile.getName()), aFilter,
-						aDeleteExinstingFiles, aCreateEmptyDir);
+		final Path wRoot = getRootPath();
+		final Path wDstRoot = aDstDir.getAbsoluteFile().toPath();
+		final List<CEntry> wEntries = walk(aFilter, true);
+		final List<CEntry> wFiles = createDestDirs(wEntries, wRoot, wDstRoot, aCreateEmptyDir);
+
+		CXFileDirWalker.process(wFiles, new IEntryProcessor() {
+			@Override
+			public void process(final CEntry aEntry) throws IOException {
+				final Path wDest = wDstRoot.resolve(wRoot.relativize(aEntry.getPath()));
+				new CXFile(aEntry.getPath().toFile()).moveTo(new CXFile(wDest.toFile()), aDeleteExinstingFiles);
+			}
+		}, isParallel());
+
+		// Suppression des sous-dossiers vides - les enfants avant leur pere
+		for (int wIdx = wEntries.size() - 1; wIdx >= 0; wIdx--) {
+			final CEntry wEntry = wEntries.get(wIdx);
+			if (wEntry.isDirectory()) {
+				wEntry.getPath().toFile().delete();
 			}
 		}
+		final int wRes = wFiles.size();
 		// Suppression si dossier source si vide
 		if (wRes == 0 && !aCreateEmptyDir) {
 			aDstDir.delete();
@@ -905,6 +964,17 @@ public class CXFileDir extends CXFileBase implements IXFilesContainer {
 		return wRes;
 	}
 
+	/**
+	 * @param aEntry
+	 * @param aInstanciateTxtFiles
+	 * @return the file or the directory of the walked entry
+	 */
+	private CXFileBase newFile(final CEntry aEntry, final boolean aInstanciateTxtFiles) {
+
+		final String wPath = aEntry.getPath().toString();
+		return aEntry.isDirectory() ? newFileDir(wPath) : newFile(wPath, aInstanciateTxtFiles);
+	}
+
 	/**
 	 * Instancie un objet fichier - CAdminFile et classes derivees
 	 */
@@ -988,27 +1058,43 @@ public class CXFileDir extends CXFileBase implements IXFilesContainer {
 
 		int wNbFile = 0;
 		if (exists()) {
-			final Iterator<File> wIt = getMyFiles(aFileFilter, WITH_DIRS).iterator();
-			while (wIt.hasNext()) {
-				final File wFile = wIt.next();
-				if (wFile.isFile()) {
-					if (aFileFilter == null || aFileFilter.accept(wFile)) {
-						try {
-							// MOD_OG_20160719
-							// Use Files.delete() rather than File.delete() to
-							// get an explicit exception to diagnose easily the
-							// troubles
-							Files.delete(wFile.toPath());
-						} catch (Exception e) {
-							throw new IOException(
-									String.format("Unable to delete file [%s]. canWrite=[%b]. isFileEmpty=[%b]",
-											getAbsolutePath(), canWrite(), ((CXFile) wFile).isEmpty()),
-									e);
-						}
-						wNbFile++;
+			final List<CEntry> wEntries = walk(aFileFilter, true);
+			final List<CEntry> wFiles = new ArrayList<>(wEntries.size());
+			for (final CEntry wEntry : wEntries) {
+				if (!wEntry.isDirectory()) {
+					wFiles.add(wEntry);
+				}
+			}
+			CXFileDirWalker.process(wFiles, new IEntryProcessor() {
+				@Override
+				public void process(final CEntry aEntry) throws IOException {
+					final File wFile = aEntry.getPath().toFile();
+					try {
+						// MOD_OG_20160719
+						// Use Files.delete() rather than File.delete() to
+						// get an explicit exception to diagnose easily the
+						// troubles
+						Files.delete(aEntry.getPath());
+					} catch (Exception e) {
+						throw new IOException(String.format("Unable to delete file [%s]. canWrite=[%b]. isFileEmpty=[%b]",
+								wFile.getAbsolutePath(), wFile.canWrite(), wFile.length() == 0), e);
 					}
-				} else if (wFile.isDirectory()) {
-					wNbFile += ((CXFileDir) wFile).remove(true, aFileFilter);
+				}
+			}, isParallel());
+			wNbFile += wFiles.size();
+
+			// the sub-directories: the children before their parent
+			for (int wIdx = wEntries.size() - 1; wIdx >= 0; wIdx--) {
+				final CEntry wEntry = wEntries.get(wIdx);
+				if (wEntry.isDirectory()) {
+					try {
+						Files.delete(wEntry.getPath());
+					} catch (Exception e) {
+						final CXFileDir wDir = newFileDir(wEntry.getPath().toString());
+						throw new IOException(String.format("Unable to delete dir [%s]. canWrite=[%b]. isDirEmpty=[%b]",
+								wDir.getAbsolutePath(), wDir.canWrite(), wDir.isEmpty()), e);
+					}
+					wNbFile++;
 				}
 			}
 			if (aRemoveMe) {
@@ -1117,15 +1203,13 @@ public class CXFileDir extends CXFileBase implements IXFilesContainer {
 		if (aList == null) {
 			aList = new CXSortListFiles();
 		}
-		final Iterator<File> wIt = getMyFiles(aFilter, true, aInstanciateTxtFiles).iterator();
-		while (wIt.hasNext()) {
-			final File wFile = wIt.next();
-
-			aList.add(wFile);
-			if (wFile.isDirectory() && aSubDirs) {
-				((CXFileDir) wFile).scanAll(aList, aFilter, aSubDirs, aInstanciateTxtFiles);
+		for (final CEntry wEntry : walk(aFilter, aSubDirs)) {
+			final CXFileBase wFile = newFile(wEntry, aInstanciateTxtFiles);
+			// the listener is notified of the content of the directory only
+			if (hasScanListener() && wEntry.getLevel() == 0) {
+				getScanListener().listenOneFile(getScanLevel(), wEntry.getIndex(), wFile);
 			}
-
+			aList.add(wFile);
 		}
 		return aList;
 	}
@@ -1227,13 +1311,16 @@ public class CXFileDir extends CXFileBase implements IXFilesContainer {
 		if (aList == null) {
 			aList = new CXSortListFiles();
 		}
-		final Iterator<File> wIt = getMyFiles(aFilter, true, aInstanciateTxtFiles).iterator();
-		while (wIt.hasNext()) {
-			final File wFile = wIt.next();
-			if (wFile.isDirectory()) {
-				aList.add(wFile);
-				if (aSubDirs) {
-					((CXFileDir) wFile).scanAllDirs(aList, aFilter, aSubDirs, aInstanciateTxtFiles);
+		for (final CEntry wEntry : walk(aFilter, aSubDirs)) {
+			final boolean wNotified = hasScanListener() && wEntry.getLevel() == 0;
+			if (wEntry.isDirectory() || wNotified) {
+				final CXFileBase wFile = newFile(wEntry, aInstanciateTxtFiles);
+				// the listener is notified of the content of the directory only
+				if (wNotified) {
+					getScanListener().listenOneFile(getScanLevel(), wEntry.getIndex(), wFile);
+				}
+				if (wEntry.isDirectory()) {
+					aList.add(wFile);
 				}
 			}
 		}
@@ -1297,17 +1384,17 @@ public class CXFileDir extends CXFileBase implements IXFilesContainer {
 			aList = new CXSortListFiles();
 		}
 
-		final Iterator<File> wIt = getMyFiles(aFilter, true, aInstanciateTxtFiles).iterator();
-		while (wIt.hasNext()) {
-			final File wFile = wIt.next();
-			if (wFile.isFile()) {
+		for (final CEntry wEntry : walk(aFilter, aSubDirs)) {
+			if (wEntry.isDirectory() && !hasScanListener()) {
+				continue;
+			}
+			final CXFileBase wFile = newFile(wEntry, aInstanciateTxtFiles);
+			// the listener is notified of all the levels
+			if (hasScanListener()) {
+				getScanListener().listenOneFile(getScanLevel() + wEntry.getLevel(), wEntry.getIndex(), wFile);
+			}
+			if (!wEntry.isDirectory()) {
 				aList.add(wFile);
-			} else if (wFile.isDirectory() && aSubDirs) {
-				if (hasScanListener()) {
-					((CXFileDir) wFile).setScanListner(getScanListener());
-				}
-				((CXFileDir) wFile).setScanLevel(getScanLevel() + 1);
-				((CXFileDir) wFile).scanAllFiles(aList, aFilter, aSubDirs, aInstanciateTxtFiles);
 			}
 		}
 		if (hasScanListener() && isScanLevelZero()) {
@@ -1402,6 +1489,16 @@ public class CXFileDir extends CXFileBase implements IXFilesContainer {
 		}
 	}
 
+	/**
+	 * @param aParallel
+	 *            true to walk the trees with the tasks of a fork/join pool. The
+	 *            filters must then be thread-safe.
+	 */
+	public void setParallel(final boolean aParallel) {
+
+		pParallel = aParallel;
+	}
+
 	/**
 	 * @param aScanLevel
 	 */
@@ -1417,4 +1514,17 @@ public class CXFileDir extends CXFileBase implements IXFilesContainer {
 
 		pDirScanListener = aDirScanListener;
 	}
+
+	/**
+	 * @param aFilter
+	 * @param aSubDirs
+	 * @return the accepted files and directories, each directory followed by
+	 *         its content
+	 * @throws IOException
+	 */
+	private List<CEntry> walk(final FileFilter aFilter, final boolean aSubDirs) throws IOException {
+
+		failIfNotExist();
+		return new CXFileDirWalker(aFilter, aSubDirs, isParallel()).walk(getRootPath());
+	}
 }
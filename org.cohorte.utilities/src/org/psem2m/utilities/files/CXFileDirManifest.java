@@ -0,0 +1,199 @@
+package org.psem2m.utilities.files;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The state of a target directory after a run of a CXFileDirSynchronizer: the
+ * relative path, the size, the date of last modification and, when it was
+ * computed, the SHA-256 hash of each file copied or checked.
+ *
+ * The manifest is a UTF-8 text file with one entry by line:
+ *
+ * <pre>
+ * F	size	lastModified	hash or -	relative/path
+ * D	0	0	-	relative/dir
+ * </pre>
+ */
+class CXFileDirManifest {
+
+	/**
+	 * the state of a file or of a directory
+	 */
+	static class CEntry {
+
+		private final boolean pDirectory;
+
+		private final String pHash;
+
+		private final long pLastModified;
+
+		private final long pSize;
+
+		/**
+		 * @param aDirectory
+		 * @param aSize
+		 * @param aLastModified
+		 * @param aHash
+		 *            the hexadecimal SHA-256 hash or null
+		 */
+		CEntry(final boolean aDirectory, final long aSize, final long aLastModified, final String aHash) {
+			super();
+			pDirectory = aDirectory;
+			pSize = aSize;
+			pLastModified = aLastModified;
+			pHash = aHash;
+		}
+
+		String getHash() {
+			return pHash;
+		}
+
+		long getLastModified() {
+			return pLastModified;
+		}
+
+		long getSize() {
+			return pSize;
+		}
+
+		boolean isDirectory() {
+			return pDirectory;
+		}
+	}
+
+	private static final String COMMENT = "#";
+
+	private static final char KIND_DIR = 'D';
+
+	private static final char KIND_FILE = 'F';
+
+	private static final String NO_HASH = "-";
+
+	private static final String SEPARATOR = "\t";
+
+	/**
+	 * @param aFile
+	 * @return the manifest stored in the file or null if the file doesn't
+	 *         exist or is corrupted
+	 */
+	static CXFileDirManifest load(final File aFile) {
+		if (aFile == null || !aFile.isFile()) {
+			return null;
+		}
+		final CXFileDirManifest wManifest = new CXFileDirManifest();
+		try {
+			final BufferedReader wReader = Files.newBufferedReader(aFile.toPath(), StandardCharsets.UTF_8);
+			try {
+				String wLine;
+				while ((wLine = wReader.readLine()) != null) {
+					if (wLine.isEmpty() || wLine.startsWith(COMMENT)) {
+						continue;
+					}
+					// the path is the last field: it can contain the separator
+					final String[] wFields = wLine.split(SEPARATOR, 5);
+					if (wFields.length != 5 || wFields[0].length() != 1) {
+						return null;
+					}
+					final String wHash = NO_HASH.equals(wFields[3]) ? null : wFields[3];
+					wManifest.put(wFields[4], new CEntry(wFields[0].charAt(0) == KIND_DIR,
+							Long.parseLong(wFields[1]), Long.parseLong(wFields[2]), wHash));
+				}
+			} finally {
+				wReader.close();
+			}
+		} catch (final IOException | NumberFormatException e) {
+			// the next run compares all the files
+			return null;
+		}
+		return wManifest;
+	}
+
+	// the entries by relative path ('/' separated) in the order of the scan
+	private final Map<String, CEntry> pEntries = new LinkedHashMap<>();
+
+	/**
+	 *
+	 */
+	CXFileDirManifest() {
+		super();
+	}
+
+	/**
+	 * @param aPath
+	 *            the relative path
+	 * @return the entry or null
+	 */
+	CEntry get(final String aPath) {
+		return pEntries.get(aPath);
+	}
+
+	/**
+	 * @return the relative paths
+	 */
+	Set<String> getPaths() {
+		return pEntries.keySet();
+	}
+
+	/**
+	 * @param aPath
+	 *            the relative path
+	 * @param aEntry
+	 */
+	void put(final String aPath, final CEntry aEntry) {
+		pEntries.put(aPath, aEntry);
+	}
+
+	/**
+	 * @return the number of entries
+	 */
+	int size() {
+		return pEntries.size();
+	}
+
+	/**
+	 * writes the manifest in a temporary file moved at once: a run
+	 * interrupted never leaves a partial manifest
+	 *
+	 * @param aFile
+	 * @throws IOException
+	 */
+	void store(final File aFile) throws IOException {
+		final File wDir = aFile.getAbsoluteFile().getParentFile();
+		Files.createDirectories(wDir.toPath());
+		final File wTmpFile = File.createTempFile(aFile.getName(), ".tmp", wDir);
+		try {
+			final BufferedWriter wWriter = Files.newBufferedWriter(wTmpFile.toPath(), StandardCharsets.UTF_8);
+			try {
+				wWriter.write(COMMENT + " CXFileDirManifest: kind size lastModified hash path");
+				wWriter.newLine();
+				for (final Map.Entry<String, CEntry> wEntry : pEntries.entrySet()) {
+					final CEntry wState = wEntry.getValue();
+					wWriter.write(wState.isDirectory() ? KIND_DIR : KIND_FILE);
+					wWriter.write(SEPARATOR);
+					wWriter.write(String.valueOf(wState.getSize()));
+					wWriter.write(SEPARATOR);
+					wWriter.write(String.valueOf(wState.getLastModified()));
+					wWriter.write(SEPARATOR);
+					wWriter.write(wState.getHash() != null ? wState.getHash() : NO_HASH);
+					wWriter.write(SEPARATOR);
+					wWriter.write(wEntry.getKey());
+					wWriter.newLine();
+				}
+			} finally {
+				wWriter.close();
+			}
+			Files.move(wTmpFile.toPath(), aFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			wTmpFile.delete();
+		}
+	}
+}
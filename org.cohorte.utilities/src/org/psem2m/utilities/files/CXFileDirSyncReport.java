@@ -0,0 +1,182 @@
+package org.psem2m.utilities.files;
+
+/**
+ * The report of a run of CXFileDirSynchronizer.sync()
+ */
+public class CXFileDirSyncReport {
+
+	private long pDurationMs = 0;
+
+	private long pNbBytesCopied = 0;
+
+	private long pNbDirsCreated = 0;
+
+	private long pNbDirsDeleted = 0;
+
+	private long pNbFilesChecked = 0;
+
+	private long pNbFilesCopied = 0;
+
+	private long pNbFilesDeleted = 0;
+
+	private long pNbFilesHashed = 0;
+
+	private long pNbFilesScanned = 0;
+
+	private long pNbFilesUnchanged = 0;
+
+	// true if the manifest of the previous run was read
+	private boolean pWithManifest = false;
+
+	/**
+	 *
+	 */
+	CXFileDirSyncReport() {
+		super();
+	}
+
+	synchronized void addDirCreated() {
+		pNbDirsCreated++;
+	}
+
+	synchronized void addDirDeleted() {
+		pNbDirsDeleted++;
+	}
+
+	synchronized void addFileChecked() {
+		pNbFilesChecked++;
+	}
+
+	/**
+	 * @param aNbBytes
+	 */
+	synchronized void addFileCopied(final long aNbBytes) {
+		pNbFilesCopied++;
+		pNbBytesCopied += aNbBytes;
+	}
+
+	synchronized void addFileDeleted() {
+		pNbFilesDeleted++;
+	}
+
+	synchronized void addFileHashed() {
+		pNbFilesHashed++;
+	}
+
+	synchronized void addFileUnchanged() {
+		pNbFilesUnchanged++;
+	}
+
+	/**
+	 * @return the duration of the run in milliseconds
+	 */
+	public synchronized long getDurationMs() {
+		return pDurationMs;
+	}
+
+	/**
+	 * @return the number of bytes of the copied files
+	 */
+	public synchronized long getNbBytesCopied() {
+		return pNbBytesCopied;
+	}
+
+	/**
+	 * @return the number of directories created in the target
+	 */
+	public synchronized long getNbDirsCreated() {
+		return pNbDirsCreated;
+	}
+
+	/**
+	 * @return the number of directories deleted from the target
+	 */
+	public synchronized long getNbDirsDeleted() {
+		return pNbDirsDeleted;
+	}
+
+	/**
+	 * @return the number of files whose metadata changed since the previous
+	 *         run, compared with their target
+	 */
+	public synchronized long getNbFilesChecked() {
+		return pNbFilesChecked;
+	}
+
+	/**
+	 * @return the number of files copied
+	 */
+	public synchronized long getNbFilesCopied() {
+		return pNbFilesCopied;
+	}
+
+	/**
+	 * @return the number of files deleted from the target
+	 */
+	public synchronized long getNbFilesDeleted() {
+		return pNbFilesDeleted;
+	}
+
+	/**
+	 * @return the number of files hashed because their size was the same and
+	 *         their date of last modification different
+	 */
+	public synchronized long getNbFilesHashed() {
+		return pNbFilesHashed;
+	}
+
+	/**
+	 * @return the number of files of the source directory
+	 */
+	public synchronized long getNbFilesScanned() {
+		return pNbFilesScanned;
+	}
+
+	/**
+	 * @return the number of files left untouched
+	 */
+	public synchronized long getNbFilesUnchanged() {
+		return pNbFilesUnchanged;
+	}
+
+	/**
+	 * @return true if the manifest of the previous run was read
+	 */
+	public synchronized boolean isWithManifest() {
+		return pWithManifest;
+	}
+
+	/**
+	 * @param aDurationMs
+	 */
+	synchronized void setDurationMs(final long aDurationMs) {
+		pDurationMs = aDurationMs;
+	}
+
+	/**
+	 * @param aNbFilesScanned
+	 */
+	synchronized void setNbFilesScanned(final long aNbFilesScanned) {
+		pNbFilesScanned = aNbFilesScanned;
+	}
+
+	/**
+	 * @param aWithManifest
+	 */
+	synchronized void setWithManifest(final boolean aWithManifest) {
+		pWithManifest = aWithManifest;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public synchronized String toString() {
+		return String.format(
+				"CXFileDirSyncReport: manifest=[%b] scanned=[%d] unchanged=[%d] checked=[%d] hashed=[%d] copied=[%d] bytes=[%d] deleted=[%d] dirsCreated=[%d] dirsDeleted=[%d] duration=[%d ms]",
+				pWithManifest, pNbFilesScanned, pNbFilesUnchanged, pNbFilesChecked, pNbFilesHashed, pNbFilesCopied,
+				pNbBytesCopied, pNbFilesDeleted, pNbDirsCreated, pNbDirsDeleted, pDurationMs);
+	}
+}
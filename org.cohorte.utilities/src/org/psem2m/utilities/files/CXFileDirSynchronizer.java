@@ -13,16 +13,114 @@ package org.psem2m.utilities.files;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.psem2m.utilities.CXBytesUtils;
+import org.psem2m.utilities.files.CXFileDirWalker.CEntry;
 
 /**
+ * exec() merge-walks the two trees and leaves the actions to the
+ * sub-classes (doAddOne, doSyncOne, doDeleteOne).
+ *
+ * sync() synchronizes the target incrementally: the state of the copied files
+ * (size, date of last modification, hash) is persisted in a manifest after
+ * each run, the next run compares only the files whose size or date changed
+ * since, hashes them only if their size is the same as the target, and copies
+ * the changed files with a bounded pool of workers. The target is supposed to
+ * be modified only by the synchronizer.
+ *
  * @author ogattaz
  */
 public class CXFileDirSynchronizer {
 
+	/**
+	 * the default number of workers of sync()
+	 */
+	public static final int DEFAULT_NB_WORKERS = 4;
+
+	// the number of files checked by a task of the workers
+	private static final int CHECK_CHUNK_SIZE = 64;
+
+	private static final int HASH_BUF_SIZE = 0x10000;
+
 	private static final String KEYEND = "zzzzz";
 	private static final String KEYSTART = "";
 
+	/**
+	 * @param aFile
+	 * @return the hexadecimal SHA-256 hash of the content of the file
+	 * @throws IOException
+	 */
+	private static String hash(final Path aFile) throws IOException {
+		final MessageDigest wDigest;
+		try {
+			wDigest = MessageDigest.getInstance("SHA-256");
+		} catch (final NoSuchAlgorithmException e) {
+			// SHA-256 is provided by all the java platforms
+			throw new IllegalStateException(e);
+		}
+		final FileChannel wChannel = FileChannel.open(aFile, StandardOpenOption.READ);
+		try {
+			final ByteBuffer wBuffer = ByteBuffer.allocateDirect(HASH_BUF_SIZE);
+			while (wChannel.read(wBuffer) != -1) {
+				wBuffer.flip();
+				wDigest.update(wBuffer);
+				wBuffer.clear();
+			}
+		} finally {
+			wChannel.close();
+		}
+		final byte[] wHash = wDigest.digest();
+		return CXBytesUtils.bytesToHexaString(wHash, 0, wHash.length, "");
+	}
+
+	/**
+	 * @param aPath
+	 * @return the attributes of the file or null if it doesn't exist
+	 * @throws IOException
+	 */
+	private static BasicFileAttributes readAttributes(final Path aPath) throws IOException {
+		try {
+			return Files.readAttributes(aPath, BasicFileAttributes.class);
+		} catch (final NoSuchFileException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param aRoot
+	 * @param aPath
+	 * @return the path relative to the root, '/' separated
+	 */
+	private static String toRelativePath(final Path aRoot, final Path aPath) {
+		return aRoot.relativize(aPath).toString().replace(File.separatorChar, '/');
+	}
+
+	private boolean pDeleteMissing = false;
+
 	private CXFile pFileFrom = null;
 	private CXFile pFileNextFrom = null;
 	private CXFile pFileNextTarget = null;
@@ -38,6 +136,8 @@ public class CXFileDirSynchronizer {
 	private String pKeyNextFrom = KEYSTART;
 	private String pKeyNextTarget = KEYSTART;
 	private String pKeyTarget = KEYSTART;
+	private File pManifestFile = null;
+	private int pNbWorkers = DEFAULT_NB_WORKERS;
 	private final String pPathFrom;
 	private final String pPathTarget;
 	private final CXFileDir pTargetDir;
@@ -67,6 +167,124 @@ public class CXFileDirSynchronizer {
 		pWithSubDir = aWithSubDir;
 	}
 
+	/**
+	 * @param aTargetDir
+	 * @param aFromDir
+	 * @param aWithSubDir
+	 * @param aManifestFile
+	 *            the manifest read and written by sync(), null to compare all
+	 *            the files at each run
+	 */
+	public CXFileDirSynchronizer(final CXFileDir aTargetDir, final CXFileDir aFromDir, final boolean aWithSubDir,
+			final File aManifestFile) {
+		this(aTargetDir, aFromDir, aWithSubDir);
+		pManifestFile = aManifestFile;
+	}
+
+	/**
+	 * compares a file whose size or date changed since the previous run with
+	 * its target and copies it if they differ
+	 *
+	 * @param aEntry
+	 *            the source file
+	 * @param aTarget
+	 * @param aPrevious
+	 *            the state of the previous run or null
+	 * @param aReport
+	 * @return the new state of the file
+	 * @throws IOException
+	 */
+	private CXFileDirManifest.CEntry checkOne(final CEntry aEntry, final Path aTarget,
+			final CXFileDirManifest.CEntry aPrevious, final CXFileDirSyncReport aReport) throws IOException {
+
+		aReport.addFileChecked();
+		final long wSize = aEntry.getAttributes().size();
+		final long wLastModified = aEntry.getAttributes().lastModifiedTime().toMillis();
+		final BasicFileAttributes wTarget = readAttributes(aTarget);
+		String wHash = null;
+		if (wTarget != null && wTarget.isRegularFile() && wTarget.size() == wSize) {
+			final long wTargetLastModified = wTarget.lastModifiedTime().toMillis();
+			if (wTargetLastModified == wLastModified) {
+				aReport.addFileUnchanged();
+				return new CXFileDirManifest.CEntry(false, wSize, wLastModified, null);
+			}
+			// same size, other date: the contents are compared
+			wHash = hash(aEntry.getPath());
+			aReport.addFileHashed();
+			String wTargetHash = null;
+			if (aPrevious != null && aPrevious.getHash() != null && aPrevious.getSize() == wSize
+					&& aPrevious.getLastModified() == wTargetLastModified) {
+				// the target wasn't modified since the previous run
+				wTargetHash = aPrevious.getHash();
+			} else {
+				wTargetHash = hash(aTarget);
+				aReport.addFileHashed();
+			}
+			if (wHash.equals(wTargetHash)) {
+				Files.setLastModifiedTime(aTarget, FileTime.fromMillis(wLastModified));
+				aReport.addFileUnchanged();
+				return new CXFileDirManifest.CEntry(false, wSize, wLastModified, wHash);
+			}
+		}
+		Files.createDirectories(aTarget.getParent());
+		CXFile.copyContent(aEntry.getPath().toFile(), aTarget.toFile());
+		// the date of the source: the next runs see the file unchanged
+		Files.setLastModifiedTime(aTarget, FileTime.fromMillis(wLastModified));
+		aReport.addFileCopied(wSize);
+		return new CXFileDirManifest.CEntry(false, wSize, wLastModified, wHash);
+	}
+
+	/**
+	 * deletes the files and the directories of the target which are no
+	 * longer in the source
+	 *
+	 * @param aSourcePaths
+	 * @param aPrevious
+	 *            the manifest of the previous run or null to scan the target
+	 * @param aReport
+	 * @throws IOException
+	 */
+	private void deleteMissing(final Set<String> aSourcePaths, final CXFileDirManifest aPrevious,
+			final CXFileDirSyncReport aReport) throws IOException {
+
+		final Path wTargetRoot = pTargetDir.getAbsoluteFile().toPath();
+		// the directories, each one followed by its content
+		final List<String> wDirs = new ArrayList<>();
+		if (aPrevious != null) {
+			for (final String wPath : aPrevious.getPaths()) {
+				if (!aSourcePaths.contains(wPath)) {
+					if (aPrevious.get(wPath).isDirectory()) {
+						wDirs.add(wPath);
+					} else if (Files.deleteIfExists(wTargetRoot.resolve(wPath))) {
+						aReport.addFileDeleted();
+					}
+				}
+			}
+		} else {
+			final Path wManifest = pManifestFile != null ? pManifestFile.getAbsoluteFile().toPath() : null;
+			for (final CEntry wEntry : new CXFileDirWalker(getFileFiletTarget(), pWithSubDir, pTargetDir.isParallel())
+					.walk(wTargetRoot)) {
+				final String wPath = toRelativePath(wTargetRoot, wEntry.getPath());
+				if (aSourcePaths.contains(wPath) || wEntry.getPath().equals(wManifest)) {
+					continue;
+				}
+				if (wEntry.isDirectory()) {
+					wDirs.add(wPath);
+				} else {
+					Files.delete(wEntry.getPath());
+					aReport.addFileDeleted();
+				}
+			}
+		}
+		// the children before their parent. A directory containing files
+		// excluded by the filter is kept.
+		for (int wIdx = wDirs.size() - 1; wIdx >= 0; wIdx--) {
+			if (wTargetRoot.resolve(wDirs.get(wIdx)).toFile().delete()) {
+				aReport.addDirDeleted();
+			}
+		}
+	}
+
 	/**
 	 * @param aFileFrom
 	 * @param aKey
@@ -174,6 +392,20 @@ public class CXFileDirSynchronizer {
 		return pFromDir;
 	}
 
+	/**
+	 * @return the manifest read and written by sync() or null
+	 */
+	public File getManifestFile() {
+		return pManifestFile;
+	}
+
+	/**
+	 * @return the number of threads copying the files in sync()
+	 */
+	public int getNbWorkers() {
+		return pNbWorkers;
+	}
+
 	/**
 	 * @return la liste des fichiers et dossiers contenus dans "pFromDir" et ses
 	 *         sous dossier si "pWithSubDir"
@@ -196,6 +428,14 @@ public class CXFileDirSynchronizer {
 		return pTargetDir;
 	}
 
+	/**
+	 * @return true if sync() deletes the files of the target which are no
+	 *         longer in the source
+	 */
+	public boolean isDeleteMissing() {
+		return pDeleteMissing;
+	}
+
 	// 16j_101
 	private boolean hasLogger() {
 		return false;// pLogger != null;
@@ -269,6 +509,15 @@ public class CXFileDirSynchronizer {
 		readIterTarget();
 	}
 
+	/**
+	 * @param aDeleteMissing
+	 *            true to delete the files of the target which are no longer in
+	 *            the source. Without manifest, the target is scanned.
+	 */
+	public void setDeleteMissing(final boolean aDeleteMissing) {
+		pDeleteMissing = aDeleteMissing;
+	}
+
 	private void setKeyNextFrom() {
 		if (pFileNextFrom == null) {
 			pKeyNextFrom = KEYEND;
@@ -301,4 +550,151 @@ public class CXFileDirSynchronizer {
 	// protected void setLogger(IXLogBase aLogger) {
 	// pLogger = aLogger;
 	// }
+
+	/**
+	 * @param aManifestFile
+	 *            the manifest read and written by sync(), null to compare all
+	 *            the files at each run
+	 */
+	public void setManifestFile(final File aManifestFile) {
+		pManifestFile = aManifestFile;
+	}
+
+	/**
+	 * @param aNbWorkers
+	 *            the number of threads copying the files in sync()
+	 */
+	public void setNbWorkers(final int aNbWorkers) {
+		pNbWorkers = Math.max(1, aNbWorkers);
+	}
+
+	/**
+	 * Synchronizes the target with the source incrementally: the files whose
+	 * size and date are the ones of the manifest are left untouched, the
+	 * others are compared with their target (by hash if only their date
+	 * changed) and copied by the workers. The manifest is written even if
+	 * some copies fail: the failed files are checked again by the next run.
+	 *
+	 * @return the report of the run
+	 * @throws IOException
+	 *             the first error of the copies
+	 */
+	public CXFileDirSyncReport sync() throws IOException {
+
+		final long wStart = System.nanoTime();
+		final CXFileDirSyncReport wReport = new CXFileDirSyncReport();
+		final Path wFromRoot = pFromDir.getAbsoluteFile().toPath();
+		final Path wTargetRoot = pTargetDir.getAbsoluteFile().toPath();
+
+		pFromDir.failIfNotExist();
+		final List<CEntry> wEntries = new CXFileDirWalker(getFileFiletFrom(), pWithSubDir, pFromDir.isParallel())
+				.walk(wFromRoot);
+		final CXFileDirManifest wPrevious = CXFileDirManifest.load(pManifestFile);
+		wReport.setWithManifest(wPrevious != null);
+		Files.createDirectories(wTargetRoot);
+
+		final String[] wPaths = new String[wEntries.size()];
+		final boolean[] wUnchanged = new boolean[wPaths.length];
+		final Set<String> wSourcePaths = new HashSet<>();
+		// the indexes of the files to check
+		final List<Integer> wToCheck = new ArrayList<>();
+		int wNbFiles = 0;
+		for (int wIdx = 0; wIdx < wPaths.length; wIdx++) {
+			final CEntry wEntry = wEntries.get(wIdx);
+			final String wPath = toRelativePath(wFromRoot, wEntry.getPath());
+			wPaths[wIdx] = wPath;
+			wSourcePaths.add(wPath);
+			final CXFileDirManifest.CEntry wState = wPrevious != null ? wPrevious.get(wPath) : null;
+			if (wEntry.isDirectory()) {
+				final Path wTargetDir = wTargetRoot.resolve(wPath);
+				if ((wState == null || !wState.isDirectory()) && !Files.isDirectory(wTargetDir)) {
+					Files.createDirectories(wTargetDir);
+					wReport.addDirCreated();
+				}
+				continue;
+			}
+			wNbFiles++;
+			final BasicFileAttributes wAttributes = wEntry.getAttributes();
+			if (wState != null && !wState.isDirectory() && wState.getSize() == wAttributes.size()
+					&& wState.getLastModified() == wAttributes.lastModifiedTime().toMillis()) {
+				wReport.addFileUnchanged();
+				wUnchanged[wIdx] = true;
+			} else {
+				wToCheck.add(wIdx);
+			}
+		}
+		wReport.setNbFilesScanned(wNbFiles);
+
+		// the new states of the checked files
+		final Map<Integer, CXFileDirManifest.CEntry> wChecked = new ConcurrentHashMap<>();
+		final List<IOException> wErrors = Collections.synchronizedList(new ArrayList<IOException>());
+		if (!wToCheck.isEmpty()) {
+			final List<Callable<Void>> wTasks = new ArrayList<>();
+			for (int wFrom = 0; wFrom < wToCheck.size(); wFrom += CHECK_CHUNK_SIZE) {
+				final List<Integer> wChunk = wToCheck.subList(wFrom,
+						Math.min(wFrom + CHECK_CHUNK_SIZE, wToCheck.size()));
+				wTasks.add(new Callable<Void>() {
+					@Override
+					public Void call() {
+						for (final Integer wIdx : wChunk) {
+							final String wPath = wPaths[wIdx];
+							try {
+								wChecked.put(wIdx, checkOne(wEntries.get(wIdx), wTargetRoot.resolve(wPath),
+										wPrevious != null ? wPrevious.get(wPath) : null, wReport));
+							} catch (final IOException e) {
+								wErrors.add(e);
+							}
+						}
+						return null;
+					}
+				});
+			}
+			final AtomicInteger wThreadIdx = new AtomicInteger();
+			final ExecutorService wWorkers = Executors.newFixedThreadPool(Math.min(pNbWorkers, wTasks.size()),
+					new ThreadFactory() {
+						@Override
+						public Thread newThread(final Runnable aRunnable) {
+							final Thread wThread = new Thread(aRunnable,
+									String.format("CXFileDirSynchronizer-%d", wThreadIdx.incrementAndGet()));
+							wThread.setDaemon(true);
+							return wThread;
+						}
+					});
+			try {
+				wWorkers.invokeAll(wTasks);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("sync interrupted");
+			} finally {
+				wWorkers.shutdownNow();
+			}
+		}
+
+		if (pDeleteMissing) {
+			deleteMissing(wSourcePaths, wPrevious, wReport);
+		}
+
+		if (pManifestFile != null) {
+			final CXFileDirManifest wManifest = new CXFileDirManifest();
+			for (int wIdx = 0; wIdx < wPaths.length; wIdx++) {
+				final CEntry wEntry = wEntries.get(wIdx);
+				if (wEntry.isDirectory()) {
+					wManifest.put(wPaths[wIdx], new CXFileDirManifest.CEntry(true, 0, 0, null));
+				} else if (wChecked.containsKey(wIdx)) {
+					wManifest.put(wPaths[wIdx], wChecked.get(wIdx));
+				} else if (wUnchanged[wIdx]) {
+					wManifest.put(wPaths[wIdx], wPrevious.get(wPaths[wIdx]));
+				}
+			}
+			wManifest.store(pManifestFile);
+		}
+		wReport.setDurationMs((System.nanoTime() - wStart) / 1000000);
+
+		if (!wErrors.isEmpty()) {
+			final IOException wError = wErrors.get(0);
+			throw new IOException(String.format("Unable to synchronize [%d] files of [%s]: %s", wErrors.size(),
+					pPathFrom, wError.getMessage()), wError);
+		}
+		return wReport;
+	}
 }
@@ -0,0 +1,504 @@
+package org.psem2m.utilities.files;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Walks the trees of the CXFileDir with NIO.
+ *
+ * The attributes of each entry are read once with the directory listing
+ * (BasicFileAttributes). The FileFilter receives a File answering isFile(),
+ * isDirectory(), length() and lastModified() with these attributes, so the
+ * CXFileFilter* chains cost no more system calls. A directory rejected by the
+ * filter isn't walked. The entries are listed in the order of the recursive
+ * scans of CXFileDir: each directory is followed by its content.
+ *
+ * In parallel mode, each directory is listed by a task of a fork/join pool and
+ * the entries are processed by chunks. The filter must then be thread-safe
+ * (the CXFileFilter* are).
+ */
+class CXFileDirWalker {
+
+	/**
+	 * a File whose state is read in the prefetched attributes
+	 */
+	static class CAttributedFile extends File {
+
+		private static final long serialVersionUID = -5203373429937816742L;
+
+		private final transient BasicFileAttributes pAttributes;
+
+		/**
+		 * @param aPath
+		 * @param aAttributes
+		 */
+		CAttributedFile(final Path aPath, final BasicFileAttributes aAttributes) {
+			super(aPath.toString());
+			pAttributes = aAttributes;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.io.File#exists()
+		 */
+		@Override
+		public boolean exists() {
+			return true;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.io.File#isDirectory()
+		 */
+		@Override
+		public boolean isDirectory() {
+			return pAttributes.isDirectory();
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.io.File#isFile()
+		 */
+		@Override
+		public boolean isFile() {
+			return pAttributes.isRegularFile();
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.io.File#lastModified()
+		 */
+		@Override
+		public long lastModified() {
+			return pAttributes.lastModifiedTime().toMillis();
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.io.File#length()
+		 */
+		@Override
+		public long length() {
+			return pAttributes.size();
+		}
+	}
+
+	/**
+	 * an accepted file or directory
+	 */
+	static class CEntry {
+
+		private final BasicFileAttributes pAttributes;
+
+		// the index of the entry in the accepted entries of its directory
+		private final int pIndex;
+
+		// 0 for the content of the walked directory
+		private final int pLevel;
+
+		private final Path pPath;
+
+		/**
+		 * @param aPath
+		 * @param aAttributes
+		 * @param aLevel
+		 * @param aIndex
+		 */
+		CEntry(final Path aPath, final BasicFileAttributes aAttributes, final int aLevel, final int aIndex) {
+			super();
+			pPath = aPath;
+			pAttributes = aAttributes;
+			pLevel = aLevel;
+			pIndex = aIndex;
+		}
+
+		BasicFileAttributes getAttributes() {
+			return pAttributes;
+		}
+
+		int getIndex() {
+			return pIndex;
+		}
+
+		int getLevel() {
+			return pLevel;
+		}
+
+		Path getPath() {
+			return pPath;
+		}
+
+		boolean isDirectory() {
+			return pAttributes.isDirectory();
+		}
+	}
+
+	/**
+	 * processes the entries, concurrently in parallel mode
+	 */
+	interface IEntryProcessor {
+
+		/**
+		 * @param aEntry
+		 * @throws IOException
+		 */
+		void process(CEntry aEntry) throws IOException;
+	}
+
+	/**
+	 * lists a directory and forks the listing of its sub-directories
+	 */
+	private class CListTask extends RecursiveTask<List<CEntry>> {
+
+		private static final long serialVersionUID = 6453710941356263409L;
+
+		// the keys of the directory and of its parents to detect the loops
+		private final List<Object> pAncestors;
+
+		private final Path pDir;
+
+		private final int pLevel;
+
+		/**
+		 * @param aDir
+		 * @param aLevel
+		 * @param aAncestors
+		 */
+		CListTask(final Path aDir, final int aLevel, final List<Object> aAncestors) {
+			super();
+			pDir = aDir;
+			pLevel = aLevel;
+			pAncestors = aAncestors;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.util.concurrent.RecursiveTask#compute()
+		 */
+		@Override
+		protected List<CEntry> compute() {
+			try {
+				return listDir(pDir, pLevel, pAncestors);
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * processes a range of entries, split in chunks
+	 */
+	private static class CProcessTask extends RecursiveAction {
+
+		private static final long serialVersionUID = -2581329457093856542L;
+
+		private final List<CEntry> pEntries;
+
+		private final int pFrom;
+
+		private final IEntryProcessor pProcessor;
+
+		private final int pTo;
+
+		/**
+		 * @param aEntries
+		 * @param aFrom
+		 * @param aTo
+		 * @param aProcessor
+		 */
+		CProcessTask(final List<CEntry> aEntries, final int aFrom, final int aTo, final IEntryProcessor aProcessor) {
+			super();
+			pEntries = aEntries;
+			pFrom = aFrom;
+			pTo = aTo;
+			pProcessor = aProcessor;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		@Override
+		protected void compute() {
+			if (pTo - pFrom <= PROCESS_CHUNK_SIZE) {
+				try {
+					for (int wIdx = pFrom; wIdx < pTo; wIdx++) {
+						pProcessor.process(pEntries.get(wIdx));
+					}
+				} catch (final IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				return;
+			}
+			final int wMiddle = (pFrom + pTo) >>> 1;
+			invokeAll(new CProcessTask(pEntries, pFrom, wMiddle, pProcessor),
+					new CProcessTask(pEntries, wMiddle, pTo, pProcessor));
+		}
+	}
+
+	// the number of entries processed by a task
+	private static final int PROCESS_CHUNK_SIZE = 16;
+
+	// the disk accesses block the threads: twice the number of processors
+	private static final int POOL_PARALLELISM = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+	private static ForkJoinPool sPool = null;
+
+	/**
+	 * @return the pool shared by the parallel walks, created at the first use
+	 */
+	static synchronized ForkJoinPool getPool() {
+		if (sPool == null) {
+			sPool = new ForkJoinPool(POOL_PARALLELISM);
+		}
+		return sPool;
+	}
+
+	/**
+	 * @param aEntries
+	 * @param aProcessor
+	 * @param aParallel
+	 *            true to process the entries concurrently
+	 * @throws IOException
+	 *             the first error of the processor
+	 */
+	static void process(final List<CEntry> aEntries, final IEntryProcessor aProcessor, final boolean aParallel)
+			throws IOException {
+		if (!aParallel || aEntries.size() <= PROCESS_CHUNK_SIZE) {
+			for (final CEntry wEntry : aEntries) {
+				aProcessor.process(wEntry);
+			}
+			return;
+		}
+		try {
+			getPool().invoke(new CProcessTask(aEntries, 0, aEntries.size(), aProcessor));
+		} catch (final RuntimeException e) {
+			throw unwrap(e);
+		}
+	}
+
+	/**
+	 * @param aPath
+	 * @return the attributes of the file or of the target of the link, null if
+	 *         the file vanished or the link is broken
+	 */
+	private static BasicFileAttributes readAttributes(final Path aPath) {
+		try {
+			return Files.readAttributes(aPath, BasicFileAttributes.class);
+		} catch (final IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param aException
+	 *            the exception thrown by a task of the pool
+	 * @return the IOException of a task
+	 */
+	private static IOException unwrap(final RuntimeException aException) {
+		Throwable wCause = aException;
+		while (wCause != null) {
+			if (wCause instanceof UncheckedIOException) {
+				return ((UncheckedIOException) wCause).getCause();
+			}
+			wCause = wCause.getCause();
+		}
+		throw aException;
+	}
+
+	private final FileFilter pFilter;
+
+	private final boolean pParallel;
+
+	private final boolean pSubDirs;
+
+	/**
+	 * @param aFilter
+	 *            the filter of the files and of the directories, null accepts
+	 *            all
+	 * @param aSubDirs
+	 *            false to list only the content of the directory
+	 * @param aParallel
+	 *            true to list the directories concurrently
+	 */
+	CXFileDirWalker(final FileFilter aFilter, final boolean aSubDirs, final boolean aParallel) {
+		super();
+		pFilter = aFilter;
+		pSubDirs = aSubDirs;
+		pParallel = aParallel;
+	}
+
+	/**
+	 * @param aPath
+	 * @param aAttributes
+	 * @return true if the file or the directory is walked
+	 */
+	private boolean accept(final Path aPath, final BasicFileAttributes aAttributes) {
+		if (!aAttributes.isRegularFile() && !aAttributes.isDirectory()) {
+			return false;
+		}
+		return pFilter == null || pFilter.accept(new CAttributedFile(aPath, aAttributes));
+	}
+
+	/**
+	 * @param aDir
+	 * @param aLevel
+	 * @param aAncestors
+	 * @return the entries of the directory and of its sub-directories
+	 * @throws IOException
+	 */
+	private List<CEntry> listDir(final Path aDir, final int aLevel, final List<Object> aAncestors)
+			throws IOException {
+		// the entries and the tasks listing the sub-directories
+		final List<Object> wParts = new ArrayList<>();
+		int wIndex = 0;
+		final DirectoryStream<Path> wStream = Files.newDirectoryStream(aDir);
+		try {
+			for (final Path wPath : wStream) {
+				final BasicFileAttributes wAttributes = readAttributes(wPath);
+				if (wAttributes == null || !accept(wPath, wAttributes)) {
+					continue;
+				}
+				final Object wKey = wAttributes.fileKey();
+				if (wAttributes.isDirectory() && wKey != null && aAncestors.contains(wKey)) {
+					// a link to a parent: ignored as by Files.walkFileTree()
+					continue;
+				}
+				wParts.add(new CEntry(wPath, wAttributes, aLevel, wIndex++));
+				if (wAttributes.isDirectory() && pSubDirs) {
+					final List<Object> wAncestors = new ArrayList<>(aAncestors);
+					wAncestors.add(wKey);
+					final CListTask wTask = new CListTask(wPath, aLevel + 1, wAncestors);
+					wTask.fork();
+					wParts.add(wTask);
+				}
+			}
+		} finally {
+			wStream.close();
+		}
+		final List<CEntry> wEntries = new ArrayList<>(wParts.size());
+		for (final Object wPart : wParts) {
+			if (wPart instanceof CEntry) {
+				wEntries.add((CEntry) wPart);
+			} else {
+				wEntries.addAll(((CListTask) wPart).join());
+			}
+		}
+		return wEntries;
+	}
+
+	/**
+	 * @param aRoot
+	 *            the walked directory
+	 * @return the accepted files and directories, each directory followed by
+	 *         its content
+	 * @throws IOException
+	 */
+	List<CEntry> walk(final Path aRoot) throws IOException {
+		if (pParallel && pSubDirs) {
+			final Object wRootKey = Files.readAttributes(aRoot, BasicFileAttributes.class).fileKey();
+			try {
+				return getPool().invoke(new CListTask(aRoot, 0, Arrays.asList(wRootKey)));
+			} catch (final RuntimeException e) {
+				throw unwrap(e);
+			}
+		}
+		final List<CEntry> wEntries = new ArrayList<>();
+		Files.walkFileTree(aRoot, EnumSet.of(FileVisitOption.FOLLOW_LINKS), pSubDirs ? Integer.MAX_VALUE : 1,
+				new SimpleFileVisitor<Path>() {
+
+					// the level of the visited entries
+					private int pDepth = -1;
+
+					// the number of accepted entries by level
+					private int[] pIndexes = new int[16];
+
+					/**
+					 * @param aPath
+					 * @param aAttributes
+					 */
+					private void addEntry(final Path aPath, final BasicFileAttributes aAttributes) {
+						wEntries.add(new CEntry(aPath, aAttributes, pDepth, pIndexes[pDepth]++));
+					}
+
+					/**
+					 * the entries of the next level are counted from 0
+					 */
+					private void enterLevel() {
+						pDepth++;
+						if (pDepth == pIndexes.length) {
+							pIndexes = Arrays.copyOf(pIndexes, 2 * pDepth);
+						}
+						pIndexes[pDepth] = 0;
+					}
+
+					@Override
+					public FileVisitResult postVisitDirectory(final Path aDir, final IOException aException)
+							throws IOException {
+						if (aException != null) {
+							throw aException;
+						}
+						pDepth--;
+						return FileVisitResult.CONTINUE;
+					}
+
+					@Override
+					public FileVisitResult preVisitDirectory(final Path aDir, final BasicFileAttributes aAttributes) {
+						if (pDepth >= 0) {
+							if (!accept(aDir, aAttributes)) {
+								return FileVisitResult.SKIP_SUBTREE;
+							}
+							addEntry(aDir, aAttributes);
+						}
+						enterLevel();
+						return FileVisitResult.CONTINUE;
+					}
+
+					@Override
+					public FileVisitResult visitFile(final Path aFile, final BasicFileAttributes aAttributes) {
+						// the directories of the last level are visited as files
+						if (accept(aFile, aAttributes)) {
+							addEntry(aFile, aAttributes);
+						}
+						return FileVisitResult.CONTINUE;
+					}
+
+					@Override
+					public FileVisitResult visitFileFailed(final Path aFile, final IOException aException)
+							throws IOException {
+						if (aException instanceof FileSystemLoopException
+								|| aException instanceof NoSuchFileException) {
+							// a link to a parent or a file deleted during the walk
+							return FileVisitResult.CONTINUE;
+						}
+						throw aException;
+					}
+				});
+		return wEntries;
+	}
+}
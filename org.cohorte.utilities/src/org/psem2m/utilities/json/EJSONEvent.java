@@ -0,0 +1,38 @@
+package org.psem2m.utilities.json;
+
+/**
+ * The events returned by a JSONPullParser.
+ *
+ * @see JSONPullParser
+ */
+public enum EJSONEvent {
+
+	/**
+	 * the end of the source: the root value is fully read
+	 */
+	END_DOCUMENT,
+	/**
+	 * the closing bracket of an array
+	 */
+	END_ARRAY,
+	/**
+	 * the closing brace of an object
+	 */
+	END_OBJECT,
+	/**
+	 * a key of an object, available with getKey()
+	 */
+	KEY,
+	/**
+	 * the opening bracket of an array
+	 */
+	START_ARRAY,
+	/**
+	 * the opening brace of an object
+	 */
+	START_OBJECT,
+	/**
+	 * a string, a number, a boolean or null, available with getValue()
+	 */
+	VALUE;
+}
@@ -25,16 +25,18 @@ package org.psem2m.utilities.json;
  SOFTWARE.
  */
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.lang.reflect.Array;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
-import org.psem2m.utilities.CXStringUtils;
-
 /**
  * A JSONArray is an ordered sequence of values. Its external text form is a
  * string wrapped in square brackets with commas separating the values. The
@@ -358,58 +360,7 @@ public class JSONArray implements Cloneable {
 	 * @return the value of the leaf identified by the path.
 	 */
 	public <T extends Object> T getObject(final String aPath, final Class<T> aExpectedClass) {
-
-		String[] wPathParts = JSONObject.buildPathParts(aPath);
-
-		Object wValue = getObject(wPathParts, 0);
-
-		String wFoundClassName = (wValue != null) ? wValue.getClass().getName() : null;
-		if (!aExpectedClass.getName().equals(wFoundClassName)) {
-			throw new JSONException("The class [%s] of the value having the path [%s] isn't an instance of [%s]",
-					wFoundClassName, aPath, aExpectedClass.getSimpleName());
-		}
-
-		return (T) wValue;
-	}
-
-	/**
-	 * @param aPathParts
-	 *            The splited path (eg. "myArray","4]","myProp" ).
-	 * @param aCurrentPartIdx
-	 *            the level of the current path part.
-	 * @return the found value
-	 */
-	Object getObject(final String[] aPathParts, final int aCurrentPartIdx) {
-		Object wValue = null;
-
-		String wPathPart = aPathParts[aCurrentPartIdx];
-
-		int wPosLastSquareBracket = wPathPart.lastIndexOf(']');
-		if (wPosLastSquareBracket == -1) {
-			throw new JSONException("The  part(%d) [%s] isn't index for a JSONArray : can't go deeper (full path:%s",
-					aCurrentPartIdx + 1, wPathPart, CXStringUtils.stringTableToString(aPathParts));
-		}
-		int wIdx = Integer.parseInt(wPathPart.substring(0, wPosLastSquareBracket));
-
-		wValue = this.opt(wIdx);
-		// if it's not the last part of the path => go deeper
-		if (aCurrentPartIdx < aPathParts.length - 1) {
-			// if the current object is an JSONObject
-			if (wValue instanceof JSONObject) {
-				wValue = ((JSONObject) wValue).getObject(aPathParts, aCurrentPartIdx + 1);
-			}
-			// if the current object is an JSONArray
-			else if (wValue instanceof JSONArray) {
-				wValue = ((JSONArray) wValue).getObject(aPathParts, aCurrentPartIdx + 1);
-			}
-			// else, error
-			else {
-				throw new JSONException(
-						"The object of the part [%s] isn't a JSONObject or a JSONArray : can't go deeper");
-			}
-		}
-
-		return wValue;
+		return JSONPath.compile(aPath).get(this, aExpectedClass);
 	}
 
 	/**
@@ -1011,30 +962,41 @@ public class JSONArray implements Cloneable {
 	 * @throws JSONException
 	 */
 	public Writer write(Writer writer) throws JSONException {
-		try {
-			boolean b = false;
-			final int len = length();
-
-			writer.write('[');
+		writeTo(writer);
+		return writer;
+	}
 
-			for (int i = 0; i < len; i += 1) {
-				if (b) {
-					writer.write(',');
-				}
-				final Object v = this.myArrayList.get(i);
-				if (v instanceof JSONObject) {
-					((JSONObject) v).write(writer);
-				} else if (v instanceof JSONArray) {
-					((JSONArray) v).write(writer);
-				} else {
-					writer.write(JSONObject.valueToString(v));
-				}
-				b = true;
-			}
-			writer.write(']');
-			return writer;
+	/**
+	 * Write the JSON text of the JSONArray in a stream. The stream is flushed
+	 * but not closed.
+	 *
+	 * @param aStream
+	 *            The stream receiving the JSON text.
+	 * @param aCharset
+	 *            The charset of the JSON text.
+	 * @throws JSONException
+	 */
+	public void writeTo(final OutputStream aStream, final Charset aCharset) throws JSONException {
+		final Writer wWriter = new BufferedWriter(new OutputStreamWriter(aStream, aCharset));
+		writeTo(wWriter);
+		try {
+			wWriter.flush();
 		} catch (final IOException e) {
 			throw new JSONException(e, "Unable to write the jsonArray [%d]", this.hashCode());
 		}
 	}
+
+	/**
+	 * Write the JSON text of the JSONArray in a writer, as toString() does,
+	 * without building intermediate strings. The writer is not flushed.
+	 * <p>
+	 * Warning: This method assumes that the data structure is acyclical.
+	 *
+	 * @param aWriter
+	 *            The writer receiving the JSON text.
+	 * @throws JSONException
+	 */
+	public void writeTo(final Writer aWriter) throws JSONException {
+		new JSONWriter(aWriter, JSONWriter.STREAM_MAX_DEPTH).value(this);
+	}
 }
\ No newline at end of file
@@ -13,10 +13,14 @@ package org.psem2m.utilities.json;
  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  */
 //
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.nio.charset.Charset;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -306,11 +310,19 @@ public class JSONObject implements Cloneable {
 		if (string == null || string.length() == 0) {
 			return "\"\"";
 		}
+		int len = string.length();
+		// fast path: nothing to escape, the string is copied once
+		if (quoteEscapeIndex(string, 0, len) == len) {
+			char[] w = new char[len + 2];
+			w[0] = '"';
+			string.getChars(0, len, w, 1);
+			w[len + 1] = '"';
+			return new String(w);
+		}
 		char b;
 		char c = 0;
 		int i;
-		int len = string.length();
-		StringBuffer sb = new StringBuffer(len + 4);
+		StringBuilder sb = new StringBuilder(len + 4);
 		String t;
 		sb.append('"');
 		for (i = 0; i < len; i += 1) {
@@ -356,6 +368,84 @@ public class JSONObject implements Cloneable {
 		return sb.toString();
 	}
 
+	/**
+	 * Write a string in double quotes with backslash sequences in all the
+	 * right places, as quote(String) does, directly in a writer. The runs of
+	 * characters which don't need to be escaped are written at once.
+	 *
+	 * @param string
+	 *            A String
+	 * @param writer
+	 *            The writer receiving the quoted string.
+	 * @return The writer.
+	 * @throws IOException
+	 */
+	public static Writer quote(final String string, final Writer writer) throws IOException {
+		writer.write('"');
+		int len = (string != null) ? string.length() : 0;
+		int start = 0;
+		while (start < len) {
+			int i = quoteEscapeIndex(string, start, len);
+			if (i > start) {
+				writer.write(string, start, i - start);
+			}
+			if (i == len) {
+				break;
+			}
+			char c = string.charAt(i);
+			switch (c) {
+			case '\\':
+			case '"':
+			case '/':
+				writer.write('\\');
+				writer.write(c);
+				break;
+			case '\b':
+				writer.write("\\b");
+				break;
+			case '\t':
+				writer.write("\\t");
+				break;
+			case '\n':
+				writer.write("\\n");
+				break;
+			case '\f':
+				writer.write("\\f");
+				break;
+			case '\r':
+				writer.write("\\r");
+				break;
+			default:
+				String t = "000" + Integer.toHexString(c);
+				writer.write("\\u" + t.substring(t.length() - 4));
+			}
+			start = i + 1;
+		}
+		writer.write('"');
+		return writer;
+	}
+
+	/**
+	 * @param string
+	 * @param start
+	 * @param len
+	 * @return the index of the first character to escape from the start index
+	 *         or len if there is none. The ASCII characters are tested first.
+	 */
+	private static int quoteEscapeIndex(final String string, final int start, final int len) {
+		for (int i = start; i < len; i++) {
+			char c = string.charAt(i);
+			if (c >= ' ' && c < '\u0080') {
+				if (c == '"' || c == '\\' || (c == '/' && i > 0 && string.charAt(i - 1) == '<')) {
+					return i;
+				}
+			} else if (c < '\u00a0' || (c >= '\u2000' && c < '\u2100')) {
+				return i;
+			}
+		}
+		return len;
+	}
+
 	/**
 	 * Throw an exception if the object is an NaN or infinite number.
 	 *
@@ -903,58 +993,10 @@ public class JSONObject implements Cloneable {
 	 * @param aPath
 	 *            eg. "myArray[4].myProp"
 	 * @return the value of the leaf identified by the path.
+	 * @see JSONPath the compiled path used to find the value
 	 */
 	public <T extends Object> T getObject(final String aPath, final Class<T> aExpectedClass) {
-
-		String[] wPathParts = buildPathParts(aPath);
-
-		Object wValue = getObject(wPathParts, 0);
-
-		String wFoundClassName = (wValue != null) ? wValue.getClass().getName() : null;
-		if (!aExpectedClass.getName().equals(wFoundClassName)) {
-			throw new JSONException("The class [%s] of the value having the path [%s] isn't an instance of [%s]",
-					wFoundClassName, aPath, aExpectedClass.getSimpleName());
-		}
-
-		return (T) wValue;
-	}
-
-	/**
-	 * @param aPathParts
-	 *            The splited path (eg. "myArray","4]","myProp" ).
-	 * @param aCurrentPartIdx
-	 *            the level of the current path part.
-	 * @return the found value
-	 */
-	Object getObject(final String[] aPathParts, final int aCurrentPartIdx) {
-		Object wValue = null;
-
-		String wPathPart = aPathParts[aCurrentPartIdx];
-
-		wValue = this.opt(wPathPart);
-		if (wValue == null) {
-			new JSONException("There isn't an object pointed by the [%sth] path part [%s]", aCurrentPartIdx, wPathPart);
-		}
-
-		// if it's not the las part of the path => go deeper
-		if (aCurrentPartIdx < aPathParts.length - 1) {
-			// if the current object is an JSONObject
-			if (wValue instanceof JSONObject) {
-				wValue = ((JSONObject) wValue).getObject(aPathParts, aCurrentPartIdx + 1);
-			}
-			// if the current object is an JSONArray
-			else if (wValue instanceof JSONArray) {
-				wValue = ((JSONArray) wValue).getObject(aPathParts, aCurrentPartIdx + 1);
-			}
-			// else, error
-			else {
-				throw new JSONException(
-						"The object pointed by the path part [%s] isn't a JSONObject or a JSONArray : can't go deeper",
-						wPathPart);
-			}
-		}
-
-		return wValue;
+		return JSONPath.compile(aPath).get(this, aExpectedClass);
 	}
 
 	/**
@@ -1583,31 +1625,41 @@ public class JSONObject implements Cloneable {
 	 * @throws JSONException
 	 */
 	public Writer write(final Writer writer) throws JSONException {
+		writeTo(writer);
+		return writer;
+	}
+
+	/**
+	 * Write the JSON text of the JSONObject in a stream. The stream is flushed
+	 * but not closed.
+	 *
+	 * @param aStream
+	 *            The stream receiving the JSON text.
+	 * @param aCharset
+	 *            The charset of the JSON text.
+	 * @throws JSONException
+	 */
+	public void writeTo(final OutputStream aStream, final Charset aCharset) throws JSONException {
+		Writer wWriter = new BufferedWriter(new OutputStreamWriter(aStream, aCharset));
+		writeTo(wWriter);
 		try {
-			boolean b = false;
-			Iterator<String> keys = keys();
-			writer.write('{');
-			while (keys.hasNext()) {
-				if (b) {
-					writer.write(',');
-				}
-				Object k = keys.next();
-				writer.write(quote(k.toString()));
-				writer.write(':');
-				Object v = this.myHashMap.get(k);
-				if (v instanceof JSONObject) {
-					((JSONObject) v).write(writer);
-				} else if (v instanceof JSONArray) {
-					((JSONArray) v).write(writer);
-				} else {
-					writer.write(valueToString(v));
-				}
-				b = true;
-			}
-			writer.write('}');
-			return writer;
+			wWriter.flush();
 		} catch (IOException e) {
-			throw new JSONException(e, "Unable to writhe the jsonObject", this.hashCode());
+			throw new JSONException(e, "Unable to write the jsonObject [%d]", this.hashCode());
 		}
 	}
+
+	/**
+	 * Write the JSON text of the JSONObject in a writer, as toString() does,
+	 * without building intermediate strings. The writer is not flushed.
+	 * <p>
+	 * Warning: This method assumes that the data structure is acyclical.
+	 *
+	 * @param aWriter
+	 *            The writer receiving the JSON text.
+	 * @throws JSONException
+	 */
+	public void writeTo(final Writer aWriter) throws JSONException {
+		new JSONWriter(aWriter, JSONWriter.STREAM_MAX_DEPTH).value(this);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,291 @@
+package org.psem2m.utilities.json;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A compiled path of a value in a JSONObject or a JSONArray (eg.
+ * "myArray[4].myProp" or "[1].[1].[0].stuff").
+ *
+ * The path is split once: it holds the keys of its parts and the indexes of
+ * the parts which can address an item of an array. The compiled paths are
+ * interned: compile() returns the same instance for the same path.
+ *
+ * The opt...() getters return the value or a default value without throwing
+ * exceptions if the path doesn't lead to a value of the expected type.
+ *
+ * @see JSONPathSet to evaluate many paths in one traversal of a document
+ */
+public final class JSONPath {
+
+	/**
+	 * The max number of interned paths. Beyond, the compiled paths are no
+	 * longer interned.
+	 */
+	public static final int MAX_INTERNED_PATHS = 4096;
+
+	// the index of a part which can't address an item of an array
+	static final int NO_INDEX = -1;
+
+	private static final ConcurrentMap<String, JSONPath> sPaths = new ConcurrentHashMap<>();
+
+	/**
+	 * @param aPath
+	 *            eg. "myArray[4].myProp"
+	 * @return the interned compiled path
+	 * @throws JSONException
+	 *             if the path is null or empty
+	 */
+	public static JSONPath compile(final String aPath) throws JSONException {
+		JSONPath wPath = (aPath != null) ? sPaths.get(aPath) : null;
+		if (wPath == null) {
+			wPath = new JSONPath(aPath);
+			if (sPaths.size() < MAX_INTERNED_PATHS) {
+				JSONPath wPrevious = sPaths.putIfAbsent(aPath, wPath);
+				if (wPrevious != null) {
+					wPath = wPrevious;
+				}
+			}
+		}
+		return wPath;
+	}
+
+	/**
+	 * @param aPart
+	 *            a part of a path (eg. "4]")
+	 * @return the index written before the last ']' or NO_INDEX
+	 */
+	static int parseIndex(final String aPart) {
+		int wPos = aPart.lastIndexOf(']');
+		if (wPos <= 0) {
+			return NO_INDEX;
+		}
+		int wIndex = 0;
+		for (int i = 0; i < wPos; i++) {
+			char c = aPart.charAt(i);
+			if (c < '0' || c > '9' || wIndex > (Integer.MAX_VALUE - 9) / 10) {
+				return NO_INDEX;
+			}
+			wIndex = wIndex * 10 + (c - '0');
+		}
+		return wIndex;
+	}
+
+	private final int[] pIndexes;
+
+	private final String[] pKeys;
+
+	private final String pPath;
+
+	/**
+	 * @param aPath
+	 */
+	private JSONPath(final String aPath) {
+		super();
+		pPath = aPath;
+		pKeys = JSONObject.buildPathParts(aPath);
+		pIndexes = new int[pKeys.length];
+		for (int i = 0; i < pKeys.length; i++) {
+			pIndexes[i] = parseIndex(pKeys[i]);
+		}
+	}
+
+	/**
+	 * Returns the value as JSONObject.getObject(path, class) always did: the
+	 * path must lead to a value of the expected class.
+	 *
+	 * @param aRoot
+	 *            a JSONObject or a JSONArray
+	 * @param aExpectedClass
+	 *            the exact class of the value
+	 * @return the value
+	 * @throws JSONException
+	 *             if the path doesn't lead to a value of the expected class
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T get(final Object aRoot, final Class<T> aExpectedClass) throws JSONException {
+		Object wValue = aRoot;
+		int wLast = pKeys.length - 1;
+		for (int i = 0; i <= wLast; i++) {
+			if (wValue instanceof JSONObject) {
+				wValue = ((JSONObject) wValue).opt(pKeys[i]);
+			} else if (wValue instanceof JSONArray) {
+				if (pIndexes[i] == NO_INDEX) {
+					throw new JSONException("The part(%d) [%s] isn't an index for a JSONArray : can't go deeper (path:%s)",
+							i + 1, pKeys[i], pPath);
+				}
+				wValue = ((JSONArray) wValue).opt(pIndexes[i]);
+			} else {
+				throw new JSONException(
+						"The object pointed by the path part [%s] isn't a JSONObject or a JSONArray : can't go deeper",
+						(i > 0) ? pKeys[i - 1] : pPath);
+			}
+		}
+		Class<?> wFoundClass = (wValue != null) ? wValue.getClass() : null;
+		if (wFoundClass != aExpectedClass
+				&& (wFoundClass == null || !aExpectedClass.getName().equals(wFoundClass.getName()))) {
+			throw new JSONException("The class [%s] of the value having the path [%s] isn't an instance of [%s]",
+					(wFoundClass != null) ? wFoundClass.getName() : null, pPath, aExpectedClass.getSimpleName());
+		}
+		return (T) wValue;
+	}
+
+	/**
+	 * @return the number of parts of the path
+	 */
+	public int getDepth() {
+		return pKeys.length;
+	}
+
+	/**
+	 * @param aIdx
+	 * @return the index of an item of an array addressed by the part or -1
+	 */
+	int getIndex(final int aIdx) {
+		return pIndexes[aIdx];
+	}
+
+	/**
+	 * @param aIdx
+	 * @return the key of the part
+	 */
+	String getKey(final int aIdx) {
+		return pKeys[aIdx];
+	}
+
+	/**
+	 * @return the source of the path
+	 */
+	public String getPath() {
+		return pPath;
+	}
+
+	/**
+	 * @param aRoot
+	 *            a JSONObject or a JSONArray
+	 * @return true if the path leads to a value which is not null or
+	 *         JSONObject.NULL
+	 */
+	public boolean has(final Object aRoot) {
+		Object wValue = opt(aRoot);
+		return wValue != null && wValue != JSONObject.NULL;
+	}
+
+	/**
+	 * @param aRoot
+	 *            a JSONObject or a JSONArray
+	 * @return the value or null if the path doesn't lead to a value
+	 */
+	public Object opt(final Object aRoot) {
+		Object wValue = aRoot;
+		for (int i = 0; i < pKeys.length; i++) {
+			if (wValue instanceof JSONObject) {
+				wValue = ((JSONObject) wValue).opt(pKeys[i]);
+			} else if (wValue instanceof JSONArray && pIndexes[i] != NO_INDEX) {
+				wValue = ((JSONArray) wValue).opt(pIndexes[i]);
+			} else {
+				return null;
+			}
+		}
+		return wValue;
+	}
+
+	/**
+	 * @param aRoot
+	 * @param aDefault
+	 * @return the Boolean value, the "true" or "false" string or the default
+	 *         value
+	 */
+	public boolean optBoolean(final Object aRoot, final boolean aDefault) {
+		return toBoolean(opt(aRoot), aDefault);
+	}
+
+	/**
+	 * @param aRoot
+	 * @param aDefault
+	 * @return the number value or the default value
+	 */
+	public double optDouble(final Object aRoot, final double aDefault) {
+		Object wValue = opt(aRoot);
+		return (wValue instanceof Number) ? ((Number) wValue).doubleValue() : aDefault;
+	}
+
+	/**
+	 * @param aRoot
+	 * @param aDefault
+	 * @return the number value or the default value
+	 */
+	public int optInt(final Object aRoot, final int aDefault) {
+		Object wValue = opt(aRoot);
+		return (wValue instanceof Number) ? ((Number) wValue).intValue() : aDefault;
+	}
+
+	/**
+	 * @param aRoot
+	 * @return the JSONArray or null
+	 */
+	public JSONArray optJSONArray(final Object aRoot) {
+		Object wValue = opt(aRoot);
+		return (wValue instanceof JSONArray) ? (JSONArray) wValue : null;
+	}
+
+	/**
+	 * @param aRoot
+	 * @return the JSONObject or null
+	 */
+	public JSONObject optJSONObject(final Object aRoot) {
+		Object wValue = opt(aRoot);
+		return (wValue instanceof JSONObject) ? (JSONObject) wValue : null;
+	}
+
+	/**
+	 * @param aRoot
+	 * @param aDefault
+	 * @return the number value or the default value
+	 */
+	public long optLong(final Object aRoot, final long aDefault) {
+		Object wValue = opt(aRoot);
+		return (wValue instanceof Number) ? ((Number) wValue).longValue() : aDefault;
+	}
+
+	/**
+	 * @param aRoot
+	 * @param aDefault
+	 * @return the string of the value or the default value if there is no
+	 *         value or if it is JSONObject.NULL
+	 */
+	public String optString(final Object aRoot, final String aDefault) {
+		Object wValue = opt(aRoot);
+		return (wValue != null && wValue != JSONObject.NULL) ? wValue.toString() : aDefault;
+	}
+
+	/**
+	 * @param aValue
+	 * @param aDefault
+	 * @return
+	 */
+	static boolean toBoolean(final Object aValue, final boolean aDefault) {
+		if (aValue instanceof Boolean) {
+			return ((Boolean) aValue).booleanValue();
+		}
+		if (aValue instanceof String) {
+			if ("true".equalsIgnoreCase((String) aValue)) {
+				return true;
+			}
+			if ("false".equalsIgnoreCase((String) aValue)) {
+				return false;
+			}
+		}
+		return aDefault;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return pPath;
+	}
+}
@@ -0,0 +1,222 @@
+package org.psem2m.utilities.json;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A set of compiled paths evaluated together against a document in a single
+ * traversal: the parts shared by several paths (eg. "order.customer" in
+ * "order.customer.name" and "order.customer.id") are looked up once.
+ *
+ * <pre>
+ * JSONPathSet wPaths = new JSONPathSet("order.customer.name", "order.customer.id", "order.lines[0].qty");
+ * Object[] wValues = wPaths.evaluate(wDocument);
+ * </pre>
+ *
+ * A JSONPathSet is immutable and can be shared between threads.
+ */
+public final class JSONPathSet {
+
+	/**
+	 * a node of the tree of the parts of the paths
+	 */
+	private static class CNode {
+
+		private CNode[] pChildren = null;
+
+		private final int pIndex;
+
+		private final String pKey;
+
+		// the ranks of the paths ending at this node
+		private int[] pRanks = null;
+
+		/**
+		 * @param aKey
+		 * @param aIndex
+		 */
+		CNode(final String aKey, final int aIndex) {
+			super();
+			pKey = aKey;
+			pIndex = aIndex;
+		}
+	}
+
+	/**
+	 * a mutable node used to build the tree
+	 */
+	private static class CNodeBuilder {
+
+		private final Map<String, CNodeBuilder> pChildren = new LinkedHashMap<>();
+
+		private final List<Integer> pRanks = new ArrayList<>();
+
+		/**
+		 * @param aKey
+		 * @param aIndex
+		 * @return the immutable node
+		 */
+		CNode build(final String aKey, final int aIndex) {
+			CNode wNode = new CNode(aKey, aIndex);
+			if (!pChildren.isEmpty()) {
+				wNode.pChildren = new CNode[pChildren.size()];
+				int i = 0;
+				for (Map.Entry<String, CNodeBuilder> wEntry : pChildren.entrySet()) {
+					wNode.pChildren[i++] = wEntry.getValue().build(wEntry.getKey(),
+							JSONPath.parseIndex(wEntry.getKey()));
+				}
+			}
+			if (!pRanks.isEmpty()) {
+				wNode.pRanks = new int[pRanks.size()];
+				for (int i = 0; i < wNode.pRanks.length; i++) {
+					wNode.pRanks[i] = pRanks.get(i);
+				}
+			}
+			return wNode;
+		}
+	}
+
+	/**
+	 * @param aPaths
+	 * @return the compiled paths
+	 */
+	private static JSONPath[] compileAll(final String[] aPaths) {
+		JSONPath[] wPaths = new JSONPath[aPaths.length];
+		for (int i = 0; i < aPaths.length; i++) {
+			wPaths[i] = JSONPath.compile(aPaths[i]);
+		}
+		return wPaths;
+	}
+
+	private final JSONPath[] pPaths;
+
+	private final CNode pRoot;
+
+	/**
+	 * @param aPaths
+	 *            the compiled paths
+	 */
+	public JSONPathSet(final JSONPath... aPaths) {
+		super();
+		pPaths = aPaths.clone();
+		CNodeBuilder wRoot = new CNodeBuilder();
+		for (int wRank = 0; wRank < pPaths.length; wRank++) {
+			JSONPath wPath = pPaths[wRank];
+			CNodeBuilder wNode = wRoot;
+			for (int i = 0; i < wPath.getDepth(); i++) {
+				String wKey = wPath.getKey(i);
+				CNodeBuilder wChild = wNode.pChildren.get(wKey);
+				if (wChild == null) {
+					wChild = new CNodeBuilder();
+					wNode.pChildren.put(wKey, wChild);
+				}
+				wNode = wChild;
+			}
+			wNode.pRanks.add(wRank);
+		}
+		pRoot = wRoot.build(null, JSONPath.NO_INDEX);
+	}
+
+	/**
+	 * @param aPaths
+	 *            the sources of the paths, compiled with JSONPath.compile()
+	 */
+	public JSONPathSet(final String... aPaths) {
+		this(compileAll(aPaths));
+	}
+
+	/**
+	 * @param aRoot
+	 *            a JSONObject or a JSONArray
+	 * @return the values of the paths, in the order of the paths. The value of
+	 *         a path which doesn't lead to a value is null.
+	 */
+	public Object[] evaluate(final Object aRoot) {
+		Object[] wValues = new Object[pPaths.length];
+		visit(pRoot, aRoot, wValues);
+		return wValues;
+	}
+
+	/**
+	 * Evaluates the paths in an array reused for each document.
+	 *
+	 * @param aRoot
+	 *            a JSONObject or a JSONArray
+	 * @param aValues
+	 *            the array receiving the values, at least as long as the set
+	 * @return the array of the values
+	 */
+	public Object[] evaluate(final Object aRoot, final Object[] aValues) {
+		if (aValues.length < pPaths.length) {
+			throw new JSONException("The array of the values is too short [%d] : [%d] paths", aValues.length,
+					pPaths.length);
+		}
+		Arrays.fill(aValues, 0, pPaths.length, null);
+		visit(pRoot, aRoot, aValues);
+		return aValues;
+	}
+
+	/**
+	 * @param aRank
+	 * @return the compiled path of the rank
+	 */
+	public JSONPath getPath(final int aRank) {
+		return pPaths[aRank];
+	}
+
+	/**
+	 * @return the number of paths
+	 */
+	public int size() {
+		return pPaths.length;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return String.format("JSONPathSet:%s", Arrays.toString(pPaths));
+	}
+
+	/**
+	 * @param aNode
+	 * @param aValue
+	 *            the value of the node
+	 * @param aValues
+	 */
+	private void visit(final CNode aNode, final Object aValue, final Object[] aValues) {
+		if (aNode.pRanks != null) {
+			for (int wRank : aNode.pRanks) {
+				aValues[wRank] = aValue;
+			}
+		}
+		if (aNode.pChildren == null) {
+			return;
+		}
+		if (aValue instanceof JSONObject) {
+			JSONObject wObject = (JSONObject) aValue;
+			for (CNode wChild : aNode.pChildren) {
+				Object wValue = wObject.opt(wChild.pKey);
+				if (wValue != null) {
+					visit(wChild, wValue, aValues);
+				}
+			}
+		} else if (aValue instanceof JSONArray) {
+			JSONArray wArray = (JSONArray) aValue;
+			for (CNode wChild : aNode.pChildren) {
+				if (wChild.pIndex != JSONPath.NO_INDEX) {
+					Object wValue = wArray.opt(wChild.pIndex);
+					if (wValue != null) {
+						visit(wChild, wValue, aValues);
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,359 @@
+package org.psem2m.utilities.json;
+
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * A pull parser returning the events of a JSON source one by one, without
+ * building the JSONObject and JSONArray of the whole document.
+ *
+ * It accepts the same syntax as the JSONObject and JSONArray constructors
+ * (comments, single quotes, unquoted strings, '=' or '=>' after a key, ';'
+ * between the items and the trailing separators).
+ *
+ * A huge array can be processed element by element: readValue() builds only
+ * the subtree of the current element.
+ *
+ * <pre>
+ * JSONPullParser wParser = new JSONPullParser(wStream);
+ * wParser.next(); // START_ARRAY
+ * while (wParser.next() == EJSONEvent.START_OBJECT) {
+ * 	JSONObject wRecord = (JSONObject) wParser.readValue();
+ * 	...
+ * }
+ * </pre>
+ */
+public class JSONPullParser {
+
+	// the root value is read
+	private static final int STATE_END = 0;
+
+	// the first value of an array or its end is expected
+	private static final int STATE_FIRST_ITEM = 1;
+
+	// the first key of an object or its end is expected
+	private static final int STATE_FIRST_KEY = 2;
+
+	// a key is expected
+	private static final int STATE_KEY = 3;
+
+	// a separator or the end of the current container is expected
+	private static final int STATE_SEPARATOR = 4;
+
+	// the root value is expected
+	private static final int STATE_START = 5;
+
+	// a value is expected
+	private static final int STATE_VALUE = 6;
+
+	private int pDepth = 0;
+
+	private EJSONEvent pEvent = null;
+
+	// the kind of the opened containers: true for an object
+	private boolean[] pInObject = new boolean[16];
+
+	private String pKey = null;
+
+	private int pState = STATE_START;
+
+	private final JSONTokener pTokener;
+
+	private Object pValue = null;
+
+	/**
+	 * @param aStream
+	 *            a stream of UTF-8 bytes. It isn't closed by the parser.
+	 */
+	public JSONPullParser(final InputStream aStream) {
+		this(new JSONTokener(aStream));
+	}
+
+	/**
+	 * @param aTokener
+	 */
+	public JSONPullParser(final JSONTokener aTokener) {
+		super();
+		pTokener = aTokener;
+	}
+
+	/**
+	 * @param aReader
+	 *            a stream of characters. It isn't closed by the parser.
+	 */
+	public JSONPullParser(final Reader aReader) {
+		this(new JSONTokener(aReader));
+	}
+
+	/**
+	 * @param aSource
+	 */
+	public JSONPullParser(final String aSource) {
+		this(new JSONTokener(aSource));
+	}
+
+	/**
+	 * @return the number of arrays and objects containing the current position
+	 */
+	public int getDepth() {
+		return pDepth;
+	}
+
+	/**
+	 * @return the current event or null before the first call of next()
+	 */
+	public EJSONEvent getEvent() {
+		return pEvent;
+	}
+
+	/**
+	 * @return the last key read in the current or in an enclosing object
+	 */
+	public String getKey() {
+		return pKey;
+	}
+
+	/**
+	 * @return the value of the VALUE event: a Boolean, a Number, a String,
+	 *         JSONObject.NULL or null for an empty item of an array
+	 */
+	public Object getValue() {
+		return pValue;
+	}
+
+	/**
+	 * @return true if the root value isn't fully read
+	 */
+	public boolean hasNext() {
+		return pState != STATE_END;
+	}
+
+	/**
+	 * @return the event of the next token
+	 * @throws JSONException
+	 *             if the source is not valid
+	 */
+	public EJSONEvent next() throws JSONException {
+		pValue = null;
+		for (;;) {
+			char wChar;
+			switch (pState) {
+
+			case STATE_END:
+				return setEvent(EJSONEvent.END_DOCUMENT);
+
+			case STATE_START:
+				wChar = pTokener.nextClean();
+				if (wChar == 0) {
+					throw pTokener.syntaxError("A JSON text must contain a value");
+				}
+				pTokener.back();
+				pState = STATE_VALUE;
+				break;
+
+			case STATE_FIRST_KEY:
+				wChar = pTokener.nextClean();
+				if (wChar == '}') {
+					return pop(EJSONEvent.END_OBJECT);
+				}
+				pTokener.back();
+				pState = STATE_KEY;
+				break;
+
+			case STATE_KEY:
+				return readKey();
+
+			case STATE_FIRST_ITEM:
+				wChar = pTokener.nextClean();
+				if (wChar == ']') {
+					return pop(EJSONEvent.END_ARRAY);
+				}
+				pTokener.back();
+				pState = STATE_VALUE;
+				break;
+
+			case STATE_VALUE:
+				return readValueEvent();
+
+			case STATE_SEPARATOR:
+				wChar = pTokener.nextClean();
+				boolean wInObject = pInObject[pDepth - 1];
+				char wEnd = wInObject ? '}' : ']';
+				if (wChar == ',' || wChar == ';') {
+					// tolerates a trailing separator
+					if (pTokener.nextClean() == wEnd) {
+						return pop(wInObject ? EJSONEvent.END_OBJECT
+								: EJSONEvent.END_ARRAY);
+					}
+					pTokener.back();
+					pState = wInObject ? STATE_KEY : STATE_VALUE;
+				} else if (wChar == wEnd) {
+					return pop(wInObject ? EJSONEvent.END_OBJECT
+							: EJSONEvent.END_ARRAY);
+				} else {
+					throw pTokener.syntaxError(String.format(
+							"Expected a ',' or '%s'", wEnd));
+				}
+				break;
+
+			default:
+				throw new JSONException("Unknown state [%d]", pState);
+			}
+		}
+	}
+
+	/**
+	 * @param aEvent
+	 *            the END_OBJECT or END_ARRAY event
+	 * @return the event
+	 */
+	private EJSONEvent pop(final EJSONEvent aEvent) {
+		pDepth--;
+		pState = (pDepth == 0) ? STATE_END : STATE_SEPARATOR;
+		return setEvent(aEvent);
+	}
+
+	/**
+	 * @param aInObject
+	 * @param aEvent
+	 *            the START_OBJECT or START_ARRAY event
+	 * @return the event
+	 */
+	private EJSONEvent push(final boolean aInObject, final EJSONEvent aEvent) {
+		if (pDepth == pInObject.length) {
+			boolean[] wInObject = new boolean[pDepth * 2];
+			System.arraycopy(pInObject, 0, wInObject, 0, pDepth);
+			pInObject = wInObject;
+		}
+		pInObject[pDepth++] = aInObject;
+		pState = aInObject ? STATE_FIRST_KEY : STATE_FIRST_ITEM;
+		return setEvent(aEvent);
+	}
+
+	/**
+	 * reads a key and its separator (':', '=' or '=>')
+	 *
+	 * @return the KEY event
+	 */
+	private EJSONEvent readKey() throws JSONException {
+		char wChar = pTokener.nextClean();
+		switch (wChar) {
+		case 0:
+			throw pTokener.syntaxError("A JSONObject text must end with '}'");
+		case '"':
+		case '\'':
+			pKey = pTokener.nextString(wChar);
+			break;
+		case '{':
+		case '[':
+			throw pTokener.syntaxError("A key must be a string");
+		default:
+			pTokener.back();
+			pKey = pTokener.nextValue().toString();
+		}
+		wChar = pTokener.nextClean();
+		if (wChar == '=') {
+			if (pTokener.next() != '>') {
+				pTokener.back();
+			}
+		} else if (wChar != ':') {
+			throw pTokener.syntaxError("Expected a ':' after a key");
+		}
+		pState = STATE_VALUE;
+		return setEvent(EJSONEvent.KEY);
+	}
+
+	/**
+	 * Reads the current value. At a START_OBJECT or a START_ARRAY event, the
+	 * whole object or array is read and the parser goes past its end. At a
+	 * VALUE event, the value is returned.
+	 *
+	 * @return a JSONObject, a JSONArray or the value of the VALUE event
+	 * @throws JSONException
+	 *             if the current event is not START_OBJECT, START_ARRAY or
+	 *             VALUE
+	 */
+	public Object readValue() throws JSONException {
+		if (pEvent == EJSONEvent.VALUE) {
+			return pValue;
+		}
+		if (pEvent == EJSONEvent.START_OBJECT) {
+			// the tokener is just after the opening brace
+			pTokener.back();
+			JSONObject wObject = new JSONObject(pTokener);
+			pop(EJSONEvent.END_OBJECT);
+			return wObject;
+		}
+		if (pEvent == EJSONEvent.START_ARRAY) {
+			pTokener.back();
+			JSONArray wArray = new JSONArray(pTokener);
+			pop(EJSONEvent.END_ARRAY);
+			return wArray;
+		}
+		throw new JSONException("Unable to read a value at the event [%s]",
+				pEvent);
+	}
+
+	/**
+	 * @return the START_OBJECT, START_ARRAY or VALUE event
+	 */
+	private EJSONEvent readValueEvent() throws JSONException {
+		char wChar = pTokener.nextClean();
+		switch (wChar) {
+		case '{':
+			return push(true, EJSONEvent.START_OBJECT);
+		case '[':
+			return push(false, EJSONEvent.START_ARRAY);
+		case ',':
+		case ';':
+			// an empty item of an array, as JSONArray accepts it
+			if (pDepth > 0 && !pInObject[pDepth - 1]) {
+				pTokener.back();
+				pValue = null;
+				break;
+			}
+			throw pTokener.syntaxError("Missing value");
+		default:
+			pTokener.back();
+			pValue = pTokener.nextValue();
+		}
+		pState = (pDepth == 0) ? STATE_END : STATE_SEPARATOR;
+		return setEvent(EJSONEvent.VALUE);
+	}
+
+	/**
+	 * @param aEvent
+	 * @return the event
+	 */
+	private EJSONEvent setEvent(final EJSONEvent aEvent) {
+		pEvent = aEvent;
+		return aEvent;
+	}
+
+	/**
+	 * Skips the current value. At a START_OBJECT or a START_ARRAY event, the
+	 * parser goes past the end of the object or array without building it.
+	 *
+	 * @throws JSONException
+	 */
+	public void skipValue() throws JSONException {
+		if (pEvent == EJSONEvent.START_OBJECT
+				|| pEvent == EJSONEvent.START_ARRAY) {
+			int wDepth = pDepth - 1;
+			while (pDepth > wDepth) {
+				next();
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return String.format("JSONPullParser:[%s] depth=[%d]%s", pEvent,
+				pDepth, pTokener.toString());
+	}
+}
@@ -24,15 +24,58 @@ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
 SOFTWARE.
 */
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
 /**
- * A JSONTokener takes a source string and extracts characters and tokens from
- * it. It is used by the JSONObject and JSONArray constructors to parse
- * JSON source strings.
+ * A JSONTokener takes a source string or a source stream and extracts
+ * characters and tokens from it. It is used by the JSONObject and JSONArray
+ * constructors to parse JSON source strings and by the JSONPullParser.
+ *
+ * A stream is read through a char buffer which is reused for the whole
+ * source: only the part of the source which is being tokenized is kept in
+ * memory.
+ *
  * @author JSON.org
- * @version 2
+ * @version 3
  */
 public class JSONTokener {
 
+    /**
+     * The size of the char buffer of a tokener reading a stream.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+
+    /**
+     * The characters of the source: the whole string or the current part of
+     * the stream.
+     */
+    private char[] myBuffer;
+
+
+    /**
+     * The number of valid characters in the buffer.
+     */
+    private int myBufferEnd;
+
+
+    /**
+     * The index in the source of the first character of the buffer.
+     */
+    private int myBufferStart;
+
+
+    /**
+     * True when the whole source is in the buffer.
+     */
+    private boolean myEof;
+
+
     /**
      * The index of the next character.
      */
@@ -40,11 +83,70 @@ public class JSONTokener {
 
 
     /**
-     * The source string being tokenized.
+     * The index from which the characters must be kept in the buffer, or -1.
+     */
+    private int myMark = -1;
+
+
+    /**
+     * The source stream being tokenized, null if the source is a string.
+     */
+    private Reader myReader;
+
+
+    /**
+     * The source string being tokenized, null if the source is a stream.
      */
     private String mySource;
 
 
+    /**
+     * Construct a JSONTokener from a stream of UTF-8 bytes.
+     *
+     * @param aStream A source stream. It isn't closed by the tokener.
+     */
+    public JSONTokener(InputStream aStream) {
+        this(aStream, StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Construct a JSONTokener from a stream of bytes.
+     *
+     * @param aStream   A source stream. It isn't closed by the tokener.
+     * @param aCharset  The charset of the stream.
+     */
+    public JSONTokener(InputStream aStream, Charset aCharset) {
+        this(new InputStreamReader(aStream, aCharset), DEFAULT_BUFFER_SIZE);
+    }
+
+
+    /**
+     * Construct a JSONTokener from a stream of characters.
+     *
+     * @param aReader   A source reader. It isn't closed by the tokener.
+     */
+    public JSONTokener(Reader aReader) {
+        this(aReader, DEFAULT_BUFFER_SIZE);
+    }
+
+
+    /**
+     * Construct a JSONTokener from a stream of characters.
+     *
+     * @param aReader       A source reader. It isn't closed by the tokener.
+     * @param aBufferSize   The initial size of the char buffer.
+     */
+    public JSONTokener(Reader aReader, int aBufferSize) {
+        this.myReader = aReader;
+        this.myBuffer = new char[Math.max(aBufferSize, 16)];
+        this.myBufferEnd = 0;
+        this.myBufferStart = 0;
+        this.myEof = false;
+        this.myIndex = 0;
+    }
+
+
     /**
      * Construct a JSONTokener from a string.
      *
@@ -53,6 +155,10 @@ public class JSONTokener {
     public JSONTokener(String s) {
         this.myIndex = 0;
         this.mySource = s;
+        this.myBuffer = s.toCharArray();
+        this.myBufferEnd = this.myBuffer.length;
+        this.myBufferStart = 0;
+        this.myEof = true;
     }
 
 
@@ -68,6 +174,68 @@ public class JSONTokener {
     }
 
 
+    /**
+     * Reads the next part of the source stream in the buffer. The buffer keeps
+     * the previous character (for back()) and the marked characters, it grows
+     * only if they fill it.
+     *
+     * @return true if characters were read, false at the end of the source.
+     * @throws JSONException if the stream can't be read.
+     */
+    private boolean fill() throws JSONException {
+        if (this.myEof) {
+            return false;
+        }
+        int wKeep = this.myIndex - 1;
+        if (this.myMark >= 0 && this.myMark < wKeep) {
+            wKeep = this.myMark;
+        }
+        wKeep = Math.max(wKeep - this.myBufferStart, 0);
+        int wLength = this.myBufferEnd - wKeep;
+        if (wKeep > 0) {
+            System.arraycopy(this.myBuffer, wKeep, this.myBuffer, 0, wLength);
+            this.myBufferStart += wKeep;
+            this.myBufferEnd = wLength;
+        }
+        if (wLength == this.myBuffer.length) {
+            char[] wBuffer = new char[this.myBuffer.length * 2];
+            System.arraycopy(this.myBuffer, 0, wBuffer, 0, wLength);
+            this.myBuffer = wBuffer;
+        }
+        try {
+            int wNbRead;
+            do {
+                wNbRead = this.myReader.read(this.myBuffer, this.myBufferEnd,
+                        this.myBuffer.length - this.myBufferEnd);
+            } while (wNbRead == 0);
+            if (wNbRead < 0) {
+                this.myEof = true;
+                return false;
+            }
+            this.myBufferEnd += wNbRead;
+            return true;
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+
+
+    /**
+     * Makes the count next characters available in the buffer.
+     *
+     * @param aCount    A number of characters.
+     * @return true if the source contains them.
+     */
+    private boolean ensure(int aCount) throws JSONException {
+        while (this.myIndex + aCount > this.myBufferStart + this.myBufferEnd) {
+            if (!fill()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
 
     /**
      * Get the hex value of a character (base16).
@@ -95,7 +263,7 @@ public class JSONTokener {
      * @return true if not yet at the end of the source.
      */
     public boolean more() {
-        return this.myIndex < this.mySource.length();
+        return this.myIndex - this.myBufferStart < this.myBufferEnd || fill();
     }
 
 
@@ -105,8 +273,9 @@ public class JSONTokener {
      * @return The next character, or 0 if past the end of the source string.
      */
     public char next() {
-        if (more()) {
-            char c = this.mySource.charAt(this.myIndex);
+        int p = this.myIndex - this.myBufferStart;
+        if (p < this.myBufferEnd || fill()) {
+            char c = this.myBuffer[this.myIndex - this.myBufferStart];
             this.myIndex += 1;
             return c;
         }
@@ -141,13 +310,13 @@ public class JSONTokener {
      *   n characters remaining in the source string.
      */
      public String next(int n) throws JSONException {
-         int i = this.myIndex;
-         int j = i + n;
-         if (j >= this.mySource.length()) {
+         // as the string version always did, the n characters can't end the source
+         if (!ensure(n + 1)) {
             throw syntaxError("Substring bounds error");
          }
+         int i = this.myIndex - this.myBufferStart;
          this.myIndex += n;
-         return this.mySource.substring(i, j);
+         return new String(this.myBuffer, i, n);
      }
 
 
@@ -209,8 +378,36 @@ public class JSONTokener {
      */
     public String nextString(char quote) throws JSONException {
         char c;
-        StringBuffer sb = new StringBuffer();
+        StringBuilder sb = null;
         for (;;) {
+            /*
+             * Take the run of plain characters directly from the buffer.
+             */
+            int p = this.myIndex - this.myBufferStart;
+            if (p >= this.myBufferEnd && fill()) {
+                p = this.myIndex - this.myBufferStart;
+            }
+            int start = p;
+            while (p < this.myBufferEnd) {
+                c = this.myBuffer[p];
+                if (c == quote || c == '\\' || c < ' ') {
+                    break;
+                }
+                p += 1;
+            }
+            if (p < this.myBufferEnd && this.myBuffer[p] == quote
+                    && sb == null) {
+                this.myIndex += p - start + 1;
+                return new String(this.myBuffer, start, p - start);
+            }
+            if (sb == null) {
+                sb = new StringBuilder(Math.max(16, (p - start) * 2));
+            }
+            sb.append(this.myBuffer, start, p - start);
+            this.myIndex += p - start;
+            if (p == this.myBufferEnd && !this.myEof) {
+                continue;
+            }
             c = next();
             switch (c) {
             case 0:
@@ -331,7 +528,7 @@ public class JSONTokener {
          * formatting character.
          */
 
-        StringBuffer sb = new StringBuffer();
+        StringBuilder sb = new StringBuilder();
         char b = c;
         while (c >= ' ' && ",:]}/\\\"[{;=#".indexOf(c) < 0) {
             sb.append(c);
@@ -411,13 +608,19 @@ public class JSONTokener {
     public char skipTo(char to) {
         char c;
         int index = this.myIndex;
-        do {
-            c = next();
-            if (c == 0) {
-                this.myIndex = index;
-                return c;
-            }
-        } while (c != to);
+        // keeps the skipped characters of a stream to be able to restore them
+        this.myMark = index;
+        try {
+            do {
+                c = next();
+                if (c == 0) {
+                    this.myIndex = index;
+                    return c;
+                }
+            } while (c != to);
+        } finally {
+            this.myMark = -1;
+        }
         back();
         return c;
     }
@@ -429,14 +632,32 @@ public class JSONTokener {
      * @param to A string to skip past.
      */
     public boolean skipPast(String to) {
-        this.myIndex = this.mySource.indexOf(to, this.myIndex);
-        if (this.myIndex < 0) {
-            this.myIndex = this.mySource.length();
-            return false;
-        } 
-        this.myIndex += to.length();
-        return true;
-
+        if (this.mySource != null) {
+            this.myIndex = this.mySource.indexOf(to, this.myIndex);
+            if (this.myIndex < 0) {
+                this.myIndex = this.mySource.length();
+                return false;
+            }
+            this.myIndex += to.length();
+            return true;
+        }
+        int n = to.length();
+        for (;;) {
+            if (!ensure(n)) {
+                this.myIndex = this.myBufferStart + this.myBufferEnd;
+                return false;
+            }
+            int p = this.myIndex - this.myBufferStart;
+            int i = 0;
+            while (i < n && this.myBuffer[p + i] == to.charAt(i)) {
+                i += 1;
+            }
+            if (i == n) {
+                this.myIndex += n;
+                return true;
+            }
+            this.myIndex += 1;
+        }
     }
 
 
@@ -454,10 +675,19 @@ public class JSONTokener {
     /**
      * Make a printable string of this JSONTokener.
      *
-     * @return " at character [this.myIndex] of [this.mySource]"
+     * @return " at character [this.myIndex] of [this.mySource]" or, if the
+     * source is a stream, " at character [this.myIndex] near [the buffered
+     * characters around the index]"
      */
     @Override
 	public String toString() {
-        return " at character " + this.myIndex + " of " + this.mySource;
+        if (this.mySource != null) {
+            return " at character " + this.myIndex + " of " + this.mySource;
+        }
+        int p = this.myIndex - this.myBufferStart;
+        int start = Math.max(0, p - 32);
+        int end = Math.min(this.myBufferEnd, p + 32);
+        return " at character " + this.myIndex + " near "
+                + new String(this.myBuffer, start, Math.max(0, end - start));
     }
 }
\ No newline at end of file
@@ -2,6 +2,10 @@ package org.psem2m.utilities.json;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Map.Entry;
 
 /*
  Copyright (c) 2006 JSON.org
@@ -56,6 +60,11 @@ import java.io.Writer;
  * you. Objects and arrays can be nested up to 20 levels deep.
  * <p>
  * This can sometimes be easier than using a JSONObject to build a string.
+ * <p>
+ * The JSONWriter used by JSONObject.writeTo() and JSONArray.writeTo() streams
+ * the JSONObject, JSONArray, Map, Collection and array values member by
+ * member: no intermediate string is built. The public writers append them as
+ * a whole, as toString() does, so their depth doesn't count in the 20 levels.
  * 
  * @author JSON.org
  * @version 2
@@ -63,6 +72,12 @@ import java.io.Writer;
 public class JSONWriter {
 	private static final int maxdepth = 20;
 
+	/**
+	 * The max depth of the JSONWriter used by JSONObject.writeTo() and
+	 * JSONArray.writeTo().
+	 */
+	static final int STREAM_MAX_DEPTH = 1000;
+
 	/**
 	 * The comma flag determines if a comma should be output before the next
 	 * value.
@@ -80,6 +95,16 @@ public class JSONWriter {
 	 */
 	private char stack[];
 
+	/**
+	 * The max depth of the object/array stack.
+	 */
+	private final int stackMaxDepth;
+
+	/**
+	 * True if the objects and arrays values are streamed member by member.
+	 */
+	private final boolean streamValues;
+
 	/**
 	 * The stack top index. A value of 0 indicates that the stack is empty.
 	 */
@@ -94,9 +119,24 @@ public class JSONWriter {
 	 * Make a fresh JSONWriter. It can be used to build one JSON text.
 	 */
 	public JSONWriter(Writer w) {
+		this(w, maxdepth);
+	}
+
+	/**
+	 * Make a fresh JSONWriter accepting a deeper nesting and streaming the
+	 * objects and arrays values. The stack grows on demand.
+	 * 
+	 * @param w
+	 *            The writer that will receive the output.
+	 * @param aMaxDepth
+	 *            The max depth of the objects and arrays.
+	 */
+	JSONWriter(Writer w, int aMaxDepth) {
 		this.comma = false;
 		this.mode = 'i';
-		this.stack = new char[maxdepth];
+		this.stack = new char[Math.min(aMaxDepth, maxdepth)];
+		this.stackMaxDepth = aMaxDepth;
+		this.streamValues = aMaxDepth > maxdepth;
 		this.top = 0;
 		this.writer = w;
 	}
@@ -132,6 +172,34 @@ public class JSONWriter {
 		throw new JSONException("Value out of sequence.");
 	}
 
+	/**
+	 * Append a string value, quoted directly in the writer.
+	 * 
+	 * @param s
+	 *            A string value.
+	 * @return this
+	 * @throws JSONException
+	 *             If the value is out of sequence.
+	 */
+	private JSONWriter appendQuoted(String s) throws JSONException {
+		if (this.mode == 'o' || this.mode == 'a') {
+			try {
+				if (this.comma && this.mode == 'a') {
+					this.writer.write(',');
+				}
+				JSONObject.quote(s, this.writer);
+			} catch (IOException e) {
+				throw new JSONException(e, "Unable to write a string [%s]", s); // #31
+			}
+			if (this.mode == 'o') {
+				this.mode = 'k';
+			}
+			this.comma = true;
+			return this;
+		}
+		throw new JSONException("Value out of sequence.");
+	}
+
 	/**
 	 * Begin appending a new array. All values until the balancing
 	 * <code>endArray</code> will be appended to this array. The
@@ -222,7 +290,7 @@ public class JSONWriter {
 				if (this.comma) {
 					this.writer.write(',');
 				}
-				this.writer.write(JSONObject.quote(s));
+				JSONObject.quote(s, this.writer);
 				this.writer.write(':');
 				this.comma = false;
 				this.mode = 'o';
@@ -284,9 +352,14 @@ public class JSONWriter {
 	 *             If nesting is too deep.
 	 */
 	private void push(char c) throws JSONException {
-		if (this.top >= maxdepth) {
+		if (this.top >= this.stackMaxDepth) {
 			throw new JSONException("Nesting too deep.");
 		}
+		if (this.top == this.stack.length) {
+			char[] wStack = new char[Math.min(this.top * 2, this.stackMaxDepth)];
+			System.arraycopy(this.stack, 0, wStack, 0, this.top);
+			this.stack = wStack;
+		}
 		this.stack[this.top] = c;
 		this.mode = c;
 		this.top += 1;
@@ -336,12 +409,65 @@ public class JSONWriter {
 	 * @param o
 	 *            The object to append. It can be null, or a Boolean, Number,
 	 *            String, JSONObject, or JSONArray, or an object with a
-	 *            toJSONString() method.
+	 *            toJSONString() method. The objects, arrays, maps and
+	 *            collections are streamed member by member by the writer of
+	 *            writeTo().
 	 * @return this
 	 * @throws JSONException
 	 *             If the value is out of sequence.
 	 */
+	@SuppressWarnings("unchecked")
 	public JSONWriter value(Object o) throws JSONException {
-		return this.append(JSONObject.valueToString(o));
+		if (o == null || o.equals(null) || o instanceof JSONString
+				|| o instanceof Number || o instanceof Boolean) {
+			return this.append(JSONObject.valueToString(o));
+		}
+		if (o instanceof String) {
+			return this.appendQuoted((String) o);
+		}
+		if (!this.streamValues) {
+			return this.append(JSONObject.valueToString(o));
+		}
+		if (o instanceof JSONObject) {
+			this.object();
+			for (Entry<String, Object> wEntry : ((JSONObject) o).entrySet()) {
+				this.key(wEntry.getKey());
+				this.value(wEntry.getValue());
+			}
+			return this.endObject();
+		}
+		if (o instanceof JSONArray) {
+			JSONArray wArray = (JSONArray) o;
+			int wLength = wArray.length();
+			this.array();
+			for (int i = 0; i < wLength; i += 1) {
+				this.value(wArray.opt(i));
+			}
+			return this.endArray();
+		}
+		if (o instanceof Map) {
+			this.object();
+			for (Entry<Object, Object> wEntry : ((Map<Object, Object>) o).entrySet()) {
+				this.key(String.valueOf(wEntry.getKey()));
+				this.value(wEntry.getValue());
+			}
+			return this.endObject();
+		}
+		if (o instanceof Collection) {
+			this.array();
+			for (Object wItem : (Collection<Object>) o) {
+				this.value(wItem);
+			}
+			return this.endArray();
+		}
+		if (o.getClass().isArray()) {
+			this.array();
+			int wLength = Array.getLength(o);
+			for (int i = 0; i < wLength; i += 1) {
+				this.value(Array.get(o, i));
+			}
+			return this.endArray();
+		}
+		return this.appendQuoted(o.toString());
 	}
 }
@@ -0,0 +1,71 @@
+package org.psem2m.utilities.logging;
+
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * A preallocated and reusable slot of the ring buffer of a
+ * CActivityAsyncWriter.
+ *
+ * The record carries the name of the thread which published it because the
+ * formatter is called by the writer thread.
+ */
+class CActivityAsyncRecord extends LogRecord {
+
+	private static final long serialVersionUID = -2416071427283716950L;
+
+	private long pMillis;
+
+	private String pThreadName;
+
+	/**
+	 *
+	 */
+	CActivityAsyncRecord() {
+		super(Level.OFF, null);
+	}
+
+	/**
+	 * releases the references to the text and to the source of the record
+	 */
+	void clear() {
+		setMessage(null);
+		setSourceClassName(null);
+		setSourceMethodName(null);
+		pThreadName = null;
+	}
+
+	/**
+	 * @param aMillis
+	 * @param aLevel
+	 * @param aThreadName
+	 * @param aWho
+	 * @param aWhat
+	 * @param aText
+	 */
+	void fill(final long aMillis, final Level aLevel, final String aThreadName,
+			final String aWho, final String aWhat, final String aText) {
+		// the millis are set in the record by the writer thread (the setter of
+		// the LogRecord allocates an Instant since java 9)
+		pMillis = aMillis;
+		setLevel(aLevel);
+		setSourceClassName(aWho);
+		setSourceMethodName(aWhat);
+		setMessage(aText);
+		pThreadName = aThreadName;
+	}
+
+	/**
+	 * Sets the timestamp of the record before its writing
+	 */
+	void prepare() {
+		setMillis(pMillis);
+	}
+
+	/**
+	 * @return the name of the thread which published the record
+	 */
+	String getThreadName() {
+		return pThreadName;
+	}
+}
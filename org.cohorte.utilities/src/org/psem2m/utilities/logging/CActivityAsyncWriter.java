@@ -0,0 +1,415 @@
+package org.psem2m.utilities.logging;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+
+import org.psem2m.utilities.CXException;
+import org.psem2m.utilities.CXStringUtils;
+import org.psem2m.utilities.IXDescriber;
+
+/**
+ * The asynchronous writing pipeline of a CActivityLoggerStd.
+ *
+ * The caller threads publish their log records in a bounded ring buffer of
+ * preallocated CActivityAsyncRecord. A single writer thread drains the ring
+ * buffer by batches and writes the records in the CActivityFileHandler.
+ *
+ * The ring buffer is a lock-free bounded queue: each slot owns a sequence
+ * number which tells if the slot is free for the producers or published for
+ * the consumers. The producers and the consumers claim the slots with a CAS on
+ * the tail and on the head positions.
+ */
+class CActivityAsyncWriter implements Runnable, IXDescriber {
+
+	public final static int BATCH_SIZE = 256;
+
+	/** the duration of a wait of a blocked caller thread **/
+	private final static long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS
+			.toNanos(100);
+
+	/** the maximum duration of the flush on close **/
+	private final static long CLOSE_TIMEOUT_MILLIS = 5000;
+
+	public final static int CAPACITY_MIN = 64;
+
+	public final static int CAPACITY_STD = 8192;
+
+	/** the duration of a wait of the writer thread when the buffer is empty **/
+	private final static long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS
+			.toNanos(10);
+
+	public final static String LABEL_CAPACITY = "Capacity";
+
+	public final static String LABEL_DROPPED = "Dropped";
+
+	public final static String LABEL_POLICY = "Policy";
+
+	public final static String LABEL_QUEUED = "Queued";
+
+	public final static Level LEVEL_DROP_STD = Level.WARNING;
+
+	/**
+	 * @param aCapacity
+	 * @return the smallest power of two greater or equal to the capacity
+	 */
+	static int roundCapacity(final int aCapacity) {
+		final int wCapacity = Math.max(aCapacity, CAPACITY_MIN);
+		final int wHighestOneBit = Integer.highestOneBit(wCapacity);
+		return (wHighestOneBit == wCapacity) ? wCapacity : wHighestOneBit << 1;
+	}
+
+	private volatile boolean pClosed = false;
+
+	private volatile boolean pClosing = false;
+
+	private final Level pDropLevel;
+
+	private final AtomicLong pDropped = new AtomicLong(0);
+
+	private final CActivityFileHandler pFileHandler;
+
+	/** the next position to consume **/
+	private final AtomicLong pHead = new AtomicLong(0);
+
+	private final int pMask;
+
+	private final EActivityOverflowPolicy pPolicy;
+
+	private final CActivityAsyncRecord[] pRecords;
+
+	private final AtomicLongArray pSequences;
+
+	/** the next position to produce **/
+	private final AtomicLong pTail = new AtomicLong(0);
+
+	private volatile Thread pWriterThread = null;
+
+	private volatile boolean pWriterWaiting = false;
+
+	/**
+	 * @param aFileHandler
+	 *            the handler in which the records are written
+	 * @param aCapacity
+	 *            the size of the ring buffer (rounded to a power of two)
+	 * @param aPolicy
+	 *            the overflow policy (BLOCK if null)
+	 * @param aDropLevel
+	 *            the level under which the records are dropped with the
+	 *            policy DROP_BELOW_LEVEL (WARNING if null)
+	 */
+	CActivityAsyncWriter(final CActivityFileHandler aFileHandler,
+			final int aCapacity, final EActivityOverflowPolicy aPolicy,
+			final Level aDropLevel) {
+		super();
+		pFileHandler = aFileHandler;
+		pPolicy = (aPolicy != null) ? aPolicy : EActivityOverflowPolicy.BLOCK;
+		pDropLevel = (aDropLevel != null) ? aDropLevel : LEVEL_DROP_STD;
+
+		final int wCapacity = roundCapacity(aCapacity);
+		pMask = wCapacity - 1;
+		pRecords = new CActivityAsyncRecord[wCapacity];
+		pSequences = new AtomicLongArray(wCapacity);
+		for (int wI = 0; wI < wCapacity; wI++) {
+			pRecords[wI] = new CActivityAsyncRecord();
+			pSequences.set(wI, wI);
+		}
+	}
+
+	@Override
+	public Appendable addDescriptionInBuffer(final Appendable aBuffer) {
+		CXStringUtils.appendKeyValInBuff(aBuffer, LABEL_POLICY, pPolicy.name());
+		CXStringUtils.appendKeyValInBuff(aBuffer, LABEL_CAPACITY,
+				getCapacity());
+		CXStringUtils.appendKeyValInBuff(aBuffer, LABEL_QUEUED,
+				getNbQueuedRecords());
+		CXStringUtils.appendKeyValInBuff(aBuffer, LABEL_DROPPED,
+				getNbDroppedRecords());
+		return aBuffer;
+	}
+
+	public int calcDescriptionLength() {
+		return 128;
+	}
+
+	/**
+	 * @return the number of records claimed in the ring buffer and not yet
+	 *         consumed
+	 */
+	private long calcNbRingRecords() {
+		final long wNb = pTail.get() - pHead.get();
+		return (wNb > 0) ? wNb : 0;
+	}
+
+	/**
+	 * Claims the oldest published slot.
+	 *
+	 * @return the claimed position or -1 if the ring buffer is empty
+	 */
+	private long claimHead() {
+		long wPos = pHead.get();
+		while (true) {
+			final long wDif = pSequences.get((int) (wPos & pMask)) - (wPos + 1);
+			if (wDif == 0) {
+				if (pHead.compareAndSet(wPos, wPos + 1)) {
+					return wPos;
+				}
+				wPos = pHead.get();
+			} else if (wDif < 0) {
+				return -1;
+			} else {
+				wPos = pHead.get();
+			}
+		}
+	}
+
+	/**
+	 * Stops the writer thread after the writing of all the queued records.
+	 *
+	 * The caller waits at most CLOSE_TIMEOUT_MILLIS. The records published
+	 * after the closing are rejected and counted as dropped.
+	 */
+	void close() {
+		pClosing = true;
+		final Thread wWriterThread = pWriterThread;
+		if (wWriterThread != null) {
+			LockSupport.unpark(wWriterThread);
+			try {
+				wWriterThread.join(CLOSE_TIMEOUT_MILLIS);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			pWriterThread = null;
+		}
+		// if the writer thread was not started or didn't finish in time
+		drain(Integer.MAX_VALUE);
+		pFileHandler.setFlushDeferred(false);
+		pFileHandler.flush();
+		pClosed = true;
+	}
+
+	/**
+	 * Writes at most aMax queued records in the file handler.
+	 *
+	 * @param aMax
+	 * @return the number of written records
+	 */
+	private int drain(final int aMax) {
+		int wNb = 0;
+		long wPos;
+		while (wNb < aMax && (wPos = claimHead()) > -1) {
+			final int wIdx = (int) (wPos & pMask);
+			final CActivityAsyncRecord wRecord = pRecords[wIdx];
+			try {
+				wRecord.prepare();
+				pFileHandler.publish(wRecord);
+			} catch (final Exception e) {
+				System.err.println(CXException.eInString(e));
+			}
+			wRecord.clear();
+			releaseSlot(wPos, wIdx);
+			wNb++;
+		}
+		return wNb;
+	}
+
+	/**
+	 * Drops the oldest queued record.
+	 *
+	 * @return true if a record was dropped
+	 */
+	private boolean dropOldest() {
+		final long wPos = claimHead();
+		if (wPos < 0) {
+			return false;
+		}
+		final int wIdx = (int) (wPos & pMask);
+		pRecords[wIdx].clear();
+		releaseSlot(wPos, wIdx);
+		pDropped.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * @return the size of the ring buffer
+	 */
+	int getCapacity() {
+		return pRecords.length;
+	}
+
+	/**
+	 * @return the number of records dropped since the creation of the writer,
+	 *         including the ones queued by a producer racing with the closing
+	 *         after the last drain
+	 */
+	long getNbDroppedRecords() {
+		return pDropped.get() + (pClosed ? calcNbRingRecords() : 0);
+	}
+
+	/**
+	 * @return the number of records waiting in the ring buffer, none once the
+	 *         writer is closed
+	 */
+	long getNbQueuedRecords() {
+		return (pClosed) ? 0 : calcNbRingRecords();
+	}
+
+	/**
+	 * @return the overflow policy
+	 */
+	EActivityOverflowPolicy getPolicy() {
+		return pPolicy;
+	}
+
+	/**
+	 * @param aLevel
+	 * @param aWho
+	 * @param aWhat
+	 * @param aText
+	 * @return true if the record is queued, false if it is dropped
+	 */
+	boolean publish(final Level aLevel, final String aWho, final String aWhat,
+			final String aText) {
+
+		if (pClosing) {
+			pDropped.incrementAndGet();
+			return false;
+		}
+		final long wMillis = System.currentTimeMillis();
+		final String wThreadName = Thread.currentThread().getName();
+
+		while (true) {
+			if (tryPublish(wMillis, aLevel, wThreadName, aWho, aWhat, aText)) {
+				return true;
+			}
+			// the ring buffer is full
+			if (pClosing) {
+				pDropped.incrementAndGet();
+				return false;
+			}
+			switch (pPolicy) {
+			case DROP_OLDEST:
+				dropOldest();
+				break;
+			case DROP_BELOW_LEVEL:
+				if (aLevel.intValue() < pDropLevel.intValue()) {
+					pDropped.incrementAndGet();
+					return false;
+				}
+				waitForSlot();
+				break;
+			case BLOCK:
+			default:
+				waitForSlot();
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Frees the slot for the producers of the next round.
+	 *
+	 * @param aPos
+	 * @param aIdx
+	 */
+	private void releaseSlot(final long aPos, final int aIdx) {
+		pSequences.lazySet(aIdx, aPos + pRecords.length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+		while (true) {
+			if (drain(BATCH_SIZE) > 0) {
+				// the batch is done: write the buffered bytes in the file
+				pFileHandler.flushNow();
+			} else if (pClosing) {
+				break;
+			} else {
+				pWriterWaiting = true;
+				if (getNbQueuedRecords() == 0 && !pClosing) {
+					LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+				}
+				pWriterWaiting = false;
+			}
+		}
+	}
+
+	/**
+	 * Starts the writer thread
+	 *
+	 * @param aLoggerName
+	 */
+	void start(final String aLoggerName) {
+		pFileHandler.setFlushDeferred(true);
+		final Thread wWriterThread = new Thread(this, "Log writer "
+				+ aLoggerName);
+		// Allows the Java Virtual Machine to exit even this Thread is running
+		wWriterThread.setDaemon(true);
+		pWriterThread = wWriterThread;
+		wWriterThread.start();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.psem2m.utilities.IXDescriber#toDescription()
+	 */
+	@Override
+	public String toDescription() {
+		return addDescriptionInBuffer(
+				new StringBuilder(calcDescriptionLength())).toString();
+	}
+
+	/**
+	 * Claims the next free slot, fills it and publishes it.
+	 *
+	 * @return false if the ring buffer is full
+	 */
+	private boolean tryPublish(final long aMillis, final Level aLevel,
+			final String aThreadName, final String aWho, final String aWhat,
+			final String aText) {
+
+		long wPos = pTail.get();
+		while (true) {
+			final int wIdx = (int) (wPos & pMask);
+			final long wDif = pSequences.get(wIdx) - wPos;
+			if (wDif == 0) {
+				if (pTail.compareAndSet(wPos, wPos + 1)) {
+					pRecords[wIdx].fill(aMillis, aLevel, aThreadName, aWho,
+							aWhat, aText);
+					pSequences.lazySet(wIdx, wPos + 1);
+					if (pWriterWaiting) {
+						LockSupport.unpark(pWriterThread);
+					}
+					return true;
+				}
+				wPos = pTail.get();
+			} else if (wDif < 0) {
+				return false;
+			} else {
+				wPos = pTail.get();
+			}
+		}
+	}
+
+	/**
+	 * Wakes up the writer thread and waits a little.
+	 */
+	private void waitForSlot() {
+		final Thread wWriterThread = pWriterThread;
+		if (wWriterThread != null) {
+			LockSupport.unpark(wWriterThread);
+			LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+		} else {
+			// no writer thread: the caller does the job
+			drain(BATCH_SIZE);
+		}
+	}
+}
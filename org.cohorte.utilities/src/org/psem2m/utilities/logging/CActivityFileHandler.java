@@ -1,9 +1,13 @@
 package org.psem2m.utilities.logging;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.FileHandler;
 
 import org.psem2m.utilities.CXException;
@@ -45,6 +49,18 @@ public class CActivityFileHandler extends FileHandler implements IXDescriber {
 
 	private final CXFileText[] pFiles;
 
+	/**
+	 * if true, the flush done by the FileHandler after each record is skipped.
+	 * The asynchronous writer flushes the handler at the end of each batch.
+	 **/
+	private volatile boolean pFlushDeferred = false;
+
+	/**
+	 * the sidecar indexes of the log files used by the requesters. Null during
+	 * the construction of the FileHandler.
+	 **/
+	private final Map<String, CActivityLogIndex> pIndexes = new HashMap<String, CActivityLogIndex>();
+
 	private final String pPattern;
 
 	/**
@@ -155,6 +171,27 @@ public class CActivityFileHandler extends FileHandler implements IXDescriber {
 		return addExistingFileNamesInSB(new StringBuilder(32 * getCount())).toString();
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.logging.StreamHandler#flush()
+	 */
+	@Override
+	public synchronized void flush() {
+
+		if (!pFlushDeferred) {
+			super.flush();
+		}
+	}
+
+	/**
+	 * Flushes the handler even if the flush is deferred
+	 */
+	synchronized void flushNow() {
+
+		super.flush();
+	}
+
 	/**
 	 * @param generation
 	 * @param unique
@@ -211,6 +248,24 @@ public class CActivityFileHandler extends FileHandler implements IXDescriber {
 		return wFiles;
 	}
 
+	/**
+	 * @param aLogFile
+	 *            one of the log files of the handler
+	 * @return the sidecar index of the log file
+	 */
+	CActivityLogIndex getIndex(final File aLogFile) {
+
+		synchronized (pIndexes) {
+			final String wKey = aLogFile.getAbsolutePath();
+			CActivityLogIndex wIndex = pIndexes.get(wKey);
+			if (wIndex == null) {
+				wIndex = new CActivityLogIndex(new File(wKey));
+				pIndexes.put(wKey, wIndex);
+			}
+			return wIndex;
+		}
+	}
+
 	/**
 	 * @return
 	 */
@@ -231,6 +286,53 @@ public class CActivityFileHandler extends FileHandler implements IXDescriber {
 		}
 	}
 
+	/**
+	 * Renames the sidecar indexes as the FileHandler renamed the log files:
+	 * the index of the generation N becomes the one of the generation N+1.
+	 */
+	private void rotateIndexes() {
+
+		synchronized (pIndexes) {
+			pIndexes.clear();
+			for (int wI = pCount - 2; wI > -1; wI--) {
+				final File wIndexFile = CActivityLogIndex.getIndexFile(pFiles[wI]);
+				if (wIndexFile.exists()) {
+					final File wNextFile = CActivityLogIndex
+							.getIndexFile(pFiles[wI + 1]);
+					wNextFile.delete();
+					wIndexFile.renameTo(wNextFile);
+				}
+			}
+			// the new log file of the generation 0 is empty
+			CActivityLogIndex.getIndexFile(pFiles[0]).delete();
+		}
+	}
+
+	/**
+	 * @param aFlushDeferred
+	 *            if true, the flush done after each record is skipped
+	 */
+	void setFlushDeferred(final boolean aFlushDeferred) {
+
+		pFlushDeferred = aFlushDeferred;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.logging.StreamHandler#setOutputStream(java.io.OutputStream)
+	 */
+	@Override
+	protected synchronized void setOutputStream(final OutputStream aOutputStream) {
+
+		super.setOutputStream(aOutputStream);
+		// the FileHandler opens a new output stream after each rotation. The
+		// first one is opened by the constructor of the FileHandler.
+		if (pIndexes != null) {
+			rotateIndexes();
+		}
+	}
+
 	/**
 	 * @param aPatternVariableId
 	 * @param aPattern
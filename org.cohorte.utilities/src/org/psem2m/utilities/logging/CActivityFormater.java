@@ -53,7 +53,7 @@ abstract class CActivityFormater extends Formatter implements IActivityFormater
 	 * years (2<sup>63</sup> nanoseconds) will not accurately compute elapsed
 	 * time due to numerical overflow.
 	 */
-	private long pStartTime = 0;
+	private volatile long pStartTime = 0;
 
 	private final CLogTools pTools = CLogTools.getInstance();
 
@@ -178,6 +178,30 @@ abstract class CActivityFormater extends Formatter implements IActivityFormater
 			final String aSourceClassName, final String aSourceMethodName,
 			final String aText, final boolean aWhithEndLine);
 
+	/**
+	 * Appends the nano seconds adjusted to the right on LENGTH_NANO digits
+	 * without any intermediate String
+	 * 
+	 * @param aSB
+	 * @return
+	 */
+	StringBuilder addFormatedNanoSecsInLogLine(final StringBuilder aSB) {
+
+		final long wNanos = getMaximizedNanos();
+		int wNbDigits = 1;
+		long wLimit = 10;
+		while (wNbDigits < LENGTH_NANO && wNanos >= wLimit) {
+			wNbDigits++;
+			wLimit *= 10;
+		}
+		for (int wI = wNbDigits; wI < LENGTH_NANO; wI++) {
+			aSB.append('0');
+		}
+		// keep only the LENGTH_NANO right digits as strAdjustRight does
+		aSB.append((wNanos >= wLimit) ? wNanos % wLimit : wNanos);
+		return aSB;
+	}
+
 	/**
 	 * @return
 	 */
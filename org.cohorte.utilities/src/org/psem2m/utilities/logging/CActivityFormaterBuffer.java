@@ -0,0 +1,99 @@
+package org.psem2m.utilities.logging;
+
+import org.psem2m.utilities.CXDateTime;
+
+/**
+ * The per-thread formatting context of a CActivityFormaterStd.
+ *
+ * It holds a reusable StringBuilder, the date/time prefix of the current second
+ * and the padded name of the current thread, so the formatting of a log line
+ * doesn't allocate anything but the resulting String.
+ */
+class CActivityFormaterBuffer {
+
+	/** the capacity above which the builder is not kept **/
+	private final static int CAPACITY_MAX = 16 * 1024;
+
+	private final static int CAPACITY_STD = 256;
+
+	private final static int LENGTH_MILLIS = 3;
+
+	private final static long MILLIS_IN_SECOND = 1000;
+
+	private StringBuilder pBuffer = new StringBuilder(CAPACITY_STD);
+
+	/** "AAAA/MM/JJ HH:MM:SS:" **/
+	private String pDateTimePrefix = null;
+
+	private String pPaddedThreadName = null;
+
+	private long pSecond = Long.MIN_VALUE;
+
+	private String pThreadName = null;
+
+	/**
+	 * Explicit default constructor
+	 */
+	CActivityFormaterBuffer() {
+		super();
+	}
+
+	/**
+	 * @return the empty StringBuilder of the current thread
+	 */
+	StringBuilder getBuffer() {
+		// don't keep a builder enlarged by a huge line (eg. a stack)
+		if (pBuffer.capacity() > CAPACITY_MAX) {
+			pBuffer = new StringBuilder(CAPACITY_STD);
+		} else {
+			pBuffer.setLength(0);
+		}
+		return pBuffer;
+	}
+
+	/**
+	 * @param aMillis
+	 *            a timestamp greater than one second
+	 * @param aSepDate
+	 * @param aSepColumn
+	 * @param aSepTime
+	 * @return the formated date and time of the second of the timestamp
+	 */
+	String getDateTimePrefix(final long aMillis, final String aSepDate,
+			final char aSepColumn, final String aSepTime) {
+
+		final long wSecond = aMillis / MILLIS_IN_SECOND;
+		if (wSecond != pSecond || pDateTimePrefix == null) {
+			final long wSecondMillis = wSecond * MILLIS_IN_SECOND;
+			// "HH:MM:SS:000" => "HH:MM:SS:"
+			final String wTime = CXDateTime.time2StrHHMMSSmmm(wSecondMillis,
+					aSepTime);
+			pDateTimePrefix = new StringBuilder(32)
+					.append(CXDateTime.time2StrAAAAMMJJ(wSecondMillis, aSepDate))
+					.append(aSepColumn)
+					.append(wTime, 0, wTime.length() - LENGTH_MILLIS)
+					.toString();
+			pSecond = wSecond;
+		}
+		return pDateTimePrefix;
+	}
+
+	/**
+	 * @param aThreadName
+	 * @param aTools
+	 * @param aSize
+	 * @return the thread name adjusted to the right on aSize characters
+	 */
+	String getPaddedThreadName(final String aThreadName,
+			final CLogTools aTools, final int aSize) {
+
+		// the name of a thread rarely changes: compare the references
+		if (aThreadName != pThreadName || pPaddedThreadName == null) {
+			pPaddedThreadName = aTools.strAdjustRight(
+					(aThreadName != null) ? aThreadName : CLogTools.LIB_NULL,
+					aSize, ' ');
+			pThreadName = aThreadName;
+		}
+		return pPaddedThreadName;
+	}
+}
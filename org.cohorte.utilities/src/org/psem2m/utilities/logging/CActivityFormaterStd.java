@@ -1,6 +1,7 @@
 package org.psem2m.utilities.logging;
 
 import java.util.logging.Level;
+import java.util.logging.LogRecord;
 
 import org.psem2m.utilities.CXDateTime;
 import org.psem2m.utilities.CXStringUtils;
@@ -16,7 +17,16 @@ public class CActivityFormaterStd extends CActivityFormater {
 	final static char REPLACE_PREFIX = '£';
 	final static char SEP_COLUMN = ' ';
 
-	
+	/** the formatting context of each thread **/
+	private final static ThreadLocal<CActivityFormaterBuffer> sBuffers = new ThreadLocal<CActivityFormaterBuffer>() {
+		@Override
+		protected CActivityFormaterBuffer initialValue() {
+			return new CActivityFormaterBuffer();
+		}
+	};
+
+	private final CLogTools pTools = CLogTools.getInstance();
+
 	/**
 	   * 
 	   */
@@ -41,36 +51,159 @@ public class CActivityFormaterStd extends CActivityFormater {
 	 * java.lang.String, boolean)
 	 */
 	@Override
-	public synchronized String format(final long aMillis, final Level aLevel,
+	public String format(final long aMillis, final Level aLevel,
+			final String aSourceClassName, final String aSourceMethodName,
+			final String aText, final boolean aWhithEndLine) {
+
+		return format(aMillis, aLevel, Thread.currentThread().getName(),
+				aSourceClassName, aSourceMethodName, aText, aWhithEndLine);
+	}
+
+	/**
+	 * @param aMillis
+	 *            the timestamp ofthe line
+	 * @param aLevel
+	 *            the level of the log
+	 * @param aThreadName
+	 *            the name of the thread which fired the log line
+	 * @param aSourceClassName
+	 *            the name of the class which fired the log line
+	 * @param aSourceMethodName
+	 *            the name of the method which fired the log line
+	 * @param aText
+	 *            the text of the line
+	 * @param aWhithEndLine
+	 *            append an end line if true
+	 * @return the formatted log line
+	 */
+	String format(final long aMillis, final Level aLevel,
+			final String aThreadName, final String aSourceClassName,
+			final String aSourceMethodName, final String aText,
+			final boolean aWhithEndLine) {
+
+		final CActivityFormaterBuffer wBuffer = sBuffers.get();
+
+		return formatInBuffer(wBuffer.getBuffer(), wBuffer, aMillis, aLevel,
+				aThreadName, aSourceClassName, aSourceMethodName, aText,
+				aWhithEndLine).toString();
+	}
+
+	/**
+	 * Appends the formatted log line in the given StringBuilder. This method
+	 * doesn't allocate anything: the date/time prefix of the current second
+	 * and the padded name of the thread are cached by the thread.
+	 * 
+	 * @param aSB
+	 *            the StringBuilder to be appended
+	 * @param aMillis
+	 *            the timestamp ofthe line
+	 * @param aLevel
+	 *            the level of the log
+	 * @param aThreadName
+	 *            the name of the thread which fired the log line
+	 * @param aSourceClassName
+	 *            the name of the class which fired the log line
+	 * @param aSourceMethodName
+	 *            the name of the method which fired the log line
+	 * @param aText
+	 *            the text of the line
+	 * @param aWhithEndLine
+	 *            append an end line if true
+	 * @return the given StringBuilder
+	 */
+	public StringBuilder formatInBuffer(final StringBuilder aSB,
+			final long aMillis, final Level aLevel, final String aThreadName,
 			final String aSourceClassName, final String aSourceMethodName,
 			final String aText, final boolean aWhithEndLine) {
 
-		StringBuilder pSB = new StringBuilder(128);
-
-		pSB.append(PREFIX_LINE);
-		pSB.append(SEP_COLUMN);
-		pSB.append(aMillis);
-		pSB.append(SEP_COLUMN);
-		pSB.append(getFormatedNanoSecs());
-		pSB.append(SEP_COLUMN);
-		pSB.append(formatDate(aMillis));
-		pSB.append(SEP_COLUMN);
-		pSB.append(formatTime(aMillis));
-		pSB.append(SEP_COLUMN);
-		addThreadNameInLogLine(pSB, Thread.currentThread().getName());
-		pSB.append(SEP_COLUMN);
-		pSB.append((aSourceClassName != null) ? aSourceClassName.replace(
+		return formatInBuffer(aSB, sBuffers.get(), aMillis, aLevel,
+				aThreadName, aSourceClassName, aSourceMethodName, aText,
+				aWhithEndLine);
+	}
+
+	/**
+	 * @see #formatInBuffer(StringBuilder, long, Level, String, String, String,
+	 *      String, boolean)
+	 */
+	private StringBuilder formatInBuffer(final StringBuilder aSB,
+			final CActivityFormaterBuffer aBuffer, final long aMillis,
+			final Level aLevel, final String aThreadName,
+			final String aSourceClassName, final String aSourceMethodName,
+			final String aText, final boolean aWhithEndLine) {
+
+		aSB.append(PREFIX_LINE);
+		aSB.append(SEP_COLUMN);
+		aSB.append(aMillis);
+		aSB.append(SEP_COLUMN);
+		addFormatedNanoSecsInLogLine(aSB);
+		aSB.append(SEP_COLUMN);
+		addDateTimeInLogLine(aSB, aBuffer, aMillis);
+		aSB.append(SEP_COLUMN);
+		aSB.append(aBuffer.getPaddedThreadName(aThreadName, pTools,
+				SIZE_LOG_THREADNAME));
+		aSB.append(SEP_COLUMN);
+		// String.replace(char,char) returns the same String if the char is
+		// not found
+		aSB.append((aSourceClassName != null) ? aSourceClassName.replace(
 				SEP_COLUMN, REPLACE_COLUMN) : CXStringUtils.LIB_NULL);
-		pSB.append(SEP_COLUMN);
-		pSB.append((aSourceMethodName != null) ? aSourceMethodName.replace(
+		aSB.append(SEP_COLUMN);
+		aSB.append((aSourceMethodName != null) ? aSourceMethodName.replace(
 				SEP_COLUMN, REPLACE_COLUMN) : CXStringUtils.LIB_NULL);
-		pSB.append(SEP_LINE);
-		pSB.append((aLevel != null) ? aLevel.getName() : CXStringUtils.LIB_NULL);
-		pSB.append(':');
-		pSB.append(SEP_COLUMN);
-		pSB.append(formatText(aText));
-		pSB.append(SEP_LINE);
-		return pSB.toString();
+		aSB.append(SEP_LINE);
+		aSB.append((aLevel != null) ? aLevel.getName() : CXStringUtils.LIB_NULL);
+		aSB.append(':');
+		aSB.append(SEP_COLUMN);
+		aSB.append(formatText(aText));
+		aSB.append(SEP_LINE);
+		return aSB;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.psem2m.utilities.logging.CActivityFormater#format(java.util.logging
+	 * .LogRecord, boolean)
+	 */
+	@Override
+	public String format(final LogRecord aRecord, final boolean aWhithEndLine) {
+
+		// the records of the asynchronous writer carry the name of the thread
+		// which published them
+		final String wThreadName = (aRecord instanceof CActivityAsyncRecord) ? ((CActivityAsyncRecord) aRecord)
+				.getThreadName() : Thread.currentThread().getName();
+
+		return format(aRecord.getMillis(), aRecord.getLevel(), wThreadName,
+				aRecord.getSourceClassName(), aRecord.getSourceMethodName(),
+				aRecord.getMessage(), aWhithEndLine);
+	}
+
+	/**
+	 * Appends "AAAA/MM/JJ HH:MM:SS:mmm"
+	 * 
+	 * @param aSB
+	 * @param aBuffer
+	 * @param aMillis
+	 * @return
+	 */
+	private StringBuilder addDateTimeInLogLine(final StringBuilder aSB,
+			final CActivityFormaterBuffer aBuffer, final long aMillis) {
+
+		// CXDateTime formats an empty time if the timestamp isn't positive
+		if (aMillis < 1000) {
+			return aSB.append(formatDate(aMillis)).append(SEP_COLUMN)
+					.append(formatTime(aMillis));
+		}
+		aSB.append(aBuffer.getDateTimePrefix(aMillis, SEP_DATE, SEP_COLUMN,
+				SEP_TIME));
+		final int wMillis = (int) (aMillis % 1000);
+		if (wMillis < 100) {
+			aSB.append('0');
+		}
+		if (wMillis < 10) {
+			aSB.append('0');
+		}
+		return aSB.append(wMillis);
 	}
 
 	/**
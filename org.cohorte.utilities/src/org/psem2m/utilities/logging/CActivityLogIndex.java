@@ -0,0 +1,473 @@
+package org.psem2m.utilities.logging;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+
+import org.psem2m.utilities.CXStringUtils;
+import org.psem2m.utilities.IXDescriber;
+
+/**
+ * The sidecar index of a log file written by a CActivityFormaterStd.
+ *
+ * The index is stored in the file "[logfile].idx". It splits the log file in
+ * blocks of consecutive records (see CActivityLogIndexBlock) and holds the
+ * dictionary of the method names of the records.
+ *
+ * Only the complete blocks are indexed: the records written after the last one
+ * (the "tail") are scanned at each request. The index is caught up
+ * incrementally by each request: only the bytes appended since the last update
+ * are read. It is rebuilt if the log file has been truncated or replaced (eg.
+ * by a rotation).
+ */
+class CActivityLogIndex implements IXDescriber {
+
+	/** the max number of bytes of a block **/
+	final static int BLOCK_MAX_BYTES = 64 * 1024;
+
+	/** the max number of records of a block **/
+	final static int BLOCK_MAX_RECORDS = 256;
+
+	/** the max number of bytes of the beginning of a record to parse **/
+	private final static int HEADER_MAX_BYTES = 512;
+
+	private final static String LABEL_BLOCKS = "NbBlocks";
+
+	private final static String LABEL_INDEXED = "IndexedLength";
+
+	private final static String LABEL_METHODS = "NbMethods";
+
+	private final static String LABEL_PATH = "Path";
+
+	/** "CALI" **/
+	private final static int MAGIC = 0x43414c49;
+
+	/** the number of bytes of the beginning of the log file kept as print **/
+	private final static int PRINT_SIZE = 64;
+
+	final static String SUFFIX = ".idx";
+
+	private final static int VERSION = 1;
+
+	/**
+	 * @param aLogFile
+	 * @return the sidecar index file of the log file
+	 */
+	static File getIndexFile(final File aLogFile) {
+		return new File(aLogFile.getPath() + SUFFIX);
+	}
+
+	/**
+	 * @param aHeader
+	 *            the first line of a record
+	 *            "@ millis nanos date time thread class method"
+	 * @return the method name (the last column) or null
+	 */
+	static String parseMethod(final String aHeader) {
+		final int wEnd = lastNonSpace(aHeader, aHeader.length() - 1);
+		if (wEnd < 0) {
+			return null;
+		}
+		final int wStart = aHeader.lastIndexOf(CActivityFormaterStd.SEP_COLUMN,
+				wEnd);
+		return aHeader.substring(wStart + 1, wEnd + 1);
+	}
+
+	/**
+	 * @param aHeader
+	 *            the first line of a record
+	 *            "@ millis nanos date time thread class method"
+	 * @return the timestamp of the record (the second column) or -1
+	 */
+	static long parseMillis(final String aHeader) {
+		int wPos = aHeader.indexOf(CActivityFormaterStd.SEP_COLUMN);
+		if (wPos < 0) {
+			return -1;
+		}
+		while (wPos < aHeader.length()
+				&& aHeader.charAt(wPos) == CActivityFormaterStd.SEP_COLUMN) {
+			wPos++;
+		}
+		long wMillis = 0;
+		int wNbDigits = 0;
+		while (wPos < aHeader.length()
+				&& Character.isDigit(aHeader.charAt(wPos))) {
+			wMillis = wMillis * 10 + (aHeader.charAt(wPos) - '0');
+			wPos++;
+			wNbDigits++;
+		}
+		return (wNbDigits > 0) ? wMillis : -1;
+	}
+
+	/**
+	 * @param aText
+	 * @param aFrom
+	 * @return the index of the last char which isn't a space before aFrom
+	 */
+	static int lastNonSpace(final String aText, int aFrom) {
+		while (aFrom > -1 && Character.isWhitespace(aText.charAt(aFrom))) {
+			aFrom--;
+		}
+		return aFrom;
+	}
+
+	private final List<CActivityLogIndexBlock> pBlocks = new ArrayList<CActivityLogIndexBlock>();
+
+	private final File pIndexFile;
+
+	/** the offset of the end of the last complete block **/
+	private long pIndexedLength = 0;
+
+	private final File pLogFile;
+
+	private final Map<String, Integer> pMethodIds = new HashMap<String, Integer>();
+
+	private final List<String> pMethods = new ArrayList<String>();
+
+	/** the first bytes of the indexed log file **/
+	private byte[] pPrint = new byte[0];
+
+	/**
+	 * @param aLogFile
+	 */
+	CActivityLogIndex(final File aLogFile) {
+		super();
+		pLogFile = aLogFile;
+		pIndexFile = getIndexFile(aLogFile);
+		load();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.psem2m.utilities.IXDescriber#addDescriptionInBuffer(java.lang.Appendable
+	 * )
+	 */
+	@Override
+	public synchronized Appendable addDescriptionInBuffer(
+			final Appendable aBuffer) {
+		CXStringUtils.appendKeyValInBuff(aBuffer, LABEL_PATH,
+				pLogFile.getAbsolutePath());
+		CXStringUtils.appendKeyValInBuff(aBuffer, LABEL_INDEXED,
+				pIndexedLength);
+		CXStringUtils.appendKeyValInBuff(aBuffer, LABEL_BLOCKS, pBlocks.size());
+		CXStringUtils.appendKeyValInBuff(aBuffer, LABEL_METHODS,
+				pMethods.size());
+		return aBuffer;
+	}
+
+	/**
+	 * @return
+	 */
+	public int calcDescriptionLength() {
+		return 128;
+	}
+
+	/**
+	 * @param aMethod
+	 * @return the id of the method or -1 if no record of the indexed blocks has
+	 *         this method
+	 */
+	synchronized int getMethodId(final String aMethod) {
+		final Integer wId = pMethodIds.get(aMethod.toLowerCase(Locale.ROOT));
+		return (wId != null) ? wId.intValue() : -1;
+	}
+
+	/**
+	 * @return the log file
+	 */
+	File getLogFile() {
+		return pLogFile;
+	}
+
+	/**
+	 * @param aMethod
+	 * @return the id of the method (added in the dictionary if unknown)
+	 */
+	private int putMethod(final String aMethod) {
+		final String wKey = aMethod.toLowerCase(Locale.ROOT);
+		Integer wId = pMethodIds.get(wKey);
+		if (wId == null) {
+			wId = Integer.valueOf(pMethods.size());
+			pMethods.add(wKey);
+			pMethodIds.put(wKey, wId);
+		}
+		return wId.intValue();
+	}
+
+	/**
+	 * @return true if the first bytes of the log file are the ones of the
+	 *         indexed file
+	 * @throws IOException
+	 */
+	private boolean isSameFile() throws IOException {
+		return pPrint.length == 0
+				|| Arrays.equals(pPrint, readPrint(pPrint.length));
+	}
+
+	/**
+	 * Loads the sidecar file. The index is emptied if the file doesn't exist or
+	 * can't be read.
+	 */
+	private void load() {
+		if (!pIndexFile.isFile()) {
+			return;
+		}
+		try (DataInputStream wInput = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(pIndexFile)))) {
+
+			if (wInput.readInt() != MAGIC || wInput.readInt() != VERSION) {
+				return;
+			}
+			final long wIndexedLength = wInput.readLong();
+			final byte[] wPrint = new byte[wInput.readInt()];
+			wInput.readFully(wPrint);
+			final int wNbMethods = wInput.readInt();
+			for (int wI = 0; wI < wNbMethods; wI++) {
+				putMethod(wInput.readUTF());
+			}
+			final int wNbBlocks = wInput.readInt();
+			for (int wI = 0; wI < wNbBlocks; wI++) {
+				pBlocks.add(CActivityLogIndexBlock.read(wInput));
+			}
+			pIndexedLength = wIndexedLength;
+			pPrint = wPrint;
+		} catch (final IOException e) {
+			reset();
+		}
+	}
+
+	/**
+	 * @param aSize
+	 * @return the aSize first bytes of the log file
+	 * @throws IOException
+	 */
+	private byte[] readPrint(final int aSize) throws IOException {
+		try (RandomAccessFile wFile = new RandomAccessFile(pLogFile, "r")) {
+			final byte[] wPrint = new byte[aSize];
+			wFile.readFully(wPrint);
+			return wPrint;
+		}
+	}
+
+	/**
+	 * empties the index
+	 */
+	private void reset() {
+		pBlocks.clear();
+		pMethods.clear();
+		pMethodIds.clear();
+		pIndexedLength = 0;
+		pPrint = new byte[0];
+	}
+
+	/**
+	 * Saves the sidecar file. The index is written in a temporary file which
+	 * replaces the previous one.
+	 *
+	 * @throws IOException
+	 */
+	private void save() throws IOException {
+		final File wTmpFile = new File(pIndexFile.getPath() + ".tmp");
+		try (DataOutputStream wOutput = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(wTmpFile)))) {
+
+			wOutput.writeInt(MAGIC);
+			wOutput.writeInt(VERSION);
+			wOutput.writeLong(pIndexedLength);
+			wOutput.writeInt(pPrint.length);
+			wOutput.write(pPrint);
+			wOutput.writeInt(pMethods.size());
+			for (final String wMethod : pMethods) {
+				wOutput.writeUTF(wMethod);
+			}
+			wOutput.writeInt(pBlocks.size());
+			for (final CActivityLogIndexBlock wBlock : pBlocks) {
+				wBlock.write(wOutput);
+			}
+		}
+		if (!wTmpFile.renameTo(pIndexFile)) {
+			pIndexFile.delete();
+			if (!wTmpFile.renameTo(pIndexFile)) {
+				wTmpFile.delete();
+			}
+		}
+	}
+
+	/**
+	 * Indexes the complete blocks of records between the end of the indexed
+	 * blocks and the given length
+	 *
+	 * @param aLength
+	 * @return true if at least one block has been added
+	 * @throws IOException
+	 */
+	private boolean scan(final long aLength) throws IOException {
+
+		final int wNbBlocks = pBlocks.size();
+
+		try (InputStream wInput = new BufferedInputStream(new FileInputStream(
+				pLogFile), 16 * 1024)) {
+
+			long wSkipped = 0;
+			while (wSkipped < pIndexedLength) {
+				final long wNb = wInput.skip(pIndexedLength - wSkipped);
+				if (wNb <= 0) {
+					return false;
+				}
+				wSkipped += wNb;
+			}
+
+			final byte[] wHeader = new byte[HEADER_MAX_BYTES];
+			int wHeaderSize = 0;
+			int wHeaderLines = 0;
+			long wRecordStart = -1;
+			// the indexed length is always the beginning of a record
+			boolean wLineStart = true;
+			CActivityLogIndexBlock wBlock = null;
+
+			long wPos = pIndexedLength;
+			int wByte;
+			while (wPos < aLength && (wByte = wInput.read()) > -1) {
+
+				if (wLineStart && wByte == CActivityFormaterStd.PREFIX_LINE) {
+					// end of the previous record
+					if (wRecordStart > -1) {
+						if (wBlock == null) {
+							wBlock = new CActivityLogIndexBlock(wRecordStart);
+						}
+						addRecord(wBlock, wPos, wHeader, wHeaderSize);
+						if (wBlock.getNbRecords() >= BLOCK_MAX_RECORDS
+								|| wBlock.getSize() >= BLOCK_MAX_BYTES) {
+							pBlocks.add(wBlock);
+							pIndexedLength = wBlock.getEnd();
+							wBlock = null;
+						}
+					}
+					wRecordStart = wPos;
+					wHeaderSize = 0;
+					wHeaderLines = 0;
+				}
+				// keeps the header line and the level line of the record
+				if (wHeaderLines < 2 && wHeaderSize < HEADER_MAX_BYTES) {
+					wHeader[wHeaderSize++] = (byte) wByte;
+				}
+				wLineStart = wByte == '\n';
+				if (wLineStart) {
+					wHeaderLines++;
+				}
+				wPos++;
+			}
+		}
+		return pBlocks.size() > wNbBlocks;
+	}
+
+	/**
+	 * @param aBlock
+	 * @param aEnd
+	 *            the offset of the end of the record
+	 * @param aHeader
+	 *            the header line and the level line of the record
+	 * @param aHeaderSize
+	 */
+	private void addRecord(final CActivityLogIndexBlock aBlock,
+			final long aEnd, final byte[] aHeader, final int aHeaderSize) {
+
+		final String wText = new String(aHeader, 0, aHeaderSize,
+				StandardCharsets.UTF_8);
+		final int wEol = wText.indexOf('\n');
+		final String wHeader = (wEol > -1) ? wText.substring(0, wEol) : wText;
+		final String wLevelName = (wEol > -1) ? parseLevelName(wText, wEol + 1)
+				: null;
+
+		final String wMethod = parseMethod(wHeader);
+		aBlock.addRecord(aEnd, parseMillis(wHeader), (wLevelName != null)
+				? CActivityUtils.levelToLevel(wLevelName) : Level.OFF,
+				(wMethod != null) ? putMethod(wMethod) : -1);
+	}
+
+	/**
+	 * @param aText
+	 * @param aFrom
+	 *            the beginning of the level line "LEVEL: text"
+	 * @return the name of the level or null
+	 */
+	static String parseLevelName(final String aText, final int aFrom) {
+		final int wColon = aText.indexOf(':', aFrom);
+		return (wColon > aFrom) ? aText.substring(aFrom, wColon).trim() : null;
+	}
+
+	/**
+	 * @return the indexed blocks of the log file
+	 */
+	synchronized List<CActivityLogIndexBlock> getBlocks() {
+		return Collections.unmodifiableList(new ArrayList<CActivityLogIndexBlock>(
+				pBlocks));
+	}
+
+	/**
+	 * @return the offset of the end of the last indexed block
+	 */
+	synchronized long getIndexedLength() {
+		return pIndexedLength;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.psem2m.utilities.IXDescriber#toDescription()
+	 */
+	@Override
+	public String toDescription() {
+		return addDescriptionInBuffer(
+				new StringBuilder(calcDescriptionLength())).toString();
+	}
+
+	/**
+	 * Catches up the index with the content of the log file.
+	 *
+	 * @param aLength
+	 *            the length of the log file to take into account
+	 * @throws IOException
+	 */
+	synchronized void update(final long aLength) throws IOException {
+
+		boolean wChanged = false;
+		if (aLength < pIndexedLength || aLength < pPrint.length
+				|| !isSameFile()) {
+			reset();
+			wChanged = true;
+		}
+		if (pPrint.length < PRINT_SIZE && aLength > pPrint.length) {
+			pPrint = readPrint((int) Math.min(PRINT_SIZE, aLength));
+			wChanged = true;
+		}
+		if (aLength - pIndexedLength > BLOCK_MAX_BYTES) {
+			wChanged |= scan(aLength);
+		}
+		if (wChanged) {
+			try {
+				save();
+			} catch (final IOException e) {
+				// the index is kept in memory (eg. a read-only directory)
+			}
+		}
+	}
+}
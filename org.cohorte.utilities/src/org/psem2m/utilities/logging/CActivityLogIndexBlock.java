@@ -0,0 +1,218 @@
+package org.psem2m.utilities.logging;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.logging.Level;
+
+/**
+ * A block of consecutive log records of a log file described by a
+ * CActivityLogIndex.
+ *
+ * The block holds the byte offsets of its first and last records, the min and
+ * max timestamps of its records, the bitmap of their levels and the set of the
+ * ids of their method names.
+ */
+class CActivityLogIndexBlock {
+
+	/** the levels having a bit in the level bitmap **/
+	private final static Level[] LEVELS = { Level.FINEST, Level.FINER,
+			Level.FINE, Level.CONFIG, Level.INFO, Level.WARNING, Level.SEVERE };
+
+	/** the bit of the other levels (ALL, OFF and the custom ones) **/
+	private final static int LEVEL_BIT_OTHER = 1 << LEVELS.length;
+
+	/**
+	 * @param aLevel
+	 * @return the bit of the level in the level bitmap
+	 */
+	static int levelToBit(final Level aLevel) {
+		for (int wI = 0; wI < LEVELS.length; wI++) {
+			if (LEVELS[wI].equals(aLevel)) {
+				return 1 << wI;
+			}
+		}
+		return LEVEL_BIT_OTHER;
+	}
+
+	/**
+	 * @param aLevel
+	 *            the minimal level of a request
+	 * @return the mask of the bits of the levels greater or equal to the given
+	 *         one. The bit of the other levels is always set.
+	 */
+	static int levelToMask(final Level aLevel) {
+		int wMask = LEVEL_BIT_OTHER;
+		for (int wI = 0; wI < LEVELS.length; wI++) {
+			if (aLevel == null
+					|| LEVELS[wI].intValue() >= aLevel.intValue()) {
+				wMask |= 1 << wI;
+			}
+		}
+		return wMask;
+	}
+
+	/**
+	 * @param aInput
+	 * @return
+	 * @throws IOException
+	 */
+	static CActivityLogIndexBlock read(final DataInputStream aInput)
+			throws IOException {
+
+		final CActivityLogIndexBlock wBlock = new CActivityLogIndexBlock(
+				aInput.readLong());
+		wBlock.pEnd = aInput.readLong();
+		wBlock.pMinMillis = aInput.readLong();
+		wBlock.pMaxMillis = aInput.readLong();
+		wBlock.pLevelBits = aInput.readInt();
+		wBlock.pNbRecords = aInput.readInt();
+		final long[] wWords = new long[aInput.readInt()];
+		for (int wI = 0; wI < wWords.length; wI++) {
+			wWords[wI] = aInput.readLong();
+		}
+		wBlock.pMethodIds = BitSet.valueOf(wWords);
+		return wBlock;
+	}
+
+	private long pEnd;
+
+	private int pLevelBits = 0;
+
+	private long pMaxMillis = Long.MIN_VALUE;
+
+	private BitSet pMethodIds = new BitSet();
+
+	private long pMinMillis = Long.MAX_VALUE;
+
+	private int pNbRecords = 0;
+
+	private final long pStart;
+
+	/**
+	 * @param aStart
+	 *            the offset of the first record of the block
+	 */
+	CActivityLogIndexBlock(final long aStart) {
+		super();
+		pStart = aStart;
+		pEnd = aStart;
+	}
+
+	/**
+	 * @param aEnd
+	 *            the offset of the end of the record
+	 * @param aMillis
+	 * @param aLevel
+	 * @param aMethodId
+	 */
+	void addRecord(final long aEnd, final long aMillis, final Level aLevel,
+			final int aMethodId) {
+		pEnd = aEnd;
+		pMinMillis = Math.min(pMinMillis, aMillis);
+		pMaxMillis = Math.max(pMaxMillis, aMillis);
+		pLevelBits |= levelToBit(aLevel);
+		if (aMethodId > -1) {
+			pMethodIds.set(aMethodId);
+		}
+		pNbRecords++;
+	}
+
+	/**
+	 * @return the offset of the end of the last record of the block
+	 */
+	long getEnd() {
+		return pEnd;
+	}
+
+	/**
+	 * @return the max timestamp of the records of the block
+	 */
+	long getMaxMillis() {
+		return pMaxMillis;
+	}
+
+	/**
+	 * @return the min timestamp of the records of the block
+	 */
+	long getMinMillis() {
+		return pMinMillis;
+	}
+
+	/**
+	 * @return the number of records in the block
+	 */
+	int getNbRecords() {
+		return pNbRecords;
+	}
+
+	/**
+	 * @return the number of bytes of the records in the block
+	 */
+	long getSize() {
+		return pEnd - pStart;
+	}
+
+	/**
+	 * @return the offset of the first record of the block
+	 */
+	long getStart() {
+		return pStart;
+	}
+
+	/**
+	 * @param aFilter
+	 * @return true if at least one record of the block is older than the
+	 *         "TimeStart" of the filter
+	 */
+	boolean hasOutOfTime(final CActivityRequestFilter aFilter) {
+		return pNbRecords > 0 && aFilter.isOutOfTime(pMinMillis);
+	}
+
+	/**
+	 * @param aFilter
+	 * @param aLevelMask
+	 *            the mask calculated with the level of the filter
+	 * @param aMethodId
+	 *            the id of the method of the filter (-1 if the method isn't in
+	 *            the dictionary)
+	 * @return false if no record of the block can match the filter
+	 */
+	boolean mayMatch(final CActivityRequestFilter aFilter,
+			final int aLevelMask, final int aMethodId) {
+
+		if (aFilter.hasTimeStart() && pMaxMillis < aFilter.getTimeStart()) {
+			return false;
+		}
+		if (aFilter.hasTimeStop() && pMinMillis > aFilter.getTimeStop()) {
+			return false;
+		}
+		if ((pLevelBits & aLevelMask) == 0) {
+			return false;
+		}
+		if (aFilter.hasMethod()
+				&& (aMethodId < 0 || !pMethodIds.get(aMethodId))) {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @param aOutput
+	 * @throws IOException
+	 */
+	void write(final DataOutputStream aOutput) throws IOException {
+		aOutput.writeLong(pStart);
+		aOutput.writeLong(pEnd);
+		aOutput.writeLong(pMinMillis);
+		aOutput.writeLong(pMaxMillis);
+		aOutput.writeInt(pLevelBits);
+		aOutput.writeInt(pNbRecords);
+		final long[] wWords = pMethodIds.toLongArray();
+		aOutput.writeInt(wWords.length);
+		for (final long wWord : wWords) {
+			aOutput.writeLong(wWord);
+		}
+	}
+}
@@ -207,6 +207,26 @@ public class CActivityLogger extends CActivityObject implements IActivityLogger
 		return pLoggerName;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.psem2m.utilities.logging.IActivityLogger#getNbDroppedRecords()
+	 */
+	@Override
+	public long getNbDroppedRecords() {
+		return 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.psem2m.utilities.logging.IActivityLogger#getNbQueuedRecords()
+	 */
+	@Override
+	public long getNbQueuedRecords() {
+		return 0;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -100,6 +100,26 @@ public class CActivityLoggerBasicConsole implements IActivityLoggerJul {
 		return pLevel;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.psem2m.utilities.logging.IActivityLogger#getNbDroppedRecords()
+	 */
+	@Override
+	public long getNbDroppedRecords() {
+		return 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.psem2m.utilities.logging.IActivityLogger#getNbQueuedRecords()
+	 */
+	@Override
+	public long getNbQueuedRecords() {
+		return 0;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
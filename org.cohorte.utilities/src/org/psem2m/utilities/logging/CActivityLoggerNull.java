@@ -68,6 +68,26 @@ public class CActivityLoggerNull implements IActivityLoggerJul {
 		return Level.OFF;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.psem2m.utilities.logging.IActivityLogger#getNbDroppedRecords()
+	 */
+	@Override
+	public long getNbDroppedRecords() {
+		return 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.psem2m.utilities.logging.IActivityLogger#getNbQueuedRecords()
+	 */
+	@Override
+	public long getNbQueuedRecords() {
+		return 0;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
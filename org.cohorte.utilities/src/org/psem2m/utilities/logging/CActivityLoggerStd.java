@@ -52,6 +52,47 @@ public class CActivityLoggerStd extends CActivityObject implements
 		return wLogger;
 	}
 
+	/**
+	 * Creates a logger which writes its log lines asynchronously: the caller
+	 * threads publish the records in a bounded ring buffer and a single writer
+	 * thread formats and writes them by batches.
+	 *
+	 * @param aLoggerName
+	 * @param aFilePathPattern
+	 *            the pattern for naming the output file
+	 * @param aLevel
+	 *            the value for the log level (may be null)
+	 * @param aFileLimit
+	 *            the maximum number of bytes to write to any one file
+	 * @param aFileCount
+	 *            the number of files to use
+	 * @param aCapacity
+	 *            the size of the ring buffer (rounded to a power of two)
+	 * @param aPolicy
+	 *            the behavior when the ring buffer is full (BLOCK if null)
+	 * @param aDropLevel
+	 *            the level under which the records are dropped with the
+	 *            policy DROP_BELOW_LEVEL (WARNING if null)
+	 * @return
+	 * @throws Exception
+	 */
+	public static IActivityLogger newAsyncLogger(final String aLoggerName,
+			final String aFilePathPattern, final String aLevel,
+			final int aFileLimit, final int aFileCount, final int aCapacity,
+			final EActivityOverflowPolicy aPolicy, final Level aDropLevel)
+			throws Exception {
+
+		final CActivityLoggerStd wLogger = new CActivityLoggerStd(aLoggerName,
+				aFilePathPattern, aLevel, aFileLimit, aFileCount);
+		wLogger.initFileHandler();
+		wLogger.initAsyncWriter(aCapacity, aPolicy, aDropLevel);
+		wLogger.open();
+		return wLogger;
+	}
+
+	// the asynchronous writing pipeline (null if the logger is synchronous)
+	private CActivityAsyncWriter pAsyncWriter = null;
+
 	private final int pFileCount;
 
 	private CActivityFileHandler pFileHandler = null;
@@ -62,7 +103,7 @@ public class CActivityLoggerStd extends CActivityObject implements
 
 	private Level pLevel;
 
-	private Logger pJulLogger;
+	private volatile Logger pJulLogger;
 
 	private final CLogLineTextBuilder pLogLineTextBuilder = CLogLineTextBuilder
 			.getInstance();
@@ -96,6 +137,9 @@ public class CActivityLoggerStd extends CActivityObject implements
 		if (pFileHandler != null) {
 			pFileHandler.addDescriptionInBuffer(aBuffer);
 		}
+		if (isAsync()) {
+			pAsyncWriter.addDescriptionInBuffer(aBuffer);
+		}
 		return aBuffer;
 	}
 
@@ -121,6 +165,11 @@ public class CActivityLoggerStd extends CActivityObject implements
 	@Override
 	public void close() {
 		if (isOpened()) {
+			// write all the queued records before the closing line
+			if (isAsync()) {
+				pAsyncWriter.close();
+			}
+
 			// restart the logging in the parent logger
 			pJulLogger.setUseParentHandlers(true);
 
@@ -175,6 +224,26 @@ public class CActivityLoggerStd extends CActivityObject implements
 		return pFilePathPattern;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.psem2m.utilities.logging.IActivityLogger#getNbDroppedRecords()
+	 */
+	@Override
+	public long getNbDroppedRecords() {
+		return (isAsync()) ? pAsyncWriter.getNbDroppedRecords() : 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.psem2m.utilities.logging.IActivityLogger#getNbQueuedRecords()
+	 */
+	@Override
+	public long getNbQueuedRecords() {
+		return (isAsync()) ? pAsyncWriter.getNbQueuedRecords() : 0;
+	}
+
 	@Override
 	public Logger getJulLogger() {
 		return pJulLogger;
@@ -223,6 +292,22 @@ public class CActivityLoggerStd extends CActivityObject implements
 		return getLoggerName() != null;
 	}
 
+	/**
+	 * @param aCapacity
+	 * @param aPolicy
+	 * @param aDropLevel
+	 */
+	protected void initAsyncWriter(final int aCapacity,
+			final EActivityOverflowPolicy aPolicy, final Level aDropLevel)
+			throws Exception {
+		if (!hasFileHandler()) {
+			throw new Exception(
+					"No instance of FileHandler available to configure the asynchronous writer.");
+		}
+		pAsyncWriter = new CActivityAsyncWriter(getFileHandler(), aCapacity,
+				aPolicy, aDropLevel);
+	}
+
 	/**
    *
    */
@@ -233,6 +318,13 @@ public class CActivityLoggerStd extends CActivityObject implements
 		setFileHandler(wFileHandler);
 	}
 
+	/**
+	 * @return true if the log lines are written by the asynchronous writer
+	 */
+	public boolean isAsync() {
+		return pAsyncWriter != null;
+	}
+
 	@Override
 	public boolean isLogDebugOn() {
 		return isLoggable(Level.FINE);
@@ -279,8 +371,11 @@ public class CActivityLoggerStd extends CActivityObject implements
 	public void log(final Level aLevel, final Object aWho,
 			final CharSequence aWhat, final Object... aInfos) {
 
+		// the logger can be closed by another thread
+		final Logger wJulLogger = pJulLogger;
+
 		String wLogLine = null;
-		if (isOpened()) {
+		if (wJulLogger != null) {
 			wLogLine = pLogLineTextBuilder.buildLogLine(aInfos);
 		}
 		final CharSequence wWhat = (aWhat != null) ? aWhat : CXJavaRunContext
@@ -297,8 +392,24 @@ public class CActivityLoggerStd extends CActivityObject implements
 
 		if (wLogLine != null) {
 
-			pJulLogger.logp(aLevel, pLogLineTextBuilder.buildWhoObjectId(aWho),
-					wWhat.toString(), wLogLine);
+			if (isAsync()) {
+				// the level is checked by the JUL logger in the synchronous
+				// mode
+				if (wJulLogger.isLoggable(aLevel)) {
+					pAsyncWriter.publish(aLevel,
+							pLogLineTextBuilder.buildWhoObjectId(aWho),
+							wWhat.toString(), wLogLine);
+				}
+			} else {
+				wJulLogger.logp(aLevel,
+						pLogLineTextBuilder.buildWhoObjectId(aWho),
+						wWhat.toString(), wLogLine);
+			}
+		}
+		// the logger is closed: the writer rejects the record and counts it
+		// as dropped
+		else if (wJulLogger == null && isAsync()) {
+			pAsyncWriter.publish(aLevel, null, wWhat.toString(), null);
 		}
 
 	}
@@ -409,6 +520,10 @@ public class CActivityLoggerStd extends CActivityObject implements
 		}
 		pJulLogger.setLevel(pLevel);
 
+		if (isAsync()) {
+			pAsyncWriter.start(getLoggerName());
+		}
+
 		final String wLine = String.format(FORMAT_OPENLOG, getLoggerName());
 		// log in the current logger and in its parent
 		logInfo(this, LIB_METHOD_OPEN, wLine);
@@ -0,0 +1,356 @@
+package org.psem2m.utilities.logging;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates lazily over the log records matching a request filter, from the
+ * newest one to the oldest one.
+ *
+ * The cursor uses the sidecar indexes of the log files (see CActivityLogIndex)
+ * to read only the blocks of records which can match the filter. It stops at
+ * the first record older than the "TimeStart" of the filter or when the
+ * "NbMax" records are returned.
+ *
+ * The cursor must be closed to release the log file it's reading.
+ */
+public class CActivityRequestCursor implements
+		Iterator<CActivityRequestRecord>, Closeable {
+
+	private final static String MESS_FILE_CHANGED = "Log reading stopped. The file [%s] has changed since it was found.";
+
+	private List<CActivityLogIndexBlock> pBlocks = null;
+
+	/** the index of the next block to read backward in the current file **/
+	private int pBlockIdx = -1;
+
+	private String pErrMessage = null;
+
+	private RandomAccessFile pFile = null;
+
+	private final CActivityFileHandler pFileHandler;
+
+	private final Iterator<CActivityFileText> pFiles;
+
+	private final CActivityRequestFilter pFilter;
+
+	private boolean pFinished = false;
+
+	private final int pLevelMask;
+
+	private boolean pMaxReached = false;
+
+	/** the id of the method of the filter in the index of the current file **/
+	private int pMethodId = -1;
+
+	private int pNbRecords = 0;
+
+	private CActivityRequestRecord pNext = null;
+
+	/** the index of the next record to read backward in the current block **/
+	private int pRecordIdx = -1;
+
+	private final List<String> pRecords = new ArrayList<String>();
+
+	/** the records of a reply built without the indexes **/
+	private final Iterator<CActivityRequestRecord> pReplyRecords;
+
+	private final CActivityRequesterStd pRequester;
+
+	private long pTailEnd = 0;
+
+	private long pTailStart = 0;
+
+	private Throwable pThrowable = null;
+
+	/**
+	 * A cursor over the records of a reply built without the indexes
+	 *
+	 * @param aReply
+	 */
+	CActivityRequestCursor(final CActivityRequestReply aReply) {
+		super();
+		pRequester = null;
+		pFileHandler = null;
+		pFilter = null;
+		pFiles = null;
+		pLevelMask = 0;
+		pReplyRecords = aReply.getLogRecords().iterator();
+		pMaxReached = aReply.hasInfoMessages();
+		if (!aReply.isOk()) {
+			pErrMessage = aReply.getErrMessage();
+			pThrowable = aReply.getThrowable();
+		}
+	}
+
+	/**
+	 * @param aRequester
+	 * @param aFileHandler
+	 * @param aFilter
+	 */
+	CActivityRequestCursor(final CActivityRequesterStd aRequester,
+			final CActivityFileHandler aFileHandler,
+			final CActivityRequestFilter aFilter) {
+		super();
+		pRequester = aRequester;
+		pFileHandler = aFileHandler;
+		pFilter = aFilter;
+		pFiles = aFileHandler.getExistingFiles().iterator();
+		pLevelMask = CActivityLogIndexBlock.levelToMask(aFilter.hasLevel()
+				? aFilter.getLevel() : null);
+		pReplyRecords = null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() {
+		pFinished = true;
+		pNext = null;
+		closeFile();
+	}
+
+	/**
+	 * closes the current log file
+	 */
+	private void closeFile() {
+		pRecords.clear();
+		pRecordIdx = -1;
+		pBlocks = null;
+		pBlockIdx = -1;
+		if (pFile != null) {
+			try {
+				pFile.close();
+			} catch (final IOException e) {
+				// nothing to do: the file was only read
+			}
+			pFile = null;
+		}
+	}
+
+	/**
+	 * @return the next matching record or null
+	 * @throws IOException
+	 */
+	private CActivityRequestRecord fetchNext() throws IOException {
+
+		if (pReplyRecords != null) {
+			return pReplyRecords.hasNext() ? pReplyRecords.next() : null;
+		}
+		while (!pFinished) {
+			while (pRecordIdx > -1) {
+				final CActivityRequestRecord wRecord = pRequester
+						.parseRecordText(pRecords.get(pRecordIdx--));
+				// a record being written
+				if (wRecord == null) {
+					continue;
+				}
+				final long wMillis = wRecord.getLogRecord().getMillis();
+				if (pFilter.isTimeOK(wMillis)
+						&& pFilter.isMethodOK(wRecord.getLogRecord()
+								.getSourceMethodName())
+						&& pFilter.isLevelOK(wRecord.getLogRecord().getLevel())) {
+					return wRecord;
+				}
+				if (pFilter.isOutOfTime(wMillis)) {
+					return null;
+				}
+			}
+			if (!readNextSegment()) {
+				return null;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the message of the error which stopped the reading or null
+	 */
+	public String getErrMessage() {
+		return pErrMessage;
+	}
+
+	/**
+	 * @return the number of returned records
+	 */
+	public int getNbRecords() {
+		return pNbRecords;
+	}
+
+	/**
+	 * @return the throwable which stopped the reading or null
+	 */
+	public Throwable getThrowable() {
+		return pThrowable;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.Iterator#hasNext()
+	 */
+	@Override
+	public boolean hasNext() {
+		if (pNext == null && !pFinished) {
+			try {
+				pNext = fetchNext();
+			} catch (final IOException e) {
+				pErrMessage = e.getMessage();
+				pThrowable = e;
+				pNext = null;
+			}
+			if (pNext == null) {
+				close();
+			}
+		}
+		return pNext != null;
+	}
+
+	/**
+	 * @return true if the reading stopped because "NbMax" records are returned
+	 */
+	public boolean isMaxReached() {
+		return pMaxReached;
+	}
+
+	/**
+	 * @return false if the reading stopped because of an error
+	 */
+	public boolean isOk() {
+		return pErrMessage == null && pThrowable == null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.Iterator#next()
+	 */
+	@Override
+	public CActivityRequestRecord next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		final CActivityRequestRecord wRecord = pNext;
+		pNext = null;
+		pNbRecords++;
+		if (pFilter != null && pFilter.hasNbMaxLogRecord()
+				&& pNbRecords >= pFilter.getNbMaxLogRecord()) {
+			pMaxReached = true;
+			close();
+		}
+		return wRecord;
+	}
+
+	/**
+	 * Opens the next log file and catches up its index
+	 *
+	 * @return false if there is no more file to read
+	 * @throws IOException
+	 */
+	private boolean openNextFile() throws IOException {
+		if (!pFiles.hasNext()) {
+			return false;
+		}
+		final CActivityFileText wLogFile = pFiles.next();
+		if (!wLogFile.isSameWhenFound()) {
+			pErrMessage = String.format(MESS_FILE_CHANGED,
+					wLogFile.getAbsolutePath());
+			return false;
+		}
+		pFile = new RandomAccessFile(wLogFile, "r");
+		pTailEnd = pFile.length();
+
+		final CActivityLogIndex wIndex = pFileHandler.getIndex(wLogFile);
+		wIndex.update(pTailEnd);
+
+		pBlocks = wIndex.getBlocks();
+		pBlockIdx = pBlocks.size() - 1;
+		pTailStart = (pBlocks.isEmpty()) ? 0 : Math.min(
+				pBlocks.get(pBlockIdx).getEnd(), pTailEnd);
+		pMethodId = (pFilter.hasMethod()) ? wIndex.getMethodId(pFilter
+				.getMethod()) : -1;
+		return true;
+	}
+
+	/**
+	 * Reads the next segment to scan: the tail of the current log file, then
+	 * the blocks which can match the filter.
+	 *
+	 * @return false if there is no more segment to scan
+	 * @throws IOException
+	 */
+	private boolean readNextSegment() throws IOException {
+
+		while (pFile != null || openNextFile()) {
+			// the records written after the last indexed block
+			if (pTailEnd > pTailStart) {
+				readRecords(pTailStart, pTailEnd);
+				pTailEnd = pTailStart;
+				return true;
+			}
+			while (pBlockIdx > -1) {
+				final CActivityLogIndexBlock wBlock = pBlocks.get(pBlockIdx--);
+				if (wBlock.mayMatch(pFilter, pLevelMask, pMethodId)) {
+					readRecords(wBlock.getStart(), wBlock.getEnd());
+					return true;
+				}
+				// the reading would have stopped in this block
+				if (wBlock.hasOutOfTime(pFilter)) {
+					return false;
+				}
+			}
+			closeFile();
+		}
+		return false;
+	}
+
+	/**
+	 * Reads and splits the records stored between the two offsets
+	 *
+	 * @param aStart
+	 * @param aEnd
+	 * @throws IOException
+	 */
+	private void readRecords(final long aStart, final long aEnd)
+			throws IOException {
+
+		final byte[] wBytes = new byte[(int) (aEnd - aStart)];
+		pFile.seek(aStart);
+		pFile.readFully(wBytes);
+		final String wText = new String(wBytes, StandardCharsets.UTF_8);
+
+		pRecords.clear();
+		int wStart = 0;
+		int wPos = 0;
+		while ((wPos = wText.indexOf(CActivityFormaterStd.PREFIX_LINE,
+				wPos + 1)) > -1) {
+			if (wText.charAt(wPos - 1) == CActivityFormater.SEP_LINE) {
+				pRecords.add(wText.substring(wStart, wPos));
+				wStart = wPos;
+			}
+		}
+		if (wStart < wText.length()) {
+			pRecords.add(wText.substring(wStart));
+		}
+		pRecordIdx = pRecords.size() - 1;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.Iterator#remove()
+	 */
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+}
@@ -125,7 +125,7 @@ public class CActivityRequestFilter extends CActivityObject {
 	 * @return
 	 */
 	public String getLevelName() {
-		return pLevel.getName();
+		return (pLevel != null) ? pLevel.getName() : null;
 	}
 
 	/**
@@ -160,7 +160,7 @@ public class CActivityRequestFilter extends CActivityObject {
 	 * @return
 	 */
 	public boolean hasLevel() {
-		return pLevel != Level.OFF;
+		return pLevel != null && pLevel != Level.OFF;
 	}
 
 	/**
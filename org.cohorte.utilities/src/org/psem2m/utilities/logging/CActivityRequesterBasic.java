@@ -33,6 +33,20 @@ public class CActivityRequesterBasic extends CActivityRequesterStd {
 		super(aId, aFileHandler);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.psem2m.utilities.logging.CActivityRequesterStd#getLogRecords(org.
+	 * psem2m.utilities.logging.CActivityRequestFilter)
+	 */
+	@Override
+	public CActivityRequestReply getLogRecords(
+			CActivityRequestFilter aRequestFilter) {
+		// the sidecar indexes only support the records of the std formater
+		return scanLogRecords(aRequestFilter);
+	}
+
 	/**
 	 * @param aLineText
 	 * @return
@@ -43,6 +57,19 @@ public class CActivityRequesterBasic extends CActivityRequesterStd {
 				CActivityFormaterBasic.SEP_COLUMN);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.psem2m.utilities.logging.CActivityRequesterStd#iterateLogRecords(
+	 * org.psem2m.utilities.logging.CActivityRequestFilter)
+	 */
+	@Override
+	public CActivityRequestCursor iterateLogRecords(
+			CActivityRequestFilter aRequestFilter) {
+		return new CActivityRequestCursor(scanLogRecords(aRequestFilter));
+	}
+
 	/**
 	 * <pre>
 	 * 1202217466550;00000042051957;2008/02/05;02:17:46.550;WARNING;displayLog;Test le log numéro [472]
@@ -288,12 +288,20 @@ public class CActivityRequesterStd extends CActivityObject implements
 
 		CActivityRequestReply wRequestReply = new CActivityRequestReply(this);
 
-		Iterator<CActivityFileText> wFiles = getFileHandler()
-				.getExistingFiles().iterator();
-		boolean wContinue = true;
-		while (wFiles.hasNext() && wContinue) {
-			wContinue = readOneFile(wFiles.next(), wRequestReply,
-					aRequestFilter);
+		try (CActivityRequestCursor wCursor = iterateLogRecords(aRequestFilter)) {
+			while (wCursor.hasNext()) {
+				wRequestReply.addLogRecord(wCursor.next());
+			}
+			if (wCursor.isMaxReached()) {
+				String wMess = String.format(MESS_ENOUGHT_REC,
+						wRequestReply.size());
+				wRequestReply.addInfoMessage(wMess);
+			}
+			if (wCursor.getThrowable() != null) {
+				wRequestReply.setStatusNOTOK(wCursor.getThrowable());
+			} else if (!wCursor.isOk()) {
+				wRequestReply.setStatusNOTOK(wCursor.getErrMessage());
+			}
 		}
 
 		return wRequestReply;
@@ -352,6 +360,24 @@ public class CActivityRequesterStd extends CActivityObject implements
 		return pFileHandlerClosable;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.psem2m.utilities.logging.IActivityRequester#iterateLogRecords(org
+	 * .psem2m.utilities.logging.CActivityRequestFilter)
+	 */
+	@Override
+	public CActivityRequestCursor iterateLogRecords(
+			CActivityRequestFilter aRequestFilter) {
+		if (isTraceDebugOn()) {
+			traceGetLogRecords(aRequestFilter);
+		}
+
+		return new CActivityRequestCursor(this, getFileHandler(),
+				aRequestFilter);
+	}
+
 	/**
 	 * <pre>
 	 * @ 1202217466362 00000003431963 2008/02/05 02:17:46.362 CTesterUtil displayLog
@@ -394,6 +420,64 @@ public class CActivityRequesterStd extends CActivityObject implements
 		return new CActivityRequestRecord(wLogRecord);
 	}
 
+	/**
+	 * <pre>
+	 * @ 1202217466362 00000003431963 2008/02/05 02:17:46:362     main CTesterUtil displayLog
+	 * INFO: Test le log numero [3]
+	 * </pre>
+	 * 
+	 * The thread name may contain spaces: the class and the method are the two
+	 * last columns of the first line.
+	 * 
+	 * @param aRecordText
+	 *            the text of a record read in a log file
+	 * @return the record or null if the text is not a complete record
+	 */
+	protected CActivityRequestRecord parseRecordText(String aRecordText) {
+		int wEol = aRecordText.indexOf(CActivityFormater.SEP_LINE);
+		if (wEol < 0) {
+			return null;
+		}
+		String wHeader = aRecordText.substring(0, wEol);
+		long wMillis = CActivityLogIndex.parseMillis(wHeader);
+		String wLevelName = CActivityLogIndex.parseLevelName(aRecordText,
+				wEol + 1);
+		if (wMillis < 0 || wLevelName == null) {
+			return null;
+		}
+
+		int wMethodEnd = CActivityLogIndex.lastNonSpace(wHeader,
+				wHeader.length() - 1);
+		int wMethodStart = wHeader.lastIndexOf(
+				CActivityFormaterStd.SEP_COLUMN, wMethodEnd) + 1;
+		int wClassEnd = CActivityLogIndex.lastNonSpace(wHeader,
+				wMethodStart - 1);
+		int wClassStart = wHeader.lastIndexOf(CActivityFormaterStd.SEP_COLUMN,
+				wClassEnd) + 1;
+
+		// "LEVEL: text\n"
+		int wTextStart = Math.min(
+				aRecordText.indexOf(':', wEol + 1) + 2, aRecordText.length());
+		int wTextEnd = aRecordText.length();
+		while (wTextEnd > wTextStart
+				&& (aRecordText.charAt(wTextEnd - 1) == '\n' || aRecordText
+						.charAt(wTextEnd - 1) == '\r')) {
+			wTextEnd--;
+		}
+
+		LogRecord wLogRecord = new LogRecord(
+				CActivityUtils.levelToLevel(wLevelName),
+				aRecordText.substring(wTextStart, wTextEnd));
+
+		wLogRecord.setMillis(wMillis);
+		wLogRecord.setSourceClassName(wHeader.substring(wClassStart,
+				wClassEnd + 1));
+		wLogRecord.setSourceMethodName(wHeader.substring(wMethodStart,
+				wMethodEnd + 1));
+
+		return new CActivityRequestRecord(wLogRecord);
+	}
+
 	/**
 	 * @param aLogText
 	 * @return
@@ -454,6 +538,31 @@ public class CActivityRequesterStd extends CActivityObject implements
 		return true;
 	}
 
+	/**
+	 * Reads all the log files without the indexes
+	 * 
+	 * @param aRequestFilter
+	 * @return
+	 */
+	protected CActivityRequestReply scanLogRecords(
+			CActivityRequestFilter aRequestFilter) {
+		if (isTraceDebugOn()) {
+			traceGetLogRecords(aRequestFilter);
+		}
+
+		CActivityRequestReply wRequestReply = new CActivityRequestReply(this);
+
+		Iterator<CActivityFileText> wFiles = getFileHandler()
+				.getExistingFiles().iterator();
+		boolean wContinue = true;
+		while (wFiles.hasNext() && wContinue) {
+			wContinue = readOneFile(wFiles.next(), wRequestReply,
+					aRequestFilter);
+		}
+
+		return wRequestReply;
+	}
+
 	/**
 	 * @param aLogText
 	 * @param aActivityLine
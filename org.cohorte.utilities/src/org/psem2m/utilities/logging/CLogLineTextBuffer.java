@@ -0,0 +1,104 @@
+package org.psem2m.utilities.logging;
+
+import java.util.Formatter;
+
+/**
+ * The per-thread building context of a CLogLineTextBuilder.
+ *
+ * It holds a reusable StringBuilder, a Formatter writing in it and the last
+ * "who object id" built by the thread.
+ */
+class CLogLineTextBuffer {
+
+	/** the capacity above which the builder is not kept **/
+	private final static int CAPACITY_MAX = 16 * 1024;
+
+	private final static int CAPACITY_STD = 128;
+
+	private StringBuilder pBuffer = new StringBuilder(CAPACITY_STD);
+
+	private Formatter pFormatter = null;
+
+	/** true while the buffer is used (eg. a toString() which logs) **/
+	private boolean pInUse = false;
+
+	/** the name of the class, not the class, to not retain a class loader **/
+	private String pWhoClassName = null;
+
+	private int pWhoHashCode = 0;
+
+	private String pWhoObjectId = null;
+
+	/**
+	 * Explicit default constructor
+	 */
+	CLogLineTextBuffer() {
+		super();
+	}
+
+	/**
+	 * @return the empty StringBuilder of the current thread or null if it is
+	 *         already used by the current thread
+	 */
+	StringBuilder acquireBuffer() {
+		if (pInUse) {
+			return null;
+		}
+		pInUse = true;
+		// don't keep a builder enlarged by a huge line (eg. a stack)
+		if (pBuffer.capacity() > CAPACITY_MAX) {
+			pBuffer = new StringBuilder(CAPACITY_STD);
+			pFormatter = null;
+		} else {
+			pBuffer.setLength(0);
+		}
+		return pBuffer;
+	}
+
+	/**
+	 * @param aSB
+	 * @return the Formatter writing in the given StringBuilder if it is the
+	 *         one of the current thread, null otherwise
+	 */
+	Formatter getFormatter(final StringBuilder aSB) {
+		if (aSB != pBuffer) {
+			return null;
+		}
+		if (pFormatter == null) {
+			pFormatter = new Formatter(pBuffer);
+		}
+		return pFormatter;
+	}
+
+	/**
+	 * @param aClassName
+	 * @param aHashCode
+	 * @return the last built "who object id" if it was built with the same
+	 *         class name and the same hashcode, null otherwise
+	 */
+	String getWhoObjectId(final String aClassName, final int aHashCode) {
+		return (aHashCode == pWhoHashCode && aClassName.equals(pWhoClassName)) ? pWhoObjectId
+				: null;
+	}
+
+	/**
+	 * releases the StringBuilder of the current thread
+	 */
+	void releaseBuffer() {
+		pInUse = false;
+	}
+
+	/**
+	 * @param aClassName
+	 * @param aHashCode
+	 * @param aWhoObjectId
+	 * @return the given "who object id"
+	 */
+	String setWhoObjectId(final String aClassName, final int aHashCode,
+			final String aWhoObjectId) {
+		pWhoClassName = aClassName;
+		pWhoHashCode = aHashCode;
+		pWhoObjectId = aWhoObjectId;
+		return aWhoObjectId;
+	}
+}
@@ -1,6 +1,7 @@
 package org.psem2m.utilities.logging;
 
 import java.util.Arrays;
+import java.util.Formatter;
 
 import org.psem2m.utilities.CXException;
 
@@ -27,8 +28,18 @@ public class CLogLineTextBuilder {
 
 	private static String DUMMY_SHORT_HASHCODE = "0000";
 
+	/** the building context of each thread **/
+	private final static ThreadLocal<CLogLineTextBuffer> sBuffers = new ThreadLocal<CLogLineTextBuffer>() {
+		@Override
+		protected CLogLineTextBuffer initialValue() {
+			return new CLogLineTextBuffer();
+		}
+	};
+
 	private static CLogLineTextBuilder sLogLineTextBuilder = new CLogLineTextBuilder();
 
+	private final static int SIZE_SHORT_HASHCODE = 4;
+
 	/**
 	 * @return
 	 */
@@ -85,6 +96,13 @@ public class CLogLineTextBuilder {
 		// if the first object is a format, return the result of the
 		// String.format() method
 		if (aObjects[0].toString().indexOf('%') > -1) {
+			// format directly in the builder of the current thread if possible
+			final Formatter wFormatter = sBuffers.get().getFormatter(aSB);
+			if (wFormatter != null) {
+				wFormatter.format(aObjects[0].toString(),
+						pTools.removeOneObject(aObjects, 0));
+				return aSB;
+			}
 			return aSB.append(String.format(aObjects[0].toString(),
 					pTools.removeOneObject(aObjects, 0)));
 		}
@@ -122,13 +140,31 @@ public class CLogLineTextBuilder {
 	 * @return
 	 */
 	public String buildLogLine(final Object... aObjects) {
+
+		// a single text is the log line itself
+		if (aObjects != null && aObjects.length == 1
+				&& aObjects[0] instanceof String) {
+			return (String) aObjects[0];
+		}
+
+		final CLogLineTextBuffer wBuffer = sBuffers.get();
+		StringBuilder wSB = wBuffer.acquireBuffer();
+		// the builder of the current thread is already used (eg. by a
+		// toString() method which logs)
+		final boolean wOwnBuffer = (wSB != null);
+		if (!wOwnBuffer) {
+			wSB = new StringBuilder(128);
+		}
 		// Protect the logging tool against user error !
 		try {
-			return addTextsInLogLine(new StringBuilder(128), aObjects)
-					.toString();
+			return addTextsInLogLine(wSB, aObjects).toString();
 		} catch (final Exception e) {
 			return "LOG ERROR: unable to build log line "
 					+ CXException.eMiniInString(e);
+		} finally {
+			if (wOwnBuffer) {
+				wBuffer.releaseBuffer();
+			}
 		}
 	}
 
@@ -142,12 +178,69 @@ public class CLogLineTextBuilder {
 			return CLogTools.LIB_NULL;
 		}
 
-		if (aWho instanceof Class) {
-			return ((Class<?>) aWho).getName() + '_' + DUMMY_SHORT_HASHCODE;
+		final boolean wIsClass = (aWho instanceof Class);
+		final String wClassName = (wIsClass) ? ((Class<?>) aWho).getName()
+				: aWho.getClass().getName();
+		final int wHashCode = (wIsClass) ? 0 : aWho.hashCode();
+
+		// the same object logs most of the time several lines in a row
+		final CLogLineTextBuffer wBuffer = sBuffers.get();
+		final String wWhoObjectId = wBuffer.getWhoObjectId(wClassName,
+				wHashCode);
+		if (wWhoObjectId != null) {
+			return wWhoObjectId;
 		}
 
-		return new StringBuffer().append(aWho.getClass().getName()).append('_')
-				.append(pTools.strAdjustRight(aWho.hashCode(), 4)).toString();
+		final StringBuilder wSB = new StringBuilder(wClassName.length()
+				+ SIZE_SHORT_HASHCODE + 1);
+		wSB.append(wClassName).append('_');
+		if (wIsClass) {
+			wSB.append(DUMMY_SHORT_HASHCODE);
+		} else {
+			addShortHashCodeInLogLine(wSB, wHashCode);
+		}
+		return wBuffer.setWhoObjectId(wClassName, wHashCode, wSB.toString());
+	}
+
+	/**
+	 * Appends the hashcode adjusted to the right on 4 characters (as
+	 * CLogTools.strAdjustRight(long,int) does) without intermediate String.
+	 * 
+	 * eg. 12 => "0012", 123456 => "3456", -12 => "0-12"
+	 * 
+	 * @param aSB
+	 * @param aHashCode
+	 * @return the given StringBuilder
+	 */
+	StringBuilder addShortHashCodeInLogLine(final StringBuilder aSB,
+			final int aHashCode) {
+
+		final long wAbs = Math.abs((long) aHashCode);
+		final boolean wNegative = (aHashCode < 0);
+		int wLen = (wNegative) ? 2 : 1;
+		long wLimit = 10;
+		while (wAbs >= wLimit && wLen <= SIZE_SHORT_HASHCODE) {
+			wLen++;
+			wLimit *= 10;
+		}
+		// too long: only the 4 last digits are kept
+		if (wLen > SIZE_SHORT_HASHCODE) {
+			final int wValue = (int) (wAbs % 10000);
+			if (wValue < 1000) {
+				aSB.append('0');
+			}
+			if (wValue < 100) {
+				aSB.append('0');
+			}
+			if (wValue < 10) {
+				aSB.append('0');
+			}
+			return aSB.append(wValue);
+		}
+		for (int wI = wLen; wI < SIZE_SHORT_HASHCODE; wI++) {
+			aSB.append('0');
+		}
+		return aSB.append(aHashCode);
 	}
 
 }
@@ -0,0 +1,23 @@
+package org.psem2m.utilities.logging;
+
+/**
+ * The behavior of an asynchronous logger when its ring buffer is full.
+ *
+ * @see CActivityAsyncWriter
+ */
+public enum EActivityOverflowPolicy {
+
+	/**
+	 * the caller thread waits until a slot is freed by the writer thread
+	 */
+	BLOCK,
+	/**
+	 * the records having a level lower than the "drop level" are dropped, the
+	 * others wait as with BLOCK
+	 */
+	DROP_BELOW_LEVEL,
+	/**
+	 * the oldest queued record is dropped to make room for the new one
+	 */
+	DROP_OLDEST;
+}
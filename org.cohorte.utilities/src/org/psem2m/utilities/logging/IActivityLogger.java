@@ -15,6 +15,18 @@ public interface IActivityLogger extends IActivityLoggerBase, IXDescriber {
      */
     void close();
 
+    /**
+     * @return the number of log records dropped by the asynchronous writing
+     *         pipeline of the logger (0 if the logger is synchronous)
+     */
+    long getNbDroppedRecords();
+
+    /**
+     * @return the number of log records waiting in the asynchronous writing
+     *         pipeline of the logger (0 if the logger is synchronous)
+     */
+    long getNbQueuedRecords();
+
     /**
      * @return
      */
@@ -36,4 +36,13 @@ public interface IActivityRequester extends IXDescriber
    * @return
    */
   public CActivityRequestReply getLogRecords(CActivityRequestFilter aActivityRequestFilter);
+
+  /**
+   * Returns lazily the records matching the filter, from the newest to the
+   * oldest one. The returned cursor must be closed.
+   * 
+   * @param aActivityRequestFilter
+   * @return
+   */
+  public CActivityRequestCursor iterateLogRecords(CActivityRequestFilter aActivityRequestFilter);
 }
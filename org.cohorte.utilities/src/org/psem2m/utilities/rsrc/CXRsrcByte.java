@@ -1,14 +1,25 @@
 package org.psem2m.utilities.rsrc;
 
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
 /**
  * Ressource de type bytes - Contenu jamais null
  * 
+ * The content is an array or a read-only buffer (eg. a file mapped in memory).
+ * getByteBuffer() gives a read-only view of the content without copy. The
+ * array of a resource read in a buffer is copied at the first call of
+ * getContent().
+ * 
  * @author ogattaz
  * 
  */
 public class CXRsrcByte extends CXRsrc<byte[]> {
 	public final static String MIMETYPE_BYTES = "application/octet-stream";
 
+	// the read-only content, null if the content is an array
+	private ByteBuffer pBuffer = null;
+
 	/**
 	 * @param aPath
 	 * @param aContent
@@ -18,6 +29,18 @@ public class CXRsrcByte extends CXRsrc<byte[]> {
 		super(aPath, aContent == null ? new byte[0] : aContent, aTimeStampSyst);
 	}
 
+	/**
+	 * @param aPath
+	 * @param aBuffer
+	 *            the content from its position to its limit, which must no
+	 *            longer be modified
+	 * @param aTimeStampSyst
+	 */
+	public CXRsrcByte(CXRsrcUriPath aPath, ByteBuffer aBuffer, long aTimeStampSyst) {
+		super(aPath, null, aTimeStampSyst);
+		pBuffer = aBuffer == null ? ByteBuffer.allocate(0) : aBuffer.slice().asReadOnlyBuffer();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -32,6 +55,17 @@ public class CXRsrcByte extends CXRsrc<byte[]> {
 		return aSB;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.psem2m.utilities.rsrc.CXRsrc#destroy()
+	 */
+	@Override
+	public void destroy() {
+		super.destroy();
+		pBuffer = null;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -42,6 +76,31 @@ public class CXRsrcByte extends CXRsrc<byte[]> {
 		return getContent();
 	}
 
+	/**
+	 * @return a read-only view of the content, without copy
+	 */
+	public ByteBuffer getByteBuffer() {
+		if (pBuffer != null) {
+			return pBuffer.duplicate();
+		}
+		return ByteBuffer.wrap(pContent).asReadOnlyBuffer();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.psem2m.utilities.rsrc.CXRsrc#getContent()
+	 */
+	@Override
+	public byte[] getContent() {
+		if (pContent == null && pBuffer != null) {
+			byte[] wContent = new byte[pBuffer.remaining()];
+			pBuffer.duplicate().get(wContent);
+			pContent = wContent;
+		}
+		return pContent;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -59,7 +118,7 @@ public class CXRsrcByte extends CXRsrc<byte[]> {
 	 */
 	@Override
 	public int getLength() {
-		return getContent().length;
+		return pBuffer != null ? pBuffer.remaining() : getContent().length;
 	}
 
 	/*
@@ -69,6 +128,21 @@ public class CXRsrcByte extends CXRsrc<byte[]> {
 	 */
 	@Override
 	public boolean isEmpty() {
-		return getContent().length != 0;
+		return getLength() != 0;
+	}
+
+	/**
+	 * @return true if the content is read in a buffer
+	 */
+	public boolean isBuffered() {
+		return pBuffer != null;
+	}
+
+	/**
+	 * @return true if the content is a file mapped in memory: it follows the
+	 *         modifications of the file until getContent() copies it
+	 */
+	public boolean isMapped() {
+		return pBuffer instanceof MappedByteBuffer;
 	}
 }
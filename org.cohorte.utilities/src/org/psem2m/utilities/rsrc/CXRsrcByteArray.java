@@ -1,8 +1,13 @@
 package org.psem2m.utilities.rsrc;
 
+import java.nio.ByteBuffer;
+
 /**
  * Buffer d'octet - Tableau dynamique
  * 
+ * The array grows by doubling its size (at least by the growth size) to copy
+ * each byte a constant number of times.
+ * 
  * @author ogattaz
  * 
  */
@@ -25,6 +30,19 @@ public class CXRsrcByteArray {
 		this(1024);
 	}
 
+	/**
+	 * Wraps the bytes without copying them
+	 * 
+	 * @param aBytes
+	 *            the content, which must no longer be modified
+	 */
+	public CXRsrcByteArray(byte[] aBytes) {
+		pArray = aBytes == null ? new byte[0] : aBytes;
+		pInitSize = pArray.length;
+		pGrowthSize = 1024;
+		pStackPointer = pArray.length;
+	}
+
 	/**
 	 * @param aInitSize
 	 */
@@ -46,11 +64,7 @@ public class CXRsrcByteArray {
 	 * @param aByte
 	 */
 	public void add(byte aByte) {
-		if (pStackPointer >= pArray.length) {
-			byte[] wTmp = new byte[pArray.length + pGrowthSize];
-			System.arraycopy(pArray, 0, wTmp, 0, pArray.length);
-			pArray = wTmp;
-		}
+		ensureCapacity(pStackPointer + 1);
 		pArray[pStackPointer] = aByte;
 		pStackPointer++;
 	}
@@ -82,13 +96,7 @@ public class CXRsrcByteArray {
 	public void add(byte[] aBytes, int aPos, int aSize) {
 		if (aBytes != null && aBytes.length > 0 && aPos >= 0 && aPos < aSize && aSize > 0
 				&& aSize <= aBytes.length) {
-			if ((pStackPointer + aSize) >= pArray.length) // time to grow!
-			{
-				int wGrowth = ((aSize / pGrowthSize) + 1) * pGrowthSize;
-				byte[] wTmp = new byte[pArray.length + wGrowth];
-				System.arraycopy(pArray, 0, wTmp, 0, pArray.length);
-				pArray = wTmp;
-			}
+			ensureCapacity(pStackPointer + aSize);
 			System.arraycopy(aBytes, aPos, pArray, pStackPointer, aSize);
 			pStackPointer += aSize;
 		}
@@ -141,6 +149,36 @@ public class CXRsrcByteArray {
 		return aBytes;
 	}
 
+	/**
+	 * @param aMinCapacity
+	 */
+	private void ensureCapacity(int aMinCapacity) {
+		if (aMinCapacity > pArray.length) // time to grow!
+		{
+			int wCapacity = Math.max(pArray.length + Math.max(pGrowthSize, 1), pArray.length * 2);
+			if (wCapacity < aMinCapacity || wCapacity < 0) {
+				wCapacity = aMinCapacity;
+			}
+			byte[] wTmp = new byte[wCapacity];
+			System.arraycopy(pArray, 0, wTmp, 0, pStackPointer);
+			pArray = wTmp;
+		}
+	}
+
+	/**
+	 * @return the internal array, which can be longer than the size
+	 */
+	byte[] getArray() {
+		return pArray;
+	}
+
+	/**
+	 * @return a read-only view of the bytes, without copy
+	 */
+	public ByteBuffer getByteBuffer() {
+		return ByteBuffer.wrap(pArray, 0, pStackPointer).slice().asReadOnlyBuffer();
+	}
+
 	/**
 	 * @return
 	 */
@@ -155,6 +193,14 @@ public class CXRsrcByteArray {
 		return toArray(0, getSize());
 	}
 
+	/**
+	 * @return the internal array if it is full, a copy of the bytes otherwise.
+	 *         The returned array must not be modified.
+	 */
+	byte[] toArrayShared() {
+		return pStackPointer == pArray.length ? pArray : toArray();
+	}
+
 	/**
 	 * @param aPos
 	 * @return
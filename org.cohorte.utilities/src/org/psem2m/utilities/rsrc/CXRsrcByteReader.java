@@ -1,16 +1,30 @@
 package org.psem2m.utilities.rsrc;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 
 /**
  * Classe - Lecture d''octets
  * 
+ * The contents whose length is known are read in an array of their exact
+ * size. The large files can be mapped in memory.
+ * 
  * @author ogattaz
  * 
  */
 public class CXRsrcByteReader {
+
+	/**
+	 * the min size of the files mapped in memory by readBuffer()
+	 */
+	public static final long MAPPED_SIZE_MIN = 1024 * 1024;
+
 	private static final int READ_BUF_SIZE = 0x8000;
 
 	/**
@@ -18,11 +32,46 @@ public class CXRsrcByteReader {
 	 * @return
 	 * @throws IOException
 	 */
-	private static byte[] readAll(InputStream aInputStream) throws IOException {
+	static byte[] readAll(InputStream aInputStream) throws IOException {
+		return readAll(aInputStream, -1);
+	}
+
+	/**
+	 * @param aInputStream
+	 * @param aLength
+	 *            the expected length, -1 if unknown
+	 * @return
+	 * @throws IOException
+	 */
+	static byte[] readAll(InputStream aInputStream, long aLength) throws IOException {
 		if (aInputStream == null) {
 			return new byte[0];
 		}
-		CXRsrcByteArray wReadBytes = new CXRsrcByteArray();
+		CXRsrcByteArray wReadBytes;
+		if (aLength >= 0 && aLength < Integer.MAX_VALUE - 8) {
+			// exact size
+			byte[] wBytes = new byte[(int) aLength];
+			int wOffset = 0;
+			while (wOffset < wBytes.length) {
+				int wReadSize = aInputStream.read(wBytes, wOffset, wBytes.length - wOffset);
+				if (wReadSize <= 0) {
+					// shorter than announced
+					byte[] wTmp = new byte[wOffset];
+					System.arraycopy(wBytes, 0, wTmp, 0, wOffset);
+					return wTmp;
+				}
+				wOffset += wReadSize;
+			}
+			int wNext = aInputStream.read();
+			if (wNext == -1) {
+				return wBytes;
+			}
+			// longer than announced
+			wReadBytes = new CXRsrcByteArray(wBytes);
+			wReadBytes.add((byte) wNext);
+		} else {
+			wReadBytes = new CXRsrcByteArray(READ_BUF_SIZE);
+		}
 		byte[] wReadBuffer = new byte[READ_BUF_SIZE];
 		boolean wEof = false;
 		do {
@@ -32,7 +81,18 @@ public class CXRsrcByteReader {
 				wReadBytes.add(wReadBuffer, wReadSize);
 			}
 		} while (!wEof);
-		return wReadBytes.toArray();
+		return wReadBytes.toArrayShared();
+	}
+
+	/**
+	 * Reads the file in an array of its exact size
+	 * 
+	 * @param aFile
+	 * @return
+	 * @throws IOException
+	 */
+	public static byte[] readAll(File aFile) throws IOException {
+		return Files.readAllBytes(aFile.toPath());
 	}
 
 	/**
@@ -44,7 +104,7 @@ public class CXRsrcByteReader {
 		InputStream wInputStream = null;
 		try {
 			wInputStream = aUrlConnection.getInputStream();
-			return readAll(wInputStream);
+			return readAll(wInputStream, aUrlConnection.getContentLengthLong());
 		} catch (IOException e) {
 			throw (e);
 		} finally {
@@ -53,4 +113,56 @@ public class CXRsrcByteReader {
 			}
 		}
 	}
+
+	/**
+	 * Reads the file in a buffer: the files larger than MAPPED_SIZE_MIN are
+	 * mapped in memory, the others are read in an array of their exact size.
+	 * 
+	 * A mapped buffer isn't a snapshot: it reflects the later modifications of
+	 * the file and reading it after a truncation of the file throws an
+	 * InternalError. It keeps the file open until it is garbage collected,
+	 * which prevents the deletion or the replacement of the file on Windows.
+	 * Use readAll(File) to get a snapshot.
+	 * 
+	 * @param aFile
+	 * @return
+	 * @throws IOException
+	 */
+	public static ByteBuffer readBuffer(File aFile) throws IOException {
+		RandomAccessFile wFile = new RandomAccessFile(aFile, "r");
+		try {
+			FileChannel wChannel = wFile.getChannel();
+			long wSize = wChannel.size();
+			if (wSize >= MAPPED_SIZE_MIN && wSize <= Integer.MAX_VALUE) {
+				// the mapping stays valid after the closing of the channel
+				return wChannel.map(FileChannel.MapMode.READ_ONLY, 0, wSize);
+			}
+			return ByteBuffer.wrap(readAll(wChannel, wSize));
+		} finally {
+			wFile.close();
+		}
+	}
+
+	/**
+	 * @param aChannel
+	 * @param aSize
+	 * @return
+	 * @throws IOException
+	 */
+	private static byte[] readAll(FileChannel aChannel, long aSize) throws IOException {
+		if (aSize > Integer.MAX_VALUE - 8) {
+			throw new IOException("File too large [" + aSize + "]");
+		}
+		ByteBuffer wBuffer = ByteBuffer.allocate((int) aSize);
+		while (wBuffer.hasRemaining() && aChannel.read(wBuffer) > 0) {
+			// nothing
+		}
+		if (wBuffer.hasRemaining()) {
+			// shorter than its size
+			byte[] wTmp = new byte[wBuffer.position()];
+			System.arraycopy(wBuffer.array(), 0, wTmp, 0, wTmp.length);
+			return wTmp;
+		}
+		return wBuffer.array();
+	}
 }
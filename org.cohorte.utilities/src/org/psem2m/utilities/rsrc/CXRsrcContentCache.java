@@ -0,0 +1,414 @@
+package org.psem2m.utilities.rsrc;
+
+import java.io.File;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent.Kind;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The bounded LRU cache of the decoded contents read by a CXRsrcProviderFile,
+ * keyed by the absolute path of the files.
+ *
+ * Each entry holds the timestamp and the length of its file. An entry is
+ * invalidated when the file changes:
+ * <ul>
+ * <li>by the notifications of the WatchService of the CXRsrcProviderFile (the
+ * cache is an IRsrcNotifierHandler),</li>
+ * <li>by the check of the timestamp when the entry is read. The check can be
+ * disabled for the files of the watched directory.</li>
+ * </ul>
+ *
+ * The cache is bounded by a number of entries and by a weight: the number of
+ * bytes of the contents (two bytes by char for the texts). The resources
+ * returned by the cache are copies which can be modified by the callers. The
+ * contents mapped in memory aren't cached.
+ */
+public class CXRsrcContentCache implements IRsrcNotifierHandler {
+
+	/**
+	 * a content and the state of its file
+	 */
+	private static class CEntry {
+
+		private final long pLastModified;
+
+		private final long pLength;
+
+		private final CXRsrc<?> pRsrc;
+
+		// true if the file is in the watched directory
+		private final boolean pWatched;
+
+		private final long pWeight;
+
+		/**
+		 * @param aRsrc
+		 * @param aLastModified
+		 * @param aLength
+		 * @param aWatched
+		 * @param aWeight
+		 */
+		CEntry(final CXRsrc<?> aRsrc, final long aLastModified, final long aLength, final boolean aWatched,
+				final long aWeight) {
+			super();
+			pRsrc = aRsrc;
+			pLastModified = aLastModified;
+			pLength = aLength;
+			pWatched = aWatched;
+			pWeight = aWeight;
+		}
+
+		/**
+		 * @param aFile
+		 * @return true if the file wasn't modified since the content was read
+		 */
+		boolean isUpToDate(final File aFile) {
+			return aFile.lastModified() == pLastModified && aFile.length() == pLength;
+		}
+	}
+
+	/**
+	 * the default max number of contents
+	 */
+	public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+	/**
+	 * the default max weight of the contents in bytes
+	 */
+	public static final long DEFAULT_MAX_WEIGHT = 32 * 1024 * 1024;
+
+	private static final String PREFIX_BYTE = "B:";
+
+	private static final String PREFIX_TEXT = "T:";
+
+	/**
+	 * @param aRsrc
+	 * @return a copy of the resource which shares nothing modifiable with it
+	 */
+	private static CXRsrc<?> copy(final CXRsrc<?> aRsrc) {
+		if (aRsrc instanceof CXRsrcText) {
+			// the String of the content is immutable
+			final CXRsrcText wText = (CXRsrcText) aRsrc;
+			return new CXRsrcText(wText, wText.getContent());
+		}
+		final CXRsrcByte wByte = (CXRsrcByte) aRsrc;
+		if (wByte.isBuffered()) {
+			// the buffer is read-only
+			return new CXRsrcByte(wByte.getPath(), wByte.getByteBuffer(), wByte.getTimeStampSyst());
+		}
+		return new CXRsrcByte(wByte.getPath(), wByte.getContent().clone(), wByte.getTimeStampSyst());
+	}
+
+	/**
+	 * @param aPath
+	 * @return the absolute path of the file
+	 */
+	private static String normalizePath(final String aPath) {
+		return new File(aPath).getAbsolutePath();
+	}
+
+	/**
+	 * @param aRsrc
+	 * @return the number of bytes of the content
+	 */
+	private static long weight(final CXRsrc<?> aRsrc) {
+		return (aRsrc instanceof CXRsrcText) ? 2L * aRsrc.getLength() : aRsrc.getLength();
+	}
+
+	private boolean pCheckTimeStamps = true;
+
+	// access order
+	private final LinkedHashMap<String, CEntry> pEntries = new LinkedHashMap<>(16, 0.75f, true);
+
+	// incremented by each invalidation
+	private long pGeneration = 0;
+
+	private final int pMaxEntries;
+
+	private final long pMaxWeight;
+
+	private long pNbEvictions = 0;
+
+	private long pNbHits = 0;
+
+	private long pNbInvalidations = 0;
+
+	private long pNbMisses = 0;
+
+	private long pWeight = 0;
+
+	/**
+	 *
+	 */
+	public CXRsrcContentCache() {
+		this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_WEIGHT);
+	}
+
+	/**
+	 * @param aMaxEntries
+	 *            the max number of contents
+	 * @param aMaxWeight
+	 *            the max number of bytes of the contents
+	 */
+	public CXRsrcContentCache(final int aMaxEntries, final long aMaxWeight) {
+		super();
+		pMaxEntries = aMaxEntries;
+		pMaxWeight = aMaxWeight;
+	}
+
+	/**
+	 * removes all the contents
+	 */
+	public synchronized void clear() {
+		pNbInvalidations += pEntries.size();
+		pEntries.clear();
+		pWeight = 0;
+		pGeneration++;
+	}
+
+	/**
+	 * @param aKey
+	 * @param aFile
+	 * @return a copy of the cached resource or null
+	 */
+	private CXRsrc<?> get(final String aKey, final File aFile) {
+		final CEntry wEntry;
+		final boolean wCheckTimeStamps;
+		synchronized (this) {
+			wEntry = pEntries.get(aKey);
+			wCheckTimeStamps = pCheckTimeStamps || (wEntry != null && !wEntry.pWatched);
+		}
+		// the file is checked outside of the lock
+		final boolean wUpToDate = wEntry != null && (!wCheckTimeStamps || wEntry.isUpToDate(aFile));
+		synchronized (this) {
+			if (!wUpToDate) {
+				if (wEntry != null && pEntries.get(aKey) == wEntry) {
+					remove(aKey);
+					pNbInvalidations++;
+					pGeneration++;
+				}
+				pNbMisses++;
+				return null;
+			}
+			pNbHits++;
+		}
+		return copy(wEntry.pRsrc);
+	}
+
+	/**
+	 * @param aFile
+	 * @return a copy of the cached content of the file or null
+	 */
+	public CXRsrcByte getByte(final File aFile) {
+		return (CXRsrcByte) get(PREFIX_BYTE + aFile.getAbsolutePath(), aFile);
+	}
+
+	/**
+	 * @return the number of invalidations since the creation of the cache. A
+	 *         content read while an invalidation occurred isn't cached.
+	 */
+	public synchronized long getGeneration() {
+		return pGeneration;
+	}
+
+	/**
+	 * @return the number of contents removed to respect the bounds
+	 */
+	public synchronized long getNbEvictions() {
+		return pNbEvictions;
+	}
+
+	/**
+	 * @return the number of contents found in the cache
+	 */
+	public synchronized long getNbHits() {
+		return pNbHits;
+	}
+
+	/**
+	 * @return the number of contents removed because their file changed
+	 */
+	public synchronized long getNbInvalidations() {
+		return pNbInvalidations;
+	}
+
+	/**
+	 * @return the number of contents not found in the cache
+	 */
+	public synchronized long getNbMisses() {
+		return pNbMisses;
+	}
+
+	/**
+	 * @param aFile
+	 * @return a copy of the cached text of the file or null
+	 */
+	public CXRsrcText getText(final File aFile) {
+		return (CXRsrcText) get(PREFIX_TEXT + aFile.getAbsolutePath(), aFile);
+	}
+
+	/**
+	 * @return the number of bytes of the cached contents
+	 */
+	public synchronized long getWeight() {
+		return pWeight;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.psem2m.utilities.rsrc.IRsrcNotifierHandler#handle(java.nio.file.
+	 * WatchEvent.Kind, java.lang.String)
+	 */
+	@Override
+	public void handle(final Kind<?> aKind, final String aFileName) {
+		if (aKind == StandardWatchEventKinds.OVERFLOW) {
+			clear();
+			return;
+		}
+		invalidate(aFileName);
+	}
+
+	/**
+	 * removes the text and the content of a file
+	 *
+	 * @param aPath
+	 *            the path of the file
+	 * @return the number of removed contents
+	 */
+	public synchronized int invalidate(final String aPath) {
+		// the contents being read may be the previous ones
+		pGeneration++;
+		final String wPath = normalizePath(aPath);
+		int wNbRemoved = 0;
+		if (remove(PREFIX_TEXT + wPath)) {
+			wNbRemoved++;
+		}
+		if (remove(PREFIX_BYTE + wPath)) {
+			wNbRemoved++;
+		}
+		pNbInvalidations += wNbRemoved;
+		return wNbRemoved;
+	}
+
+	/**
+	 * @return true if the timestamps of the files of the watched directory are
+	 *         checked each time a content is read
+	 */
+	public synchronized boolean isCheckTimeStamps() {
+		return pCheckTimeStamps;
+	}
+
+	/**
+	 * @param aKey
+	 * @param aRsrc
+	 * @param aLength
+	 * @param aWatched
+	 * @param aGeneration
+	 */
+	private synchronized void put(final String aKey, final CXRsrc<?> aRsrc, final long aLength, final boolean aWatched,
+			final long aGeneration) {
+		if (aGeneration != pGeneration) {
+			// the file may have changed during the reading
+			return;
+		}
+		final long wWeight = weight(aRsrc);
+		if (wWeight > pMaxWeight) {
+			return;
+		}
+		if (aRsrc instanceof CXRsrcByte && ((CXRsrcByte) aRsrc).isMapped()) {
+			// the mapped content follows the modifications of the file
+			return;
+		}
+		remove(aKey);
+		pEntries.put(aKey, new CEntry(copy(aRsrc), aRsrc.getTimeStampSyst(), aLength, aWatched, wWeight));
+		pWeight += wWeight;
+		// evict the least recently used contents
+		final Iterator<Map.Entry<String, CEntry>> wEldests = pEntries.entrySet().iterator();
+		while ((pEntries.size() > pMaxEntries || pWeight > pMaxWeight) && wEldests.hasNext()) {
+			final Map.Entry<String, CEntry> wEldest = wEldests.next();
+			if (!wEldest.getKey().equals(aKey)) {
+				wEldests.remove();
+				pWeight -= wEldest.getValue().pWeight;
+				pNbEvictions++;
+			}
+		}
+	}
+
+	/**
+	 * @param aFile
+	 * @param aRsrc
+	 *            the content read in the file
+	 * @param aLength
+	 *            the length of the file read before its content
+	 * @param aWatched
+	 *            true if the file is in the watched directory
+	 * @param aGeneration
+	 *            the generation read before the reading of the file
+	 */
+	public void putByte(final File aFile, final CXRsrcByte aRsrc, final long aLength, final boolean aWatched,
+			final long aGeneration) {
+		put(PREFIX_BYTE + aFile.getAbsolutePath(), aRsrc, aLength, aWatched, aGeneration);
+	}
+
+	/**
+	 * @param aFile
+	 * @param aRsrc
+	 *            the text read in the file
+	 * @param aLength
+	 *            the length of the file read before its content
+	 * @param aWatched
+	 *            true if the file is in the watched directory
+	 * @param aGeneration
+	 *            the generation read before the reading of the file
+	 */
+	public void putText(final File aFile, final CXRsrcText aRsrc, final long aLength, final boolean aWatched,
+			final long aGeneration) {
+		put(PREFIX_TEXT + aFile.getAbsolutePath(), aRsrc, aLength, aWatched, aGeneration);
+	}
+
+	/**
+	 * @param aKey
+	 * @return true if the content was cached
+	 */
+	private boolean remove(final String aKey) {
+		final CEntry wEntry = pEntries.remove(aKey);
+		if (wEntry == null) {
+			return false;
+		}
+		pWeight -= wEntry.pWeight;
+		return true;
+	}
+
+	/**
+	 * @param aCheckTimeStamps
+	 *            false to trust the notifications of the WatchService for the
+	 *            files of the watched directory
+	 */
+	public synchronized void setCheckTimeStamps(final boolean aCheckTimeStamps) {
+		pCheckTimeStamps = aCheckTimeStamps;
+	}
+
+	/**
+	 * @return the number of cached contents
+	 */
+	public synchronized int size() {
+		return pEntries.size();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public synchronized String toString() {
+		return String.format(
+				"CXRsrcContentCache: size=[%d/%d] weight=[%d/%d] hits=[%d] misses=[%d] invalidations=[%d] evictions=[%d]",
+				pEntries.size(), pMaxEntries, pWeight, pMaxWeight, pNbHits, pNbMisses, pNbInvalidations,
+				pNbEvictions);
+	}
+}
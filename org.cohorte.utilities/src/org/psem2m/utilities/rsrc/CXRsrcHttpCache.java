@@ -0,0 +1,405 @@
+package org.psem2m.utilities.rsrc;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.psem2m.utilities.CXBytesUtils;
+
+/**
+ * The on-disk cache of the resources downloaded by a CXRsrcProviderHttp.
+ *
+ * Each resource is stored in the directory of the cache in two files named
+ * with the SHA-256 hash of its url: the body (".body") and its validators
+ * (".properties": the ETag, the Last-Modified date and the content type). The
+ * validators are sent in the conditional requests and the bodies are served
+ * when the server answers 304 or when it can't be reached, even after a
+ * restart.
+ */
+public class CXRsrcHttpCache {
+
+	/**
+	 * a cached resource
+	 */
+	static class CEntry {
+
+		private final String pContentType;
+
+		private final String pETag;
+
+		private final File pFile;
+
+		private final long pLastModified;
+
+		// the Last-Modified date or the date of the download
+		private final long pTimeStamp;
+
+		private volatile long pValidated;
+
+		/**
+		 * @param aFile
+		 * @param aETag
+		 * @param aLastModified
+		 * @param aContentType
+		 * @param aTimeStamp
+		 * @param aValidated
+		 */
+		CEntry(final File aFile, final String aETag, final long aLastModified, final String aContentType,
+				final long aTimeStamp, final long aValidated) {
+			super();
+			pFile = aFile;
+			pETag = aETag;
+			pLastModified = aLastModified;
+			pContentType = aContentType;
+			pTimeStamp = aTimeStamp;
+			pValidated = aValidated;
+		}
+
+		/**
+		 * @return the content type sent by the server
+		 */
+		String getContentType() {
+			return pContentType;
+		}
+
+		/**
+		 * @return the ETag sent by the server or null
+		 */
+		String getETag() {
+			return pETag;
+		}
+
+		/**
+		 * @return the Last-Modified date sent by the server or 0
+		 */
+		long getLastModified() {
+			return pLastModified;
+		}
+
+		/**
+		 * @return the timestamp of the resource
+		 */
+		long getTimeStamp() {
+			return pTimeStamp;
+		}
+
+		/**
+		 * @return the time of the last response of the server
+		 */
+		long getValidated() {
+			return pValidated;
+		}
+
+		/**
+		 * @return the body of the resource
+		 * @throws IOException
+		 */
+		byte[] readContent() throws IOException {
+			return Files.readAllBytes(pFile.toPath());
+		}
+	}
+
+	private static final String EXT_BODY = ".body";
+
+	private static final String EXT_PROPERTIES = ".properties";
+
+	private static final String PROP_CONTENT_TYPE = "contentType";
+
+	private static final String PROP_ETAG = "etag";
+
+	private static final String PROP_LAST_MODIFIED = "lastModified";
+
+	private static final String PROP_TIMESTAMP = "timeStamp";
+
+	private static final String PROP_URL = "url";
+
+	/**
+	 * @param aUrl
+	 * @return the hexadecimal SHA-256 hash of the url
+	 */
+	private static String hash(final String aUrl) {
+		try {
+			final byte[] wDigest = MessageDigest.getInstance("SHA-256").digest(aUrl.getBytes(StandardCharsets.UTF_8));
+			return CXBytesUtils.bytesToHexaString(wDigest, 0, wDigest.length, "");
+		} catch (final NoSuchAlgorithmException e) {
+			// SHA-256 is provided by all the java platforms
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private final File pDir;
+
+	// the entries read or written since the creation of the cache
+	private final Map<String, CEntry> pEntries = new ConcurrentHashMap<>();
+
+	private long pNbDownloadedBytes = 0;
+
+	private long pNbDownloads = 0;
+
+	private long pNbFresh = 0;
+
+	private long pNbGzip = 0;
+
+	private long pNbNotModified = 0;
+
+	private long pNbOffline = 0;
+
+	/**
+	 * @param aDir
+	 *            the directory of the cache, created if it doesn't exist
+	 * @throws IOException
+	 */
+	public CXRsrcHttpCache(final File aDir) throws IOException {
+		super();
+		pDir = aDir.getAbsoluteFile();
+		Files.createDirectories(pDir.toPath());
+	}
+
+	/**
+	 * removes all the resources from the disk
+	 */
+	public void clear() {
+		pEntries.clear();
+		final File[] wFiles = pDir.listFiles();
+		if (wFiles != null) {
+			for (final File wFile : wFiles) {
+				if (wFile.getName().endsWith(EXT_BODY) || wFile.getName().endsWith(EXT_PROPERTIES)) {
+					wFile.delete();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param aUrl
+	 * @return the cached resource of the url or null
+	 */
+	CEntry get(final String aUrl) {
+		CEntry wEntry = pEntries.get(aUrl);
+		if (wEntry == null) {
+			wEntry = load(aUrl);
+			if (wEntry != null) {
+				pEntries.put(aUrl, wEntry);
+			}
+		}
+		return wEntry;
+	}
+
+	/**
+	 * @return the directory of the cache
+	 */
+	public File getDir() {
+		return pDir;
+	}
+
+	/**
+	 * @return the number of bytes of the downloaded bodies (uncompressed)
+	 */
+	public synchronized long getNbDownloadedBytes() {
+		return pNbDownloadedBytes;
+	}
+
+	/**
+	 * @return the number of bodies downloaded
+	 */
+	public synchronized long getNbDownloads() {
+		return pNbDownloads;
+	}
+
+	/**
+	 * @return the number of resources served without request because they
+	 *         were validated less than "CacheExpires" seconds ago
+	 */
+	public synchronized long getNbFresh() {
+		return pNbFresh;
+	}
+
+	/**
+	 * @return the number of bodies downloaded compressed with gzip
+	 */
+	public synchronized long getNbGzip() {
+		return pNbGzip;
+	}
+
+	/**
+	 * @return the number of responses 304 (Not Modified)
+	 */
+	public synchronized long getNbNotModified() {
+		return pNbNotModified;
+	}
+
+	/**
+	 * @return the number of resources served while the server was unreachable
+	 */
+	public synchronized long getNbOffline() {
+		return pNbOffline;
+	}
+
+	/**
+	 * forces the validation of all the resources by the next requests
+	 */
+	public void invalidate() {
+		for (final CEntry wEntry : pEntries.values()) {
+			wEntry.pValidated = 0;
+		}
+	}
+
+	/**
+	 * @param aUrl
+	 * @return the entry stored in the directory or null
+	 */
+	private CEntry load(final String aUrl) {
+		final String wHash = hash(aUrl);
+		final File wFile = new File(pDir, wHash + EXT_BODY);
+		final File wPropFile = new File(pDir, wHash + EXT_PROPERTIES);
+		if (!wFile.isFile() || !wPropFile.isFile()) {
+			return null;
+		}
+		final Properties wProps = new Properties();
+		try {
+			final InputStream wInput = new FileInputStream(wPropFile);
+			try {
+				wProps.load(wInput);
+			} finally {
+				wInput.close();
+			}
+			if (!aUrl.equals(wProps.getProperty(PROP_URL))) {
+				return null;
+			}
+			// must be validated by the next request
+			return new CEntry(wFile, wProps.getProperty(PROP_ETAG),
+					Long.parseLong(wProps.getProperty(PROP_LAST_MODIFIED, "0")),
+					wProps.getProperty(PROP_CONTENT_TYPE), Long.parseLong(wProps.getProperty(PROP_TIMESTAMP, "0")), 0);
+		} catch (final IOException | NumberFormatException e) {
+			// the entry is downloaded again
+			return null;
+		}
+	}
+
+	/**
+	 * the server answered 304 (Not Modified)
+	 *
+	 * @param aEntry
+	 */
+	void notModified(final CEntry aEntry) {
+		aEntry.pValidated = System.currentTimeMillis();
+		synchronized (this) {
+			pNbNotModified++;
+		}
+	}
+
+	/**
+	 * the entry is served without request
+	 */
+	synchronized void onFresh() {
+		pNbFresh++;
+	}
+
+	/**
+	 * the entry is served because the server can't be reached
+	 */
+	synchronized void onOffline() {
+		pNbOffline++;
+	}
+
+	/**
+	 * removes the resource of the url from the disk
+	 *
+	 * @param aUrl
+	 */
+	synchronized void remove(final String aUrl) {
+		pEntries.remove(aUrl);
+		final String wHash = hash(aUrl);
+		new File(pDir, wHash + EXT_BODY).delete();
+		new File(pDir, wHash + EXT_PROPERTIES).delete();
+	}
+
+	/**
+	 * stores a downloaded body and its validators
+	 *
+	 * @param aUrl
+	 * @param aContent
+	 * @param aETag
+	 * @param aLastModified
+	 * @param aContentType
+	 * @param aGzip
+	 *            true if the body was compressed
+	 * @return the new entry
+	 * @throws IOException
+	 */
+	CEntry put(final String aUrl, final byte[] aContent, final String aETag, final long aLastModified,
+			final String aContentType, final boolean aGzip) throws IOException {
+		final long wNow = System.currentTimeMillis();
+		final String wHash = hash(aUrl);
+		final File wFile = new File(pDir, wHash + EXT_BODY);
+		final CEntry wEntry = new CEntry(wFile, aETag, aLastModified, aContentType,
+				aLastModified > 0 ? aLastModified : wNow, wNow);
+
+		final Properties wProps = new Properties();
+		wProps.setProperty(PROP_URL, aUrl);
+		if (aETag != null) {
+			wProps.setProperty(PROP_ETAG, aETag);
+		}
+		wProps.setProperty(PROP_LAST_MODIFIED, String.valueOf(aLastModified));
+		if (aContentType != null) {
+			wProps.setProperty(PROP_CONTENT_TYPE, aContentType);
+		}
+		wProps.setProperty(PROP_TIMESTAMP, String.valueOf(wEntry.getTimeStamp()));
+
+		// the files are replaced at once: a concurrent reader or a restart
+		// never sees a partial body
+		synchronized (this) {
+			final File wTmpFile = File.createTempFile(wHash, ".tmp", pDir);
+			try {
+				Files.write(wTmpFile.toPath(), aContent);
+				Files.move(wTmpFile.toPath(), wFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				wTmpFile.delete();
+			}
+			final File wTmpProps = File.createTempFile(wHash, ".tmp", pDir);
+			try {
+				final OutputStream wOutput = new FileOutputStream(wTmpProps);
+				try {
+					wProps.store(wOutput, aUrl);
+				} finally {
+					wOutput.close();
+				}
+				Files.move(wTmpProps.toPath(), new File(pDir, wHash + EXT_PROPERTIES).toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				wTmpProps.delete();
+			}
+			pEntries.put(aUrl, wEntry);
+			pNbDownloads++;
+			pNbDownloadedBytes += aContent.length;
+			if (aGzip) {
+				pNbGzip++;
+			}
+		}
+		return wEntry;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public synchronized String toString() {
+		return String.format(
+				"CXRsrcHttpCache: dir=[%s] entries=[%d] downloads=[%d] downloadedBytes=[%d] gzip=[%d] notModified=[%d] fresh=[%d] offline=[%d]",
+				pDir, pEntries.size(), pNbDownloads, pNbDownloadedBytes, pNbGzip, pNbNotModified, pNbFresh,
+				pNbOffline);
+	}
+}
@@ -329,6 +329,23 @@ public abstract class CXRsrcProvider extends CXJsObjectBase implements Iterator<
 		return true;
 	}
 
+	/**
+	 * @param aCurTimeStamp
+	 *            the current timestamp of the resource
+	 * @param aTimeStamp
+	 *            the timestamp known by the caller (>0 --> Check - <=0 no check)
+	 * @param aForceSecondes
+	 *            true - the timestamps are compared in seconds
+	 * @return true if the resource wasn't modified since aTimeStamp
+	 */
+	protected boolean isNotModified(long aCurTimeStamp, long aTimeStamp, final boolean aForceSecondes) {
+		if (aForceSecondes) {
+			aCurTimeStamp = (aCurTimeStamp / 1000) * 1000;
+			aTimeStamp = (aTimeStamp / 1000) * 1000;
+		}
+		return aTimeStamp > 0 && aCurTimeStamp > 0 && aTimeStamp == aCurTimeStamp;
+	}
+
 	/**
 	 * #12 Manage chains of resource providers
 	 *
@@ -362,26 +379,48 @@ public abstract class CXRsrcProvider extends CXJsObjectBase implements Iterator<
 		return wCnx;
 	}
 
+	/**
+	 * Removes the contents kept by the provider - nothing by default
+	 */
 	public void purgeCache() {
 		// nothn
 	}
 
+	/**
+	 * @param aPath
+	 *            the checked full path
+	 * @param aTimeStamp
+	 *            si >0 --> Check , si <=0 no check)
+	 * @param aForceSecondes
+	 * @return null if the resource wasn't modified since aTimeStamp
+	 * @throws Exception
+	 */
+	protected CXRsrcByte readRsrcByteContent(final CXRsrcUriPath aPath, final long aTimeStamp,
+			final boolean aForceSecondes) throws Exception {
+		URLConnection wCnx = openConnection(urlNew(aPath));
+		long wCurTimeStamp = wCnx.getLastModified();
+		if (isNotModified(wCurTimeStamp, aTimeStamp, aForceSecondes)) {
+			return null;
+		}
+		if (aForceSecondes) {
+			wCurTimeStamp = (wCurTimeStamp / 1000) * 1000;
+		}
+		return new CXRsrcByte(aPath, CXRsrcByteReader.readAll(wCnx), wCurTimeStamp);
+	}
+
 	protected CXRsrcText readRsrcTextContent(final CXRsrcUriPath aPath, Map<String, String> aFullPath, long aTimeStamp,
 			final boolean aForceSecondes) throws Exception {
 		URL wUrl = null;
 		URLConnection wCnx = null;
-		boolean wCheckTimeStamp = aTimeStamp > 0;
 		wUrl = urlNew(aPath);
 		wCnx = openConnection(wUrl);
 		long wCurTimeStamp = wCnx.getLastModified();
-		if (aForceSecondes) {
-			wCurTimeStamp = (wCurTimeStamp / 1000) * 1000;
-			aTimeStamp = (aTimeStamp / 1000) * 1000;
-		}
-		wCheckTimeStamp = wCheckTimeStamp && wCurTimeStamp > 0;
-		if (wCheckTimeStamp && aTimeStamp == wCurTimeStamp) {
+		if (isNotModified(wCurTimeStamp, aTimeStamp, aForceSecondes)) {
 			return null;
 		} else {
+			if (aForceSecondes) {
+				wCurTimeStamp = (wCurTimeStamp / 1000) * 1000;
+			}
 			// X3 n'ecrit pas le BOM -> On precise l'encoding - Toujours
 			// Utf8
 			CXRsrcTextReadInfo wInfo = CXRsrcTextUnicodeReader.readAll(wCnx, pDefCharset);
@@ -554,27 +593,14 @@ public abstract class CXRsrcProvider extends CXJsObjectBase implements Iterator<
 	 * @return
 	 * @throws Exception
 	 */
-	private CXRsrcByte rsrcReadByte(CXRsrcUriPath aPath, long aTimeStamp, final boolean aForceSecondes,
+	private CXRsrcByte rsrcReadByte(CXRsrcUriPath aPath, final long aTimeStamp, final boolean aForceSecondes,
 			final boolean aFulPath) throws Exception {
 		CXRsrcByte wRsrc = null;
 		URL wUrl = null;
 		try {
 			aPath = checkUriPath(aPath, aFulPath);
-			boolean wCheckTimeStamp = aTimeStamp > 0;
 			wUrl = urlNew(aPath);
-			URLConnection wCnx = openConnection(wUrl);
-
-			long wCurTimeStamp = wCnx.getLastModified();
-			if (aForceSecondes) {
-				wCurTimeStamp = (wCurTimeStamp / 1000) * 1000;
-				aTimeStamp = (aTimeStamp / 1000) * 1000;
-			}
-			wCheckTimeStamp = wCheckTimeStamp && wCurTimeStamp > 0;
-			if (wCheckTimeStamp && aTimeStamp == wCurTimeStamp) {
-				return null;
-			} else {
-				wRsrc = new CXRsrcByte(aPath, CXRsrcByteReader.readAll(wCnx), wCurTimeStamp);
-			}
+			wRsrc = readRsrcByteContent(aPath, aTimeStamp, aForceSecondes);
 		} catch (Exception e) {
 			throwExcepReadByte(aPath == null ? "null" : wUrl == null ? aPath.getFullPath() : wUrl.toString(), e);
 		}
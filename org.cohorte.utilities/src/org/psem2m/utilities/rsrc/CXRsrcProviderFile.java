@@ -35,6 +35,10 @@ import org.psem2m.utilities.logging.IActivityLogger;
 /**
  * Class fournisseur de ressource fichier
  *
+ * The decoded contents are kept in a CXRsrcContentCache invalidated by the
+ * notifications of the WatchService and by the check of the timestamps of the
+ * files.
+ *
  * @author ogattaz
  *
  */
@@ -46,8 +50,14 @@ public class CXRsrcProviderFile extends CXRsrcProvider {
 	// Utiliser pour les newtwork drives (\\fdalbo\temp)
 	private String pAddress = null;
 
+	// the cache of the decoded contents, null if disabled
+	private volatile CXRsrcContentCache pContentCache = new CXRsrcContentCache();
+
 	private final AtomicBoolean pContinueWatching = new AtomicBoolean(true);
 
+	// true if the large files are mapped in memory by rsrcReadByte()
+	private volatile boolean pMapLargeFiles = false;
+
 	CXFileDir pDefaultFileDir = null;
 
 	ExecutorService pExecutorRead = Executors.newFixedThreadPool(10);
@@ -58,6 +68,9 @@ public class CXRsrcProviderFile extends CXRsrcProvider {
 
 	private IRsrcNotifierHandler pNotifierHandler;
 
+	// the absolute directory registered in the WatchService
+	private File pWatchedDir = null;
+
 	WatchService pWatchService;
 
 	/**
@@ -86,6 +99,9 @@ public class CXRsrcProviderFile extends CXRsrcProvider {
 		super(aProv);
 		if (aProv != null) {
 			pAddress = aProv.pAddress;
+			// the clone reads the same files
+			pContentCache = aProv.pContentCache;
+			pMapLargeFiles = aProv.pMapLargeFiles;
 		}
 	}
 
@@ -120,6 +136,7 @@ public class CXRsrcProviderFile extends CXRsrcProvider {
 			Path pPath = Paths.get(getDefDirectory().getPath());
 			pPath.register(pWatchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
 					StandardWatchEventKinds.ENTRY_DELETE);
+			pWatchedDir = pPath.toFile().getAbsoluteFile();
 
 			pExecutorService.submit(new Runnable() {
 
@@ -128,6 +145,16 @@ public class CXRsrcProviderFile extends CXRsrcProvider {
 					// check with a interval the modification on file in
 					// directory using a watcher
 					pLogger.logInfo(this, "run", "watch directory %s", getDefDirectory().getPath());
+					try {
+						watchDirectory();
+					} finally {
+						// the contents are no longer invalidated by the watcher
+						pContinueWatching.set(false);
+						purgeCache();
+					}
+				}
+
+				private void watchDirectory() {
 					while (pContinueWatching.get()) {
 						try {
 
@@ -140,12 +167,19 @@ public class CXRsrcProviderFile extends CXRsrcProvider {
 							if (wKey != null) {
 								for (WatchEvent<?> wEvent : wKey.pollEvents()) {
 
+									final CXRsrcContentCache wCache = pContentCache;
+									if (wCache != null) {
+										wCache.handle(wEvent.kind(), wEvent.kind() == StandardWatchEventKinds.OVERFLOW
+												? null : new File(pWatchedDir, wEvent.context().toString()).getPath());
+									}
 									pNotifierHandler.handle(wEvent.kind(), getDefDirectory().getPath()
 											+ File.separatorChar + wEvent.context().toString());
 								}
 							}
+							// the key is no longer valid if the directory is
+							// deleted
 							boolean valid = wKey.reset();
-							if (valid) {
+							if (!valid) {
 								break;
 							}
 						} catch (Exception e) {
@@ -166,7 +200,9 @@ public class CXRsrcProviderFile extends CXRsrcProvider {
 	 */
 	@Override
 	public Appendable addDescriptionInBuffer(final Appendable aSB) {
-		return super.addDescriptionInBuffer(aSB);
+		Appendable wSB = super.addDescriptionInBuffer(aSB);
+		descrAddProp(wSB, "ContentCache", String.valueOf(pContentCache));
+		return wSB;
 	}
 
 	/*
@@ -210,6 +246,13 @@ public class CXRsrcProviderFile extends CXRsrcProvider {
 		};
 	}
 
+	/**
+	 * @return the cache of the decoded contents, null if disabled
+	 */
+	public CXRsrcContentCache getContentCache() {
+		return pContentCache;
+	}
+
 	public boolean getContinue() {
 		return pContinueWatching.get();
 	}
@@ -251,6 +294,23 @@ public class CXRsrcProviderFile extends CXRsrcProvider {
 		return true;
 	}
 
+	/**
+	 * @return true if the large files are mapped in memory
+	 * @see #setMapLargeFiles(boolean)
+	 */
+	public boolean isMapLargeFiles() {
+		return pMapLargeFiles;
+	}
+
+	/**
+	 * @param aFile
+	 * @return true if the modifications of the file are notified by the
+	 *         WatchService
+	 */
+	private boolean isWatched(final File aFile) {
+		return pWatchedDir != null && pContinueWatching.get() && pWatchedDir.equals(aFile.getParentFile());
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -261,6 +321,124 @@ public class CXRsrcProviderFile extends CXRsrcProvider {
 		return super.openConnection(aUrl);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.psem2m.utilities.rsrc.CXRsrcProvider#purgeCache()
+	 */
+	@Override
+	public void purgeCache() {
+		final CXRsrcContentCache wCache = pContentCache;
+		if (wCache != null) {
+			wCache.clear();
+		}
+	}
+
+	/**
+	 * reads the file without URLConnection in an array of its size, or mapped
+	 * in memory if it has at least CXRsrcByteReader.MAPPED_SIZE_MIN bytes and
+	 * if the mapping is enabled (see setMapLargeFiles())
+	 *
+	 * @param aPath
+	 * @param aFile
+	 * @param aTimeStamp
+	 * @param aForceSecondes
+	 * @return the content or null if the file isn't modified since aTimeStamp
+	 * @throws IOException
+	 */
+	private CXRsrcByte readFileByte(final CXRsrcUriPath aPath, final File aFile, final long aTimeStamp,
+			final boolean aForceSecondes) throws IOException {
+		long wCurTimeStamp = aFile.lastModified();
+		if (isNotModified(wCurTimeStamp, aTimeStamp, aForceSecondes)) {
+			return null;
+		}
+		if (aForceSecondes) {
+			wCurTimeStamp = (wCurTimeStamp / 1000) * 1000;
+		}
+		if (pMapLargeFiles) {
+			return new CXRsrcByte(aPath, CXRsrcByteReader.readBuffer(aFile), wCurTimeStamp);
+		}
+		return new CXRsrcByte(aPath, CXRsrcByteReader.readAll(aFile), wCurTimeStamp);
+	}
+
+	/**
+	 * reads the file without URLConnection in an array of its size
+	 *
+	 * @param aPath
+	 * @param aFile
+	 * @param aTimeStamp
+	 * @param aForceSecondes
+	 * @return the text or null if the file isn't modified since aTimeStamp
+	 * @throws IOException
+	 */
+	private CXRsrcText readFileText(final CXRsrcUriPath aPath, final File aFile, final long aTimeStamp,
+			final boolean aForceSecondes) throws IOException {
+		long wCurTimeStamp = aFile.lastModified();
+		if (isNotModified(wCurTimeStamp, aTimeStamp, aForceSecondes)) {
+			return null;
+		}
+		if (aForceSecondes) {
+			wCurTimeStamp = (wCurTimeStamp / 1000) * 1000;
+		}
+		return new CXRsrcText(aPath, CXRsrcTextUnicodeReader.readAll(aFile, getDefCharset()), wCurTimeStamp);
+	}
+
+	/*
+	 * The contents read with timestamps in seconds aren't cached
+	 *
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.psem2m.utilities.rsrc.CXRsrcProvider#readRsrcByteContent(org.psem2m.
+	 * utilities.rsrc.CXRsrcUriPath, long, boolean)
+	 */
+	@Override
+	protected CXRsrcByte readRsrcByteContent(final CXRsrcUriPath aPath, final long aTimeStamp,
+			final boolean aForceSecondes) throws Exception {
+		final CXRsrcContentCache wCache = pContentCache;
+		if (wCache == null || aForceSecondes) {
+			return readFileByte(aPath, toFile(aPath), aTimeStamp, aForceSecondes);
+		}
+		final File wFile = toFile(aPath);
+		CXRsrcByte wRsrc = wCache.getByte(wFile);
+		if (wRsrc == null) {
+			final long wGeneration = wCache.getGeneration();
+			final long wLength = wFile.length();
+			// reads the content without checking the timestamp to cache it
+			wRsrc = readFileByte(aPath, wFile, 0, false);
+			wCache.putByte(wFile, wRsrc, wLength, isWatched(wFile), wGeneration);
+		}
+		return isNotModified(wRsrc.getTimeStampSyst(), aTimeStamp, false) ? null : wRsrc;
+	}
+
+	/*
+	 * The contents read with timestamps in seconds aren't cached
+	 *
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * org.psem2m.utilities.rsrc.CXRsrcProvider#readRsrcTextContent(org.psem2m.
+	 * utilities.rsrc.CXRsrcUriPath, java.util.Map, long, boolean)
+	 */
+	@Override
+	protected CXRsrcText readRsrcTextContent(final CXRsrcUriPath aPath, final Map<String, String> aFullPath,
+			final long aTimeStamp, final boolean aForceSecondes) throws Exception {
+		final CXRsrcContentCache wCache = pContentCache;
+		if (wCache == null || aForceSecondes) {
+			return readFileText(aPath, toFile(aPath), aTimeStamp, aForceSecondes);
+		}
+		final File wFile = toFile(aPath);
+		CXRsrcText wRsrc = wCache.getText(wFile);
+		if (wRsrc == null) {
+			final long wGeneration = wCache.getGeneration();
+			final long wLength = wFile.length();
+			// reads the content without checking the timestamp to cache it
+			wRsrc = readFileText(aPath, wFile, 0, false);
+			wCache.putText(wFile, wRsrc, wLength, isWatched(wFile), wGeneration);
+		}
+		return isNotModified(wRsrc.getTimeStampSyst(), aTimeStamp, false) ? null : wRsrc;
+	}
+
 	@Override
 	protected CXListRsrcText rsrcReadTxts(final CXRsrcUriPath aPath, Map<String, String> aFullPath,
 			final long aTimeStamp, final boolean aForceSecondes, final boolean aFulPath) throws Exception {
@@ -320,6 +498,33 @@ public class CXRsrcProviderFile extends CXRsrcProvider {
 		return wListRsrc;
 	}
 
+	/**
+	 * @param aContentCache
+	 *            the cache of the decoded contents, null to disable it
+	 */
+	public void setContentCache(final CXRsrcContentCache aContentCache) {
+		pContentCache = aContentCache;
+	}
+
+	/**
+	 * Enables the mapping in memory of the files of at least
+	 * CXRsrcByteReader.MAPPED_SIZE_MIN bytes read by rsrcReadByte(). Disabled
+	 * by default: the contents are then snapshots read in arrays.
+	 *
+	 * A mapped content isn't a snapshot: it follows the modifications of the
+	 * file until getContent() copies it, and reading it after a truncation of
+	 * the file throws an InternalError. The mapping keeps the file open until
+	 * it is garbage collected, which prevents its deletion or its replacement
+	 * on Windows. Enable it only for large files which are never rewritten in
+	 * place. The mapped contents aren't cached.
+	 *
+	 * @param aMapLargeFiles
+	 *            true to map the large files, applied to the next readings
+	 */
+	public void setMapLargeFiles(final boolean aMapLargeFiles) {
+		pMapLargeFiles = aMapLargeFiles;
+	}
+
 	public void setContinue(final boolean aContinue) {
 		pContinueWatching.set(aContinue);
 	}
@@ -384,6 +589,22 @@ public class CXRsrcProviderFile extends CXRsrcProvider {
 		throw new Exception("Directory not found [" + aPath + "]");
 	}
 
+	/**
+	 * @param aPath
+	 *            the checked full path
+	 * @return the file of the resource
+	 * @throws MalformedURLException
+	 */
+	private File toFile(final CXRsrcUriPath aPath) throws MalformedURLException {
+		final URL wUrl = urlNew(aPath);
+		try {
+			return new File(wUrl.toURI());
+		} catch (Exception e) {
+			// not encoded path or network drive
+			return new File(wUrl.getPath()).getAbsoluteFile();
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
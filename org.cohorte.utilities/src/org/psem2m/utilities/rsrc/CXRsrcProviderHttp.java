@@ -1,17 +1,27 @@
 package org.psem2m.utilities.rsrc;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
 import java.nio.charset.Charset;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Class Http server
  * 
+ * When a CXRsrcHttpCache is set, the resources are read with conditional
+ * requests (If-None-Match / If-Modified-Since) accepting gzip, and the bodies
+ * are kept in the directory of the cache. The responses 304 and the periods
+ * when the server can't be reached are served from the disk. The streams are
+ * always consumed and closed to let the connections be reused (keep-alive).
+ * 
  * @author ogattaz
  * 
  */
@@ -71,8 +81,35 @@ public class CXRsrcProviderHttp extends CXRsrcProvider {
 		return wSrv;
 	}
 
+	/**
+	 * reads the remaining bytes of the response and closes its stream to let
+	 * the connection be reused
+	 * 
+	 * @param aCnx
+	 */
+	private static void drain(HttpURLConnection aCnx) {
+		try {
+			InputStream wInput = aCnx.getResponseCode() >= HttpURLConnection.HTTP_BAD_REQUEST ? aCnx.getErrorStream()
+					: aCnx.getInputStream();
+			if (wInput != null) {
+				try {
+					byte[] wBuffer = new byte[4096];
+					while (wInput.read(wBuffer) > 0) {
+						// nothing
+					}
+				} finally {
+					wInput.close();
+				}
+			}
+		} catch (IOException e) {
+			// the connection isn't reused
+		}
+	}
+
 	private CXRsrcUrlAddress pAddress = null;
 	private CXHttpAuthentication pAuthentication = null;
+	// the on-disk cache of the conditional requests, null if disabled
+	private CXRsrcHttpCache pHttpCache = null;
 	private CXHttpProxy pHttpProxy = null;
 
 	/**
@@ -84,6 +121,7 @@ public class CXRsrcProviderHttp extends CXRsrcProvider {
 			pAddress = aProv.pAddress != null ? aProv.pAddress.clone() : null;
 			pAuthentication = aProv.pAuthentication != null ? aProv.pAuthentication.clone() : null;
 			pHttpProxy = aProv.pHttpProxy != null ? aProv.pHttpProxy.clone() : null;
+			pHttpCache = aProv.pHttpCache;
 		}
 	}
 
@@ -155,6 +193,7 @@ public class CXRsrcProviderHttp extends CXRsrcProvider {
 		if (hasAuthentication()) {
 			descrAddLine(wSB, "Authentication", getAuthentication().toString());
 		}
+		descrAddLine(wSB, "HttpCache", pHttpCache == null ? "no" : pHttpCache.toString());
 		descrAddLine(wSB, "Proxy", hasProxy() ? "yes" : "no");
 		if (hasProxy()) {
 			descrAddLine(wSB, getProxy().toString());
@@ -182,13 +221,90 @@ public class CXRsrcProviderHttp extends CXRsrcProvider {
 	@Override
 	protected boolean existsFulPath(CXRsrcUriPath aPath) {
 		try {
-			URLConnection wCnx = openConnection(urlNew(aPath));
-			return ((HttpURLConnection) wCnx).getResponseCode() == HttpURLConnection.HTTP_OK;
+			HttpURLConnection wCnx = (HttpURLConnection) openConnection(urlNew(aPath));
+			boolean wExists = wCnx.getResponseCode() == HttpURLConnection.HTTP_OK;
+			drain(wCnx);
+			return wExists;
 		} catch (Exception e) {
 			return false;
 		}
 	}
 
+	/**
+	 * Downloads the resource or validates its cached copy
+	 * 
+	 * @param aPath
+	 * @return the cached resource
+	 * @throws IOException
+	 *             if the server answers an unexpected status other than 5xx,
+	 *             or if the resource can't be read and isn't cached
+	 */
+	private CXRsrcHttpCache.CEntry fetch(CXRsrcUriPath aPath) throws IOException {
+		CXRsrcHttpCache wCache = pHttpCache;
+		URL wUrl = urlNew(aPath);
+		String wUrlStr = wUrl.toString();
+		CXRsrcHttpCache.CEntry wEntry = wCache.get(wUrlStr);
+		if (wEntry != null && cacheExpires()
+				&& System.currentTimeMillis() - wEntry.getValidated() < cacheGetExpiresSec() * 1000L) {
+			wCache.onFresh();
+			return wEntry;
+		}
+		String wUnexpected;
+		try {
+			HttpURLConnection wCnx = (HttpURLConnection) openConnection(wUrl);
+			wCnx.setRequestProperty("Accept-Encoding", "gzip");
+			if (wEntry != null) {
+				if (wEntry.getETag() != null) {
+					wCnx.setRequestProperty("If-None-Match", wEntry.getETag());
+				}
+				if (wEntry.getLastModified() > 0) {
+					wCnx.setIfModifiedSince(wEntry.getLastModified());
+				}
+			}
+			int wCode = wCnx.getResponseCode();
+			if (wCode == HttpURLConnection.HTTP_NOT_MODIFIED && wEntry != null) {
+				drain(wCnx);
+				wCache.notModified(wEntry);
+				return wEntry;
+			}
+			if (wCode != HttpURLConnection.HTTP_OK) {
+				drain(wCnx);
+				if (wEntry != null && wCode >= HttpURLConnection.HTTP_INTERNAL_ERROR) {
+					// the server is unavailable
+					wCache.onOffline();
+					return wEntry;
+				}
+				// thrown out of the try: the stored copy isn't served
+				wUnexpected = "Unexpected response [" + wCode + " " + wCnx.getResponseMessage() + "] for [" + wUrlStr
+						+ "]";
+			} else {
+				boolean wGzip = "gzip".equalsIgnoreCase(wCnx.getContentEncoding());
+				byte[] wContent;
+				InputStream wInput = wCnx.getInputStream();
+				try {
+					wContent = CXRsrcByteReader.readAll(wGzip ? new GZIPInputStream(wInput) : wInput);
+				} finally {
+					wInput.close();
+				}
+				return wCache.put(wUrlStr, wContent, wCnx.getHeaderField("ETag"), wCnx.getLastModified(),
+						wCnx.getContentType(), wGzip);
+			}
+		} catch (IOException e) {
+			if (wEntry == null) {
+				throw e;
+			}
+			// offline: the server can't be reached
+			wCache.onOffline();
+			return wEntry;
+		}
+		// the server answered (removed, forbidden...): the stored copy is no
+		// longer served, even offline
+		if (wEntry != null) {
+			wCache.remove(wUrlStr);
+		}
+		throw new IOException(wUnexpected);
+	}
+
 	/**
 	 * @return
 	 */
@@ -214,6 +330,13 @@ public class CXRsrcProviderHttp extends CXRsrcProvider {
 		return null;
 	}
 
+	/**
+	 * @return the on-disk cache of the conditional requests, null if disabled
+	 */
+	public CXRsrcHttpCache getHttpCache() {
+		return pHttpCache;
+	}
+
 	/**
 	 * @return
 	 */
@@ -221,6 +344,20 @@ public class CXRsrcProviderHttp extends CXRsrcProvider {
 		return pHttpProxy;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.psem2m.utilities.rsrc.CXRsrcProvider#getTimeStamp(org.psem2m.
+	 * utilities.rsrc.CXRsrc)
+	 */
+	@Override
+	public long getTimeStamp(CXRsrc<?> aRsrc) throws IOException {
+		if (pHttpCache == null || aRsrc == null) {
+			return super.getTimeStamp(aRsrc);
+		}
+		return fetch(aRsrc.getPath()).getTimeStamp();
+	}
+
 	/**
 	 * @return
 	 */
@@ -288,6 +425,71 @@ public class CXRsrcProviderHttp extends CXRsrcProvider {
 		return wCnx;
 	}
 
+	/*
+	 * The cached resources are kept to be served offline but they are
+	 * validated by the next requests
+	 * 
+	 * (non-Javadoc)
+	 * 
+	 * @see org.psem2m.utilities.rsrc.CXRsrcProvider#purgeCache()
+	 */
+	@Override
+	public void purgeCache() {
+		if (pHttpCache != null) {
+			pHttpCache.invalidate();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.psem2m.utilities.rsrc.CXRsrcProvider#readRsrcByteContent(org.psem2m.
+	 * utilities.rsrc.CXRsrcUriPath, long, boolean)
+	 */
+	@Override
+	protected CXRsrcByte readRsrcByteContent(CXRsrcUriPath aPath, long aTimeStamp, boolean aForceSecondes)
+			throws Exception {
+		if (pHttpCache == null) {
+			return super.readRsrcByteContent(aPath, aTimeStamp, aForceSecondes);
+		}
+		CXRsrcHttpCache.CEntry wEntry = fetch(aPath);
+		long wTimeStamp = wEntry.getTimeStamp();
+		if (isNotModified(wTimeStamp, aTimeStamp, aForceSecondes)) {
+			return null;
+		}
+		if (aForceSecondes) {
+			wTimeStamp = (wTimeStamp / 1000) * 1000;
+		}
+		return new CXRsrcByte(aPath, wEntry.readContent(), wTimeStamp);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.psem2m.utilities.rsrc.CXRsrcProvider#readRsrcTextContent(org.psem2m.
+	 * utilities.rsrc.CXRsrcUriPath, java.util.Map, long, boolean)
+	 */
+	@Override
+	protected CXRsrcText readRsrcTextContent(CXRsrcUriPath aPath, Map<String, String> aFullPath, long aTimeStamp,
+			boolean aForceSecondes) throws Exception {
+		if (pHttpCache == null) {
+			return super.readRsrcTextContent(aPath, aFullPath, aTimeStamp, aForceSecondes);
+		}
+		CXRsrcHttpCache.CEntry wEntry = fetch(aPath);
+		long wTimeStamp = wEntry.getTimeStamp();
+		if (isNotModified(wTimeStamp, aTimeStamp, aForceSecondes)) {
+			return null;
+		}
+		if (aForceSecondes) {
+			wTimeStamp = (wTimeStamp / 1000) * 1000;
+		}
+		CXRsrcTextReadInfo wInfo = CXRsrcTextUnicodeReader.readAll(new ByteArrayInputStream(wEntry.readContent()),
+				null, getDefCharset());
+		return new CXRsrcText(aPath, wInfo, wTimeStamp);
+	}
+
 	/**
 	 * @param aAddress
 	 */
@@ -302,6 +504,15 @@ public class CXRsrcProviderHttp extends CXRsrcProvider {
 		pAuthentication = aAuthentication;
 	}
 
+	/**
+	 * @param aHttpCache
+	 *            the on-disk cache of the conditional requests, null to read
+	 *            the resources without validators
+	 */
+	public void setHttpCache(CXRsrcHttpCache aHttpCache) {
+		pHttpCache = aHttpCache;
+	}
+
 	/**
 	 * Interface IXtdDescriber
 	 * 
@@ -23,6 +23,23 @@ public class CXRsrcTextReadInfo {
 		pContent = aContent == null ? "" : new String(aContent, pCharset);
 	}
 
+	/**
+	 * Decodes a part of the array without copying it
+	 * 
+	 * @param aContent
+	 * @param aOffset
+	 * @param aLength
+	 * @param aEncoding
+	 * @param aHasBOM
+	 * @param aDefCharset
+	 */
+	public CXRsrcTextReadInfo(byte[] aContent, int aOffset, int aLength, String aEncoding,
+			boolean aHasBOM, Charset aDefCharset) {
+		pHasBOM = aHasBOM;
+		pCharset = encoding2Charset(aEncoding, aDefCharset);
+		pContent = aContent == null ? "" : new String(aContent, aOffset, aLength, pCharset);
+	}
+
 	private CXRsrcTextReadInfo(String javaString) {
 		pHasBOM = false;
 		pCharset = sCharsetUtf8;
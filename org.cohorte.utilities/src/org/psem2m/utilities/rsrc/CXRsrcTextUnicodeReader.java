@@ -6,6 +6,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URLConnection;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
 
 import org.psem2m.utilities.CXBytesUtils;
 
@@ -73,24 +74,41 @@ public class CXRsrcTextUnicodeReader {
 			// Detection sequence UTF-8 OK
 			eEncoding = EXUnicodeEncoding.UTF_8;
 		}
+		// the bytes are decoded in the array of the buffer
+		byte[] wArray = aBuffer.getArray();
+		int wSize = aBuffer.getSize();
 		if (!wHasBOM) {
 			if (eEncoding != null) {
 				// Sequence UTF-8 detectee
-				return new CXRsrcTextReadInfo(aBuffer.toArray(), eEncoding.getEncoding(), false,
+				return new CXRsrcTextReadInfo(wArray, 0, wSize, eEncoding.getEncoding(), false,
 						aDefCharset);
 			} else if (aUrlCnxEncoding != null && aUrlCnxEncoding.trim().isEmpty()) {
 				// Encoding renvoye par URLConnexion
-				return new CXRsrcTextReadInfo(aBuffer.toArray(), aUrlCnxEncoding, false,
+				return new CXRsrcTextReadInfo(wArray, 0, wSize, aUrlCnxEncoding, false,
 						aDefCharset);
 			} else {
-				return new CXRsrcTextReadInfo(aBuffer.toArray(), null, false, aDefCharset);
+				return new CXRsrcTextReadInfo(wArray, 0, wSize, null, false, aDefCharset);
 			}
 		} else {
-			return new CXRsrcTextReadInfo(aBuffer.toArray(eEncoding.getBomLen()),
+			int wBomLen = Math.min(eEncoding.getBomLen(), wSize);
+			return new CXRsrcTextReadInfo(wArray, wBomLen, wSize - wBomLen,
 					eEncoding.getEncoding(), true, aDefCharset);
 		}
 	}
 
+	/**
+	 * Reads the file in an array of its exact size
+	 * 
+	 * @param aFile
+	 * @param aDefCharset
+	 * @return
+	 * @throws IOException
+	 */
+	public static CXRsrcTextReadInfo readAll(File aFile, Charset aDefCharset) throws IOException {
+		return determineEncoding(new CXRsrcByteArray(Files.readAllBytes(aFile.toPath())), null,
+				aDefCharset);
+	}
+
 	/**
 	 * methode publique pour etre utilise dans le bundle httpclient
 	 * 
@@ -132,7 +150,11 @@ public class CXRsrcTextUnicodeReader {
 		InputStream wInputStream = null;
 		try {
 			wInputStream = aUrlConnection.getInputStream();
-			return readAll(wInputStream, aUrlConnection.getContentEncoding(), aDefCharset);
+			// exact size if the length is known
+			return determineEncoding(
+					new CXRsrcByteArray(CXRsrcByteReader.readAll(wInputStream,
+							aUrlConnection.getContentLengthLong())),
+					aUrlConnection.getContentEncoding(), aDefCharset);
 		} catch (IOException e) {
 			throw (e);
 		} finally {
@@ -17,7 +17,8 @@ import org.psem2m.utilities.CXTimer;
 public class CXJsCompiledScript extends CXJsObjectBase implements IXJsConstants {
 
 	private final boolean pCheckTimeStamp;
-	private CompiledScript pCompiledScript;
+	// replaced by recompile() while the other threads evaluate it
+	private volatile CompiledScript pCompiledScript;
 	private CXJsEngine pEngine;
 	private CXJsSourceMain pMainModule;
 
@@ -54,11 +55,14 @@ public class CXJsCompiledScript extends CXJsObjectBase implements IXJsConstants
 	}
 
 	/**
+	 * The timestamps are checked by the revalidator of the
+	 * CXJsCompiledScriptCache: an execution only reads its last result.
+	 *
 	 * @param tracer
 	 * @return
 	 * @throws CXJsException
 	 */
-	protected synchronized boolean checkTimeStamp(IXjsTracer tracer)
+	protected boolean checkTimeStamp(IXjsTracer tracer)
 			throws CXJsException {
 		final boolean trace = tracer != null;
 		if (!pCheckTimeStamp) {
@@ -69,7 +73,8 @@ public class CXJsCompiledScript extends CXJsObjectBase implements IXJsConstants
 		}
 		final CXTimer wT = trace ? new CXTimer("checkTimeStamp", true) : null;
 		try {
-			return pMainModule.checkTimeStamp();
+			return CXJsCompiledScriptCache.getInstance().isUpToDate(
+					pMainModule);
 		} catch (final Exception e) {
 			throwMyScriptExcep(tracer, "Error checking timeStamp", e,
 					"checkTimeStamp");
@@ -229,8 +234,12 @@ public class CXJsCompiledScript extends CXJsObjectBase implements IXJsConstants
 	 * @param tracer
 	 * @throws CXJsException
 	 */
-	protected void recompile(IXjsTracer tracer) throws CXJsException {
-		pCompiledScript = pEngine.reCompile(pMainModule, tracer);
+	protected synchronized void recompile(IXjsTracer tracer)
+			throws CXJsException {
+		// another thread may have recompiled the script in the meantime
+		if (!checkTimeStamp(tracer)) {
+			pCompiledScript = pEngine.reCompile(pMainModule, tracer);
+		}
 	}
 
 	/**
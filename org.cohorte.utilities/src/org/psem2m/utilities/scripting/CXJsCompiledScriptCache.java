@@ -0,0 +1,393 @@
+package org.psem2m.utilities.scripting;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptException;
+
+/**
+ * The process-wide cache of the compiled scripts.
+ *
+ * <ul>
+ * <li>the scripts are kept in a bounded LRU cache keyed by the SHA-256 hash of
+ * their merged code: the engines of a multithreaded factory share the script
+ * compiled once. The Script of Rhino is thread-safe: it is evaluated in the
+ * scope given by the context of each execution.</li>
+ * <li>the timestamps of the resources of the watched sources are checked by a
+ * background thread at a configurable interval. An execution only reads the
+ * flag set by the last revalidation. An interval of zero checks the timestamps
+ * at each execution, as before.</li>
+ * </ul>
+ */
+public class CXJsCompiledScriptCache {
+
+	/**
+	 * a compiled script and the factory of the engine which compiled it
+	 */
+	private static class CEntry {
+
+		private final ScriptEngineFactory pFactory;
+
+		private final CompiledScript pScript;
+
+		/**
+		 * @param aFactory
+		 * @param aScript
+		 */
+		CEntry(final ScriptEngineFactory aFactory, final CompiledScript aScript) {
+			super();
+			pFactory = aFactory;
+			pScript = aScript;
+		}
+	}
+
+	private static class CLruMap extends LinkedHashMap<String, CEntry> {
+
+		private static final long serialVersionUID = -5405317036232410858L;
+
+		private final int pMaxSize;
+
+		private long pNbEvictions = 0;
+
+		/**
+		 * @param aMaxSize
+		 */
+		CLruMap(final int aMaxSize) {
+			// access order
+			super(16, 0.75f, true);
+			pMaxSize = aMaxSize;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.util.LinkedHashMap#removeEldestEntry(java.util.Map.Entry)
+		 */
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, CEntry> aEldest) {
+			if (size() > pMaxSize) {
+				pNbEvictions++;
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * the thread checking the timestamps of the watched sources
+	 */
+	private class CRevalidator extends Thread {
+
+		/**
+		 *
+		 */
+		CRevalidator() {
+			super("Scripts revalidator");
+			// Allows the Java Virtual Machine to exit even this Thread is
+			// running
+			setDaemon(true);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.lang.Thread#run()
+		 */
+		@Override
+		public void run() {
+			while (true) {
+				final long wInterval = pRevalidationMs;
+				try {
+					// woken up by setRevalidationMs()
+					synchronized (pRevalidatorLock) {
+						pRevalidatorLock.wait(wInterval > 0 ? wInterval : DEFAULT_REVALIDATION_MS);
+					}
+				} catch (final InterruptedException e) {
+					return;
+				}
+				if (pRevalidationMs > 0) {
+					revalidate();
+				}
+			}
+		}
+	}
+
+	/**
+	 * the default max number of compiled scripts
+	 */
+	public static final int DEFAULT_MAX_SCRIPTS = 256;
+
+	/**
+	 * the default interval of the revalidation of the timestamps
+	 */
+	public static final long DEFAULT_REVALIDATION_MS = 2000;
+
+	/**
+	 * the system property setting the interval of the revalidation in
+	 * milliseconds
+	 */
+	public static final String PROP_REVALIDATION_MS = "psem2m.scripting.revalidation.ms";
+
+	private static final char[] HEXA = "0123456789abcdef".toCharArray();
+
+	private static CXJsCompiledScriptCache sSingleton = null;
+
+	/**
+	 * @return the cache shared by all the engines
+	 */
+	public static synchronized CXJsCompiledScriptCache getInstance() {
+		if (sSingleton == null) {
+			sSingleton = new CXJsCompiledScriptCache(DEFAULT_MAX_SCRIPTS,
+					Long.getLong(PROP_REVALIDATION_MS, DEFAULT_REVALIDATION_MS));
+		}
+		return sSingleton;
+	}
+
+	/**
+	 * @param aCode
+	 * @return the hexadecimal SHA-256 hash of the code
+	 */
+	static String hash(final String aCode) {
+		try {
+			final byte[] wDigest = MessageDigest.getInstance("SHA-256").digest(aCode.getBytes(StandardCharsets.UTF_8));
+			final char[] wHexa = new char[wDigest.length * 2];
+			for (int i = 0; i < wDigest.length; i++) {
+				wHexa[i * 2] = HEXA[(wDigest[i] >> 4) & 0x0F];
+				wHexa[i * 2 + 1] = HEXA[wDigest[i] & 0x0F];
+			}
+			return new String(wHexa);
+		} catch (final NoSuchAlgorithmException e) {
+			// SHA-256 is provided by all the java platforms
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private long pNbHits = 0;
+
+	private long pNbMisses = 0;
+
+	private long pNbRevalidations = 0;
+
+	private long pNbStales = 0;
+
+	private volatile long pRevalidationMs;
+
+	private CRevalidator pRevalidator = null;
+
+	private final Object pRevalidatorLock = new Object();
+
+	// the compiled scripts by the hash of their code
+	private final CLruMap pScripts;
+
+	// the sources whose timestamps are checked by the revalidator
+	private final Set<CXJsSourceMain> pWatchedSources = Collections
+			.newSetFromMap(new WeakHashMap<CXJsSourceMain, Boolean>());
+
+	/**
+	 * @param aMaxScripts
+	 *            the max number of compiled scripts
+	 * @param aRevalidationMs
+	 *            the interval of the revalidation of the timestamps, zero to
+	 *            check them at each execution
+	 */
+	public CXJsCompiledScriptCache(final int aMaxScripts, final long aRevalidationMs) {
+		super();
+		pScripts = new CLruMap(aMaxScripts);
+		pRevalidationMs = aRevalidationMs;
+	}
+
+	/**
+	 * removes all the compiled scripts
+	 */
+	public synchronized void clear() {
+		pScripts.clear();
+	}
+
+	/**
+	 * @param aEngine
+	 *            a compilable engine
+	 * @param aCode
+	 *            the merged code of a source
+	 * @return the script compiled by an engine of the same factory
+	 * @throws ScriptException
+	 *             if the code can't be compiled
+	 */
+	public CompiledScript compile(final CXJsEngine aEngine, final String aCode) throws ScriptException {
+		final ScriptEngineFactory wFactory = aEngine.getFactory().getScriptEngineFactory();
+		final String wKey = hash(aCode);
+		synchronized (this) {
+			final CEntry wEntry = pScripts.get(wKey);
+			if (wEntry != null && wEntry.pFactory == wFactory) {
+				pNbHits++;
+				return wEntry.pScript;
+			}
+			pNbMisses++;
+		}
+		final CompiledScript wScript = ((Compilable) aEngine.getScriptEngine()).compile(aCode);
+		synchronized (this) {
+			pScripts.put(wKey, new CEntry(wFactory, wScript));
+		}
+		return wScript;
+	}
+
+	/**
+	 * @return the number of scripts removed to respect the bound
+	 */
+	public synchronized long getNbEvictions() {
+		return pScripts.pNbEvictions;
+	}
+
+	/**
+	 * @return the number of scripts found compiled
+	 */
+	public synchronized long getNbHits() {
+		return pNbHits;
+	}
+
+	/**
+	 * @return the number of compilations
+	 */
+	public synchronized long getNbMisses() {
+		return pNbMisses;
+	}
+
+	/**
+	 * @return the number of revalidations of the watched sources
+	 */
+	public synchronized long getNbRevalidations() {
+		return pNbRevalidations;
+	}
+
+	/**
+	 * @return the number of sources found modified by the revalidations
+	 */
+	public synchronized long getNbStales() {
+		return pNbStales;
+	}
+
+	/**
+	 * @return the number of watched sources
+	 */
+	public int getNbWatchedSources() {
+		synchronized (pWatchedSources) {
+			return pWatchedSources.size();
+		}
+	}
+
+	/**
+	 * @return the interval of the revalidation of the timestamps
+	 */
+	public long getRevalidationMs() {
+		return pRevalidationMs;
+	}
+
+	/**
+	 * @param aSource
+	 * @return true if the resources of the source weren't modified when they
+	 *         were checked for the last time
+	 * @throws CXJsException
+	 *             if the timestamps can't be checked at each execution
+	 */
+	public boolean isUpToDate(final CXJsSourceMain aSource) throws CXJsException {
+		if (pRevalidationMs <= 0) {
+			return aSource.checkTimeStamp();
+		}
+		if (!aSource.isWatched()) {
+			watch(aSource);
+		}
+		return !aSource.isStale();
+	}
+
+	/**
+	 * checks the timestamps of the resources of all the watched sources
+	 *
+	 * @return the number of sources found modified
+	 */
+	public int revalidate() {
+		final CXJsSourceMain[] wSources;
+		synchronized (pWatchedSources) {
+			wSources = pWatchedSources.toArray(new CXJsSourceMain[pWatchedSources.size()]);
+		}
+		int wNbStales = 0;
+		for (final CXJsSourceMain wSource : wSources) {
+			if (wSource.isStale()) {
+				continue;
+			}
+			boolean wUpToDate;
+			try {
+				wUpToDate = wSource.checkTimeStamp();
+			} catch (final CXJsException e) {
+				// the reload will throw the error
+				wUpToDate = false;
+			}
+			if (!wUpToDate) {
+				wSource.setStale(true);
+				wNbStales++;
+			}
+		}
+		synchronized (this) {
+			pNbRevalidations++;
+			pNbStales += wNbStales;
+		}
+		return wNbStales;
+	}
+
+	/**
+	 * @param aRevalidationMs
+	 *            the interval of the revalidation of the timestamps, zero to
+	 *            check them at each execution
+	 */
+	public void setRevalidationMs(final long aRevalidationMs) {
+		pRevalidationMs = aRevalidationMs;
+		synchronized (pRevalidatorLock) {
+			pRevalidatorLock.notifyAll();
+		}
+	}
+
+	/**
+	 * @return the number of compiled scripts
+	 */
+	public synchronized int size() {
+		return pScripts.size();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public synchronized String toString() {
+		return String.format(
+				"CXJsCompiledScriptCache: size=[%d/%d] hits=[%d] misses=[%d] evictions=[%d] watched=[%d] revalidationMs=[%d] revalidations=[%d] stales=[%d]",
+				pScripts.size(), pScripts.pMaxSize, pNbHits, pNbMisses, pScripts.pNbEvictions, getNbWatchedSources(),
+				pRevalidationMs, pNbRevalidations, pNbStales);
+	}
+
+	/**
+	 * adds the source in the sources checked by the revalidator
+	 *
+	 * @param aSource
+	 */
+	private void watch(final CXJsSourceMain aSource) {
+		synchronized (pWatchedSources) {
+			pWatchedSources.add(aSource);
+			aSource.setWatched();
+		}
+		synchronized (this) {
+			if (pRevalidator == null) {
+				pRevalidator = new CRevalidator();
+				pRevalidator.start();
+			}
+		}
+	}
+}
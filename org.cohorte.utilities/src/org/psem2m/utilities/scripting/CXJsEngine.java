@@ -87,6 +87,11 @@ public class CXJsEngine extends CXJsObjectBase implements IXJsConstants {
 			final boolean trace = tracer != null;
 			final CXTimer wT = trace ? new CXTimer("compile", true) : null;
 			try {
+				// the engines of a multithreaded factory share the scripts
+				if (pFactory.isMultiThreaded()) {
+					return CXJsCompiledScriptCache.getInstance().compile(this,
+							aMainModule.getMergedCode());
+				}
 				return ((Compilable) pEngine).compile(aMainModule
 						.getMergedCode());
 			} catch (final ScriptException e) {
@@ -508,7 +508,7 @@ public class CXJsManager extends CXJsObjectBase implements IXJsManager {
 		CXJsRunner wRunner = null;
 		String wScriptUri = aSourceMain.getScriptUri();
 		// find the runner in the cache
-		if (wScriptUri != null && pJsRunnerMap.containsKey(wScriptUri)) {
+		if (wScriptUri != null) {
 			wRunner = pJsRunnerMap.get(wScriptUri);
 		}
 		// if the runner exists in the cache
@@ -517,6 +517,10 @@ public class CXJsManager extends CXJsObjectBase implements IXJsManager {
 			if (mustCheckTimeStamp() && !wRunner.checkMainTimeStamp()) {
 				// remove the runner from the cache
 				pJsRunnerMap.remove(wScriptUri);
+				// the given source is the modified one
+				if (aSourceMain == wRunner.pMain) {
+					aSourceMain.reload(CXjsTracerFactory.newJsTracer(pActivityLogger));
+				}
 				wRunner = null;
 			}
 		}
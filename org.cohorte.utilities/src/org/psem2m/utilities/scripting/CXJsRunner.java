@@ -71,11 +71,12 @@ public class CXJsRunner extends CXJsObjectBase implements IXJsRunner {
 	}
 
 	/**
-	 * @return
+	 * @return false if the revalidator found a modified resource of the main
+	 *         source
 	 */
 	boolean checkMainTimeStamp() throws Exception {
 
-		return pMain.checkTimeStamp();
+		return CXJsCompiledScriptCache.getInstance().isUpToDate(pMain);
 	}
 
 	/**
@@ -1,9 +1,9 @@
 package org.psem2m.utilities.scripting;
 
 import java.util.Collection;
-import java.util.Hashtable;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author ogattaz
@@ -11,7 +11,7 @@ import java.util.Set;
  */
 public class CXJsRunnerMap extends CXJsObjectBase implements Map<String, CXJsRunner> {
 
-	private final Map<String, CXJsRunner> pMap = new Hashtable<>();
+	private final Map<String, CXJsRunner> pMap = new ConcurrentHashMap<>();
 
 	/**
 	 * @param aBundleLogger
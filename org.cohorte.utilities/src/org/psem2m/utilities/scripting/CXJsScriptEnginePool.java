@@ -1,20 +1,162 @@
 package org.psem2m.utilities.scripting;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
 
 /**
+ * A bounded pool of script engines.
+ *
+ * <ul>
+ * <li>get() takes an idle engine without locking. When all the engines are
+ * used, get() waits until an engine is freed or the timeout expires.</li>
+ * <li>the engines are created when they are needed, up to the capacity of the
+ * pool, or by prewarm() which evaluates the common modules in each engine. The
+ * common modules are compiled once. The engines which evaluated the previous
+ * modules are destroyed when they are freed.</li>
+ * <li>free() restores the ENGINE_SCOPE bindings of the engine as they were
+ * after the evaluation of the common modules: the variables set by a script
+ * are not seen by the next one.</li>
+ * </ul>
+ *
+ * Each engine is used by one thread at a time, even if the factory is
+ * multithreaded: the engines of a multithreaded factory share their bindings
+ * between the threads.
+ *
  * @author ogattaz
- * 
+ *
  */
 public class CXJsScriptEnginePool {
 
+	/**
+	 * an engine of the pool and the state restored when it is freed
+	 */
+	private static class CPooledEngine {
+
+		private final Map<String, Object> pBaseline = new HashMap<String, Object>();
+
+		private Bindings pBindings;
+
+		private long pCheckOutNs;
+
+		private ScriptContext pContext;
+
+		private final CXJsEngine pEngine;
+
+		// the generation of the common modules evaluated in the engine
+		private final long pGeneration;
+
+		/**
+		 * @param aEngine
+		 * @param aGeneration
+		 */
+		CPooledEngine(final CXJsEngine aEngine, final long aGeneration) {
+			super();
+			pEngine = aEngine;
+			pGeneration = aGeneration;
+		}
+
+		/**
+		 * stores the current bindings as the ones restored by scrub()
+		 */
+		void mark() {
+			final ScriptEngine wEngine = pEngine.getScriptEngine();
+			pContext = wEngine.getContext();
+			pBindings = wEngine.getBindings(ScriptContext.ENGINE_SCOPE);
+			pBaseline.clear();
+			pBaseline.putAll(pBindings);
+		}
+
+		/**
+		 * restores the context and the ENGINE_SCOPE bindings stored by mark()
+		 */
+		void scrub() {
+			final ScriptEngine wEngine = pEngine.getScriptEngine();
+			if (wEngine.getContext() != pContext) {
+				wEngine.setContext(pContext);
+			}
+			if (wEngine.getBindings(ScriptContext.ENGINE_SCOPE) != pBindings) {
+				wEngine.setBindings(pBindings, ScriptContext.ENGINE_SCOPE);
+			}
+			final List<String> wAdded = new ArrayList<String>();
+			for (final String wKey : pBindings.keySet()) {
+				if (!pBaseline.containsKey(wKey)) {
+					wAdded.add(wKey);
+				}
+			}
+			for (final String wKey : wAdded) {
+				pBindings.remove(wKey);
+			}
+			for (final Map.Entry<String, Object> wEntry : pBaseline.entrySet()) {
+				if (pBindings.get(wEntry.getKey()) != wEntry.getValue()) {
+					pBindings.put(wEntry.getKey(), wEntry.getValue());
+				}
+			}
+		}
+	}
+
 	static private final int DEFAULT_SIZE = 10;
 
-	private int capacity = 0;
-	private int engines = 0;
-	private final CXJsScriptFactory factory;
-	private boolean isMultithreaded = false;
-	private final LinkedList<CXJsEngine> pool = new LinkedList<CXJsEngine>();
+	/**
+	 * the default max duration of the wait of an engine
+	 */
+	public static final long DEFAULT_TIMEOUT_MS = 30000;
+
+	// the engines checked out by get()
+	private final Map<CXJsEngine, CPooledEngine> pBusy = new ConcurrentHashMap<CXJsEngine, CPooledEngine>();
+
+	// the sum of the durations of use of the engines
+	private final AtomicLong pBusyNs = new AtomicLong();
+
+	private final int pCapacity;
+
+	// the compiled common modules, or their code if the engine isn't
+	// compilable
+	private volatile List<Object> pCommonScripts = new ArrayList<Object>();
+
+	private final long pCreationNs = System.nanoTime();
+
+	private final CXJsScriptFactory pFactory;
+
+	// incremented by prewarm() when the common modules change
+	private final AtomicLong pGeneration = new AtomicLong();
+
+	// the last freed engine is the first reused
+	private final ConcurrentLinkedDeque<CPooledEngine> pIdle = new ConcurrentLinkedDeque<CPooledEngine>();
+
+	private final boolean pIsMultithreaded;
+
+	private final AtomicLong pMaxWaitNs = new AtomicLong();
+
+	private final AtomicLong pNbCheckOuts = new AtomicLong();
+
+	private final AtomicInteger pNbEngines = new AtomicInteger();
+
+	private final AtomicLong pNbTimeOuts = new AtomicLong();
+
+	private final AtomicLong pNbWaits = new AtomicLong();
+
+	private final AtomicInteger pPeakBusy = new AtomicInteger();
+
+	// one permit per engine which can be checked out
+	private final Semaphore pPermits;
+
+	private final long pTimeoutMs;
+
+	private final AtomicLong pWaitNs = new AtomicLong();
 
 	/**
 	 * @param factory
@@ -28,58 +170,324 @@ public class CXJsScriptEnginePool {
 	 * @param capacity
 	 */
 	public CXJsScriptEnginePool(CXJsScriptFactory factory, int capacity) {
-		this.factory = factory;
-		this.capacity = capacity;
-		this.isMultithreaded = factory.isMultiThreaded();
+		this(factory, capacity, DEFAULT_TIMEOUT_MS);
 	}
 
 	/**
-	 * @param eng
+	 * @param aFactory
+	 * @param aCapacity
+	 *            the max number of engines
+	 * @param aTimeoutMs
+	 *            the max duration of the wait of an engine by get()
 	 */
-	public synchronized void free(CXJsEngine eng) {
-		pool.add(eng); // should I clear the engine namespaces ..
-		notifyAll();
+	public CXJsScriptEnginePool(final CXJsScriptFactory aFactory, final int aCapacity, final long aTimeoutMs) {
+		pFactory = aFactory;
+		pCapacity = aCapacity > 0 ? aCapacity : DEFAULT_SIZE;
+		pTimeoutMs = aTimeoutMs;
+		pIsMultithreaded = aFactory.isMultiThreaded();
+		// not fair: the acquisition of a free permit doesn't lock
+		pPermits = new Semaphore(pCapacity);
 	}
 
 	/**
-	 * @return
+	 * @return the engine taken from the idle ones or a new engine
+	 * @throws CXJsException
 	 */
-	public synchronized CXJsEngine get() {
-		if (isMultithreadingSupported()) {
-			if (pool.isEmpty()) {
-				pool.add(factory.getScriptEngine());
-			}
-			return pool.getFirst();
-		} else {
-			if (!pool.isEmpty()) {
-				return pool.removeFirst();
+	private CPooledEngine checkOut() throws CXJsException {
+		CPooledEngine wEngine;
+		while ((wEngine = pIdle.pollFirst()) != null && wEngine.pGeneration != pGeneration.get()) {
+			// freed during a prewarm()
+			destroyEngine(wEngine);
+		}
+		if (wEngine == null) {
+			wEngine = newEngine();
+		}
+		wEngine.pCheckOutNs = System.nanoTime();
+		pBusy.put(wEngine.pEngine, wEngine);
+		final int wNbBusy = pBusy.size();
+		int wPeak;
+		while (wNbBusy > (wPeak = pPeakBusy.get()) && !pPeakBusy.compareAndSet(wPeak, wNbBusy)) {
+			// retry
+		}
+		pNbCheckOuts.incrementAndGet();
+		return wEngine;
+	}
+
+	/**
+	 * @param aEngine
+	 *            an engine removed from the pool
+	 */
+	private void destroyEngine(final CPooledEngine aEngine) {
+		pNbEngines.decrementAndGet();
+		aEngine.pEngine.destroy();
+	}
+
+	/**
+	 * Gives back an engine taken by get(). Its ENGINE_SCOPE bindings are
+	 * restored. The engine is destroyed if the common modules changed since
+	 * its creation.
+	 *
+	 * @param eng
+	 */
+	public void free(CXJsEngine eng) {
+		final CPooledEngine wEngine = (eng != null) ? pBusy.remove(eng) : null;
+		if (wEngine == null) {
+			// not taken from this pool
+			return;
+		}
+		pBusyNs.addAndGet(System.nanoTime() - wEngine.pCheckOutNs);
+		try {
+			if (wEngine.pGeneration != pGeneration.get()) {
+				// the engine doesn't know the new common modules
+				destroyEngine(wEngine);
 			} else {
-				if (engines < capacity) {
-					engines++;
-					return factory.getScriptEngine();
-				}
-				while (!pool.isEmpty()) {
-					waiting();
+				wEngine.scrub();
+				pIdle.offerFirst(wEngine);
+			}
+		} catch (final RuntimeException e) {
+			// the engine is dropped: another one will be created
+			destroyEngine(wEngine);
+		} finally {
+			pPermits.release();
+		}
+	}
+
+	/**
+	 * @return an engine which must be given back with free()
+	 * @throws CXJsException
+	 *             if no engine is freed before the timeout of the pool
+	 */
+	public CXJsEngine get() throws CXJsException {
+		return get(pTimeoutMs);
+	}
+
+	/**
+	 * @param aTimeoutMs
+	 *            the max duration of the wait if all the engines are used
+	 * @return an engine which must be given back with free()
+	 * @throws CXJsException
+	 *             if no engine is freed before the timeout
+	 */
+	public CXJsEngine get(final long aTimeoutMs) throws CXJsException {
+		if (!pPermits.tryAcquire()) {
+			pNbWaits.incrementAndGet();
+			final long wStart = System.nanoTime();
+			boolean wAcquired;
+			try {
+				wAcquired = pPermits.tryAcquire(aTimeoutMs, TimeUnit.MILLISECONDS);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CXJsException(e, "Interrupted while waiting a script engine");
+			} finally {
+				final long wWaitNs = System.nanoTime() - wStart;
+				pWaitNs.addAndGet(wWaitNs);
+				long wMax;
+				while (wWaitNs > (wMax = pMaxWaitNs.get()) && !pMaxWaitNs.compareAndSet(wMax, wWaitNs)) {
+					// retry
 				}
-				return pool.removeFirst();
 			}
+			if (!wAcquired) {
+				pNbTimeOuts.incrementAndGet();
+				throw new CXJsException("No script engine freed in [%d] ms: the [%d] engines are used", aTimeoutMs,
+						pCapacity);
+			}
+		}
+		try {
+			return checkOut().pEngine;
+		} catch (final CXJsException | RuntimeException e) {
+			pPermits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the ratio of the duration of use of the engines since the
+	 *         creation of the pool
+	 */
+	public double getAverageUtilization() {
+		final long wElapsedNs = System.nanoTime() - pCreationNs;
+		long wBusyNs = pBusyNs.get();
+		final long wNow = System.nanoTime();
+		for (final CPooledEngine wEngine : pBusy.values()) {
+			wBusyNs += wNow - wEngine.pCheckOutNs;
 		}
+		return (wElapsedNs > 0) ? (double) wBusyNs / ((double) wElapsedNs * pCapacity) : 0;
+	}
+
+	/**
+	 * @return the max number of engines
+	 */
+	public int getCapacity() {
+		return pCapacity;
+	}
+
+	/**
+	 * @return the longest wait of an engine
+	 */
+	public long getMaxWaitNs() {
+		return pMaxWaitNs.get();
+	}
+
+	/**
+	 * @return the number of engines checked out
+	 */
+	public int getNbBusy() {
+		return pBusy.size();
+	}
+
+	/**
+	 * @return the number of engines returned by get()
+	 */
+	public long getNbCheckOuts() {
+		return pNbCheckOuts.get();
+	}
+
+	/**
+	 * @return the number of engines created by the pool
+	 */
+	public int getNbEngines() {
+		return pNbEngines.get();
+	}
+
+	/**
+	 * @return the number of engines waiting in the pool
+	 */
+	public int getNbIdle() {
+		return pIdle.size();
+	}
+
+	/**
+	 * @return the number of calls of get() which waited too long
+	 */
+	public long getNbTimeOuts() {
+		return pNbTimeOuts.get();
+	}
+
+	/**
+	 * @return the number of calls of get() which waited an engine
+	 */
+	public long getNbWaits() {
+		return pNbWaits.get();
+	}
+
+	/**
+	 * @return the max number of engines checked out at the same time
+	 */
+	public int getPeakBusy() {
+		return pPeakBusy.get();
+	}
+
+	/**
+	 * @return the ratio of the engines currently checked out
+	 */
+	public double getUtilization() {
+		return (double) pBusy.size() / pCapacity;
+	}
+
+	/**
+	 * @return the sum of the durations of the waits of an engine
+	 */
+	public long getWaitNs() {
+		return pWaitNs.get();
 	}
 
 	/**
 	 * @return
 	 */
 	public boolean isMultithreadingSupported() {
-		return this.isMultithreaded;
+		return pIsMultithreaded;
 	}
 
 	/**
-	 * 
+	 * @return a new engine in which the common modules are evaluated
+	 * @throws CXJsException
 	 */
-	public void waiting() {
+	private CPooledEngine newEngine() throws CXJsException {
+		// read before the modules: an engine tagged with a previous generation
+		// is destroyed when it is freed, even if it knows the new modules
+		final long wGeneration = pGeneration.get();
+		final List<Object> wCommonScripts = pCommonScripts;
+		final CPooledEngine wEngine = new CPooledEngine(
+				pFactory.newScriptEngine(pFactory.getScriptEngineFactory().getScriptEngine()), wGeneration);
+		final ScriptEngine wScriptEngine = wEngine.pEngine.getScriptEngine();
 		try {
-			wait();
-		} catch (InterruptedException ie) {
+			for (final Object wScript : wCommonScripts) {
+				if (wScript instanceof CompiledScript) {
+					((CompiledScript) wScript).eval(wScriptEngine.getContext());
+				} else {
+					wScriptEngine.eval((String) wScript);
+				}
+			}
+		} catch (final Exception e) {
+			throw new CXJsException(e, "Unable to evaluate the common modules in a new script engine");
 		}
+		wEngine.mark();
+		pNbEngines.incrementAndGet();
+		return wEngine;
+	}
+
+	/**
+	 * Compiles the common modules and creates the engines in which they are
+	 * evaluated. The engines created later evaluate the same modules. The idle
+	 * engines are destroyed, the engines checked out are destroyed when they
+	 * are freed.
+	 *
+	 * @param aNbEngines
+	 *            the number of engines to create, up to the capacity of the
+	 *            pool
+	 * @param aCommonModules
+	 *            the modules evaluated in each new engine
+	 * @return the number of engines of the pool
+	 * @throws CXJsException
+	 */
+	public int prewarm(final int aNbEngines, final CXJsSourceMain... aCommonModules) throws CXJsException {
+		final List<Object> wScripts = new ArrayList<Object>();
+		if (aCommonModules.length > 0) {
+			final ScriptEngine wCompiler = pFactory.getScriptEngineFactory().getScriptEngine();
+			for (final CXJsSourceMain wModule : aCommonModules) {
+				if (wCompiler instanceof Compilable) {
+					try {
+						wScripts.add(((Compilable) wCompiler).compile(wModule.getMergedCode()));
+					} catch (final Exception e) {
+						throw new CXJsException(wModule, "Unable to compile the common module", e, "prewarm");
+					}
+				} else {
+					wScripts.add(wModule.getMergedCode());
+				}
+			}
+		}
+		pCommonScripts = wScripts;
+		pGeneration.incrementAndGet();
+		// the idle engines don't know the new modules
+		CPooledEngine wIdle;
+		while ((wIdle = pIdle.pollFirst()) != null) {
+			destroyEngine(wIdle);
+		}
+		final int wNbEngines = Math.min(aNbEngines, pCapacity);
+		// a permit is held during the creation of each engine
+		while (pNbEngines.get() < wNbEngines && pPermits.tryAcquire()) {
+			try {
+				if (pNbEngines.get() < wNbEngines) {
+					pIdle.offerFirst(newEngine());
+				}
+			} finally {
+				pPermits.release();
+			}
+		}
+		return pNbEngines.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return String.format(
+				"CXJsScriptEnginePool: engines=[%d/%d] busy=[%d] peak=[%d] checkouts=[%d] waits=[%d] timeouts=[%d] wait=[%d ms] maxWait=[%d ms] utilization=[%.2f] average=[%.2f]",
+				getNbEngines(), pCapacity, getNbBusy(), getPeakBusy(), getNbCheckOuts(), getNbWaits(),
+				getNbTimeOuts(), getWaitNs() / 1000000, getMaxWaitNs() / 1000000, getUtilization(),
+				getAverageUtilization());
 	}
 }
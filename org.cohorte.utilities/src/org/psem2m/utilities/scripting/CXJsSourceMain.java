@@ -96,6 +96,11 @@ public class CXJsSourceMain extends CXJsSource {
 
 	private final String pScriptUri;
 
+	// set by the revalidator of the CXJsCompiledScriptCache
+	private volatile boolean pStale = false;
+
+	private volatile boolean pWatched = false;
+
 	/**
 	 * @param aRsrcProviderChain
 	 * @param aLanguage
@@ -165,10 +170,12 @@ public class CXJsSourceMain extends CXJsSource {
 	 */
 	public boolean checkTimeStamp() throws CXJsException {
 		try {
-			if (pResources == null) {
+			// the resources can be reloaded while the revalidator checks them
+			final CXRsrcText[] wResources = pResources;
+			if (wResources == null) {
 				return true;
 			}
-			for (final CXRsrcText xRsrc : pResources) {
+			for (final CXRsrcText xRsrc : wResources) {
 				if (!pRsrcProviderChain.checkTimeStamp(xRsrc)) {
 					return false;
 				}
@@ -506,6 +513,21 @@ public class CXJsSourceMain extends CXJsSource {
 		return pOrderedIncludes;
 	}
 
+	/**
+	 * @return true if the revalidator found a modified resource since the last
+	 *         load
+	 */
+	boolean isStale() {
+		return pStale;
+	}
+
+	/**
+	 * @return true if the revalidator checks the timestamps of the resources
+	 */
+	boolean isWatched() {
+		return pWatched;
+	}
+
 	/**
 	 * @param tracer
 	 * @throws CXJsExcepLoad
@@ -523,8 +545,23 @@ public class CXJsSourceMain extends CXJsSource {
 				super.initMainReload(false);
 				loadFromSource(getSources(), getSrcRootDir(), tracer);
 			}
+			pStale = false;
 		} else {
 			throw new CXJsExcepLoad(this, "Can't reload script[" + getSourceName() + "] - Script is not loaded");
 		}
 	}
+
+	/**
+	 * @param aStale
+	 */
+	void setStale(final boolean aStale) {
+		pStale = aStale;
+	}
+
+	/**
+	 *
+	 */
+	void setWatched() {
+		pWatched = true;
+	}
 }
@@ -0,0 +1,296 @@
+package test.cohorte.utilities.files;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.cohorte.utilities.junit.CAbstractJunitTest;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.psem2m.utilities.files.CXFileBase;
+import org.psem2m.utilities.files.CXFileDir;
+import org.psem2m.utilities.files.CXFileFilter;
+import org.psem2m.utilities.files.CXSortListFiles;
+import org.psem2m.utilities.files.IXDirScanListener;
+
+/**
+ * Tests the NIO scans, copies, moves and removals of the CXFileDir, sequential
+ * and parallel
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class CJunitTestFileDir extends CAbstractJunitTest {
+
+	private static final int NB_DIRS = 100;
+
+	private static final int NB_FILES = 50;
+
+	private static File sTmpDir;
+
+	/**
+	 *
+	 */
+	@AfterClass
+	public static void destroy() throws Exception {
+
+		if (sTmpDir != null) {
+			new CXFileDir(sTmpDir).remove();
+		}
+		// log the destroy banner containing the report
+		logBannerDestroy(CJunitTestFileDir.class);
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@BeforeClass
+	public static void initialize() throws Exception {
+
+		// initialise the map of the test method of the current junit test class
+		initializeTestsRegistry(CJunitTestFileDir.class);
+
+		// log the initialization banner
+		logBannerInitialization(CJunitTestFileDir.class);
+
+		sTmpDir = Files.createTempDirectory("filedir").toFile();
+	}
+
+	/**
+	 *
+	 */
+	public CJunitTestFileDir() {
+		super();
+	}
+
+	/**
+	 * @param aDir
+	 * @param aFilter
+	 * @param aList
+	 * @return the files and directories listed as the former recursive scans
+	 *         with File.listFiles()
+	 */
+	private List<String> listFiles(final File aDir, final FileFilter aFilter, final List<String> aList) {
+		for (File wFile : aDir.listFiles(aFilter)) {
+			if (wFile.isFile() || wFile.isDirectory()) {
+				aList.add(wFile.getAbsolutePath());
+			}
+			if (wFile.isDirectory()) {
+				listFiles(wFile, aFilter, aList);
+			}
+		}
+		return aList;
+	}
+
+	/**
+	 * @param aList
+	 * @return the sorted paths of the files
+	 */
+	private List<String> toPaths(final CXSortListFiles aList) {
+		List<String> wPaths = new ArrayList<>();
+		for (File wFile : aList) {
+			wPaths.add(wFile.getAbsolutePath());
+		}
+		Collections.sort(wPaths);
+		return wPaths;
+	}
+
+	/**
+	 * @param aRoot
+	 * @param aNbDirs
+	 * @param aNbFiles
+	 * @return a tree of directories containing .txt and .log files
+	 * @throws Exception
+	 */
+	private CXFileDir writeTree(final String aRoot, final int aNbDirs, final int aNbFiles) throws Exception {
+		CXFileDir wRoot = new CXFileDir(sTmpDir, aRoot);
+		for (int wD = 0; wD < aNbDirs; wD++) {
+			File wDir = new File(wRoot, "dir" + (wD % 10) + File.separator + "sub" + wD);
+			Assert.assertTrue(wDir.mkdirs());
+			for (int wF = 0; wF < aNbFiles; wF++) {
+				Files.write(new File(wDir, "file" + wF + (wF % 2 == 0 ? ".txt" : ".log")).toPath(),
+						("content " + wD + "/" + wF).getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		Assert.assertTrue(new File(wRoot, "empty").mkdir());
+		return wRoot;
+	}
+
+	/**
+	 * the scans list the same entries as the recursive scans with
+	 * File.listFiles()
+	 */
+	@Test
+	public void test10Scans() throws Exception {
+		String wMethodName = "test10Scans";
+
+		logBegin(this, wMethodName, "Scan a tree sequentially and in parallel");
+		try {
+
+			CXFileDir wRoot = writeTree("scan", 20, 10);
+			FileFilter wFilter = CXFileFilter.getFilterExtension("txt");
+
+			List<String> wExpected = listFiles(wRoot, null, new ArrayList<String>());
+			List<String> wExpectedTxt = listFiles(wRoot, wFilter, new ArrayList<String>());
+			Collections.sort(wExpected);
+			Collections.sort(wExpectedTxt);
+			// the directories and the .txt files
+			Assert.assertEquals(10 + 20 + 1 + 20 * 5, wExpectedTxt.size());
+
+			for (boolean wParallel : new boolean[] { false, true }) {
+				wRoot.setParallel(wParallel);
+				Assert.assertEquals(wExpected, toPaths(wRoot.scanAll((FileFilter) null, true)));
+				Assert.assertEquals(wExpectedTxt, toPaths(wRoot.scanAll(wFilter, true)));
+				Assert.assertEquals(10 + 20 + 1, wRoot.scanAllDirs(true).size());
+				Assert.assertEquals(11, wRoot.scanAllDirs(false).size());
+				Assert.assertEquals(20 * 5, wRoot.scanAllFiles(wFilter, true).size());
+				Assert.assertEquals(0, wRoot.scanAllFiles(false).size());
+			}
+			Assert.assertEquals(11, wRoot.getMyFiles(null, true).size());
+
+			// the listener is notified of all the levels of scanAllFiles
+			final List<Integer> wLevels = new ArrayList<>();
+			final boolean[] wEnded = new boolean[1];
+			wRoot.setScanListner(new IXDirScanListener() {
+				@Override
+				public void listenEndScan() {
+					wEnded[0] = true;
+				}
+
+				@Override
+				public void listenOneFile(final int aScanLevel, final int aIdx, final CXFileBase aFile) {
+					wLevels.add(aScanLevel);
+				}
+			});
+			wRoot.scanAllFiles(wFilter, true);
+			Assert.assertEquals(wExpectedTxt.size(), wLevels.size());
+			Assert.assertTrue(wLevels.contains(2));
+			Assert.assertTrue(wEnded[0]);
+
+			logEndOK(this, wMethodName, "The scans are the same");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * copies, moves and removes a tree with a filter
+	 */
+	@Test
+	public void test20CopyMoveRemove() throws Exception {
+		String wMethodName = "test20CopyMoveRemove";
+
+		logBegin(this, wMethodName, "Copy, move and remove a tree");
+		try {
+
+			CXFileDir wRoot = writeTree("copy", 10, 4);
+			wRoot.setParallel(true);
+			FileFilter wFilter = CXFileFilter.getFilterExtension("txt");
+
+			// the .txt files without the empty directories
+			CXFileDir wCopy = new CXFileDir(sTmpDir, "copy.txt");
+			Assert.assertEquals(10 * 2, wRoot.copyTo(wCopy, wFilter, true, false));
+			Assert.assertEquals(10 * 2, wCopy.scanAllFiles().size());
+			Assert.assertFalse(new File(wCopy, "empty").exists());
+			Assert.assertEquals("content 3/2",
+					new String(Files.readAllBytes(new File(wCopy, "dir3/sub3/file2.txt").toPath()),
+							StandardCharsets.UTF_8));
+
+			// all the files
+			CXFileDir wFull = new CXFileDir(sTmpDir, "copy.full");
+			Assert.assertEquals(10 * 4, wRoot.copyTo(wFull));
+			Assert.assertTrue(new File(wFull, "empty").isDirectory());
+			Assert.assertEquals(wRoot.scanAll().size(), wFull.scanAll().size());
+
+			// the .log files are moved, the .txt files stay
+			CXFileDir wMoved = new CXFileDir(sTmpDir, "moved");
+			Assert.assertEquals(10 * 2, wFull.moveTo(wMoved, CXFileFilter.getFilterExtension("log"), true, false));
+			Assert.assertEquals(10 * 2, wMoved.scanAllFiles().size());
+			Assert.assertEquals(10 * 2, wFull.scanAllFiles().size());
+
+			// the empty directories of the moved tree are deleted
+			Assert.assertFalse(new File(wFull, "empty").exists());
+			// 20 files, 10 sub, 10 dir and the root
+			Assert.assertEquals(20 + 10 + 10 + 1, wFull.remove());
+			Assert.assertFalse(wFull.exists());
+			Assert.assertEquals(20 + 10 + 10, wCopy.clean());
+			Assert.assertEquals(0, wCopy.list().length);
+
+			logEndOK(this, wMethodName, "The trees are copied, moved and removed");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * measures the scans and the copies of a tree, sequential and parallel
+	 */
+	@Test
+	public void test30Benchmark() throws Exception {
+		String wMethodName = "test30Benchmark";
+
+		logBegin(this, wMethodName, "Scan and copy [%d] files", NB_DIRS * NB_FILES);
+		try {
+
+			CXFileDir wRoot = writeTree("bench", NB_DIRS, NB_FILES);
+			FileFilter wFilter = CXFileFilter.getFilterExtension("txt;log");
+
+			for (int wLoop = 0; wLoop < 3; wLoop++) {
+				long wStart = System.nanoTime();
+				int wNbListed = listFiles(wRoot, wFilter, new ArrayList<String>()).size();
+				long wListFilesNs = System.nanoTime() - wStart;
+
+				wRoot.setParallel(false);
+				wStart = System.nanoTime();
+				int wNbScanned = wRoot.scanAll(wFilter, true).size();
+				long wSequentialNs = System.nanoTime() - wStart;
+
+				wRoot.setParallel(true);
+				wStart = System.nanoTime();
+				Assert.assertEquals(wNbScanned, wRoot.scanAll(wFilter, true).size());
+				long wParallelNs = System.nanoTime() - wStart;
+				Assert.assertEquals(wNbListed, wNbScanned);
+
+				CXFileDir wDest = new CXFileDir(sTmpDir, "bench.copy");
+				wRoot.setParallel(false);
+				wStart = System.nanoTime();
+				wRoot.copyTo(wDest, true);
+				long wCopyNs = System.nanoTime() - wStart;
+				wRoot.setParallel(true);
+				wStart = System.nanoTime();
+				wRoot.copyTo(wDest, true);
+				long wParallelCopyNs = System.nanoTime() - wStart;
+
+				getLogger().logInfo(this, wMethodName,
+						"entries=[%d] listFiles=[%d us] scan=[%d us] parallel scan=[%d us] copy=[%d us] parallel copy=[%d us]",
+						wNbScanned, wListFilesNs / 1000, wSequentialNs / 1000, wParallelNs / 1000, wCopyNs / 1000,
+						wParallelCopyNs / 1000);
+			}
+
+			logEndOK(this, wMethodName, "done");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+}
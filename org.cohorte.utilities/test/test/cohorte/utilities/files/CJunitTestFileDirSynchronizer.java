@@ -0,0 +1,248 @@
+package test.cohorte.utilities.files;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+
+import org.cohorte.utilities.junit.CAbstractJunitTest;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.psem2m.utilities.files.CXFileDir;
+import org.psem2m.utilities.files.CXFileDirSyncReport;
+import org.psem2m.utilities.files.CXFileDirSynchronizer;
+
+/**
+ * Tests the incremental synchronization of the CXFileDirSynchronizer with a
+ * manifest
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class CJunitTestFileDirSynchronizer extends CAbstractJunitTest {
+
+	private static final int NB_DIRS = 100;
+
+	private static final int NB_FILES = 50;
+
+	private static File sTmpDir;
+
+	/**
+	 *
+	 */
+	@AfterClass
+	public static void destroy() throws Exception {
+
+		if (sTmpDir != null) {
+			new CXFileDir(sTmpDir).remove();
+		}
+		// log the destroy banner containing the report
+		logBannerDestroy(CJunitTestFileDirSynchronizer.class);
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@BeforeClass
+	public static void initialize() throws Exception {
+
+		// initialise the map of the test method of the current junit test class
+		initializeTestsRegistry(CJunitTestFileDirSynchronizer.class);
+
+		// log the initialization banner
+		logBannerInitialization(CJunitTestFileDirSynchronizer.class);
+
+		sTmpDir = Files.createTempDirectory("filesync").toFile();
+	}
+
+	/**
+	 *
+	 */
+	public CJunitTestFileDirSynchronizer() {
+		super();
+	}
+
+	/**
+	 * @param aFile
+	 * @return the content of the file
+	 * @throws Exception
+	 */
+	private String read(final File aFile) throws Exception {
+		return new String(Files.readAllBytes(aFile.toPath()), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param aRoot
+	 * @param aNbDirs
+	 * @param aNbFiles
+	 * @return a tree of directories containing text files
+	 * @throws Exception
+	 */
+	private CXFileDir writeTree(final String aRoot, final int aNbDirs, final int aNbFiles) throws Exception {
+		CXFileDir wRoot = new CXFileDir(sTmpDir, aRoot);
+		for (int wD = 0; wD < aNbDirs; wD++) {
+			File wDir = new File(wRoot, "dir" + (wD % 10) + File.separator + "sub" + wD);
+			Assert.assertTrue(wDir.mkdirs());
+			for (int wF = 0; wF < aNbFiles; wF++) {
+				Files.write(new File(wDir, "file" + wF + ".txt").toPath(),
+						("content " + wD + "/" + wF).getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		return wRoot;
+	}
+
+	/**
+	 * the second run touches only the files whose metadata changed
+	 */
+	@Test
+	public void test10Incremental() throws Exception {
+		String wMethodName = "test10Incremental";
+
+		logBegin(this, wMethodName, "Synchronize a tree three times");
+		try {
+
+			CXFileDir wFrom = writeTree("from", 10, 4);
+			CXFileDir wTarget = new CXFileDir(sTmpDir, "target");
+			File wManifest = new File(sTmpDir, "target.manifest");
+			CXFileDirSynchronizer wSynchronizer = new CXFileDirSynchronizer(wTarget, wFrom, true, wManifest);
+
+			// everything is copied
+			CXFileDirSyncReport wReport = wSynchronizer.sync();
+			getLogger().logInfo(this, wMethodName, "%s", wReport);
+			Assert.assertFalse(wReport.isWithManifest());
+			Assert.assertEquals(40, wReport.getNbFilesScanned());
+			Assert.assertEquals(40, wReport.getNbFilesCopied());
+			Assert.assertEquals(20, wReport.getNbDirsCreated());
+			Assert.assertTrue(wManifest.isFile());
+			Assert.assertEquals("content 3/2", read(new File(wTarget, "dir3/sub3/file2.txt")));
+
+			// nothing is touched
+			wReport = wSynchronizer.sync();
+			getLogger().logInfo(this, wMethodName, "%s", wReport);
+			Assert.assertTrue(wReport.isWithManifest());
+			Assert.assertEquals(40, wReport.getNbFilesUnchanged());
+			Assert.assertEquals(0, wReport.getNbFilesChecked());
+			Assert.assertEquals(0, wReport.getNbFilesCopied());
+			Assert.assertEquals(0, wReport.getNbBytesCopied());
+
+			// a modified file is copied, a touched file is only hashed
+			File wModified = new File(wFrom, "dir1/sub1/file0.txt");
+			Files.write(wModified.toPath(), "modified content".getBytes(StandardCharsets.UTF_8));
+			File wTouched = new File(wFrom, "dir2/sub2/file1.txt");
+			Files.setLastModifiedTime(wTouched.toPath(),
+					FileTime.fromMillis(wTouched.lastModified() + 10000));
+			wReport = wSynchronizer.sync();
+			getLogger().logInfo(this, wMethodName, "%s", wReport);
+			Assert.assertEquals(2, wReport.getNbFilesChecked());
+			Assert.assertEquals(1, wReport.getNbFilesCopied());
+			Assert.assertEquals(wModified.length(), wReport.getNbBytesCopied());
+			Assert.assertEquals("modified content", read(new File(wTarget, "dir1/sub1/file0.txt")));
+			Assert.assertEquals(2, wReport.getNbFilesHashed());
+			Assert.assertEquals(wTouched.lastModified(), new File(wTarget, "dir2/sub2/file1.txt").lastModified());
+
+			// the hash of the target is read in the manifest
+			Files.setLastModifiedTime(wTouched.toPath(),
+					FileTime.fromMillis(wTouched.lastModified() + 10000));
+			wReport = wSynchronizer.sync();
+			Assert.assertEquals(1, wReport.getNbFilesChecked());
+			Assert.assertEquals(1, wReport.getNbFilesHashed());
+			Assert.assertEquals(0, wReport.getNbFilesCopied());
+
+			logEndOK(this, wMethodName, "Only the modified file is copied");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * the files removed from the source are deleted from the target, with and
+	 * without manifest
+	 */
+	@Test
+	public void test20DeleteMissing() throws Exception {
+		String wMethodName = "test20DeleteMissing";
+
+		logBegin(this, wMethodName, "Delete the files removed from the source");
+		try {
+
+			for (File wManifest : new File[] { new File(sTmpDir, "delete.manifest"), null }) {
+				CXFileDir wFrom = writeTree("delete" + (wManifest != null), 2, 3);
+				CXFileDir wTarget = new CXFileDir(sTmpDir, "delete.target" + (wManifest != null));
+				CXFileDirSynchronizer wSynchronizer = new CXFileDirSynchronizer(wTarget, wFrom, true, wManifest);
+				wSynchronizer.setDeleteMissing(true);
+				Assert.assertEquals(6, wSynchronizer.sync().getNbFilesCopied());
+
+				// without manifest, all the files are compared
+				CXFileDirSyncReport wReport = wSynchronizer.sync();
+				Assert.assertEquals(wManifest != null ? 0 : 6, wReport.getNbFilesChecked());
+				Assert.assertEquals(0, wReport.getNbFilesCopied());
+				Assert.assertEquals(0, wReport.getNbFilesDeleted());
+
+				new CXFileDir(wFrom, "dir1").remove();
+				wReport = wSynchronizer.sync();
+				getLogger().logInfo(this, wMethodName, "%s", wReport);
+				Assert.assertEquals(3, wReport.getNbFilesDeleted());
+				Assert.assertEquals(2, wReport.getNbDirsDeleted());
+				Assert.assertFalse(new File(wTarget, "dir1").exists());
+				Assert.assertTrue(new File(wTarget, "dir0/sub0/file2.txt").isFile());
+			}
+
+			logEndOK(this, wMethodName, "The missing files are deleted");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * measures a full copy, an incremental run and a run without manifest
+	 */
+	@Test
+	public void test30Benchmark() throws Exception {
+		String wMethodName = "test30Benchmark";
+
+		logBegin(this, wMethodName, "Synchronize [%d] files", NB_DIRS * NB_FILES);
+		try {
+
+			CXFileDir wFrom = writeTree("bench", NB_DIRS, NB_FILES);
+			for (int wNbWorkers : new int[] { 1, CXFileDirSynchronizer.DEFAULT_NB_WORKERS }) {
+				CXFileDir wTarget = new CXFileDir(sTmpDir, "bench.target" + wNbWorkers);
+				File wManifest = new File(sTmpDir, "bench.manifest" + wNbWorkers);
+				CXFileDirSynchronizer wSynchronizer = new CXFileDirSynchronizer(wTarget, wFrom, true, wManifest);
+				wSynchronizer.setNbWorkers(wNbWorkers);
+
+				CXFileDirSyncReport wFull = wSynchronizer.sync();
+				CXFileDirSyncReport wIncremental = wSynchronizer.sync();
+				Assert.assertEquals(NB_DIRS * NB_FILES, wIncremental.getNbFilesUnchanged());
+				wSynchronizer.setManifestFile(null);
+				CXFileDirSyncReport wWithout = wSynchronizer.sync();
+				Assert.assertEquals(0, wWithout.getNbFilesCopied());
+
+				getLogger().logInfo(this, wMethodName,
+						"workers=[%d] files=[%d] bytes=[%d] full=[%d ms] incremental=[%d ms] without manifest=[%d ms]",
+						wNbWorkers, wFull.getNbFilesCopied(), wFull.getNbBytesCopied(), wFull.getDurationMs(),
+						wIncremental.getDurationMs(), wWithout.getDurationMs());
+			}
+
+			logEndOK(this, wMethodName, "done");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,209 @@
+package test.cohorte.utilities.json;
+
+import org.cohorte.utilities.junit.CAbstractJunitTest;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.psem2m.utilities.json.JSONArray;
+import org.psem2m.utilities.json.JSONException;
+import org.psem2m.utilities.json.JSONObject;
+import org.psem2m.utilities.json.JSONPath;
+import org.psem2m.utilities.json.JSONPathSet;
+
+/**
+ * Tests the compiled paths and the sets of paths
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class CJunitTestJSONPath extends CAbstractJunitTest {
+
+	private static final String DOCUMENT = "{\"a\":\"valueA\",\"b\":25,\"c\":true,\"n\":null,"
+			+ "\"obj\":{\"aa\":\"valueAA\",\"bb\":25,\"cc\":\"false\",\"array2\":[\"string2\",24,true,91.12,{\"aaaa\":\"valueAAAA\"}]},"
+			+ "\"array\":[\"string1\",12,true,45.56,{\"aaa\":\"valueAAA\"},[[1,2],[3,4]]]}";
+
+	private static final int NB_LOOPS = 200000;
+
+	private static final String[] PATHS = { "a", "b", "obj.aa", "obj.bb", "obj.array2[1]", "obj.array2[4].aaaa",
+			"array[0]", "array[4].aaa", "array[5][1][0]", "missing.deep", "obj.array2.x" };
+
+	/**
+	 *
+	 */
+	@AfterClass
+	public static void destroy() {
+
+		// log the destroy banner containing the report
+		logBannerDestroy(CJunitTestJSONPath.class);
+	}
+
+	/**
+	 *
+	 */
+	@BeforeClass
+	public static void initialize() {
+
+		// initialise the map of the test method of the current junit test class
+		initializeTestsRegistry(CJunitTestJSONPath.class);
+
+		// log the initialization banner
+		logBannerInitialization(CJunitTestJSONPath.class);
+	}
+
+	/**
+	 *
+	 */
+	public CJunitTestJSONPath() {
+		super();
+	}
+
+	/**
+	 * the compiled paths find the values found by getObject()
+	 */
+	@Test
+	public void test10CompiledPath() throws Exception {
+		String wMethodName = "test10CompiledPath";
+
+		logBegin(this, wMethodName, "Check the values found by the compiled paths");
+		try {
+
+			JSONObject wDocument = new JSONObject(DOCUMENT);
+
+			Assert.assertSame(JSONPath.compile("obj.array2[4].aaaa"), JSONPath.compile("obj.array2[4].aaaa"));
+
+			Assert.assertEquals("valueAAAA", wDocument.getObject("obj.array2[4].aaaa", String.class));
+			Assert.assertEquals(Integer.valueOf(24), wDocument.getObject("obj.array2[1]", Integer.class));
+			Assert.assertEquals(Integer.valueOf(4), wDocument.getObject("array[5][1][1]", Integer.class));
+			Assert.assertEquals(Integer.valueOf(2),
+					wDocument.getJSONArray("array").getObject("[5].[0].[1]", Integer.class));
+
+			// the exact class is still expected
+			try {
+				wDocument.getObject("b", Long.class);
+				Assert.fail("An Integer isn't a Long");
+			} catch (JSONException e) {
+				getLogger().logInfo(this, wMethodName, "EXPECTED ERROR: %s", e.getMessage());
+			}
+			try {
+				wDocument.getObject("missing.deep", String.class);
+				Assert.fail("The path doesn't lead to a value");
+			} catch (JSONException e) {
+				getLogger().logInfo(this, wMethodName, "EXPECTED ERROR: %s", e.getMessage());
+			}
+
+			// the typed getters don't throw
+			Assert.assertEquals("valueAA", JSONPath.compile("obj.aa").optString(wDocument, null));
+			Assert.assertEquals(25, JSONPath.compile("obj.bb").optInt(wDocument, -1));
+			Assert.assertEquals(25L, JSONPath.compile("obj.bb").optLong(wDocument, -1));
+			Assert.assertEquals(91.12, JSONPath.compile("obj.array2[3]").optDouble(wDocument, 0), 0);
+			Assert.assertFalse(JSONPath.compile("obj.cc").optBoolean(wDocument, true));
+			Assert.assertTrue(JSONPath.compile("c").optBoolean(wDocument, false));
+			Assert.assertEquals(-1, JSONPath.compile("obj.aa").optInt(wDocument, -1));
+			Assert.assertEquals("none", JSONPath.compile("n").optString(wDocument, "none"));
+			Assert.assertEquals("none", JSONPath.compile("a.b.c").optString(wDocument, "none"));
+			Assert.assertNull(JSONPath.compile("obj.array2.x").opt(wDocument));
+			Assert.assertNull(JSONPath.compile("array[99]").opt(wDocument));
+			Assert.assertNotNull(JSONPath.compile("array[5]").optJSONArray(wDocument));
+			Assert.assertNotNull(JSONPath.compile("array[4]").optJSONObject(wDocument));
+			Assert.assertFalse(JSONPath.compile("n").has(wDocument));
+			Assert.assertTrue(JSONPath.compile("a").has(wDocument));
+
+			logEndOK(this, wMethodName, "The values are the expected ones");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * a set of paths finds the values found by each path and is faster than
+	 * the evaluation of each path
+	 */
+	@Test
+	public void test20PathSet() throws Exception {
+		String wMethodName = "test20PathSet";
+
+		logBegin(this, wMethodName, "Evaluate a set of paths in one traversal");
+		try {
+
+			JSONObject wDocument = new JSONObject(DOCUMENT);
+			JSONPathSet wSet = new JSONPathSet(PATHS);
+
+			Object[] wValues = wSet.evaluate(wDocument);
+			for (int i = 0; i < PATHS.length; i++) {
+				Assert.assertEquals(PATHS[i], JSONPath.compile(PATHS[i]).opt(wDocument), wValues[i]);
+			}
+			Assert.assertNull(wValues[PATHS.length - 1]);
+
+			JSONArray wRoot = new JSONArray().put(wDocument);
+			Assert.assertEquals("valueAAA", new JSONPathSet("[0].array[4].aaa").evaluate(wRoot)[0]);
+
+			// benchmark
+			Object[] wReused = new Object[PATHS.length];
+			int wFound = 0;
+			for (int wLoop = 0; wLoop < 3; wLoop++) {
+				long wStart = System.nanoTime();
+				for (int i = 0; i < NB_LOOPS; i++) {
+					for (String wPath : PATHS) {
+						wFound += (naiveGet(wDocument, wPath) != null) ? 1 : 0;
+					}
+				}
+				long wNaiveNs = System.nanoTime() - wStart;
+
+				wStart = System.nanoTime();
+				for (int i = 0; i < NB_LOOPS; i++) {
+					for (String wPath : PATHS) {
+						wFound += (JSONPath.compile(wPath).opt(wDocument) != null) ? 1 : 0;
+					}
+				}
+				long wCompiledNs = System.nanoTime() - wStart;
+
+				wStart = System.nanoTime();
+				for (int i = 0; i < NB_LOOPS; i++) {
+					wSet.evaluate(wDocument, wReused);
+				}
+				long wSetNs = System.nanoTime() - wStart;
+
+				getLogger().logInfo(this, wMethodName,
+						"Paths=[%d] split at each call=[%d ns/doc] compiled=[%d ns/doc] set=[%d ns/doc]", PATHS.length,
+						wNaiveNs / NB_LOOPS, wCompiledNs / NB_LOOPS, wSetNs / NB_LOOPS);
+			}
+			Assert.assertTrue(wFound > 0);
+
+			logEndOK(this, wMethodName, "The values are the expected ones");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * @param aDocument
+	 * @param aPath
+	 * @return the value found splitting the path at each call, as getObject()
+	 *         did
+	 */
+	private Object naiveGet(final JSONObject aDocument, final String aPath) {
+		String wPath = aPath.startsWith("[") ? aPath.substring(1) : aPath;
+		Object wValue = aDocument;
+		for (String wPart : wPath.replace('[', '.').replaceAll("\\.\\.", ".").split("\\.")) {
+			if (wValue instanceof JSONObject) {
+				wValue = ((JSONObject) wValue).opt(wPart);
+			} else if (wValue instanceof JSONArray && wPart.endsWith("]")) {
+				wValue = ((JSONArray) wValue).opt(Integer.parseInt(wPart.substring(0, wPart.length() - 1)));
+			} else {
+				return null;
+			}
+		}
+		return wValue;
+	}
+}
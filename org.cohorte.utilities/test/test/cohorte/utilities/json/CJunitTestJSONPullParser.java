@@ -0,0 +1,245 @@
+package test.cohorte.utilities.json;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cohorte.utilities.junit.CAbstractJunitTest;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.psem2m.utilities.json.EJSONEvent;
+import org.psem2m.utilities.json.JSONArray;
+import org.psem2m.utilities.json.JSONException;
+import org.psem2m.utilities.json.JSONObject;
+import org.psem2m.utilities.json.JSONPullParser;
+import org.psem2m.utilities.json.JSONTokener;
+
+/**
+ * Tests the JSONTokener reading a stream and the JSONPullParser
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class CJunitTestJSONPullParser extends CAbstractJunitTest {
+
+	private static final String JSON_LENIENT = "{ /* comment */ 'a' : 'valueA', b=25; c=>true, # comment\n"
+			+ "\"obj\":{\"aa\":\"val\\u00e9\\\"AA\\\"\",\"array2\":[\"string2\",,24,true,91.12,{\"aaaa\":null},],},"
+			+ "\"empty\":[],\"hex\":0x1F,}";
+
+	private static final int NB_RECORDS = 50000;
+
+	/**
+	 *
+	 */
+	@AfterClass
+	public static void destroy() {
+
+		// log the destroy banner containing the report
+		logBannerDestroy(CJunitTestJSONPullParser.class);
+	}
+
+	/**
+	 *
+	 */
+	@BeforeClass
+	public static void initialize() {
+
+		// initialise the map of the test method of the current junit test class
+		initializeTestsRegistry(CJunitTestJSONPullParser.class);
+
+		// log the initialization banner
+		logBannerInitialization(CJunitTestJSONPullParser.class);
+	}
+
+	/**
+	 * @return a big array of records
+	 */
+	private static String newRecords() {
+		StringBuilder wSB = new StringBuilder();
+		wSB.append('[');
+		for (int wIdx = 0; wIdx < NB_RECORDS; wIdx++) {
+			if (wIdx > 0) {
+				wSB.append(',');
+			}
+			wSB.append(String.format(
+					"{\"id\":%d,\"name\":\"record %d\",\"tags\":[\"t%d\",\"\\t\"],\"amount\":%d.5,\"owner\":{\"login\":\"user%d\"}}",
+					wIdx, wIdx, wIdx % 7, wIdx, wIdx % 100));
+		}
+		wSB.append(']');
+		return wSB.toString();
+	}
+
+	/**
+	 *
+	 */
+	public CJunitTestJSONPullParser() {
+		super();
+	}
+
+	/**
+	 * the tokener reading a reader through a tiny buffer builds the same tree
+	 * as the tokener of a string
+	 */
+	@Test
+	public void test10TokenerReader() throws Exception {
+		String wMethodName = "test10TokenerReader";
+
+		logBegin(this, wMethodName, "Parse a lenient JSON text from a string and from a reader");
+		try {
+
+			JSONObject wFromString = new JSONObject(new JSONTokener(JSON_LENIENT));
+			JSONObject wFromReader = new JSONObject(new JSONTokener(new StringReader(JSON_LENIENT), 16));
+			JSONObject wFromStream = new JSONObject(
+					new JSONTokener(new ByteArrayInputStream(JSON_LENIENT.getBytes(StandardCharsets.UTF_8))));
+
+			getLogger().logInfo(this, wMethodName, "FromString: %s", wFromString.toString());
+
+			Assert.assertEquals("val\u00e9\"AA\"", wFromString.getJSONObject("obj").getString("aa"));
+			Assert.assertEquals(Integer.valueOf(31), wFromString.get("hex"));
+			Assert.assertEquals(wFromString.toString(), wFromReader.toString());
+			Assert.assertEquals(wFromString.toString(), wFromStream.toString());
+
+			String wRecords = newRecords();
+			JSONArray wArrayFromReader = new JSONArray(new JSONTokener(new StringReader(wRecords), 64));
+			Assert.assertEquals(new JSONArray(wRecords).toString(), wArrayFromReader.toString());
+
+			logEndOK(this, wMethodName, "The trees are the same");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * the sequence of the events of a lenient JSON text
+	 */
+	@Test
+	public void test20PullEvents() throws Exception {
+		String wMethodName = "test20PullEvents";
+
+		logBegin(this, wMethodName, "Check the events of the pull parser");
+		try {
+
+			JSONPullParser wParser = new JSONPullParser(new JSONTokener(new StringReader(JSON_LENIENT), 16));
+			List<String> wEvents = new ArrayList<>();
+			while (wParser.hasNext()) {
+				EJSONEvent wEvent = wParser.next();
+				switch (wEvent) {
+				case KEY:
+					wEvents.add("K:" + wParser.getKey());
+					break;
+				case VALUE:
+					wEvents.add("V:" + wParser.getValue());
+					break;
+				default:
+					wEvents.add(wEvent.name());
+				}
+			}
+			Assert.assertEquals(EJSONEvent.END_DOCUMENT, wParser.next());
+
+			String wExpected = "[START_OBJECT, K:a, V:valueA, K:b, V:25, K:c, V:true, K:obj, START_OBJECT, K:aa, V:val\u00e9\"AA\", "
+					+ "K:array2, START_ARRAY, V:string2, V:null, V:24, V:true, V:91.12, START_OBJECT, K:aaaa, V:null, END_OBJECT, "
+					+ "END_ARRAY, END_OBJECT, K:empty, START_ARRAY, END_ARRAY, K:hex, V:31, END_OBJECT]";
+			getLogger().logInfo(this, wMethodName, "Events: %s", wEvents);
+			Assert.assertEquals(wExpected, wEvents.toString());
+
+			// a root value which is not a container
+			wParser = new JSONPullParser(" \"alone\" ");
+			Assert.assertEquals(EJSONEvent.VALUE, wParser.next());
+			Assert.assertEquals("alone", wParser.getValue());
+			Assert.assertFalse(wParser.hasNext());
+
+			try {
+				wParser = new JSONPullParser("{\"a\":1 \"b\":2}");
+				while (wParser.hasNext()) {
+					wParser.next();
+				}
+				Assert.fail("A missing separator must be rejected");
+			} catch (JSONException e) {
+				getLogger().logInfo(this, wMethodName, "EXPECTED ERROR: %s", e.getMessage());
+			}
+
+			logEndOK(this, wMethodName, "The events are the expected ones");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * processes a big array element by element and compares the throughput
+	 * with the parsing of the whole tree
+	 */
+	@Test
+	public void test30PullArrayElements() throws Exception {
+		String wMethodName = "test30PullArrayElements";
+
+		logBegin(this, wMethodName, "Process a big array element by element");
+		try {
+
+			String wRecords = newRecords();
+			byte[] wBytes = wRecords.getBytes(StandardCharsets.UTF_8);
+
+			for (int wLoop = 0; wLoop < 3; wLoop++) {
+				long wStart = System.nanoTime();
+				JSONArray wTree = new JSONArray(new String(wBytes, StandardCharsets.UTF_8));
+				long wSum = 0;
+				for (int wIdx = 0; wIdx < wTree.length(); wIdx++) {
+					wSum += wTree.getJSONObject(wIdx).getInt("id");
+				}
+				long wTreeNs = System.nanoTime() - wStart;
+
+				wStart = System.nanoTime();
+				JSONPullParser wParser = new JSONPullParser(new ByteArrayInputStream(wBytes));
+				Assert.assertEquals(EJSONEvent.START_ARRAY, wParser.next());
+				long wPullSum = 0;
+				int wNbRecords = 0;
+				while (wParser.next() == EJSONEvent.START_OBJECT) {
+					// one record in memory at a time
+					JSONObject wRecord = (JSONObject) wParser.readValue();
+					wPullSum += wRecord.getInt("id");
+					wNbRecords++;
+				}
+				long wPullNs = System.nanoTime() - wStart;
+
+				Assert.assertEquals(EJSONEvent.END_ARRAY, wParser.getEvent());
+				Assert.assertEquals(NB_RECORDS, wNbRecords);
+				Assert.assertEquals(wSum, wPullSum);
+
+				// skip the records without building them
+				wParser = new JSONPullParser(new ByteArrayInputStream(wBytes));
+				wParser.next();
+				int wNbSkipped = 0;
+				while (wParser.next() == EJSONEvent.START_OBJECT) {
+					wParser.skipValue();
+					wNbSkipped++;
+				}
+				Assert.assertEquals(NB_RECORDS, wNbSkipped);
+
+				getLogger().logInfo(this, wMethodName, "Size=[%d] tree=[%d ms] pull=[%d ms]", wBytes.length,
+						wTreeNs / 1000000, wPullNs / 1000000);
+			}
+
+			logEndOK(this, wMethodName, "All the records are processed");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+}
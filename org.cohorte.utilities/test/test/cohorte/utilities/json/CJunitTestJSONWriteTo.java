@@ -0,0 +1,246 @@
+package test.cohorte.utilities.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.cohorte.utilities.junit.CAbstractJunitTest;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.psem2m.utilities.json.JSONArray;
+import org.psem2m.utilities.json.JSONObject;
+import org.psem2m.utilities.json.JSONString;
+import org.psem2m.utilities.json.JSONStringer;
+import org.psem2m.utilities.json.JSONWriter;
+
+/**
+ * Tests the streaming serialization of the JSONObject and JSONArray and
+ * compares it with toString()
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class CJunitTestJSONWriteTo extends CAbstractJunitTest {
+
+	private static final int NB_RECORDS = 20000;
+
+	/**
+	 *
+	 */
+	@AfterClass
+	public static void destroy() {
+
+		// log the destroy banner containing the report
+		logBannerDestroy(CJunitTestJSONWriteTo.class);
+	}
+
+	/**
+	 *
+	 */
+	@BeforeClass
+	public static void initialize() {
+
+		// initialise the map of the test method of the current junit test class
+		initializeTestsRegistry(CJunitTestJSONWriteTo.class);
+
+		// log the initialization banner
+		logBannerInitialization(CJunitTestJSONWriteTo.class);
+	}
+
+	/**
+	 * @return the number of bytes allocated by the current thread
+	 */
+	private static long getAllocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+				.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * @return a big document
+	 */
+	private static JSONObject newDocument() {
+		JSONArray wRecords = new JSONArray();
+		for (int wIdx = 0; wIdx < NB_RECORDS; wIdx++) {
+			JSONObject wRecord = new JSONObject();
+			wRecord.put("id", wIdx);
+			wRecord.put("name", "record " + wIdx);
+			wRecord.put("path", "/data/records/" + wIdx);
+			wRecord.put("amount", wIdx + 0.5);
+			wRecord.put("enabled", wIdx % 2 == 0);
+			wRecord.put("tags", new JSONArray().put("t" + (wIdx % 7)).put("label"));
+			wRecord.put("owner", new JSONObject().put("login", "user" + (wIdx % 100)));
+			wRecords.put(wRecord);
+		}
+		return new JSONObject().put("records", wRecords);
+	}
+
+	/**
+	 * @param aObject
+	 * @return the text written by writeTo(Writer)
+	 */
+	private static String writeTo(final Object aObject) {
+		StringWriter wWriter = new StringWriter();
+		if (aObject instanceof JSONObject) {
+			((JSONObject) aObject).writeTo(wWriter);
+		} else {
+			((JSONArray) aObject).writeTo(wWriter);
+		}
+		return wWriter.toString();
+	}
+
+	/**
+	 *
+	 */
+	public CJunitTestJSONWriteTo() {
+		super();
+	}
+
+	/**
+	 * writeTo() writes the same text as toString()
+	 */
+	@Test
+	public void test10SameText() throws Exception {
+		String wMethodName = "test10SameText";
+
+		logBegin(this, wMethodName, "Compare writeTo() and toString()");
+		try {
+
+			Map<String, Object> wMap = new LinkedHashMap<>();
+			wMap.put("m1", 1);
+			wMap.put("m2", Arrays.asList("x", null, 2.5));
+
+			JSONObject wObject = new JSONObject();
+			wObject.put("ascii", "plain text / url http://host/path");
+			wObject.put("escapes", "quote\" backslash\\ </script> tab\t nl\n cr\r ctrl\u0001");
+			wObject.put("unicode", "été \u0085   中");
+			wObject.put("", "empty key");
+			wObject.put("null", JSONObject.NULL);
+			wObject.put("long", Long.MAX_VALUE);
+			wObject.put("double", 1.23456789E96);
+			wObject.put("map", wMap);
+			wObject.put("ints", new int[] { 1, 2, 3 });
+			wObject.put("empty-object", new JSONObject());
+			wObject.put("empty-array", new JSONArray());
+			wObject.put("jsonstring", new JSONString() {
+				@Override
+				public String toJSONString() {
+					return "{\"raw\":true}";
+				}
+			});
+			wObject.put("array", new JSONArray().put("a").put((Object) null).put(new JSONObject().put("k", "v")));
+
+			String wExpected = wObject.toString();
+			getLogger().logInfo(this, wMethodName, "toString: %s", wExpected);
+			Assert.assertEquals(wExpected, writeTo(wObject));
+			Assert.assertEquals(wExpected, wObject.write(new StringWriter()).toString());
+
+			JSONArray wArray = wObject.getJSONArray("array");
+			Assert.assertEquals(wArray.toString(), writeTo(wArray));
+
+			ByteArrayOutputStream wStream = new ByteArrayOutputStream();
+			wObject.writeTo(wStream, StandardCharsets.UTF_8);
+			Assert.assertEquals(wExpected, new String(wStream.toByteArray(), StandardCharsets.UTF_8));
+
+			// the quoted strings written in a writer are the same
+			for (String wString : new String[] { "", "abc", "a\"b", "</", "<\\/", " ", " \u007f" }) {
+				StringWriter wWriter = new StringWriter();
+				JSONObject.quote(wString, wWriter);
+				Assert.assertEquals(JSONObject.quote(wString), wWriter.toString());
+			}
+
+			// deeper than the 20 levels of a JSONWriter
+			JSONObject wDeep = new JSONObject();
+			JSONObject wLevel = wDeep;
+			for (int wIdx = 0; wIdx < 50; wIdx++) {
+				JSONObject wChild = new JSONObject();
+				wLevel.put("l" + wIdx, wChild);
+				wLevel = wChild;
+			}
+			Assert.assertEquals(wDeep.toString(), writeTo(wDeep));
+
+			// a public writer appends a deep value as a whole
+			String wStringer = new JSONStringer().object().key("deep").value(wDeep).endObject().toString();
+			Assert.assertEquals(new JSONObject().put("deep", wDeep).toString(), wStringer);
+			StringWriter wWriter = new StringWriter();
+			new JSONWriter(wWriter).array().value(wDeep).value(wMap).endArray();
+			Assert.assertEquals(new JSONArray().put(wDeep).put(wMap).toString(), wWriter.toString());
+
+			logEndOK(this, wMethodName, "The texts are the same");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * compares the throughput and the allocations of toString() and writeTo()
+	 * writing a big document in a stream. A plain timing loop: JMH isn't part
+	 * of the build.
+	 */
+	@Test
+	public void test20Benchmark() throws Exception {
+		String wMethodName = "test20Benchmark";
+
+		logBegin(this, wMethodName, "Compare the throughput of writeTo() and toString()");
+		try {
+
+			JSONObject wDocument = newDocument();
+
+			ByteArrayOutputStream wStreamed = new ByteArrayOutputStream();
+			wDocument.writeTo(wStreamed, StandardCharsets.UTF_8);
+			Assert.assertArrayEquals(wDocument.toString().getBytes(StandardCharsets.UTF_8), wStreamed.toByteArray());
+
+			// a sink, as a socket, which doesn't keep the bytes
+			OutputStream wSink = new OutputStream() {
+				@Override
+				public void write(final byte[] aBytes, final int aOffset, final int aLength) {
+					// discarded
+				}
+
+				@Override
+				public void write(final int aByte) {
+					// discarded
+				}
+			};
+
+			for (int wLoop = 0; wLoop < 5; wLoop++) {
+				long wAllocated = getAllocatedBytes();
+				long wStart = System.nanoTime();
+				wSink.write(wDocument.toString().getBytes(StandardCharsets.UTF_8));
+				long wToStringNs = System.nanoTime() - wStart;
+				long wToStringBytes = getAllocatedBytes() - wAllocated;
+
+				wAllocated = getAllocatedBytes();
+				wStart = System.nanoTime();
+				wDocument.writeTo(wSink, StandardCharsets.UTF_8);
+				long wWriteToNs = System.nanoTime() - wStart;
+				long wWriteToBytes = getAllocatedBytes() - wAllocated;
+
+				getLogger().logInfo(this, wMethodName,
+						"Size=[%d] toString=[%d ms][%d KB allocated] writeTo=[%d ms][%d KB allocated]",
+						wStreamed.size(), wToStringNs / 1000000, wToStringBytes / 1024, wWriteToNs / 1000000,
+						wWriteToBytes / 1024);
+			}
+
+			logEndOK(this, wMethodName, "done");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+}
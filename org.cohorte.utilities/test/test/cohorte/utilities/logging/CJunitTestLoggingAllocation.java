@@ -0,0 +1,255 @@
+/**
+ *
+ */
+package test.cohorte.utilities.logging;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.logging.Level;
+
+import org.cohorte.utilities.junit.CAbstractJunitTest;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.psem2m.utilities.logging.CActivityFormaterStd;
+import org.psem2m.utilities.logging.CActivityLoggerStd;
+import org.psem2m.utilities.logging.CLogLineTextBuilder;
+import org.psem2m.utilities.logging.EActivityOverflowPolicy;
+import org.psem2m.utilities.logging.IActivityLogger;
+
+/**
+ * Measures the number of bytes allocated by the hot path of the logging tools.
+ *
+ * The measure uses the allocation counter of the current thread provided by
+ * the HotSpot ThreadMXBean. The tests are ignored if it isn't available.
+ */
+public class CJunitTestLoggingAllocation extends CAbstractJunitTest {
+
+	private final static int NB_CALLS = 10000;
+
+	private final static int NB_WARMUP_CALLS = 20000;
+
+	/**
+	 *
+	 */
+	@AfterClass
+	public static void destroy() {
+
+		// log the destroy banner containing the report
+		logBannerDestroy(CJunitTestLoggingAllocation.class);
+	}
+
+	/**
+	 *
+	 */
+	@BeforeClass
+	public static void initialize() {
+
+		// initialise the map of the test method of the current junit test class
+		initializeTestsRegistry(CJunitTestLoggingAllocation.class);
+
+		// log the initialization banner
+		logBannerInitialization(CJunitTestLoggingAllocation.class);
+	}
+
+	private final com.sun.management.ThreadMXBean pThreadMXBean = getThreadMXBean();
+
+	/**
+	 *
+	 */
+	public CJunitTestLoggingAllocation() {
+		super();
+	}
+
+	/**
+	 * Checks that the formatting of a log line in a reused buffer doesn't
+	 * allocate
+	 */
+	@Test
+	public void doTest10FormatInBuffer() throws Exception {
+		String wMethodName = "doTest10FormatInBuffer";
+
+		logBegin(this, wMethodName, "Allocation of CActivityFormaterStd.formatInBuffer");
+
+		try {
+			Assume.assumeTrue(isMeasurable());
+
+			final CActivityFormaterStd wFormater = new CActivityFormaterStd();
+			final StringBuilder wSB = new StringBuilder(512);
+			final String wThreadName = Thread.currentThread().getName();
+
+			final Runnable wCall = new Runnable() {
+				@Override
+				public void run() {
+					wSB.setLength(0);
+					wFormater.formatInBuffer(wSB, System.currentTimeMillis(),
+							Level.INFO, wThreadName, "test.CWho_1234",
+							"doTest10FormatInBuffer", "the text of the line",
+							true);
+				}
+			};
+
+			final double wBytesPerCall = measureBytesPerCall(wCall);
+
+			getLogger().logInfo(this, wMethodName,
+					"formatInBuffer: BytesPerCall=[%.2f]", wBytesPerCall);
+
+			// the date/time prefix is rebuilt once per second
+			Assert.assertTrue("formatInBuffer doesn't allocate",
+					wBytesPerCall < 8);
+
+			logEndOK(this, wMethodName, "done");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * Checks that the building of the "who object id" of the same object
+	 * doesn't allocate
+	 */
+	@Test
+	public void doTest20WhoObjectId() throws Exception {
+		String wMethodName = "doTest20WhoObjectId";
+
+		logBegin(this, wMethodName, "Allocation of CLogLineTextBuilder.buildWhoObjectId");
+
+		try {
+			Assume.assumeTrue(isMeasurable());
+
+			final CLogLineTextBuilder wBuilder = CLogLineTextBuilder
+					.getInstance();
+			final Object wWho = this;
+
+			final Runnable wCall = new Runnable() {
+				@Override
+				public void run() {
+					wBuilder.buildWhoObjectId(wWho);
+				}
+			};
+
+			final double wBytesPerCall = measureBytesPerCall(wCall);
+
+			getLogger().logInfo(this, wMethodName,
+					"buildWhoObjectId: BytesPerCall=[%.2f]", wBytesPerCall);
+
+			Assert.assertTrue("buildWhoObjectId doesn't allocate",
+					wBytesPerCall < 1);
+
+			logEndOK(this, wMethodName, "done");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * Measures the allocation of logInfo() in the caller thread of an
+	 * asynchronous CActivityLoggerStd
+	 */
+	@Test
+	public void doTest30AsyncLogInfo() throws Exception {
+		String wMethodName = "doTest30AsyncLogInfo";
+
+		logBegin(this, wMethodName, "Allocation of the asynchronous logInfo");
+
+		try {
+			Assume.assumeTrue(isMeasurable());
+
+			final File wDir = Files.createTempDirectory("asyncalloc").toFile();
+			wDir.deleteOnExit();
+
+			final IActivityLogger wLogger = CActivityLoggerStd.newAsyncLogger(
+					"test.async.alloc", wDir.getAbsolutePath()
+							+ "/alloc_%g.txt", "INFO", 10 * 1024 * 1024, 1,
+					64 * 1024, EActivityOverflowPolicy.BLOCK, null);
+
+			final Object wWho = this;
+			final Runnable wCall = new Runnable() {
+				@Override
+				public void run() {
+					wLogger.logInfo(wWho, "doTest30AsyncLogInfo",
+							"the text of the line");
+				}
+			};
+
+			final double wBytesPerCall = measureBytesPerCall(wCall);
+
+			wLogger.close();
+			new File(wDir, "alloc_0.txt").delete();
+
+			getLogger().logInfo(this, wMethodName,
+					"async logInfo: BytesPerCall=[%.2f]", wBytesPerCall);
+
+			// at most the array of the varargs
+			Assert.assertTrue("async logInfo allocates at most the varargs",
+					wBytesPerCall < 32);
+
+			logEndOK(this, wMethodName, "done");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the HotSpot ThreadMXBean or null
+	 */
+	private com.sun.management.ThreadMXBean getThreadMXBean() {
+		try {
+			final java.lang.management.ThreadMXBean wBean = ManagementFactory
+					.getThreadMXBean();
+			if (wBean instanceof com.sun.management.ThreadMXBean) {
+				return (com.sun.management.ThreadMXBean) wBean;
+			}
+		} catch (final Throwable e) {
+			// not a HotSpot JVM
+		}
+		return null;
+	}
+
+	/**
+	 * @return true if the allocation counter of the current thread is
+	 *         available
+	 */
+	private boolean isMeasurable() {
+		return pThreadMXBean != null
+				&& pThreadMXBean.isThreadAllocatedMemorySupported()
+				&& pThreadMXBean.isThreadAllocatedMemoryEnabled();
+	}
+
+	/**
+	 * @param aCall
+	 * @return the average number of bytes allocated by one call
+	 */
+	private double measureBytesPerCall(final Runnable aCall) {
+		final long wThreadId = Thread.currentThread().getId();
+
+		for (int wI = 0; wI < NB_WARMUP_CALLS; wI++) {
+			aCall.run();
+		}
+		final long wBefore = pThreadMXBean.getThreadAllocatedBytes(wThreadId);
+		for (int wI = 0; wI < NB_CALLS; wI++) {
+			aCall.run();
+		}
+		final long wAfter = pThreadMXBean.getThreadAllocatedBytes(wThreadId);
+
+		return ((double) (wAfter - wBefore)) / NB_CALLS;
+	}
+}
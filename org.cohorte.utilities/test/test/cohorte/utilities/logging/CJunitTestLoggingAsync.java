@@ -0,0 +1,285 @@
+/**
+ *
+ */
+package test.cohorte.utilities.logging;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.logging.Level;
+
+import org.cohorte.utilities.junit.CAbstractJunitTest;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.psem2m.utilities.logging.CActivityLoggerStd;
+import org.psem2m.utilities.logging.EActivityOverflowPolicy;
+import org.psem2m.utilities.logging.IActivityLogger;
+
+/**
+ * Tests of the asynchronous writing pipeline of the CActivityLoggerStd
+ */
+public class CJunitTestLoggingAsync extends CAbstractJunitTest {
+
+	private final static int NB_LINES_PER_THREAD = 2000;
+
+	private final static int NB_THREADS = 4;
+
+	/**
+	 *
+	 */
+	@AfterClass
+	public static void destroy() {
+
+		// log the destroy banner containing the report
+		logBannerDestroy(CJunitTestLoggingAsync.class);
+	}
+
+	/**
+	 *
+	 */
+	@BeforeClass
+	public static void initialize() {
+
+		// initialise the map of the test method of the current junit test class
+		initializeTestsRegistry(CJunitTestLoggingAsync.class);
+
+		// log the initialization banner
+		logBannerInitialization(CJunitTestLoggingAsync.class);
+	}
+
+	/**
+	 *
+	 */
+	public CJunitTestLoggingAsync() {
+		super();
+	}
+
+	/**
+	 * @param aLogger
+	 * @param aMarker
+	 * @throws InterruptedException
+	 */
+	private void logInThreads(final IActivityLogger aLogger,
+			final String aMarker) throws InterruptedException {
+
+		final Thread[] wThreads = new Thread[NB_THREADS];
+		for (int wT = 0; wT < NB_THREADS; wT++) {
+			wThreads[wT] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int wI = 0; wI < NB_LINES_PER_THREAD; wI++) {
+						aLogger.logInfo(this, "run", aMarker, "num=", wI);
+					}
+				}
+			}, "Producer-" + wT);
+		}
+		for (final Thread wThread : wThreads) {
+			wThread.start();
+		}
+		for (final Thread wThread : wThreads) {
+			wThread.join();
+		}
+	}
+
+	/**
+	 * @param aFile
+	 * @param aMarker
+	 * @return the number of lines containing the marker
+	 * @throws Exception
+	 */
+	private int countLines(final File aFile, final String aMarker)
+			throws Exception {
+
+		final List<String> wLines = Files.readAllLines(aFile.toPath(),
+				StandardCharsets.UTF_8);
+		int wNb = 0;
+		for (final String wLine : wLines) {
+			if (wLine.contains(aMarker)) {
+				wNb++;
+			}
+		}
+		return wNb;
+	}
+
+	/**
+	 * @param aPrefix
+	 * @return a new temporary directory
+	 * @throws Exception
+	 */
+	private File newLogDir(final String aPrefix) throws Exception {
+		final File wDir = Files.createTempDirectory(aPrefix).toFile();
+		wDir.deleteOnExit();
+		return wDir;
+	}
+
+	/**
+	 * Checks that all the records are written when the logger is closed and
+	 * that the lines carry the name of the caller thread
+	 */
+	@Test
+	public void doTest10Block() throws Exception {
+		String wMethodName = "doTest10Block";
+
+		logBegin(this, wMethodName, "Test of the BLOCK overflow policy");
+
+		try {
+			final File wDir = newLogDir("asyncblock");
+			final String wMarker = "async-block-line";
+
+			// a small buffer to force the overflow
+			final IActivityLogger wLogger = CActivityLoggerStd.newAsyncLogger(
+					"test.async.block", wDir.getAbsolutePath()
+							+ "/block_%g.txt", "ALL", 50 * 1024 * 1024, 1, 64,
+					EActivityOverflowPolicy.BLOCK, null);
+
+			logInThreads(wLogger, wMarker);
+
+			wLogger.close();
+
+			final File wFile = new File(wDir, "block_0.txt");
+			final int wNbLines = countLines(wFile, wMarker);
+
+			getLogger().logInfo(this, wMethodName,
+					"NbLines=[%d] NbDropped=[%d]", wNbLines,
+					wLogger.getNbDroppedRecords());
+
+			Assert.assertEquals("No record dropped", 0,
+					wLogger.getNbDroppedRecords());
+			Assert.assertEquals("No queued record", 0,
+					wLogger.getNbQueuedRecords());
+			Assert.assertEquals("All the lines are written", NB_THREADS
+					* NB_LINES_PER_THREAD, wNbLines);
+			Assert.assertEquals("The lines carry the caller thread name",
+					NB_LINES_PER_THREAD, countLines(wFile, "Producer-1"));
+
+			wFile.delete();
+
+			logEndOK(this, wMethodName, "Test of the BLOCK policy done");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * Checks that the number of written records plus the number of dropped
+	 * ones is equal to the number of published records
+	 */
+	@Test
+	public void doTest20DropOldest() throws Exception {
+		String wMethodName = "doTest20DropOldest";
+
+		logBegin(this, wMethodName, "Test of the DROP_OLDEST overflow policy");
+
+		try {
+			final File wDir = newLogDir("asyncdrop");
+			final String wMarker = "async-drop-line";
+
+			final IActivityLogger wLogger = CActivityLoggerStd.newAsyncLogger(
+					"test.async.drop", wDir.getAbsolutePath() + "/drop_%g.txt",
+					"ALL", 50 * 1024 * 1024, 1, 64,
+					EActivityOverflowPolicy.DROP_OLDEST, Level.WARNING);
+
+			logInThreads(wLogger, wMarker);
+
+			wLogger.close();
+
+			final File wFile = new File(wDir, "drop_0.txt");
+			final int wNbLines = countLines(wFile, wMarker);
+
+			getLogger().logInfo(this, wMethodName,
+					"NbLines=[%d] NbDropped=[%d]", wNbLines,
+					wLogger.getNbDroppedRecords());
+
+			Assert.assertEquals("Written + dropped = published", NB_THREADS
+					* NB_LINES_PER_THREAD,
+					wNbLines + wLogger.getNbDroppedRecords());
+
+			wFile.delete();
+
+			logEndOK(this, wMethodName, "Test of the DROP_OLDEST policy done");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * Checks that the records logged while and after the logger is closed are
+	 * either written or counted as dropped
+	 */
+	@Test
+	public void doTest30LogWhileClosing() throws Exception {
+		String wMethodName = "doTest30LogWhileClosing";
+
+		logBegin(this, wMethodName, "Test of the closing of a busy logger");
+
+		try {
+			final File wDir = newLogDir("asyncclose");
+			final String wMarker = "async-close-line";
+			final int wNbAfterClose = 10;
+
+			final IActivityLogger wLogger = CActivityLoggerStd.newAsyncLogger(
+					"test.async.close", wDir.getAbsolutePath()
+							+ "/close_%g.txt", "ALL", 50 * 1024 * 1024, 1, 64,
+					EActivityOverflowPolicy.BLOCK, null);
+
+			final Thread wProducers = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						logInThreads(wLogger, wMarker);
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}, "Producers");
+			wProducers.start();
+			Thread.sleep(5);
+
+			wLogger.close();
+			wProducers.join();
+
+			for (int wI = 0; wI < wNbAfterClose; wI++) {
+				wLogger.logInfo(this, wMethodName, wMarker, "num=", wI);
+			}
+
+			final File wFile = new File(wDir, "close_0.txt");
+			final int wNbLines = countLines(wFile, wMarker);
+
+			getLogger().logInfo(this, wMethodName,
+					"NbLines=[%d] NbDropped=[%d]", wNbLines,
+					wLogger.getNbDroppedRecords());
+
+			Assert.assertTrue("The records logged after the closing are dropped",
+					wLogger.getNbDroppedRecords() >= wNbAfterClose);
+			Assert.assertEquals("Written + dropped = published", NB_THREADS
+					* NB_LINES_PER_THREAD + wNbAfterClose,
+					wNbLines + wLogger.getNbDroppedRecords());
+			Assert.assertEquals("No queued record", 0,
+					wLogger.getNbQueuedRecords());
+
+			wFile.delete();
+
+			logEndOK(this, wMethodName, "Test of the closing done");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+}
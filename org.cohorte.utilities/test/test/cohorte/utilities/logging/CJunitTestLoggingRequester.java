@@ -0,0 +1,252 @@
+/**
+ *
+ */
+package test.cohorte.utilities.logging;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.cohorte.utilities.junit.CAbstractJunitTest;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.psem2m.utilities.CXThreadUtils;
+import org.psem2m.utilities.logging.CActivityLoggerStd;
+import org.psem2m.utilities.logging.CActivityRequestCursor;
+import org.psem2m.utilities.logging.CActivityRequestFilter;
+import org.psem2m.utilities.logging.CActivityRequestRecord;
+import org.psem2m.utilities.logging.CActivityRequestReply;
+import org.psem2m.utilities.logging.IActivityLogger;
+import org.psem2m.utilities.logging.IActivityRequester;
+
+/**
+ * Tests of the indexed requests of the CActivityRequesterStd
+ */
+public class CJunitTestLoggingRequester extends CAbstractJunitTest {
+
+	private final static String PREFIX_NUM = "num=";
+
+	/**
+	 *
+	 */
+	@AfterClass
+	public static void destroy() {
+
+		// log the destroy banner containing the report
+		logBannerDestroy(CJunitTestLoggingRequester.class);
+	}
+
+	/**
+	 *
+	 */
+	@BeforeClass
+	public static void initialize() {
+
+		// initialise the map of the test method of the current junit test class
+		initializeTestsRegistry(CJunitTestLoggingRequester.class);
+
+		// log the initialization banner
+		logBannerInitialization(CJunitTestLoggingRequester.class);
+	}
+
+	/**
+	 *
+	 */
+	public CJunitTestLoggingRequester() {
+		super();
+	}
+
+	/**
+	 * @param aRecord
+	 * @return the number logged in the text of the record
+	 */
+	private int getNum(final CActivityRequestRecord aRecord) {
+		final String wText = aRecord.getLogRecord().getMessage();
+		return Integer.parseInt(wText.substring(wText.lastIndexOf(PREFIX_NUM)
+				+ PREFIX_NUM.length()));
+	}
+
+	/**
+	 * @param aPrefix
+	 * @return a new temporary directory
+	 * @throws Exception
+	 */
+	private File newLogDir(final String aPrefix) throws Exception {
+		final File wDir = Files.createTempDirectory(aPrefix).toFile();
+		wDir.deleteOnExit();
+		return wDir;
+	}
+
+	/**
+	 * @param aDir
+	 */
+	private void deleteLogDir(final File aDir) {
+		for (final File wFile : aDir.listFiles()) {
+			wFile.delete();
+		}
+		aDir.delete();
+	}
+
+	/**
+	 * Checks the requests by method, by level, by time and with a max number
+	 * of records
+	 */
+	@Test
+	public void doTest10IndexedRequests() throws Exception {
+		String wMethodName = "doTest10IndexedRequests";
+
+		logBegin(this, wMethodName, "Test of the indexed requests");
+
+		try {
+			final File wDir = newLogDir("requester");
+
+			final IActivityLogger wLogger = CActivityLoggerStd.newLogger(
+					"test.requester.indexed", wDir.getAbsolutePath()
+							+ "/indexed_%g.txt", "ALL", 50 * 1024 * 1024, 2);
+
+			final int wNbRecords = 3000;
+			long wTimeHalf = 0;
+			for (int wI = 0; wI < wNbRecords; wI++) {
+				if (wI == wNbRecords / 2) {
+					CXThreadUtils.sleep(20);
+					wTimeHalf = System.currentTimeMillis();
+				}
+				if (wI == 10) {
+					wLogger.logSevere(this, "methRare", PREFIX_NUM + wI);
+				} else if (wI % 100 == 0) {
+					wLogger.logWarn(this, "methWarn", PREFIX_NUM + wI);
+				} else {
+					wLogger.logInfo(this, "meth" + (wI % 3), PREFIX_NUM + wI);
+				}
+			}
+
+			final IActivityRequester wRequester = wLogger.getRequester();
+
+			// by method: one record at the beginning of the file
+			CActivityRequestReply wReply = wRequester.getLogMethodRecords(
+					"METHRARE", 100);
+			Assert.assertTrue("Reply OK", wReply.isOk());
+			Assert.assertEquals("One record of methRare", 1, wReply.size());
+			final CActivityRequestRecord wRare = wReply.getLogRecords()
+					.iterator().next();
+			Assert.assertEquals("Num of methRare", 10, getNum(wRare));
+			Assert.assertEquals("Method of methRare", "methRare", wRare
+					.getLogRecord().getSourceMethodName());
+
+			Assert.assertTrue("The sidecar index exists", new File(wDir,
+					"indexed_0.txt.idx").isFile());
+
+			// by level
+			wReply = wRequester.getLogLevelRecords("WARNING", 1000);
+			Assert.assertEquals("Warnings and severe", wNbRecords / 100 + 1,
+					wReply.size());
+
+			// by time
+			final CActivityRequestFilter wFilter = CActivityRequestFilter
+					.newFilter(wNbRecords);
+			wFilter.setTimeStart(wTimeHalf);
+			wReply = wRequester.getLogRecords(wFilter);
+			Assert.assertEquals("Records after the half", wNbRecords / 2,
+					wReply.size());
+
+			// the cursor: the newest first and NbMax
+			final CActivityRequestCursor wCursor = wRequester
+					.iterateLogRecords(CActivityRequestFilter.newFilter(10));
+			try {
+				int wExpected = wNbRecords - 1;
+				while (wCursor.hasNext()) {
+					Assert.assertEquals("Newest first", wExpected--,
+							getNum(wCursor.next()));
+				}
+				Assert.assertEquals("NbMax records", 10, wCursor.getNbRecords());
+				Assert.assertTrue("Max reached", wCursor.isMaxReached());
+			} finally {
+				wCursor.close();
+			}
+
+			// the index is caught up after new records
+			wLogger.logSevere(this, "methRare", PREFIX_NUM + wNbRecords);
+			wReply = wRequester.getLogMethodRecords("methRare", 100);
+			Assert.assertEquals("Two records of methRare", 2, wReply.size());
+
+			wLogger.close();
+			deleteLogDir(wDir);
+
+			logEndOK(this, wMethodName, "Test of the indexed requests done");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * Checks the requests on rotated log files
+	 */
+	@Test
+	public void doTest20Rotation() throws Exception {
+		String wMethodName = "doTest20Rotation";
+
+		logBegin(this, wMethodName, "Test of the requests after a rotation");
+
+		try {
+			final File wDir = newLogDir("rotation");
+
+			final IActivityLogger wLogger = CActivityLoggerStd.newLogger(
+					"test.requester.rotation", wDir.getAbsolutePath()
+							+ "/rotation_%g.txt", "ALL", 400 * 1024, 3);
+			final IActivityRequester wRequester = wLogger.getRequester();
+
+			int wNum = 0;
+			for (int wStep = 0; wStep < 3; wStep++) {
+				for (int wI = 0; wI < 1500; wI++) {
+					wLogger.logInfo(this, "meth" + (wI % 7), PREFIX_NUM + wNum++);
+				}
+
+				// all the records of the existing files, the newest first
+				final CActivityRequestCursor wCursor = wRequester
+						.iterateLogRecords(CActivityRequestFilter.newFilter(-1));
+				int wExpected = wNum - 1;
+				int wNb = 0;
+				try {
+					while (wCursor.hasNext()) {
+						final CActivityRequestRecord wRecord = wCursor.next();
+						// skips the records written by the logger itself
+						if (!wRecord.getLogRecord().getMessage()
+								.contains(PREFIX_NUM)) {
+							continue;
+						}
+						Assert.assertEquals("Continuous records", wExpected--,
+								getNum(wRecord));
+						wNb++;
+					}
+					Assert.assertTrue("Cursor OK", wCursor.isOk());
+				} finally {
+					wCursor.close();
+				}
+				getLogger().logInfo(this, wMethodName,
+						"Step=[%d] NbLogged=[%d] NbRead=[%d]", wStep, wNum, wNb);
+				Assert.assertTrue("Records read", wNb > 0);
+			}
+
+			Assert.assertTrue("The log files rotated", new File(wDir,
+					"rotation_1.txt").isFile());
+
+			wLogger.close();
+			deleteLogDir(wDir);
+
+			logEndOK(this, wMethodName, "Test of the rotation done");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,272 @@
+package test.cohorte.utilities.rsrc;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.cohorte.utilities.junit.CAbstractJunitTest;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.psem2m.utilities.rsrc.CXRsrcByte;
+import org.psem2m.utilities.rsrc.CXRsrcByteReader;
+import org.psem2m.utilities.rsrc.CXRsrcContentCache;
+import org.psem2m.utilities.rsrc.CXRsrcProviderFile;
+import org.psem2m.utilities.rsrc.CXRsrcTextReadInfo;
+import org.psem2m.utilities.rsrc.CXRsrcTextUnicodeReader;
+import org.psem2m.utilities.rsrc.CXRsrcUriPath;
+
+/**
+ * Tests the exact-size and the mapped readings of the CXRsrcByteReader and the
+ * read-only buffer of the CXRsrcByte
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class CJunitTestRsrcByteReader extends CAbstractJunitTest {
+
+	private static final int[] SIZES = { 1024, 1024 * 1024, 10 * 1024 * 1024, 100 * 1024 * 1024 };
+
+	private static File sDir;
+
+	/**
+	 *
+	 */
+	@AfterClass
+	public static void destroy() {
+
+		// log the destroy banner containing the report
+		logBannerDestroy(CJunitTestRsrcByteReader.class);
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@BeforeClass
+	public static void initialize() throws Exception {
+
+		// initialise the map of the test method of the current junit test class
+		initializeTestsRegistry(CJunitTestRsrcByteReader.class);
+
+		// log the initialization banner
+		logBannerInitialization(CJunitTestRsrcByteReader.class);
+
+		sDir = Files.createTempDirectory("rsrcbytes").toFile();
+		sDir.deleteOnExit();
+	}
+
+	/**
+	 *
+	 */
+	public CJunitTestRsrcByteReader() {
+		super();
+	}
+
+	/**
+	 * @param aName
+	 * @param aSize
+	 * @return a file of random bytes
+	 * @throws Exception
+	 */
+	private File writeFile(final String aName, final int aSize) throws Exception {
+		File wFile = new File(sDir, aName);
+		wFile.deleteOnExit();
+		byte[] wContent = new byte[aSize];
+		new Random(aSize).nextBytes(wContent);
+		Files.write(wFile.toPath(), wContent);
+		return wFile;
+	}
+
+	/**
+	 * the contents are the same whatever the way they are read
+	 */
+	@Test
+	public void test10Contents() throws Exception {
+		String wMethodName = "test10Contents";
+
+		logBegin(this, wMethodName, "Read small and big files");
+		try {
+
+			for (int wSize : new int[] { 0, 1, 1024, (int) CXRsrcByteReader.MAPPED_SIZE_MIN + 1 }) {
+				File wFile = writeFile("file" + wSize + ".bin", wSize);
+				byte[] wExpected = Files.readAllBytes(wFile.toPath());
+
+				Assert.assertArrayEquals(wExpected, CXRsrcByteReader.readAll(wFile));
+				Assert.assertArrayEquals(wExpected, CXRsrcByteReader.readAll(wFile.toURI().toURL().openConnection()));
+
+				ByteBuffer wBuffer = CXRsrcByteReader.readBuffer(wFile);
+				Assert.assertEquals(wSize, wBuffer.remaining());
+				byte[] wRead = new byte[wBuffer.remaining()];
+				wBuffer.get(wRead);
+				Assert.assertArrayEquals(wExpected, wRead);
+			}
+
+			// the BOM is skipped without copy of the content
+			byte[] wText = "\ufeffh\u00e9llo".getBytes(StandardCharsets.UTF_8);
+			File wFile = new File(sDir, "bom.txt");
+			wFile.deleteOnExit();
+			Files.write(wFile.toPath(), wText);
+			CXRsrcTextReadInfo wInfo = CXRsrcTextUnicodeReader.readAll(wFile, StandardCharsets.ISO_8859_1);
+			Assert.assertEquals("h\u00e9llo", wInfo.getContent());
+			Assert.assertTrue(wInfo.hasBOM());
+
+			logEndOK(this, wMethodName, "The contents are equal");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * the files are read in arrays by default, the big files are mapped if
+	 * the provider enables it and exposed as read-only buffers which aren't
+	 * cached
+	 */
+	@Test
+	public void test20ReadOnlyBuffer() throws Exception {
+		String wMethodName = "test20ReadOnlyBuffer";
+
+		logBegin(this, wMethodName, "Read a small and a big file with a provider");
+		try {
+
+			File wSmall = writeFile("small.bin", 1024);
+			File wBig = writeFile("big.bin", 2 * (int) CXRsrcByteReader.MAPPED_SIZE_MIN);
+
+			CXRsrcProviderFile wProvider = new CXRsrcProviderFile(sDir.getAbsolutePath(), StandardCharsets.UTF_8);
+			CXRsrcContentCache wCache = wProvider.getContentCache();
+
+			CXRsrcByte wRsrc = wProvider.rsrcReadByte("small.bin");
+			Assert.assertFalse(wRsrc.isMapped());
+			Assert.assertEquals(1, wCache.size());
+
+			// by default the content is a snapshot of the file
+			Assert.assertFalse(wProvider.isMapLargeFiles());
+			wRsrc = wProvider.rsrcReadByte("big.bin");
+			Assert.assertFalse(wRsrc.isBuffered());
+			byte[] wBigContent = Files.readAllBytes(wBig.toPath());
+			Assert.assertArrayEquals(wBigContent, wRsrc.getContent());
+			Assert.assertEquals(2, wCache.size());
+			byte[] wRewritten = wBigContent.clone();
+			wRewritten[0]++;
+			Files.write(wBig.toPath(), wRewritten);
+			Assert.assertEquals(wBigContent[0], wRsrc.getContent()[0]);
+
+			// the mapping is enabled by the provider
+			CXRsrcProviderFile wMappedProvider = new CXRsrcProviderFile(sDir.getAbsolutePath(),
+					StandardCharsets.UTF_8);
+			wMappedProvider.setMapLargeFiles(true);
+			Assert.assertFalse(wMappedProvider.rsrcReadByte("small.bin").isMapped());
+			wRsrc = wMappedProvider.rsrcReadByte("big.bin");
+			Assert.assertTrue(wRsrc.isMapped());
+			Assert.assertEquals(wBig.length(), wRsrc.getLength());
+			Assert.assertEquals(1, wMappedProvider.getContentCache().size());
+
+			ByteBuffer wBuffer = wRsrc.getByteBuffer();
+			Assert.assertTrue(wBuffer.isReadOnly());
+			try {
+				wBuffer.put(0, (byte) 0);
+				Assert.fail("The buffer is read-only");
+			} catch (ReadOnlyBufferException e) {
+				getLogger().logInfo(this, wMethodName, "EXPECTED ERROR: %s", e);
+			}
+
+			// the array is a private copy
+			byte[] wContent = wRsrc.getContent();
+			Assert.assertArrayEquals(Files.readAllBytes(wBig.toPath()), wContent);
+			wContent[0]++;
+			Assert.assertNotEquals(wContent[0], wRsrc.getByteBuffer().get(0));
+
+			// the view of an array
+			wRsrc = new CXRsrcByte(new CXRsrcUriPath("small.bin"), Files.readAllBytes(wSmall.toPath()), 0);
+			Assert.assertTrue(wRsrc.getByteBuffer().isReadOnly());
+			Assert.assertEquals(1024, wRsrc.getByteBuffer().remaining());
+			Assert.assertFalse(wRsrc.isBuffered());
+
+			// the buffers of the cached contents are shared
+			Assert.assertTrue(
+					Arrays.equals(wProvider.rsrcReadByte("small.bin").getContent(), Files.readAllBytes(wSmall.toPath())));
+			getLogger().logInfo(this, wMethodName, "%s", wCache);
+
+			logEndOK(this, wMethodName, "The big files are mapped on demand");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * measures the readings of files of 1 KB to 100 MB through a
+	 * URLConnection, in an array of their size and mapped in memory
+	 */
+	@Test
+	public void test30Benchmark() throws Exception {
+		String wMethodName = "test30Benchmark";
+
+		logBegin(this, wMethodName, "Read files of [%d] sizes", SIZES.length);
+		try {
+
+			for (int wSize : SIZES) {
+				// the file and the arrays must fit in the memory
+				if (4L * wSize > Runtime.getRuntime().maxMemory()) {
+					getLogger().logInfo(this, wMethodName, "size=[%d] skipped: maxMemory=[%d]", wSize,
+							Runtime.getRuntime().maxMemory());
+					continue;
+				}
+				File wFile = writeFile("bench.bin", wSize);
+				int wNbLoops = Math.max(3, (64 * 1024 * 1024) / wSize);
+
+				for (int wLoop = 0; wLoop < 3; wLoop++) {
+					long wStart = System.nanoTime();
+					for (int i = 0; i < wNbLoops; i++) {
+						CXRsrcByteReader.readAll(wFile.toURI().toURL().openConnection());
+					}
+					long wUrlNs = System.nanoTime() - wStart;
+
+					wStart = System.nanoTime();
+					for (int i = 0; i < wNbLoops; i++) {
+						CXRsrcByteReader.readAll(wFile);
+					}
+					long wArrayNs = System.nanoTime() - wStart;
+
+					long wSum = 0;
+					wStart = System.nanoTime();
+					for (int i = 0; i < wNbLoops; i++) {
+						ByteBuffer wBuffer = CXRsrcByteReader.readBuffer(wFile);
+						// touches the pages
+						for (int wPos = 0; wPos < wBuffer.limit(); wPos += 4096) {
+							wSum += wBuffer.get(wPos);
+						}
+					}
+					long wBufferNs = System.nanoTime() - wStart;
+
+					getLogger().logInfo(this, wMethodName,
+							"size=[%d] loops=[%d] url=[%d us] array=[%d us] buffer=[%d us] (%d)", wSize, wNbLoops,
+							wUrlNs / 1000, wArrayNs / 1000, wBufferNs / 1000, wSum);
+				}
+				wFile.delete();
+			}
+
+			logEndOK(this, wMethodName, "done");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+}
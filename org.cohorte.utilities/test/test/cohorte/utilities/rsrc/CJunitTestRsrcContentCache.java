@@ -0,0 +1,299 @@
+package test.cohorte.utilities.rsrc;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.WatchEvent.Kind;
+
+import org.cohorte.utilities.junit.CAbstractJunitTest;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.psem2m.utilities.logging.CActivityLoggerNull;
+import org.psem2m.utilities.rsrc.CXRsrcByte;
+import org.psem2m.utilities.rsrc.CXRsrcContentCache;
+import org.psem2m.utilities.rsrc.CXRsrcProviderFile;
+import org.psem2m.utilities.rsrc.CXRsrcText;
+import org.psem2m.utilities.rsrc.IRsrcNotifierHandler;
+
+/**
+ * Tests the cache of the decoded contents of the CXRsrcProviderFile
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class CJunitTestRsrcContentCache extends CAbstractJunitTest {
+
+	private static final int NB_LOOPS = 2000;
+
+	/**
+	 *
+	 */
+	@AfterClass
+	public static void destroy() {
+
+		// log the destroy banner containing the report
+		logBannerDestroy(CJunitTestRsrcContentCache.class);
+	}
+
+	/**
+	 *
+	 */
+	@BeforeClass
+	public static void initialize() {
+
+		// initialise the map of the test method of the current junit test class
+		initializeTestsRegistry(CJunitTestRsrcContentCache.class);
+
+		// log the initialization banner
+		logBannerInitialization(CJunitTestRsrcContentCache.class);
+	}
+
+	/**
+	 *
+	 */
+	public CJunitTestRsrcContentCache() {
+		super();
+	}
+
+	/**
+	 * @param aDir
+	 * @param aName
+	 * @param aContent
+	 * @param aLastModified
+	 * @return the written file
+	 * @throws Exception
+	 */
+	private File writeFile(final File aDir, final String aName, final String aContent, final long aLastModified)
+			throws Exception {
+		File wFile = new File(aDir, aName);
+		wFile.deleteOnExit();
+		Files.write(wFile.toPath(), aContent.getBytes(StandardCharsets.UTF_8));
+		Assert.assertTrue(wFile.setLastModified(aLastModified));
+		return wFile;
+	}
+
+	/**
+	 * the contents are read once and reread when the timestamp of the file
+	 * changes
+	 */
+	@Test
+	public void test10TimeStamps() throws Exception {
+		String wMethodName = "test10TimeStamps";
+
+		logBegin(this, wMethodName, "Read a file several times and modify it");
+		try {
+
+			File wDir = Files.createTempDirectory("rsrccache").toFile();
+			wDir.deleteOnExit();
+			long wLastModified = System.currentTimeMillis() - 60000;
+			writeFile(wDir, "conf.js", "{\"version\":1}", wLastModified);
+
+			CXRsrcProviderFile wProvider = new CXRsrcProviderFile(wDir.getAbsolutePath(), StandardCharsets.UTF_8);
+			CXRsrcContentCache wCache = wProvider.getContentCache();
+
+			CXRsrcText wText = wProvider.rsrcReadTxt("conf.js");
+			Assert.assertEquals("{\"version\":1}", wText.getContent());
+			Assert.assertEquals(wLastModified / 1000, wText.getTimeStampSyst() / 1000);
+			// the returned resources can be modified
+			wText.setContent("modified");
+			Assert.assertEquals("{\"version\":1}", wProvider.rsrcReadTxt("conf.js").getContent());
+			Assert.assertEquals(1, wCache.getNbMisses());
+			Assert.assertEquals(1, wCache.getNbHits());
+
+			// not modified since the timestamp
+			Assert.assertNull(wProvider.rsrcReadTxt("conf.js", wText.getTimeStampSyst()));
+
+			CXRsrcByte wBytes = wProvider.rsrcReadByte("conf.js");
+			Assert.assertEquals(13, wBytes.getLength());
+			wBytes.getContent()[0] = '[';
+			Assert.assertEquals('{', wProvider.rsrcReadByte("conf.js").getContent()[0]);
+			Assert.assertEquals(2, wCache.size());
+
+			// the timestamp is checked when the content is read
+			writeFile(wDir, "conf.js", "{\"version\":2}", wLastModified + 10000);
+			Assert.assertEquals("{\"version\":2}", wProvider.rsrcReadTxt("conf.js").getContent());
+			Assert.assertEquals(1, wCache.getNbInvalidations());
+
+			wProvider.purgeCache();
+			Assert.assertEquals(0, wCache.size());
+			Assert.assertEquals(0, wCache.getWeight());
+
+			// without cache
+			wProvider.setContentCache(null);
+			Assert.assertEquals("{\"version\":2}", wProvider.rsrcReadTxt("conf.js").getContent());
+			getLogger().logInfo(this, wMethodName, "%s", wCache);
+
+			logEndOK(this, wMethodName, "The contents are reread when the files change");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * the contents of the watched directory are invalidated by the
+	 * notifications of the WatchService
+	 */
+	@Test
+	public void test20WatchService() throws Exception {
+		String wMethodName = "test20WatchService";
+
+		logBegin(this, wMethodName, "Modify a file of the watched directory keeping its timestamp");
+		try {
+
+			File wDir = Files.createTempDirectory("rsrcwatch").toFile();
+			wDir.deleteOnExit();
+			long wLastModified = System.currentTimeMillis() - 60000;
+			writeFile(wDir, "rule.js", "version=1", wLastModified);
+
+			CXRsrcProviderFile wProvider = new CXRsrcProviderFile(wDir.getAbsolutePath(), StandardCharsets.UTF_8,
+					new IRsrcNotifierHandler() {
+						@Override
+						public void handle(final Kind<?> aKind, final String aFileName) {
+							// nothing
+						}
+					}, CActivityLoggerNull.getInstance());
+			CXRsrcContentCache wCache = wProvider.getContentCache();
+			// trusts the WatchService
+			wCache.setCheckTimeStamps(false);
+
+			Assert.assertEquals("version=1", wProvider.rsrcReadTxt("rule.js").getContent());
+			Assert.assertEquals("version=1", wProvider.rsrcReadTxt("rule.js").getContent());
+			Assert.assertEquals(1, wCache.getNbHits());
+
+			// same length and same timestamp: only the notification can see it
+			writeFile(wDir, "rule.js", "version=2", wLastModified);
+			long wLimit = System.currentTimeMillis() + 30000;
+			while (wCache.size() > 0 && System.currentTimeMillis() < wLimit) {
+				Thread.sleep(20);
+			}
+			Assert.assertEquals(0, wCache.size());
+			Assert.assertEquals("version=2", wProvider.rsrcReadTxt("rule.js").getContent());
+
+			wProvider.setContinue(false);
+			getLogger().logInfo(this, wMethodName, "%s", wCache);
+
+			logEndOK(this, wMethodName, "The content is invalidated by the WatchService");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * the cache is bounded by the number of entries and by their weight
+	 */
+	@Test
+	public void test30Bounds() throws Exception {
+		String wMethodName = "test30Bounds";
+
+		logBegin(this, wMethodName, "Read more contents than the cache can hold");
+		try {
+
+			File wDir = Files.createTempDirectory("rsrcbounds").toFile();
+			wDir.deleteOnExit();
+			long wLastModified = System.currentTimeMillis() - 60000;
+			for (int i = 0; i < 4; i++) {
+				writeFile(wDir, "file" + i + ".txt", "0123456789", wLastModified);
+			}
+
+			CXRsrcProviderFile wProvider = new CXRsrcProviderFile(wDir.getAbsolutePath(), StandardCharsets.UTF_8);
+			// 2 texts of 10 chars
+			CXRsrcContentCache wCache = new CXRsrcContentCache(3, 40);
+			wProvider.setContentCache(wCache);
+
+			wProvider.rsrcReadTxt("file0.txt");
+			wProvider.rsrcReadTxt("file1.txt");
+			// file0 becomes the most recently used
+			wProvider.rsrcReadTxt("file0.txt");
+			wProvider.rsrcReadTxt("file2.txt");
+			Assert.assertEquals(2, wCache.size());
+			Assert.assertEquals(40, wCache.getWeight());
+			Assert.assertEquals(1, wCache.getNbEvictions());
+			wProvider.rsrcReadTxt("file0.txt");
+			Assert.assertEquals(2, wCache.getNbHits());
+
+			// the number of entries
+			wCache = new CXRsrcContentCache(3, CXRsrcContentCache.DEFAULT_MAX_WEIGHT);
+			wProvider.setContentCache(wCache);
+			for (int i = 0; i < 4; i++) {
+				wProvider.rsrcReadTxt("file" + i + ".txt");
+			}
+			Assert.assertEquals(3, wCache.size());
+			Assert.assertEquals(1, wCache.getNbEvictions());
+			getLogger().logInfo(this, wMethodName, "%s", wCache);
+
+			logEndOK(this, wMethodName, "The cache is bounded");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * measures the readings of a text file with and without cache
+	 */
+	@Test
+	public void test40Benchmark() throws Exception {
+		String wMethodName = "test40Benchmark";
+
+		logBegin(this, wMethodName, "Read a file [%d] times", NB_LOOPS);
+		try {
+
+			File wDir = Files.createTempDirectory("rsrcbench").toFile();
+			wDir.deleteOnExit();
+			StringBuilder wContent = new StringBuilder();
+			while (wContent.length() < 64 * 1024) {
+				wContent.append("{\"key\":\"value\u00e9\",\"list\":[1,2,3]}\n");
+			}
+			writeFile(wDir, "big.js", wContent.toString(), System.currentTimeMillis() - 60000);
+
+			CXRsrcProviderFile wProvider = new CXRsrcProviderFile(wDir.getAbsolutePath(), StandardCharsets.UTF_8);
+			CXRsrcContentCache wCache = wProvider.getContentCache();
+
+			for (int wLoop = 0; wLoop < 3; wLoop++) {
+				wProvider.setContentCache(null);
+				long wStart = System.nanoTime();
+				for (int i = 0; i < NB_LOOPS; i++) {
+					wProvider.rsrcReadTxt("big.js");
+				}
+				long wNoCacheNs = System.nanoTime() - wStart;
+
+				wProvider.setContentCache(wCache);
+				wStart = System.nanoTime();
+				for (int i = 0; i < NB_LOOPS; i++) {
+					wProvider.rsrcReadTxt("big.js");
+				}
+				long wCacheNs = System.nanoTime() - wStart;
+
+				getLogger().logInfo(this, wMethodName, "Loops=[%d] size=[%d chars] no cache=[%d us] cache=[%d us]",
+						NB_LOOPS, wContent.length(), wNoCacheNs / 1000, wCacheNs / 1000);
+			}
+			Assert.assertEquals(3 * NB_LOOPS - 1, wCache.getNbHits());
+			getLogger().logInfo(this, wMethodName, "%s", wCache);
+
+			logEndOK(this, wMethodName, "done");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,346 @@
+package test.cohorte.utilities.rsrc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.cohorte.utilities.junit.CAbstractJunitTest;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.psem2m.utilities.rsrc.CXRsrcHttpCache;
+import org.psem2m.utilities.rsrc.CXRsrcProviderHttp;
+import org.psem2m.utilities.rsrc.CXRsrcText;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests the conditional requests and the on-disk cache of the
+ * CXRsrcProviderHttp against a local http server
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class CJunitTestRsrcProviderHttp extends CAbstractJunitTest {
+
+	/**
+	 * serves a document with an ETag, compressed if the client accepts gzip,
+	 * or answers the status set in the test
+	 */
+	private static class CDocumentHandler implements HttpHandler {
+
+		private volatile String pContent = "{\"version\":1}";
+
+		// the ports of the clients: one by connection
+		private final Set<Integer> pClientPorts = ConcurrentHashMap.newKeySet();
+
+		private final AtomicInteger pNbNotModified = new AtomicInteger();
+
+		private final AtomicInteger pNbRequests = new AtomicInteger();
+
+		// the status answered instead of the document if not 0
+		private volatile int pStatus = 0;
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see
+		 * com.sun.net.httpserver.HttpHandler#handle(com.sun.net.httpserver.
+		 * HttpExchange)
+		 */
+		@Override
+		public void handle(final HttpExchange aExchange) throws IOException {
+			pNbRequests.incrementAndGet();
+			pClientPorts.add(aExchange.getRemoteAddress().getPort());
+			final InputStream wRequest = aExchange.getRequestBody();
+			while (wRequest.read() != -1) {
+				// nothing
+			}
+			if (pStatus != 0) {
+				aExchange.sendResponseHeaders(pStatus, -1);
+				aExchange.close();
+				return;
+			}
+			final String wContent = pContent;
+			final String wETag = "\"" + Integer.toHexString(wContent.hashCode()) + "\"";
+			aExchange.getResponseHeaders().set("ETag", wETag);
+			if (wETag.equals(aExchange.getRequestHeaders().getFirst("If-None-Match"))) {
+				pNbNotModified.incrementAndGet();
+				aExchange.sendResponseHeaders(304, -1);
+				aExchange.close();
+				return;
+			}
+			byte[] wBody = wContent.getBytes(StandardCharsets.UTF_8);
+			final String wAccept = aExchange.getRequestHeaders().getFirst("Accept-Encoding");
+			if (wAccept != null && wAccept.contains("gzip")) {
+				final ByteArrayOutputStream wBuffer = new ByteArrayOutputStream();
+				final GZIPOutputStream wGzip = new GZIPOutputStream(wBuffer);
+				wGzip.write(wBody);
+				wGzip.close();
+				wBody = wBuffer.toByteArray();
+				aExchange.getResponseHeaders().set("Content-Encoding", "gzip");
+			}
+			aExchange.getResponseHeaders().set("Content-Type", "application/javascript; charset=utf-8");
+			aExchange.sendResponseHeaders(200, wBody.length);
+			final OutputStream wOutput = aExchange.getResponseBody();
+			wOutput.write(wBody);
+			wOutput.close();
+		}
+	}
+
+	private static File sCacheDir;
+
+	private static CDocumentHandler sHandler;
+
+	private static HttpServer sServer;
+
+	/**
+	 *
+	 */
+	@AfterClass
+	public static void destroy() {
+
+		if (sServer != null) {
+			sServer.stop(0);
+		}
+		// log the destroy banner containing the report
+		logBannerDestroy(CJunitTestRsrcProviderHttp.class);
+	}
+
+	/**
+	 * @throws IOException
+	 */
+	@BeforeClass
+	public static void initialize() throws IOException {
+
+		// initialise the map of the test method of the current junit test class
+		initializeTestsRegistry(CJunitTestRsrcProviderHttp.class);
+
+		// log the initialization banner
+		logBannerInitialization(CJunitTestRsrcProviderHttp.class);
+
+		sHandler = new CDocumentHandler();
+		sServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		sServer.createContext("/conf", sHandler);
+		sServer.start();
+
+		sCacheDir = Files.createTempDirectory("httpcache").toFile();
+		sCacheDir.deleteOnExit();
+	}
+
+	/**
+	 *
+	 */
+	public CJunitTestRsrcProviderHttp() {
+		super();
+	}
+
+	/**
+	 * @return a provider using the cache directory of the test
+	 * @throws IOException
+	 */
+	private CXRsrcProviderHttp newProvider() throws IOException {
+		final CXRsrcProviderHttp wProvider = new CXRsrcProviderHttp("127.0.0.1", sServer.getAddress().getPort(),
+				StandardCharsets.UTF_8);
+		wProvider.setHttpCache(new CXRsrcHttpCache(sCacheDir));
+		return wProvider;
+	}
+
+	/**
+	 * the unchanged document is validated by a 304 and the connection is
+	 * reused
+	 */
+	@Test
+	public void test10ConditionalRequests() throws Exception {
+		String wMethodName = "test10ConditionalRequests";
+
+		logBegin(this, wMethodName, "Read a document several times");
+		try {
+
+			CXRsrcProviderHttp wProvider = newProvider();
+			CXRsrcHttpCache wCache = wProvider.getHttpCache();
+
+			CXRsrcText wText = wProvider.rsrcReadTxt("conf/app.js");
+			Assert.assertEquals("{\"version\":1}", wText.getContent());
+			Assert.assertEquals(1, wCache.getNbDownloads());
+			Assert.assertEquals(1, wCache.getNbGzip());
+
+			for (int i = 0; i < 10; i++) {
+				Assert.assertEquals("{\"version\":1}", wProvider.rsrcReadTxt("conf/app.js").getContent());
+			}
+			Assert.assertEquals(10, wCache.getNbNotModified());
+			Assert.assertEquals(10, sHandler.pNbNotModified.get());
+			Assert.assertEquals(wText.getTimeStampSyst(), wProvider.getTimeStamp(wText));
+			Assert.assertTrue(wProvider.checkTimeStamp(wText));
+
+			// modified on the server
+			sHandler.pContent = "{\"version\":2}";
+			Assert.assertFalse(wProvider.checkTimeStamp(wText));
+			Assert.assertEquals("{\"version\":2}", wProvider.rsrcReadTxt("conf/app.js").getContent());
+			Assert.assertEquals(2, wCache.getNbDownloads());
+
+			// keep-alive: all the requests used the same connection
+			Assert.assertEquals(1, sHandler.pClientPorts.size());
+			getLogger().logInfo(this, wMethodName, "requests=[%d] connections=[%d] %s", sHandler.pNbRequests.get(),
+					sHandler.pClientPorts.size(), wCache);
+
+			logEndOK(this, wMethodName, "The document is downloaded when it changes");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * the freshness period set by setCacheExpires() saves the requests
+	 */
+	@Test
+	public void test20Expires() throws Exception {
+		String wMethodName = "test20Expires";
+
+		logBegin(this, wMethodName, "Read a document validated less than 60 seconds ago");
+		try {
+
+			CXRsrcProviderHttp wProvider = newProvider();
+			wProvider.setCacheExpires(60);
+			CXRsrcHttpCache wCache = wProvider.getHttpCache();
+
+			wProvider.rsrcReadTxt("conf/app.js");
+			int wNbRequests = sHandler.pNbRequests.get();
+			for (int i = 0; i < 10; i++) {
+				Assert.assertEquals(sHandler.pContent, wProvider.rsrcReadTxt("conf/app.js").getContent());
+			}
+			Assert.assertEquals(wNbRequests, sHandler.pNbRequests.get());
+			Assert.assertEquals(10, wCache.getNbFresh());
+
+			// the purge forces the validation
+			wProvider.purgeCache();
+			wProvider.rsrcReadTxt("conf/app.js");
+			Assert.assertEquals(wNbRequests + 1, sHandler.pNbRequests.get());
+			getLogger().logInfo(this, wMethodName, "%s", wCache);
+
+			logEndOK(this, wMethodName, "The fresh documents are served without request");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * a 5xx serves the stored document, a 404 or a 403 doesn't and removes it
+	 */
+	@Test
+	public void test25ErrorStatus() throws Exception {
+		String wMethodName = "test25ErrorStatus";
+
+		logBegin(this, wMethodName, "Read a document removed on the server");
+		try {
+
+			CXRsrcProviderHttp wProvider = newProvider();
+			CXRsrcHttpCache wCache = wProvider.getHttpCache();
+			String wContent = sHandler.pContent;
+
+			Assert.assertEquals(wContent, wProvider.rsrcReadTxt("conf/app.js").getContent());
+			try {
+				sHandler.pStatus = 503;
+				Assert.assertEquals(wContent, wProvider.rsrcReadTxt("conf/app.js").getContent());
+				Assert.assertEquals(1, wCache.getNbOffline());
+
+				for (int wStatus : new int[] { 404, 403, 503 }) {
+					sHandler.pStatus = wStatus;
+					try {
+						wProvider.rsrcReadTxt("conf/app.js");
+						Assert.fail("The document isn't served after a " + wStatus);
+					} catch (Exception e) {
+						getLogger().logInfo(this, wMethodName, "EXPECTED ERROR: %s", e.getMessage());
+					}
+				}
+				Assert.assertEquals(1, wCache.getNbOffline());
+			} finally {
+				sHandler.pStatus = 0;
+			}
+
+			// downloaded again
+			Assert.assertEquals(wContent, wProvider.rsrcReadTxt("conf/app.js").getContent());
+			Assert.assertEquals(1, wCache.getNbDownloads());
+			getLogger().logInfo(this, wMethodName, "%s", wCache);
+
+			logEndOK(this, wMethodName, "The removed document is no longer served");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * a new provider (a restart) validates the documents stored on the disk
+	 * and serves them when the server is stopped
+	 */
+	@Test
+	public void test30RestartAndOffline() throws Exception {
+		String wMethodName = "test30RestartAndOffline";
+
+		logBegin(this, wMethodName, "Read the stored documents with a new provider");
+		try {
+
+			CXRsrcProviderHttp wProvider = newProvider();
+			CXRsrcHttpCache wCache = wProvider.getHttpCache();
+
+			Assert.assertEquals(sHandler.pContent, wProvider.rsrcReadTxt("conf/app.js").getContent());
+			Assert.assertEquals(0, wCache.getNbDownloads());
+			Assert.assertEquals(1, wCache.getNbNotModified());
+
+			sServer.stop(0);
+			sServer = null;
+			Assert.assertEquals(sHandler.pContent, wProvider.rsrcReadTxt("conf/app.js").getContent());
+			Assert.assertEquals(sHandler.pContent,
+					new String(wProvider.rsrcReadByte("conf/app.js").getContent(), StandardCharsets.UTF_8));
+			Assert.assertEquals(2, wCache.getNbOffline());
+
+			// never downloaded
+			try {
+				wProvider.rsrcReadTxt("conf/other.js");
+				Assert.fail("The document isn't cached");
+			} catch (Exception e) {
+				getLogger().logInfo(this, wMethodName, "EXPECTED ERROR: %s", e.getMessage());
+			}
+
+			wCache.clear();
+			Assert.assertEquals(0, sCacheDir.list().length);
+			getLogger().logInfo(this, wMethodName, "%s", wCache);
+
+			logEndOK(this, wMethodName, "The documents are served from the disk");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+}
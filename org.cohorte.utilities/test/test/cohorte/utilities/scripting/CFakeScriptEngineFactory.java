@@ -0,0 +1,222 @@
+package test.cohorte.utilities.scripting;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.script.AbstractScriptEngine;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+
+/**
+ * The factory of a multithreaded engine which only assigns variables:
+ * "name=value;sleep=10"
+ */
+class CFakeScriptEngineFactory implements ScriptEngineFactory {
+
+	/**
+	 * an engine assigning the variables of the script in the context
+	 */
+	static class CFakeEngine extends AbstractScriptEngine implements Compilable {
+
+		private final ScriptEngineFactory pFactory;
+
+		/**
+		 * @param aFactory
+		 */
+		CFakeEngine(final ScriptEngineFactory aFactory) {
+			super();
+			pFactory = aFactory;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see javax.script.Compilable#compile(java.io.Reader)
+		 */
+		@Override
+		public CompiledScript compile(final Reader aScript) throws ScriptException {
+			return compile(read(aScript));
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see javax.script.Compilable#compile(java.lang.String)
+		 */
+		@Override
+		public CompiledScript compile(final String aScript) throws ScriptException {
+			sNbCompilations.incrementAndGet();
+			final ScriptEngine wEngine = this;
+			return new CompiledScript() {
+				@Override
+				public Object eval(final ScriptContext aContext) throws ScriptException {
+					return wEngine.eval(aScript, aContext);
+				}
+
+				@Override
+				public ScriptEngine getEngine() {
+					return wEngine;
+				}
+			};
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see javax.script.ScriptEngine#createBindings()
+		 */
+		@Override
+		public Bindings createBindings() {
+			return new SimpleBindings();
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see javax.script.ScriptEngine#eval(java.io.Reader,
+		 * javax.script.ScriptContext)
+		 */
+		@Override
+		public Object eval(final Reader aReader, final ScriptContext aContext) throws ScriptException {
+			return eval(read(aReader), aContext);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see javax.script.ScriptEngine#eval(java.lang.String,
+		 * javax.script.ScriptContext)
+		 */
+		@Override
+		public Object eval(final String aScript, final ScriptContext aContext) throws ScriptException {
+			for (final String wStatement : aScript.trim().split(";")) {
+				final String[] wParts = wStatement.trim().split("=");
+				if ("sleep".equals(wParts[0])) {
+					try {
+						Thread.sleep(Long.parseLong(wParts[1]));
+					} catch (final InterruptedException e) {
+						throw new ScriptException(e);
+					}
+				} else {
+					aContext.setAttribute(wParts[0], wParts[1], ScriptContext.ENGINE_SCOPE);
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * the context can't be replaced once "locked" is set: the engine can't
+		 * be scrubbed
+		 *
+		 * @see javax.script.AbstractScriptEngine#setContext(javax.script.ScriptContext)
+		 */
+		@Override
+		public void setContext(final ScriptContext aContext) {
+			if (getContext().getAttribute("locked", ScriptContext.ENGINE_SCOPE) != null) {
+				throw new IllegalStateException("The context is locked");
+			}
+			super.setContext(aContext);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see javax.script.ScriptEngine#getFactory()
+		 */
+		@Override
+		public ScriptEngineFactory getFactory() {
+			return pFactory;
+		}
+
+		/**
+		 * @param aReader
+		 * @return
+		 * @throws ScriptException
+		 */
+		private String read(final Reader aReader) throws ScriptException {
+			final StringBuilder wScript = new StringBuilder();
+			try (BufferedReader wReader = new BufferedReader(aReader)) {
+				String wLine;
+				while ((wLine = wReader.readLine()) != null) {
+					wScript.append(wLine).append('\n');
+				}
+			} catch (final IOException e) {
+				throw new ScriptException(e);
+			}
+			return wScript.toString();
+		}
+	}
+
+	// the number of compilations done by all the fake engines
+	static final AtomicInteger sNbCompilations = new AtomicInteger();
+
+	@Override
+	public String getEngineName() {
+		return "fake";
+	}
+
+	@Override
+	public String getEngineVersion() {
+		return "1.0";
+	}
+
+	@Override
+	public List<String> getExtensions() {
+		return Arrays.asList("fake");
+	}
+
+	@Override
+	public String getLanguageName() {
+		return "fake";
+	}
+
+	@Override
+	public String getLanguageVersion() {
+		return "1.0";
+	}
+
+	@Override
+	public String getMethodCallSyntax(final String aObj, final String aMethod, final String... aArgs) {
+		return null;
+	}
+
+	@Override
+	public List<String> getMimeTypes() {
+		return Arrays.asList("text/fake");
+	}
+
+	@Override
+	public List<String> getNames() {
+		return Arrays.asList("fake");
+	}
+
+	@Override
+	public String getOutputStatement(final String aToDisplay) {
+		return null;
+	}
+
+	@Override
+	public Object getParameter(final String aKey) {
+		return "THREADING".equals(aKey) ? "MULTITHREADED" : null;
+	}
+
+	@Override
+	public String getProgram(final String... aStatements) {
+		return null;
+	}
+
+	@Override
+	public ScriptEngine getScriptEngine() {
+		return new CFakeEngine(this);
+	}
+}
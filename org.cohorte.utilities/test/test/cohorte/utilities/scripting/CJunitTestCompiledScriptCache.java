@@ -0,0 +1,261 @@
+package test.cohorte.utilities.scripting;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import javax.script.Bindings;
+import javax.script.SimpleBindings;
+
+import org.cohorte.utilities.junit.CAbstractJunitTest;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.psem2m.utilities.rsrc.CXRsrcProviderFile;
+import org.psem2m.utilities.rsrc.CXRsrcUriPath;
+import org.psem2m.utilities.scripting.CXJsCompiledScript;
+import org.psem2m.utilities.scripting.CXJsCompiledScriptCache;
+import org.psem2m.utilities.scripting.CXJsEngine;
+import org.psem2m.utilities.scripting.CXJsException;
+import org.psem2m.utilities.scripting.CXJsScriptFactory;
+import org.psem2m.utilities.scripting.CXJsSourceMain;
+
+/**
+ * Tests the process-wide cache of the compiled scripts and the background
+ * revalidation of the timestamps
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class CJunitTestCompiledScriptCache extends CAbstractJunitTest {
+
+	private static final CFakeScriptEngineFactory FACTORY = new CFakeScriptEngineFactory();
+
+	private static final int NB_LOOPS = 20000;
+
+	/**
+	 *
+	 */
+	@AfterClass
+	public static void destroy() {
+
+		// log the destroy banner containing the report
+		logBannerDestroy(CJunitTestCompiledScriptCache.class);
+	}
+
+	/**
+	 *
+	 */
+	@BeforeClass
+	public static void initialize() {
+
+		// initialise the map of the test method of the current junit test class
+		initializeTestsRegistry(CJunitTestCompiledScriptCache.class);
+
+		// log the initialization banner
+		logBannerInitialization(CJunitTestCompiledScriptCache.class);
+	}
+
+	/**
+	 *
+	 */
+	public CJunitTestCompiledScriptCache() {
+		super();
+	}
+
+	/**
+	 * @param aScript
+	 * @param aVariable
+	 * @return the value of the variable set by the script
+	 * @throws CXJsException
+	 */
+	private Object evalVariable(final CXJsCompiledScript aScript, final String aVariable) throws CXJsException {
+		final Bindings wBindings = new SimpleBindings();
+		aScript.eval(wBindings);
+		return wBindings.get(aVariable);
+	}
+
+	/**
+	 * @param aFile
+	 * @param aCode
+	 * @param aLastModified
+	 * @throws Exception
+	 */
+	private void writeScript(final File aFile, final String aCode, final long aLastModified) throws Exception {
+		Files.write(aFile.toPath(), aCode.getBytes(StandardCharsets.UTF_8));
+		Assert.assertTrue(aFile.setLastModified(aLastModified));
+	}
+
+	/**
+	 * the engines of the same factory share the script compiled once
+	 */
+	@Test
+	public void test10SharedAcrossEngines() throws Exception {
+		String wMethodName = "test10SharedAcrossEngines";
+
+		logBegin(this, wMethodName, "Compile the same source in two engines");
+		try {
+
+			CXJsCompiledScriptCache wCache = CXJsCompiledScriptCache.getInstance();
+			String wCode = "shared=yes;test=" + wMethodName;
+
+			CXJsEngine wEngine1 = new CXJsScriptFactory(FACTORY).getScriptEngine();
+			CXJsEngine wEngine2 = new CXJsScriptFactory(FACTORY).getScriptEngine();
+			Assert.assertNotSame(wEngine1.getScriptEngine(), wEngine2.getScriptEngine());
+
+			CFakeScriptEngineFactory.sNbCompilations.set(0);
+			long wNbHits = wCache.getNbHits();
+
+			CXJsCompiledScript wScript1 = wEngine1
+					.compile(CXJsSourceMain.newInstanceFromSource(null, null, wCode, "fake", null), false);
+			CXJsCompiledScript wScript2 = wEngine2
+					.compile(CXJsSourceMain.newInstanceFromSource(null, null, wCode, "fake", null), false);
+
+			Assert.assertSame(wScript1.getCompiledScript(), wScript2.getCompiledScript());
+			Assert.assertEquals(1, CFakeScriptEngineFactory.sNbCompilations.get());
+			Assert.assertEquals(wNbHits + 1, wCache.getNbHits());
+			Assert.assertEquals("yes", evalVariable(wScript2, "shared"));
+
+			// the engines of another factory compile their own script
+			CXJsEngine wOther = new CXJsScriptFactory(new CFakeScriptEngineFactory()).getScriptEngine();
+			CXJsCompiledScript wScript3 = wOther
+					.compile(CXJsSourceMain.newInstanceFromSource(null, null, wCode, "fake", null), false);
+			Assert.assertNotSame(wScript1.getCompiledScript(), wScript3.getCompiledScript());
+			Assert.assertEquals(2, CFakeScriptEngineFactory.sNbCompilations.get());
+
+			getLogger().logInfo(this, wMethodName, "%s", wCache);
+
+			logEndOK(this, wMethodName, "The script is compiled once");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * the modifications are seen after the revalidation of the timestamps
+	 */
+	@Test
+	public void test20Revalidation() throws Exception {
+		String wMethodName = "test20Revalidation";
+
+		logBegin(this, wMethodName, "Modify a script and check when it is recompiled");
+		CXJsCompiledScriptCache wCache = CXJsCompiledScriptCache.getInstance();
+		long wRevalidationMs = wCache.getRevalidationMs();
+		try {
+
+			File wDir = Files.createTempDirectory("jscache").toFile();
+			wDir.deleteOnExit();
+			File wFile = new File(wDir, "main.fake");
+			wFile.deleteOnExit();
+			long wLastModified = wFile.lastModified() > 0 ? wFile.lastModified() : System.currentTimeMillis();
+			writeScript(wFile, "version=1", wLastModified);
+
+			// no revalidation by the background thread during the first checks
+			wCache.setRevalidationMs(3600 * 1000);
+
+			CXRsrcProviderFile wProvider = new CXRsrcProviderFile(wDir.getAbsolutePath(), StandardCharsets.UTF_8);
+			CXJsSourceMain wMain = CXJsSourceMain.newInstanceFromFile(wProvider, new CXRsrcUriPath("main.fake"),
+					"fake", null);
+			CXJsCompiledScript wScript = new CXJsScriptFactory(FACTORY).getScriptEngine().compile(wMain, true);
+			Assert.assertEquals("1", evalVariable(wScript, "version"));
+
+			// the executions don't check the timestamps
+			writeScript(wFile, "version=2", wLastModified + 10000);
+			Assert.assertEquals("1", evalVariable(wScript, "version"));
+
+			Assert.assertEquals(1, wCache.revalidate());
+			Assert.assertEquals("2", evalVariable(wScript, "version"));
+			Assert.assertEquals(0, wCache.revalidate());
+
+			// checked at each execution
+			wCache.setRevalidationMs(0);
+			writeScript(wFile, "version=3", wLastModified + 20000);
+			Assert.assertEquals("3", evalVariable(wScript, "version"));
+
+			// checked by the background thread
+			wCache.setRevalidationMs(20);
+			writeScript(wFile, "version=4", wLastModified + 30000);
+			long wLimit = System.currentTimeMillis() + 10000;
+			while (!"4".equals(evalVariable(wScript, "version")) && System.currentTimeMillis() < wLimit) {
+				Thread.sleep(20);
+			}
+			Assert.assertEquals("4", evalVariable(wScript, "version"));
+
+			getLogger().logInfo(this, wMethodName, "%s", wCache);
+
+			logEndOK(this, wMethodName, "The script is recompiled after the revalidation");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		} finally {
+			wCache.setRevalidationMs(wRevalidationMs);
+		}
+	}
+
+	/**
+	 * measures the executions checking the timestamps each time and the ones
+	 * reading the result of the last revalidation
+	 */
+	@Test
+	public void test30Benchmark() throws Exception {
+		String wMethodName = "test30Benchmark";
+
+		logBegin(this, wMethodName, "Execute a script [%d] times", NB_LOOPS);
+		CXJsCompiledScriptCache wCache = CXJsCompiledScriptCache.getInstance();
+		long wRevalidationMs = wCache.getRevalidationMs();
+		try {
+
+			File wDir = Files.createTempDirectory("jsbench").toFile();
+			wDir.deleteOnExit();
+			File wFile = new File(wDir, "main.fake");
+			wFile.deleteOnExit();
+			Files.write(wFile.toPath(), "bench=1".getBytes(StandardCharsets.UTF_8));
+
+			CXRsrcProviderFile wProvider = new CXRsrcProviderFile(wDir.getAbsolutePath(), StandardCharsets.UTF_8);
+			CXJsSourceMain wMain = CXJsSourceMain.newInstanceFromFile(wProvider, new CXRsrcUriPath("main.fake"),
+					"fake", null);
+			CXJsCompiledScript wScript = new CXJsScriptFactory(FACTORY).getScriptEngine().compile(wMain, true);
+
+			for (int wLoop = 0; wLoop < 3; wLoop++) {
+				wCache.setRevalidationMs(0);
+				long wStart = System.nanoTime();
+				for (int i = 0; i < NB_LOOPS; i++) {
+					wScript.eval(new SimpleBindings());
+				}
+				long wEachTimeNs = System.nanoTime() - wStart;
+
+				wCache.setRevalidationMs(1000);
+				wStart = System.nanoTime();
+				for (int i = 0; i < NB_LOOPS; i++) {
+					wScript.eval(new SimpleBindings());
+				}
+				long wRevalidatedNs = System.nanoTime() - wStart;
+
+				getLogger().logInfo(this, wMethodName, "Loops=[%d] checked each time=[%d us] revalidated=[%d us]",
+						NB_LOOPS, wEachTimeNs / 1000, wRevalidatedNs / 1000);
+			}
+			getLogger().logInfo(this, wMethodName, "%s", wCache);
+
+			logEndOK(this, wMethodName, "done");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		} finally {
+			wCache.setRevalidationMs(wRevalidationMs);
+		}
+	}
+}
@@ -0,0 +1,281 @@
+package test.cohorte.utilities.scripting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.script.SimpleScriptContext;
+
+import org.cohorte.utilities.junit.CAbstractJunitTest;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.psem2m.utilities.scripting.CXJsEngine;
+import org.psem2m.utilities.scripting.CXJsException;
+import org.psem2m.utilities.scripting.CXJsScriptEnginePool;
+import org.psem2m.utilities.scripting.CXJsScriptFactory;
+import org.psem2m.utilities.scripting.CXJsSourceMain;
+
+/**
+ * Tests the pool of script engines with an engine which only assigns
+ * variables: "name=value;sleep=10"
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class CJunitTestScriptEnginePool extends CAbstractJunitTest {
+
+	private static final CFakeScriptEngineFactory FACTORY = new CFakeScriptEngineFactory();
+
+	/**
+	 *
+	 */
+	@AfterClass
+	public static void destroy() {
+
+		// log the destroy banner containing the report
+		logBannerDestroy(CJunitTestScriptEnginePool.class);
+	}
+
+	/**
+	 *
+	 */
+	@BeforeClass
+	public static void initialize() {
+
+		// initialise the map of the test method of the current junit test class
+		initializeTestsRegistry(CJunitTestScriptEnginePool.class);
+
+		// log the initialization banner
+		logBannerInitialization(CJunitTestScriptEnginePool.class);
+	}
+
+	/**
+	 *
+	 */
+	public CJunitTestScriptEnginePool() {
+		super();
+	}
+
+	/**
+	 * the engines are prewarmed with the common modules and the variables set
+	 * by a script are removed when the engine is freed
+	 */
+	@Test
+	public void test10PrewarmAndScrub() throws Exception {
+		String wMethodName = "test10PrewarmAndScrub";
+
+		logBegin(this, wMethodName, "Prewarm the pool and check the bindings of the freed engines");
+		try {
+
+			CXJsScriptEnginePool wPool = new CXJsScriptEnginePool(new CXJsScriptFactory(FACTORY), 4);
+			CXJsSourceMain wModule = CXJsSourceMain.newInstanceFromSource(null, null, "common=module", "fake",
+					null);
+
+			CFakeScriptEngineFactory.sNbCompilations.set(0);
+			Assert.assertEquals(3, wPool.prewarm(3, wModule));
+			Assert.assertEquals(1, CFakeScriptEngineFactory.sNbCompilations.get());
+			Assert.assertEquals(3, wPool.getNbIdle());
+
+			CXJsEngine wEngine = wPool.get();
+			Assert.assertEquals("module", wEngine.getJSObject("common"));
+			wEngine.getScriptEngine().eval("common=changed;local=value");
+			wPool.free(wEngine);
+
+			// the last freed engine is reused
+			Assert.assertSame(wEngine, wPool.get());
+			Assert.assertEquals("module", wEngine.getJSObject("common"));
+			Assert.assertNull(wEngine.getJSObject("local"));
+
+			// the engines created later know the common modules
+			List<CXJsEngine> wEngines = new ArrayList<>();
+			for (int i = 0; i < 3; i++) {
+				wEngines.add(wPool.get());
+			}
+			Assert.assertEquals(4, wPool.getNbEngines());
+			Assert.assertEquals("module", wEngines.get(2).getJSObject("common"));
+			Assert.assertEquals(1.0, wPool.getUtilization(), 0);
+
+			wPool.free(wEngine);
+			for (CXJsEngine wOther : wEngines) {
+				wPool.free(wOther);
+			}
+			Assert.assertEquals(0, wPool.getNbBusy());
+			getLogger().logInfo(this, wMethodName, "%s", wPool);
+
+			logEndOK(this, wMethodName, "The engines are prewarmed and scrubbed");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * get() waits until an engine is freed or the timeout expires
+	 */
+	@Test
+	public void test20WaitAndTimeout() throws Exception {
+		String wMethodName = "test20WaitAndTimeout";
+
+		logBegin(this, wMethodName, "Take all the engines of the pool");
+		try {
+
+			final CXJsScriptEnginePool wPool = new CXJsScriptEnginePool(new CXJsScriptFactory(FACTORY), 2);
+			final CXJsEngine wFirst = wPool.get();
+			final CXJsEngine wSecond = wPool.get();
+
+			try {
+				wPool.get(50);
+				Assert.fail("All the engines are used");
+			} catch (CXJsException e) {
+				getLogger().logInfo(this, wMethodName, "EXPECTED ERROR: %s", e.getMessage());
+			}
+			Assert.assertEquals(1, wPool.getNbTimeOuts());
+
+			Thread wFreer = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						Thread.sleep(100);
+					} catch (InterruptedException e) {
+						// nothing
+					}
+					wPool.free(wSecond);
+				}
+			});
+			wFreer.start();
+			Assert.assertSame(wSecond, wPool.get(5000));
+			wFreer.join();
+			Assert.assertEquals(2, wPool.getNbWaits());
+			Assert.assertTrue(wPool.getMaxWaitNs() >= 50000000L);
+
+			wPool.free(wFirst);
+			wPool.free(wSecond);
+			// an engine which isn't taken from the pool is ignored
+			wPool.free(wSecond);
+			Assert.assertEquals(2, wPool.getNbIdle());
+			getLogger().logInfo(this, wMethodName, "%s", wPool);
+
+			logEndOK(this, wMethodName, "get() waits the freed engines");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * many threads share a small pool: no engine is used by two threads and the
+	 * pool never creates more engines than its capacity
+	 */
+	@Test
+	public void test30Concurrency() throws Exception {
+		String wMethodName = "test30Concurrency";
+
+		logBegin(this, wMethodName, "Run scripts in 16 threads with a pool of 4 engines");
+		try {
+
+			final CXJsScriptEnginePool wPool = new CXJsScriptEnginePool(new CXJsScriptFactory(FACTORY), 4);
+			ExecutorService wExecutor = Executors.newFixedThreadPool(16);
+			List<Future<Boolean>> wResults = new ArrayList<>();
+			long wStart = System.nanoTime();
+			for (int i = 0; i < 400; i++) {
+				final String wValue = "run" + i;
+				wResults.add(wExecutor.submit(new Callable<Boolean>() {
+					@Override
+					public Boolean call() throws Exception {
+						CXJsEngine wEngine = wPool.get();
+						try {
+							Assert.assertNull(wEngine.getJSObject("owner"));
+							wEngine.getScriptEngine().eval("owner=" + wValue + ";sleep=1");
+							return wValue.equals(wEngine.getJSObject("owner"));
+						} finally {
+							wPool.free(wEngine);
+						}
+					}
+				}));
+			}
+			for (Future<Boolean> wResult : wResults) {
+				Assert.assertTrue(wResult.get());
+			}
+			long wElapsedMs = (System.nanoTime() - wStart) / 1000000;
+			wExecutor.shutdown();
+
+			Assert.assertEquals(4, wPool.getNbEngines());
+			Assert.assertEquals(4, wPool.getPeakBusy());
+			Assert.assertEquals(400, wPool.getNbCheckOuts());
+			getLogger().logInfo(this, wMethodName, "elapsed=[%d ms] %s", wElapsedMs, wPool);
+
+			logEndOK(this, wMethodName, "The engines are shared without conflict");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+
+	/**
+	 * the engines which can't be scrubbed and the engines which don't know the
+	 * new common modules are destroyed when they are freed
+	 */
+	@Test
+	public void test40DestroyOnFree() throws Exception {
+		String wMethodName = "test40DestroyOnFree";
+
+		logBegin(this, wMethodName, "Free an engine which can't be scrubbed and an engine prewarmed before");
+		try {
+
+			CXJsScriptEnginePool wPool = new CXJsScriptEnginePool(new CXJsScriptFactory(FACTORY), 2);
+			CXJsSourceMain wModuleA = CXJsSourceMain.newInstanceFromSource(null, null, "common=A", "fake", null);
+			CXJsSourceMain wModuleB = CXJsSourceMain.newInstanceFromSource(null, null, "common=B", "fake", null);
+			Assert.assertEquals(1, wPool.prewarm(1, wModuleA));
+
+			// scrub() fails
+			CXJsEngine wLocked = wPool.get();
+			wLocked.getScriptEngine().setContext(new SimpleScriptContext());
+			wLocked.getScriptEngine().eval("locked=yes");
+			wPool.free(wLocked);
+			Assert.assertNull(wLocked.getScriptEngine());
+			Assert.assertEquals(0, wPool.getNbEngines());
+			Assert.assertEquals(0, wPool.getNbIdle());
+
+			// the modules change while the engine is checked out
+			CXJsEngine wStale = wPool.get();
+			Assert.assertEquals("A", wStale.getJSObject("common"));
+			Assert.assertEquals(1, wPool.prewarm(1, wModuleB));
+			wPool.free(wStale);
+			Assert.assertNull(wStale.getScriptEngine());
+			Assert.assertEquals(0, wPool.getNbEngines());
+
+			CXJsEngine wEngine = wPool.get();
+			Assert.assertEquals("B", wEngine.getJSObject("common"));
+			wPool.free(wEngine);
+			Assert.assertEquals(1, wPool.getNbIdle());
+			Assert.assertEquals(0, wPool.getNbBusy());
+			getLogger().logInfo(this, wMethodName, "%s", wPool);
+
+			logEndOK(this, wMethodName, "The engines are destroyed");
+
+		} catch (Exception | Error e) {
+			getLogger().logSevere(this, wMethodName, "ERROR: %s", e);
+
+			logEndKO(this, wMethodName, "Unexpected exception !", e);
+
+			throw e;
+		}
+	}
+}
@@ -1,6 +1,8 @@
 package test.org.cohorte.utilities.picosoc.servicerefs;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -10,6 +12,7 @@ import java.util.Map;
 import org.cohorte.utilities.CXMethodUtils;
 import org.cohorte.utilities.junit.CAbstractJunitTest;
 import org.cohorte.utilities.picosoc.CServicReference;
+import org.cohorte.utilities.picosoc.CServiceHandle;
 import org.cohorte.utilities.picosoc.CServiceKey;
 import org.cohorte.utilities.picosoc.CServiceProperties;
 import org.cohorte.utilities.picosoc.CServicesRegistry;
@@ -458,4 +461,157 @@ public class CTestServiceReferences extends CAbstractJunitTest {
 			throw e;
 		}
 	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void test50ServiceHandle() throws Exception {
+		String wMethodName = CXMethodUtils.getMethodName(0);
+		String wAction = "Service handle";
+		try {
+
+			logBegin(this, wMethodName, "%s Begin...", wAction);
+
+			CServiceProperties wPropsD1 = CServiceProperties.newProps(PROP1,
+					"D1");
+			CServicReference<ISpecificationOne> wServiceRefD1 = doRegister(
+					"D1", ISpecificationOne.class, wPropsD1, new CServiceOne(
+							"D1"));
+
+			CServiceHandle<ISpecificationOne> wHandle = CServicesRegistry
+					.getRegistry().getServiceHandle(ISpecificationOne.class,
+							wPropsD1);
+			assertEquals(wServiceRefD1.getService(), wHandle.getService());
+			assertEquals(wServiceRefD1, wHandle.getServiceRef());
+			assertOK(wHandle);
+
+			// the handle is invalidated by the modification of the properties
+			wServiceRefD1.setProperty(PROP1, "D1modified");
+			assertFalse(wHandle.isAvailable());
+			wServiceRefD1.setProperty(PROP1, "D1");
+			assertEquals(wServiceRefD1.getService(), wHandle.getService());
+
+			// the handle is invalidated by the removal of the service
+			CServicesRegistry.getRegistry().removeService(wServiceRefD1);
+			assertNull(wHandle.getOptionalService());
+			try {
+				wHandle.getService();
+				fail();
+			} catch (Exception e) {
+				assertTrue(e.getMessage().contains("Unable to get the service"));
+			}
+			assertOK(false);
+
+			// the handle finds a new registered service
+			CServicReference<ISpecificationOne> wServiceRefD2 = doRegister(
+					"D2", ISpecificationOne.class, wPropsD1, new CServiceOne(
+							"D2"));
+			assertEquals(wServiceRefD2.getService(), wHandle.getService());
+			assertOK(wHandle);
+
+			doDumpRegistry();
+
+			logEndOK(this, wMethodName, "%s End OK.", wAction);
+		} catch (Throwable e) {
+			logEndKO(this, wMethodName, e);
+			throw e;
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void test60NotStrictSearch() throws Exception {
+		String wMethodName = CXMethodUtils.getMethodName(0);
+		String wAction = "Not strict search";
+		try {
+
+			logBegin(this, wMethodName, "%s Begin...", wAction);
+
+			CServicesRegistry wRegistry = CServicesRegistry.getRegistry();
+
+			// C1 has the properties P2 and P3: found only in not strict mode
+			CServiceProperties wPropsP2 = CServiceProperties.newProps(PROP2,
+					VAL2 + "modified");
+			assertEquals(getTestsContext().get("C1"),
+					wRegistry.findServiceRef(ISpecificationOne.class, wPropsP2));
+			assertEquals(
+					((CServicReference<?>) getTestsContext().get("C1"))
+							.getService(), wRegistry.getOptionalService(
+							ISpecificationOne.class, wPropsP2));
+			assertFalse(wRegistry.contains(ISpecificationOne.class, wPropsP2));
+			try {
+				wRegistry.getService(ISpecificationOne.class, wPropsP2);
+				fail();
+			} catch (Exception e) {
+				assertTrue(e.getMessage().contains("Unable to get the service"));
+			}
+			assertOK(true);
+
+			// A1, B1 and C1 have the property P3: A1 matches strictly
+			CServiceProperties wPropsP3 = CServiceProperties.newProps(PROP3,
+					VAL3);
+			assertEquals(getTestsContext().get("A1"),
+					wRegistry.findServiceRef(ISpecificationOne.class, wPropsP3));
+			assertOK(getTestsContext().get("A1"));
+
+			// no service has the property P2 with the value V2
+			assertNull(wRegistry.findServiceRef(ISpecificationOne.class,
+					CServiceProperties.newProps(PROP2, VAL2)));
+			assertOK(null);
+
+			logEndOK(this, wMethodName, "%s End OK.", wAction);
+		} catch (Throwable e) {
+			logEndKO(this, wMethodName, e);
+			throw e;
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void test70RemovedServiceRef() throws Exception {
+		String wMethodName = CXMethodUtils.getMethodName(0);
+		String wAction = "Removed ServiceRef";
+		try {
+
+			logBegin(this, wMethodName, "%s Begin...", wAction);
+
+			CServicesRegistry wRegistry = CServicesRegistry.getRegistry();
+
+			CServiceProperties wPropsE1 = CServiceProperties.newProps(PROP1,
+					"E1");
+			CServicReference<ISpecificationOne> wServiceRefE1 = doRegister(
+					"E1", ISpecificationOne.class, wPropsE1, new CServiceOne(
+							"E1"));
+			wRegistry.removeService(wServiceRefE1);
+
+			// the removed reference doesn't notify the registry any more
+			wServiceRefE1.setProperty(PROP1, "E1modified");
+			assertNull(wRegistry.findServiceRef(wServiceRefE1.getService()));
+			assertFalse(wRegistry.contains(ISpecificationOne.class,
+					CServiceProperties.newProps(PROP1, "E1modified")));
+			assertOK(false);
+
+			// a registered reference notifies the registry
+			CServicReference<ISpecificationOne> wServiceRefE2 = doRegister(
+					"E2", ISpecificationOne.class, wPropsE1, new CServiceOne(
+							"E2"));
+			wServiceRefE2.setProperty(PROP1, "E2");
+			assertEquals(wServiceRefE2, wRegistry.getServiceRef(
+					ISpecificationOne.class,
+					CServiceProperties.newProps(PROP1, "E2")));
+			assertOK(wServiceRefE2);
+
+			doDumpRegistry();
+
+			logEndOK(this, wMethodName, "%s End OK.", wAction);
+		} catch (Throwable e) {
+			logEndKO(this, wMethodName, e);
+			throw e;
+		}
+	}
 }